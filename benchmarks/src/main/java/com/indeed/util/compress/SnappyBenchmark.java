@@ -0,0 +1,95 @@
+package com.indeed.util.compress;
+
+import com.indeed.util.compress.snappy.SnappyCompressor;
+import com.indeed.util.compress.snappy.SnappyDecompressor;
+import com.indeed.util.compress.snappy.SnappyJava;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compressing and decompressing one {@link SnappyCodec} sized block of log like text between direct buffers with
+ * {@link SnappyJava} and with the native library. The native runs fail in setup when libsnappy isn't available.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnappyBenchmark {
+
+    private static final int BLOCK_SIZE = 200*1024;
+
+    private static final String[] WORDS = {
+            "uid", "type", "jobsearch", "q", "l", "software", "engineer", "nurse", "austin", "tx", "new", "york",
+            "ny", "page", "rq", "sort", "date", "relevance", "ctk", "tk", "&", "=", "\t", "\n"
+    };
+
+    @Param({"java", "native"})
+    public String impl;
+
+    private ByteBuffer uncompressed;
+    private ByteBuffer compressed;
+    private ByteBuffer output;
+    private int compressedLength;
+    private short[] hashTable;
+    private SnappyCompressor compressor;
+    private SnappyDecompressor decompressor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("native".equals(impl) && !SnappyCompressor.isNativeCodeLoaded()) {
+            throw new IllegalStateException("native snappy is not available");
+        }
+        final Random random = new Random(0);
+        final StringBuilder builder = new StringBuilder();
+        while (builder.length() < BLOCK_SIZE) {
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+            if (random.nextInt(4) == 0) builder.append(random.nextInt(100000));
+        }
+        final byte[] bytes = builder.substring(0, BLOCK_SIZE).getBytes(StandardCharsets.US_ASCII);
+        uncompressed = ByteBuffer.allocateDirect(BLOCK_SIZE);
+        uncompressed.put(bytes).flip();
+        compressed = ByteBuffer.allocateDirect(SnappyJava.maxCompressedLength(BLOCK_SIZE));
+        output = ByteBuffer.allocateDirect(BLOCK_SIZE);
+        hashTable = SnappyJava.newHashTable();
+        compressor = new SnappyCompressor();
+        decompressor = new SnappyDecompressor();
+        compressedLength = compress();
+    }
+
+    @Benchmark
+    public int compress() throws IOException {
+        if ("java".equals(impl)) {
+            return SnappyJava.compress(uncompressed, 0, BLOCK_SIZE, compressed, 0, compressed.capacity(), hashTable);
+        }
+        compressed.clear();
+        return compressor.compress(uncompressed.duplicate(), compressed);
+    }
+
+    @Benchmark
+    public int decompress() throws IOException {
+        if ("java".equals(impl)) {
+            return SnappyJava.decompress(compressed, 0, compressedLength, output, 0, BLOCK_SIZE);
+        }
+        compressed.limit(compressedLength).position(0);
+        output.clear();
+        return decompressor.decompress(compressed, output);
+    }
+}
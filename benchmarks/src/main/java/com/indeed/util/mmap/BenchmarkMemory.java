@@ -0,0 +1,94 @@
+package com.indeed.util.mmap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * Creates the {@link Memory} implementations under test and owns whatever resources back them.
+ */
+final class BenchmarkMemory implements Closeable {
+
+    static final int SEQUENTIAL_OPS = 1 << 16;
+
+    static final int RANDOM_OPS = 1 << 16;
+
+    private final Memory memory;
+    private final Closeable resource;
+    private final File file;
+
+    private BenchmarkMemory(final Memory memory, final Closeable resource, final File file) {
+        this.memory = memory;
+        this.resource = resource;
+        this.file = file;
+    }
+
+    /**
+     * @param type  "heap" for {@link HeapMemory}, "native" for a {@link NativeBuffer}, "mmap" for a temp file mapped with {@link MMapBuffer}
+     * @param size  size in bytes
+     * @param order byte order of the memory
+     */
+    static BenchmarkMemory create(final String type, final long size, final ByteOrder order) throws IOException {
+        switch (type) {
+            case "heap":
+                if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("heap memory cannot be larger than Integer.MAX_VALUE");
+                final HeapBuffer heapBuffer = new HeapBuffer((int)size, order);
+                return new BenchmarkMemory(heapBuffer.memory(), heapBuffer, null);
+            case "native":
+                final NativeBuffer nativeBuffer = new NativeBuffer(size, order);
+                return new BenchmarkMemory(nativeBuffer.memory(), nativeBuffer, null);
+            case "mmap":
+                final File file = File.createTempFile("benchmark", ".bin");
+                file.deleteOnExit();
+                final MMapBuffer mmapBuffer = new MMapBuffer(file, 0, size, FileChannel.MapMode.READ_WRITE, order);
+                return new BenchmarkMemory(mmapBuffer.memory(), mmapBuffer, file);
+            default:
+                throw new IllegalArgumentException("unknown memory type: "+type);
+        }
+    }
+
+    /**
+     * @param order "native" for {@link ByteOrder#nativeOrder()}, "reverse" for the opposite order
+     */
+    static ByteOrder order(final String order) {
+        switch (order) {
+            case "native":
+                return ByteOrder.nativeOrder();
+            case "reverse":
+                return ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            default:
+                throw new IllegalArgumentException("unknown byte order: "+order);
+        }
+    }
+
+    /**
+     * @return count indexes uniformly distributed in [0, bound), generated from a fixed seed so runs are comparable
+     */
+    static long[] randomIndexes(final long bound, final int count) {
+        final Random random = new Random(0);
+        final long[] ret = new long[count];
+        for (int i = 0; i < count; i++) {
+            ret[i] = (random.nextLong() >>> 1) % bound;
+        }
+        return ret;
+    }
+
+    Memory memory() {
+        return memory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            resource.close();
+        } finally {
+            if (file != null) {
+                // noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+}
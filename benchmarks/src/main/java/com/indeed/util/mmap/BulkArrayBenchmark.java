@@ -0,0 +1,137 @@
+package com.indeed.util.mmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk kernels on {@link IntArray} and {@link LongArray} against the equivalent element-wise loops over get().
+ * Scores are per element.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkArrayBenchmark {
+
+    @Param({"heap", "native", "mmap"})
+    public String type;
+
+    @Param({"native", "reverse"})
+    public String order;
+
+    private BenchmarkMemory benchmarkMemory;
+    private IntArray intArray;
+    private LongArray longArray;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final long size = BenchmarkMemory.SEQUENTIAL_OPS*8L;
+        benchmarkMemory = BenchmarkMemory.create(type, size, BenchmarkMemory.order(order));
+        final Memory memory = benchmarkMemory.memory();
+        intArray = memory.intArray(0, BenchmarkMemory.SEQUENTIAL_OPS);
+        longArray = memory.longArray(0, BenchmarkMemory.SEQUENTIAL_OPS);
+        // values are never -1 so indexOf scans the whole array
+        for (long i = 0; i < longArray.length(); i++) {
+            longArray.set(i, i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        benchmarkMemory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long intSumElementWise() {
+        long sum = 0;
+        for (long i = 0; i < intArray.length(); i++) {
+            sum += intArray.get(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long intSumBulk() {
+        return intArray.sum();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long longSumElementWise() {
+        long sum = 0;
+        for (long i = 0; i < longArray.length(); i++) {
+            sum += longArray.get(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long longSumBulk() {
+        return longArray.sum();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long longMaxElementWise() {
+        long max = Long.MIN_VALUE;
+        for (long i = 0; i < longArray.length(); i++) {
+            max = Math.max(max, longArray.get(i));
+        }
+        return max;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long longMaxBulk() {
+        return longArray.max();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long longIndexOfElementWise() {
+        for (long i = 0; i < longArray.length(); i++) {
+            if (longArray.get(i) == -1) return i;
+        }
+        return -1;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long longIndexOfBulk() {
+        return longArray.indexOf(-1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public void longFillElementWise() {
+        for (long i = 0; i < longArray.length(); i++) {
+            longArray.set(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public void longFillBulk() {
+        longArray.fill(0, longArray.length(), 1);
+    }
+}
@@ -0,0 +1,96 @@
+package com.indeed.util.mmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw {@link DirectDataAccess} cost without the bounds checks in {@link DirectMemory}, native endian vs byte swapping.
+ * Scores are per element.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectDataAccessBenchmark {
+
+    private static final long SIZE = BenchmarkMemory.SEQUENTIAL_OPS*8L;
+
+    @Param({"native", "reverse"})
+    public String order;
+
+    private NativeBuffer buffer;
+    private DirectDataAccess dataAccess;
+    private long address;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("deprecation")
+    public void setUp() {
+        buffer = new NativeBuffer(SIZE, ByteOrder.nativeOrder());
+        address = buffer.memory().getAddress();
+        dataAccess = "native".equals(order) ? NativeEndianDirectDataAccess.getInstance() : ReverseEndianDirectDataAccess.getInstance();
+        for (long i = 0; i < SIZE; i += 8) {
+            dataAccess.putLong(address+i, i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        buffer.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS*2)
+    public long getInt() {
+        long sum = 0;
+        for (long i = 0; i < SIZE; i += 4) {
+            sum += dataAccess.getInt(address+i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long getLong() {
+        long sum = 0;
+        for (long i = 0; i < SIZE; i += 8) {
+            sum += dataAccess.getLong(address+i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public double getDouble() {
+        double sum = 0;
+        for (long i = 0; i < SIZE; i += 8) {
+            sum += dataAccess.getDouble(address+i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public void putLong() {
+        for (long i = 0; i < SIZE; i += 8) {
+            dataAccess.putLong(address+i, i);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.core.reference.SharedReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of guarding a read of a shared buffer with a copy of a {@link SharedReference} against entering and exiting an
+ * {@link EpochReclaimer}, with several threads reading the same buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class EpochReclaimerBenchmark {
+
+    private NativeBuffer buffer;
+    private SharedReference<NativeBuffer> shared;
+    private EpochReclaimer reclaimer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        buffer = new NativeBuffer(4096, ByteOrder.nativeOrder());
+        shared = SharedReference.create(buffer);
+        reclaimer = new EpochReclaimer();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        shared.close();
+    }
+
+    @Benchmark
+    public long sharedReference() throws IOException {
+        try (SharedReference<NativeBuffer> copy = shared.copy()) {
+            return copy.get().memory().getLong(0);
+        }
+    }
+
+    @Benchmark
+    public long epochReclaimer() {
+        try (EpochReclaimer.Reader reader = reclaimer.enter()) {
+            return buffer.memory().getLong(0);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.indeed.util.mmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential, random and bulk access through the {@link Memory} interface for each backing implementation.
+ * Scores for the sequential and random benchmarks are per element access.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryBenchmark {
+
+    @Param({"heap", "native", "mmap"})
+    public String type;
+
+    @Param({"native", "reverse"})
+    public String order;
+
+    @Param({"1048576", "268435456"})
+    public long size;
+
+    private BenchmarkMemory benchmarkMemory;
+    private Memory memory;
+    private long[] randomOffsets;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        benchmarkMemory = BenchmarkMemory.create(type, size, BenchmarkMemory.order(order));
+        memory = benchmarkMemory.memory();
+        for (long i = 0; i+8 <= size; i += 8) {
+            memory.putLong(i, i);
+        }
+        randomOffsets = BenchmarkMemory.randomIndexes(size/8, BenchmarkMemory.RANDOM_OPS);
+        for (int i = 0; i < randomOffsets.length; i++) {
+            randomOffsets[i] *= 8;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        benchmarkMemory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long sequentialGetInt() {
+        long sum = 0;
+        for (long i = 0; i < BenchmarkMemory.SEQUENTIAL_OPS*4L; i += 4) {
+            sum += memory.getInt(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long sequentialGetLong() {
+        long sum = 0;
+        for (long i = 0; i < BenchmarkMemory.SEQUENTIAL_OPS*8L; i += 8) {
+            sum += memory.getLong(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public void sequentialPutLong() {
+        for (long i = 0; i < BenchmarkMemory.SEQUENTIAL_OPS*8L; i += 8) {
+            memory.putLong(i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.RANDOM_OPS)
+    public long randomGetLong() {
+        long sum = 0;
+        for (final long offset : randomOffsets) {
+            sum += memory.getLong(offset);
+        }
+        return sum;
+    }
+
+    /**
+     * Bulk benchmarks additionally vary the size of each copy.
+     */
+    @State(Scope.Thread)
+    public static class Chunk {
+        @Param({"64", "4096", "65536"})
+        public int chunkSize;
+
+        byte[] bytes;
+        long offset;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            bytes = new byte[chunkSize];
+        }
+
+        long next(final long size) {
+            final long ret = offset;
+            offset += chunkSize;
+            if (offset+chunkSize > size) {
+                offset = 0;
+            }
+            return ret;
+        }
+    }
+
+    @Benchmark
+    public void bulkGetBytes(final Chunk chunk, final Blackhole bh) {
+        memory.getBytes(chunk.next(size), chunk.bytes);
+        bh.consume(chunk.bytes);
+    }
+
+    @Benchmark
+    public void bulkPutBytes(final Chunk chunk) {
+        memory.putBytes(chunk.next(size), chunk.bytes);
+    }
+}
@@ -0,0 +1,132 @@
+package com.indeed.util.mmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Element and bulk access through the {@link IntArray} and {@link LongArray} views.
+ * Scores are per element.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypedArrayBenchmark {
+
+    private static final int BULK_LENGTH = 1024;
+
+    @Param({"heap", "native", "mmap"})
+    public String type;
+
+    @Param({"native", "reverse"})
+    public String order;
+
+    @Param({"268435456"})
+    public long size;
+
+    private BenchmarkMemory benchmarkMemory;
+    private IntArray intArray;
+    private LongArray longArray;
+    private long[] randomIntIndexes;
+    private long[] randomLongIndexes;
+    private int[] ints;
+    private long[] longs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        benchmarkMemory = BenchmarkMemory.create(type, size, BenchmarkMemory.order(order));
+        final Memory memory = benchmarkMemory.memory();
+        intArray = memory.intArray(0, size/4);
+        longArray = memory.longArray(0, size/8);
+        for (long i = 0; i < longArray.length(); i++) {
+            longArray.set(i, i);
+        }
+        randomIntIndexes = BenchmarkMemory.randomIndexes(intArray.length(), BenchmarkMemory.RANDOM_OPS);
+        randomLongIndexes = BenchmarkMemory.randomIndexes(longArray.length(), BenchmarkMemory.RANDOM_OPS);
+        ints = new int[BULK_LENGTH];
+        longs = new long[BULK_LENGTH];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        benchmarkMemory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long intArraySequentialGet() {
+        long sum = 0;
+        for (long i = 0; i < BenchmarkMemory.SEQUENTIAL_OPS; i++) {
+            sum += intArray.get(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.RANDOM_OPS)
+    public long intArrayRandomGet() {
+        long sum = 0;
+        for (final long index : randomIntIndexes) {
+            sum += intArray.get(index);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_LENGTH)
+    public void intArrayBulkGet(final Blackhole bh) {
+        intArray.get(0, ints);
+        bh.consume(ints);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long longArraySequentialGet() {
+        long sum = 0;
+        for (long i = 0; i < BenchmarkMemory.SEQUENTIAL_OPS; i++) {
+            sum += longArray.get(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.RANDOM_OPS)
+    public long longArrayRandomGet() {
+        long sum = 0;
+        for (final long index : randomLongIndexes) {
+            sum += longArray.get(index);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_LENGTH)
+    public void longArrayBulkGet(final Blackhole bh) {
+        longArray.get(0, longs);
+        bh.consume(longs);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_LENGTH)
+    public void longArrayBulkSet() {
+        longArray.set(0, longs);
+    }
+}
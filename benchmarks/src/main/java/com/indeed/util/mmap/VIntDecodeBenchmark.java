@@ -0,0 +1,129 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.io.VIntUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a posting list of delta encoded doc ids and a run of short ASCII terms with {@link MemoryDataInput}'s wide
+ * read decoders against {@link VIntUtils} reading through the DataInput a byte at a time. Scores are per value.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VIntDecodeBenchmark {
+
+    private static final int TERM_LENGTH = 12;
+
+    @Param({"native", "mmap"})
+    public String type;
+
+    // average gap between doc ids, 8 gives mostly 1 byte vints and 1000 mostly 2 byte vints
+    @Param({"8", "1000"})
+    public int averageGap;
+
+    private BenchmarkMemory postings;
+    private MemoryDataInput postingsIn;
+    private BenchmarkMemory terms;
+    private MemoryDataInput termsIn;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Random random = new Random(0);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutput out = new DataOutputStream(bytes);
+        for (int i = 0; i < BenchmarkMemory.SEQUENTIAL_OPS; i++) {
+            VIntUtils.writeVInt(out, random.nextInt(2*averageGap)+1);
+        }
+        postings = create(bytes.toByteArray());
+        postingsIn = new MemoryDataInput(postings.memory());
+
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < BenchmarkMemory.SEQUENTIAL_OPS*TERM_LENGTH; i++) {
+            builder.append((char)('a'+random.nextInt(26)));
+        }
+        terms = create(builder.toString().getBytes(StandardCharsets.UTF_8));
+        termsIn = new MemoryDataInput(terms.memory());
+    }
+
+    private BenchmarkMemory create(byte[] bytes) throws IOException {
+        final BenchmarkMemory memory = BenchmarkMemory.create(type, bytes.length, BenchmarkMemory.order("native"));
+        memory.memory().putBytes(0, bytes);
+        return memory;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        postings.close();
+        terms.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long vintByteAtATime() throws IOException {
+        postingsIn.seek(0);
+        long docId = 0;
+        for (int i = 0; i < BenchmarkMemory.SEQUENTIAL_OPS; i++) {
+            docId += VIntUtils.readVInt(postingsIn);
+        }
+        return docId;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long vintWideRead() throws IOException {
+        postingsIn.seek(0);
+        long docId = 0;
+        for (int i = 0; i < BenchmarkMemory.SEQUENTIAL_OPS; i++) {
+            docId += postingsIn.readVInt();
+        }
+        return docId;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long utf8CopyAndDecode() throws IOException {
+        termsIn.seek(0);
+        final byte[] bytes = new byte[TERM_LENGTH];
+        long length = 0;
+        for (int i = 0; i < BenchmarkMemory.SEQUENTIAL_OPS; i++) {
+            termsIn.readFully(bytes);
+            length += new String(bytes, StandardCharsets.UTF_8).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkMemory.SEQUENTIAL_OPS)
+    public long utf8WideRead() throws IOException {
+        termsIn.seek(0);
+        long length = 0;
+        for (int i = 0; i < BenchmarkMemory.SEQUENTIAL_OPS; i++) {
+            length += termsIn.readUTF8(TERM_LENGTH).length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,287 @@
+package com.indeed.util.compress;
+
+import com.indeed.util.varexport.Export;
+import com.indeed.util.varexport.VarExporter;
+import org.apache.log4j.Logger;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of {@link Compressor}s and {@link Decompressor}s keyed by type, so that streams don't allocate new direct
+ * buffers (and for zlib, new native streams) for every file.
+ * <pre>
+ *   final Compressor compressor = CodecPool.getCompressor(codec);
+ *   try {
+ *       final CompressionOutputStream out = codec.createOutputStream(rawOut, compressor);
+ *       ...
+ *   } finally {
+ *       CodecPool.returnCompressor(compressor);
+ *   }
+ * </pre>
+ * Returned instances are {@link Compressor#reset() reset} before they are pooled. Types annotated with
+ * {@link DoNotPool} are {@link Compressor#end() ended} instead of pooled, as are instances returned once the pool
+ * already holds com.indeed.util.compress.CodecPool.maxPooledPerType (default 64) idle instances of their type.
+ * Returning an instance that is already pooled logs a warning and is otherwise ignored, so that a double return can't
+ * hand the same instance to two borrowers.
+ *
+ * Borrowed instances that are garbage collected without being returned are counted as leaks. The counts are exported
+ * through {@link VarExporter} in the CodecPool namespace.
+ */
+public final class CodecPool {
+    private static final Logger log = Logger.getLogger(CodecPool.class);
+
+    private static final int MAX_POOLED_PER_TYPE = Integer.getInteger("com.indeed.util.compress.CodecPool.maxPooledPerType", 64);
+
+    private static final Map<Class<?>, ArrayDeque<Compressor>> compressors = new HashMap<Class<?>, ArrayDeque<Compressor>>();
+    private static final Map<Class<?>, ArrayDeque<Decompressor>> decompressors = new HashMap<Class<?>, ArrayDeque<Decompressor>>();
+
+    private static final AtomicLong compressorsBorrowed = new AtomicLong();
+    private static final AtomicLong compressorsReturned = new AtomicLong();
+    private static final AtomicLong compressorsCreated = new AtomicLong();
+    private static final AtomicLong decompressorsBorrowed = new AtomicLong();
+    private static final AtomicLong decompressorsReturned = new AtomicLong();
+    private static final AtomicLong decompressorsCreated = new AtomicLong();
+    private static final AtomicLong leaks = new AtomicLong();
+
+    private static final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+    private static final Map<Lease, Boolean> leases = new ConcurrentHashMap<Lease, Boolean>();
+
+    static {
+        VarExporter.forNamespace("CodecPool").includeInGlobal().export(CodecPool.class, "");
+    }
+
+    private CodecPool() {}
+
+    /**
+     * @return a pooled compressor of the type used by codec, or a new one from {@link CompressionCodec#createCompressor()}
+     */
+    public static Compressor getCompressor(CompressionCodec codec) {
+        pollLeaks();
+        Compressor compressor = poll(compressors, codec.getCompressorType());
+        if (compressor == null) {
+            compressor = codec.createCompressor();
+            compressorsCreated.incrementAndGet();
+        }
+        compressorsBorrowed.incrementAndGet();
+        borrowed(compressor);
+        return compressor;
+    }
+
+    /**
+     * @return a pooled decompressor of the type used by codec, or a new one from
+     *         {@link CompressionCodec#createDecompressor()}
+     */
+    public static Decompressor getDecompressor(CompressionCodec codec) {
+        pollLeaks();
+        Decompressor decompressor = poll(decompressors, codec.getDecompressorType());
+        if (decompressor == null) {
+            decompressor = codec.createDecompressor();
+            decompressorsCreated.incrementAndGet();
+        }
+        decompressorsBorrowed.incrementAndGet();
+        borrowed(decompressor);
+        return decompressor;
+    }
+
+    /**
+     * Resets compressor and puts it in the pool. The compressor must not be used by the caller afterwards. Does nothing
+     * if compressor is null.
+     */
+    public static void returnCompressor(Compressor compressor) {
+        if (compressor == null) return;
+        if (isPooled(compressors, compressor)) {
+            log.warn(compressor.getClass().getName() + " was returned to CodecPool more than once");
+            return;
+        }
+        returned(compressor);
+        compressorsReturned.incrementAndGet();
+        if (!isPoolable(compressor.getClass())) {
+            compressor.end();
+            return;
+        }
+        compressor.reset();
+        if (!offer(compressors, compressor)) {
+            compressor.end();
+        }
+    }
+
+    /**
+     * Resets decompressor and puts it in the pool. The decompressor must not be used by the caller afterwards. Does
+     * nothing if decompressor is null.
+     */
+    public static void returnDecompressor(Decompressor decompressor) {
+        if (decompressor == null) return;
+        if (isPooled(decompressors, decompressor)) {
+            log.warn(decompressor.getClass().getName() + " was returned to CodecPool more than once");
+            return;
+        }
+        returned(decompressor);
+        decompressorsReturned.incrementAndGet();
+        if (!isPoolable(decompressor.getClass())) {
+            decompressor.end();
+            return;
+        }
+        decompressor.reset();
+        if (!offer(decompressors, decompressor)) {
+            decompressor.end();
+        }
+    }
+
+    private static boolean isPoolable(Class<?> type) {
+        return !type.isAnnotationPresent(DoNotPool.class);
+    }
+
+    private static <T> T poll(Map<Class<?>, ArrayDeque<T>> pool, Class<?> type) {
+        synchronized (pool) {
+            final ArrayDeque<T> deque = pool.get(type);
+            return deque == null ? null : deque.pollLast();
+        }
+    }
+
+    private static <T> boolean isPooled(Map<Class<?>, ArrayDeque<T>> pool, T instance) {
+        synchronized (pool) {
+            final ArrayDeque<T> deque = pool.get(instance.getClass());
+            if (deque == null) return false;
+            // by identity, equals could match a different idle instance
+            for (final T pooled : deque) {
+                if (pooled == instance) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @return false if the pool is full and instance should be ended instead
+     */
+    private static <T> boolean offer(Map<Class<?>, ArrayDeque<T>> pool, T instance) {
+        synchronized (pool) {
+            // racing double returns both get past the check in return*, the second one must not end the pooled instance
+            if (isPooled(pool, instance)) return true;
+            ArrayDeque<T> deque = pool.get(instance.getClass());
+            if (deque == null) {
+                deque = new ArrayDeque<T>();
+                pool.put(instance.getClass(), deque);
+            }
+            if (deque.size() >= MAX_POOLED_PER_TYPE) return false;
+            deque.addLast(instance);
+            return true;
+        }
+    }
+
+    private static void borrowed(Object instance) {
+        leases.put(new Lease(instance, collected), Boolean.TRUE);
+    }
+
+    private static void returned(Object instance) {
+        // instances created outside of the pool can be returned to it too, so a missing lease is fine
+        leases.remove(new Lease(instance, null));
+    }
+
+    private static void pollLeaks() {
+        Lease lease;
+        while ((lease = (Lease)collected.poll()) != null) {
+            if (leases.remove(lease) != null) {
+                leaks.incrementAndGet();
+                log.error(lease.type.getName() + " borrowed from CodecPool was never returned");
+            }
+        }
+    }
+
+    /**
+     * For tests, counts instance as leaked on the next poll as if it had been garbage collected without being returned.
+     */
+    static void simulateLeak(Object instance) {
+        for (final Lease lease : leases.keySet()) {
+            if (lease.get() == instance) lease.enqueue();
+        }
+    }
+
+    private static int pooled(Map<Class<?>, ? extends ArrayDeque<?>> pool) {
+        synchronized (pool) {
+            int ret = 0;
+            for (final ArrayDeque<?> deque : pool.values()) {
+                ret += deque.size();
+            }
+            return ret;
+        }
+    }
+
+    @Export(name="compressors-borrowed", doc="Number of compressors borrowed from the pool")
+    public static long getCompressorsBorrowed() {
+        return compressorsBorrowed.get();
+    }
+
+    @Export(name="compressors-returned", doc="Number of compressors returned to the pool")
+    public static long getCompressorsReturned() {
+        return compressorsReturned.get();
+    }
+
+    @Export(name="compressors-created", doc="Number of compressors created because none were pooled")
+    public static long getCompressorsCreated() {
+        return compressorsCreated.get();
+    }
+
+    @Export(name="compressors-pooled", doc="Number of idle compressors in the pool")
+    public static int getCompressorsPooled() {
+        return pooled(compressors);
+    }
+
+    @Export(name="decompressors-borrowed", doc="Number of decompressors borrowed from the pool")
+    public static long getDecompressorsBorrowed() {
+        return decompressorsBorrowed.get();
+    }
+
+    @Export(name="decompressors-returned", doc="Number of decompressors returned to the pool")
+    public static long getDecompressorsReturned() {
+        return decompressorsReturned.get();
+    }
+
+    @Export(name="decompressors-created", doc="Number of decompressors created because none were pooled")
+    public static long getDecompressorsCreated() {
+        return decompressorsCreated.get();
+    }
+
+    @Export(name="decompressors-pooled", doc="Number of idle decompressors in the pool")
+    public static int getDecompressorsPooled() {
+        return pooled(decompressors);
+    }
+
+    @Export(name="leaks", doc="Number of borrowed compressors and decompressors that were garbage collected without being returned")
+    public static long getLeakCount() {
+        pollLeaks();
+        return leaks.get();
+    }
+
+    /**
+     * Weak reference to a borrowed instance, compared by the identity of the instance so that a return can find it.
+     */
+    private static final class Lease extends WeakReference<Object> {
+        private final int hashCode;
+        private final Class<?> type;
+
+        private Lease(Object instance, ReferenceQueue<Object> queue) {
+            super(instance, queue);
+            hashCode = System.identityHashCode(instance);
+            type = instance.getClass();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof Lease)) return false;
+            final Object instance = get();
+            return instance != null && instance == ((Lease)o).get();
+        }
+    }
+}
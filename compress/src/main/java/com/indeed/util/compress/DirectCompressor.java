@@ -0,0 +1,21 @@
+package com.indeed.util.compress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A compressor that can compress a whole block from one direct {@link ByteBuffer} to another, without copying it
+ * through the compressor's own buffers.
+ */
+public interface DirectCompressor {
+
+    /**
+     * Resets the compressor and compresses all of the remaining bytes of src into dst. Both buffers must be direct. The
+     * position of src is advanced to its limit and the position of dst past the compressed bytes. The compressor is
+     * left finished and must be reset before it is used as a stream compressor again.
+     *
+     * @return number of compressed bytes written to dst
+     * @throws IOException if dst doesn't have room for the compressed data
+     */
+    int compress(ByteBuffer src, ByteBuffer dst) throws IOException;
+}
@@ -0,0 +1,22 @@
+package com.indeed.util.compress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A decompressor that can decompress a whole block from one direct {@link ByteBuffer} to another, without copying it
+ * through the decompressor's own buffers.
+ */
+public interface DirectDecompressor {
+
+    /**
+     * Resets the decompressor and decompresses the compressed block that starts at the position of src into dst. Both
+     * buffers must be direct. The position of src is advanced past the compressed bytes that were consumed and the
+     * position of dst past the decompressed bytes. The decompressor is left finished and must be reset before it is
+     * used as a stream decompressor again.
+     *
+     * @return number of decompressed bytes written to dst
+     * @throws IOException if the compressed data is corrupt or truncated or dst doesn't have room for all of it
+     */
+    int decompress(ByteBuffer src, ByteBuffer dst) throws IOException;
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.indeed.util.compress;
+
+import com.indeed.util.compress.lz4.Lz4Compressor;
+import com.indeed.util.compress.lz4.Lz4Decompressor;
+import com.indeed.util.compress.lz4.Lz4HCCompressor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * This class creates lz4 compressors/decompressors. Streams are framed by
+ * {@link BlockCompressorStream} like {@link SnappyCodec}'s, and blocks are
+ * compressed in pure java by {@link com.indeed.util.compress.lz4.Lz4Java},
+ * with either its fast compressor or its high compression one. Both kinds
+ * of stream are read by the same decompressor.
+ */
+public class Lz4Codec implements CompressionCodec {
+
+  private static final int BUFFER_SIZE = 256*1024;
+
+  private final boolean useLz4HC;
+
+  /**
+   * Creates a codec that uses the fast compressor.
+   */
+  public Lz4Codec() {
+    this(false);
+  }
+
+  /**
+   * @param useLz4HC whether to compress with the high compression compressor,
+   *                 which is several times slower but makes smaller blocks
+   */
+  public Lz4Codec(boolean useLz4HC) {
+    this.useLz4HC = useLz4HC;
+  }
+
+  /**
+   * Create a {@link CompressionOutputStream} that will write to the given
+   * {@link OutputStream}.
+   *
+   * @param out the location for the final output stream
+   * @return a stream the user can write uncompressed data to have it compressed
+   * @throws IOException
+   */
+  @Override
+  public CompressionOutputStream createOutputStream(OutputStream out)
+      throws IOException {
+    return createOutputStream(out, createCompressor());
+  }
+
+  /**
+   * Create a {@link CompressionOutputStream} that will write to the given
+   * {@link OutputStream} with the given {@link Compressor}.
+   *
+   * @param out        the location for the final output stream
+   * @param compressor compressor to use
+   * @return a stream the user can write uncompressed data to have it compressed
+   * @throws IOException
+   */
+  @Override
+  public CompressionOutputStream createOutputStream(OutputStream out,
+                                                    Compressor compressor)
+      throws IOException {
+    final int compressionOverhead = (BUFFER_SIZE / 255) + 16;
+
+    return new BlockCompressorStream(out, compressor, BUFFER_SIZE,
+        compressionOverhead);
+  }
+
+  /**
+   * Get the type of {@link Compressor} needed by this {@link CompressionCodec}.
+   *
+   * @return the type of compressor needed by this codec.
+   */
+  @Override
+  public Class<? extends Compressor> getCompressorType() {
+    return useLz4HC ? Lz4HCCompressor.class : Lz4Compressor.class;
+  }
+
+  /**
+   * Create a new {@link Compressor} for use by this {@link CompressionCodec}.
+   *
+   * @return a new compressor for use by this codec
+   */
+  @Override
+  public Compressor createCompressor() {
+    return useLz4HC ? new Lz4HCCompressor(BUFFER_SIZE) : new Lz4Compressor(BUFFER_SIZE);
+  }
+
+  /**
+   * Create a {@link CompressionInputStream} that will read from the given
+   * input stream.
+   *
+   * @param in the stream to read compressed bytes from
+   * @return a stream to read uncompressed bytes from
+   * @throws IOException
+   */
+  @Override
+  public CompressionInputStream createInputStream(InputStream in)
+      throws IOException {
+    return createInputStream(in, createDecompressor());
+  }
+
+  /**
+   * Create a {@link CompressionInputStream} that will read from the given
+   * {@link InputStream} with the given {@link Decompressor}.
+   *
+   * @param in           the stream to read compressed bytes from
+   * @param decompressor decompressor to use
+   * @return a stream to read uncompressed bytes from
+   * @throws IOException
+   */
+  @Override
+  public CompressionInputStream createInputStream(InputStream in,
+                                                  Decompressor decompressor)
+      throws IOException {
+    return new BlockDecompressorStream(in, decompressor, BUFFER_SIZE);
+  }
+
+  /**
+   * Get the type of {@link Decompressor} needed by this {@link CompressionCodec}.
+   *
+   * @return the type of decompressor needed by this codec.
+   */
+  @Override
+  public Class<? extends Decompressor> getDecompressorType() {
+    return Lz4Decompressor.class;
+  }
+
+  /**
+   * Create a new {@link Decompressor} for use by this {@link CompressionCodec}.
+   *
+   * @return a new decompressor for use by this codec
+   */
+  @Override
+  public Decompressor createDecompressor() {
+    return new Lz4Decompressor(BUFFER_SIZE);
+  }
+
+  /**
+   * Get the default filename extension for this kind of compression.
+   *
+   * @return <code>.lz4</code>.
+   */
+  @Override
+  public String getDefaultExtension() {
+    return ".lz4";
+  }
+}
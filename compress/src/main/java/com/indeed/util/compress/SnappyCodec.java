@@ -26,12 +26,15 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 /**
- * This class creates snappy compressors/decompressors.
+ * This class creates snappy compressors/decompressors. They use the native
+ * snappy library when it is available and
+ * {@link com.indeed.util.compress.snappy.SnappyJava} otherwise.
  */
 public class SnappyCodec implements CompressionCodec {
 
   /**
-   * Are the native snappy libraries loaded & initialized?
+   * Are the native snappy libraries loaded & initialized? The codec works
+   * without them, this is for callers that want to insist on native code.
    */
   public static void checkNativeCodeLoaded() {
       if (!SnappyCompressor.isNativeCodeLoaded()) {
@@ -71,7 +74,6 @@ public class SnappyCodec implements CompressionCodec {
   public CompressionOutputStream createOutputStream(OutputStream out,
                                                     Compressor compressor)
       throws IOException {
-    checkNativeCodeLoaded();
     final int bufferSize = 256*1024;
 
     final int compressionOverhead = (bufferSize / 6) + 32;
@@ -87,7 +89,6 @@ public class SnappyCodec implements CompressionCodec {
    */
   @Override
   public Class<? extends Compressor> getCompressorType() {
-    checkNativeCodeLoaded();
     return SnappyCompressor.class;
   }
 
@@ -98,7 +99,6 @@ public class SnappyCodec implements CompressionCodec {
    */
   @Override
   public Compressor createCompressor() {
-    checkNativeCodeLoaded();
     final int bufferSize = 256*1024;
     return new SnappyCompressor(bufferSize);
   }
@@ -130,7 +130,6 @@ public class SnappyCodec implements CompressionCodec {
   public CompressionInputStream createInputStream(InputStream in,
                                                   Decompressor decompressor)
       throws IOException {
-    checkNativeCodeLoaded();
     return new BlockDecompressorStream(in, decompressor, 256*1024);
   }
 
@@ -141,7 +140,6 @@ public class SnappyCodec implements CompressionCodec {
    */
   @Override
   public Class<? extends Decompressor> getDecompressorType() {
-    checkNativeCodeLoaded();
     return SnappyDecompressor.class;
   }
 
@@ -152,7 +150,6 @@ public class SnappyCodec implements CompressionCodec {
    */
   @Override
   public Decompressor createDecompressor() {
-    checkNativeCodeLoaded();
     final int bufferSize = 256*1024;
     return new SnappyDecompressor(bufferSize);
   }
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.indeed.util.compress;
+
+import com.github.luben.zstd.Zstd;
+import com.indeed.util.compress.zstd.ZstdCompressor;
+import com.indeed.util.compress.zstd.ZstdDecompressor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * This class creates zstandard compressors/decompressors, which use the
+ * native library bundled with zstd-jni. Streams are framed by
+ * {@link BlockCompressorStream} like {@link SnappyCodec}'s, and each block
+ * is a complete zstd frame.
+ *
+ * A codec can have a dictionary, such as one from
+ * {@link com.indeed.util.compress.zstd.ZstdDictionaryTrainer}, which makes
+ * small streams much smaller. Streams written with a dictionary can only be
+ * read by a codec with the same dictionary.
+ */
+public class ZstdCodec implements CompressionCodec {
+
+  private static final int BUFFER_SIZE = 256*1024;
+
+  private final int level;
+  private final byte[] dictionary;
+
+  /**
+   * Are the native zstd libraries loaded & initialized?
+   */
+  public static void checkNativeCodeLoaded() {
+      if (!ZstdCompressor.isNativeCodeLoaded()) {
+        throw new RuntimeException("native zstd library not available: " +
+            "ZstdCompressor has not been loaded.");
+      }
+  }
+
+  /**
+   * Creates a codec with the default level and no dictionary.
+   */
+  public ZstdCodec() {
+    this(ZstdCompressor.DEFAULT_LEVEL);
+  }
+
+  /**
+   * @param level zstd compression level, from
+   *              {@link Zstd#minCompressionLevel()} to
+   *              {@link Zstd#maxCompressionLevel()}
+   */
+  public ZstdCodec(int level) {
+    this(level, new byte[0]);
+  }
+
+  /**
+   * @param level      zstd compression level, from
+   *                   {@link Zstd#minCompressionLevel()} to
+   *                   {@link Zstd#maxCompressionLevel()}
+   * @param dictionary dictionary to compress and decompress with, which is
+   *                   copied
+   */
+  public ZstdCodec(int level, byte[] dictionary) {
+    checkNativeCodeLoaded();
+    if (level < Zstd.minCompressionLevel() || level > Zstd.maxCompressionLevel()) {
+      throw new IllegalArgumentException("zstd level must be between " +
+          Zstd.minCompressionLevel() + " and " + Zstd.maxCompressionLevel() +
+          ", got " + level);
+    }
+    this.level = level;
+    this.dictionary = dictionary.clone();
+  }
+
+  /**
+   * Create a {@link CompressionOutputStream} that will write to the given
+   * {@link OutputStream}.
+   *
+   * @param out the location for the final output stream
+   * @return a stream the user can write uncompressed data to have it compressed
+   * @throws IOException
+   */
+  @Override
+  public CompressionOutputStream createOutputStream(OutputStream out)
+      throws IOException {
+    return createOutputStream(out, createCompressor());
+  }
+
+  /**
+   * Create a {@link CompressionOutputStream} that will write to the given
+   * {@link OutputStream} with the given {@link Compressor}.
+   *
+   * @param out        the location for the final output stream
+   * @param compressor compressor to use
+   * @return a stream the user can write uncompressed data to have it compressed
+   * @throws IOException
+   */
+  @Override
+  public CompressionOutputStream createOutputStream(OutputStream out,
+                                                    Compressor compressor)
+      throws IOException {
+    // compressors can come from a CodecPool shared with other zstd codecs
+    if (compressor instanceof ZstdCompressor) {
+      ((ZstdCompressor) compressor).setLevel(level);
+    }
+    compressor.setDictionary(dictionary, 0, dictionary.length);
+
+    final int compressionOverhead =
+        (int) Zstd.compressBound(BUFFER_SIZE) - BUFFER_SIZE;
+
+    return new BlockCompressorStream(out, compressor, BUFFER_SIZE,
+        compressionOverhead);
+  }
+
+  /**
+   * Get the type of {@link Compressor} needed by this {@link CompressionCodec}.
+   *
+   * @return the type of compressor needed by this codec.
+   */
+  @Override
+  public Class<? extends Compressor> getCompressorType() {
+    return ZstdCompressor.class;
+  }
+
+  /**
+   * Create a new {@link Compressor} for use by this {@link CompressionCodec}.
+   *
+   * @return a new compressor for use by this codec
+   */
+  @Override
+  public Compressor createCompressor() {
+    final ZstdCompressor compressor = new ZstdCompressor(BUFFER_SIZE, level);
+    compressor.setDictionary(dictionary, 0, dictionary.length);
+    return compressor;
+  }
+
+  /**
+   * Create a {@link CompressionInputStream} that will read from the given
+   * input stream.
+   *
+   * @param in the stream to read compressed bytes from
+   * @return a stream to read uncompressed bytes from
+   * @throws IOException
+   */
+  @Override
+  public CompressionInputStream createInputStream(InputStream in)
+      throws IOException {
+    return createInputStream(in, createDecompressor());
+  }
+
+  /**
+   * Create a {@link CompressionInputStream} that will read from the given
+   * {@link InputStream} with the given {@link Decompressor}.
+   *
+   * @param in           the stream to read compressed bytes from
+   * @param decompressor decompressor to use
+   * @return a stream to read uncompressed bytes from
+   * @throws IOException
+   */
+  @Override
+  public CompressionInputStream createInputStream(InputStream in,
+                                                  Decompressor decompressor)
+      throws IOException {
+    decompressor.setDictionary(dictionary, 0, dictionary.length);
+    return new BlockDecompressorStream(in, decompressor, BUFFER_SIZE);
+  }
+
+  /**
+   * Get the type of {@link Decompressor} needed by this {@link CompressionCodec}.
+   *
+   * @return the type of decompressor needed by this codec.
+   */
+  @Override
+  public Class<? extends Decompressor> getDecompressorType() {
+    return ZstdDecompressor.class;
+  }
+
+  /**
+   * Create a new {@link Decompressor} for use by this {@link CompressionCodec}.
+   *
+   * @return a new decompressor for use by this codec
+   */
+  @Override
+  public Decompressor createDecompressor() {
+    final ZstdDecompressor decompressor = new ZstdDecompressor(BUFFER_SIZE);
+    decompressor.setDictionary(dictionary, 0, dictionary.length);
+    return decompressor;
+  }
+
+  /**
+   * Get the default filename extension for this kind of compression.
+   *
+   * @return <code>.zst</code>.
+   */
+  @Override
+  public String getDefaultExtension() {
+    return ".zst";
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.indeed.util.compress.lz4;
+
+import com.indeed.util.compress.Decompressor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Decompressor} based on the lz4 compression algorithm, using
+ * {@link Lz4Java}. It decompresses blocks from both {@link Lz4Compressor}
+ * and {@link Lz4HCCompressor}.
+ * http://code.google.com/p/lz4/
+ */
+public class Lz4Decompressor implements Decompressor {
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private final int bufferSize;
+  private final ByteBuffer compressedBuf;
+  private int compressedBufLen;
+  private final ByteBuffer uncompressedBuf;
+  private byte[] userBuf = null;
+  private int userBufOff = 0, userBufLen = 0;
+  private boolean finished;
+
+  /**
+   * Creates a new decompressor.
+   *
+   * @param bufferSize size of the buffers to be used.
+   */
+  public Lz4Decompressor(int bufferSize) {
+    this.bufferSize = bufferSize;
+
+    compressedBuf = ByteBuffer.allocate(bufferSize);
+    uncompressedBuf = ByteBuffer.allocate(bufferSize);
+    uncompressedBuf.position(bufferSize);
+  }
+
+  /**
+   * Creates a new decompressor with the default buffer size.
+   */
+  public Lz4Decompressor() {
+    this(DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Sets input data for decompression.
+   * This should be called if and only if {@link #needsInput()} returns
+   * <code>true</code> indicating that more input data is required.
+   *
+   * @param b   Input data
+   * @param off Start offset
+   * @param len Length
+   */
+  @Override
+  public synchronized void setInput(byte[] b, int off, int len) {
+    if (b == null) {
+      throw new NullPointerException();
+    }
+    if (off < 0 || len < 0 || off > b.length - len) {
+      throw new ArrayIndexOutOfBoundsException();
+    }
+
+    this.userBuf = b;
+    this.userBufOff = off;
+    this.userBufLen = len;
+
+    setInputFromSavedData();
+
+    // Reinitialize lz4's output buffer
+    uncompressedBuf.limit(bufferSize);
+    uncompressedBuf.position(bufferSize);
+  }
+
+  /**
+   * If a write would exceed the capacity of the buffers, it is set
+   * aside to be loaded by this function while the compressed data are
+   * consumed.
+   */
+  synchronized void setInputFromSavedData() {
+    compressedBufLen = Math.min(userBufLen, bufferSize);
+
+    // Reinitialize lz4's input buffer
+    compressedBuf.rewind();
+    compressedBuf.put(userBuf, userBufOff, compressedBufLen);
+
+    // Note how much data is being fed to lz4
+    userBufOff += compressedBufLen;
+    userBufLen -= compressedBufLen;
+  }
+
+  /**
+   * Does nothing.
+   */
+  @Override
+  public synchronized void setDictionary(byte[] b, int off, int len) {
+    // do nothing
+  }
+
+  /**
+   * Returns true if the input data buffer is empty and
+   * {@link #setInput(byte[], int, int)} should be called to
+   * provide more input.
+   *
+   * @return <code>true</code> if the input data buffer is empty and
+   *         {@link #setInput(byte[], int, int)} should be called in
+   *         order to provide more input.
+   */
+  @Override
+  public synchronized boolean needsInput() {
+    // Consume remaining compressed data?
+    if (uncompressedBuf.remaining() > 0) {
+      return false;
+    }
+
+    // Check if lz4 has consumed all input
+    if (compressedBufLen <= 0) {
+      // Check if we have consumed all user-input
+      if (userBufLen <= 0) {
+        return true;
+      } else {
+        setInputFromSavedData();
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns <code>false</code>.
+   *
+   * @return <code>false</code>.
+   */
+  @Override
+  public synchronized boolean needsDictionary() {
+    return false;
+  }
+
+  /**
+   * Returns true if the end of the decompressed
+   * data output stream has been reached.
+   *
+   * @return <code>true</code> if the end of the decompressed
+   *         data output stream has been reached.
+   */
+  @Override
+  public synchronized boolean finished() {
+    return (finished && uncompressedBuf.remaining() == 0);
+  }
+
+  /**
+   * Fills specified buffer with uncompressed data. Returns actual number
+   * of bytes of uncompressed data. A return value of 0 indicates that
+   * {@link #needsInput()} should be called in order to determine if more
+   * input data is required.
+   *
+   * @param b   Buffer for the compressed data
+   * @param off Start offset of the data
+   * @param len Size of the buffer
+   * @return The actual number of bytes of compressed data.
+   * @throws IOException
+   */
+  @Override
+  public synchronized int decompress(byte[] b, int off, int len)
+      throws IOException {
+    if (b == null) {
+      throw new NullPointerException();
+    }
+    if (off < 0 || len < 0 || off > b.length - len) {
+      throw new ArrayIndexOutOfBoundsException();
+    }
+
+    int n = 0;
+
+    // Check if there is uncompressed data
+    n = uncompressedBuf.remaining();
+    if (n > 0) {
+      n = Math.min(n, len);
+      uncompressedBuf.get(b, off, n);
+      return n;
+    }
+    if (compressedBufLen > 0) {
+      // Re-initialize the lz4's output buffer
+      uncompressedBuf.rewind();
+      uncompressedBuf.limit(bufferSize);
+
+      // Decompress data
+      n = Lz4Java.decompress(compressedBuf, 0, compressedBufLen,
+          uncompressedBuf, 0, bufferSize);
+      compressedBufLen = 0;
+      uncompressedBuf.limit(n);
+
+      if (userBufLen <= 0) {
+        finished = true;
+      }
+
+      // Get atmost 'len' bytes
+      n = Math.min(n, len);
+      uncompressedBuf.get(b, off, n);
+    }
+
+    return n;
+  }
+
+  /**
+   * Returns <code>0</code>.
+   *
+   * @return <code>0</code>.
+   */
+  @Override
+  public synchronized int getRemaining() {
+    // Never use this function in BlockDecompressorStream.
+    return 0;
+  }
+
+  public synchronized void reset() {
+    finished = false;
+    compressedBufLen = 0;
+    uncompressedBuf.limit(bufferSize);
+    uncompressedBuf.position(bufferSize);
+    userBufOff = userBufLen = 0;
+  }
+
+  /**
+   * Resets decompressor and input and output buffers so that a new set of
+   * input data can be processed.
+   */
+  @Override
+  public synchronized void end() {
+    // do nothing
+  }
+}
@@ -0,0 +1,16 @@
+package com.indeed.util.compress.lz4;
+
+/**
+ * An {@link Lz4Compressor} that uses the high compression compressor in {@link Lz4Java}. It is a separate type so that
+ * {@link com.indeed.util.compress.CodecPool} never hands a fast compressor to a high compression codec.
+ */
+public final class Lz4HCCompressor extends Lz4Compressor {
+
+    public Lz4HCCompressor(int bufferSize) {
+        super(bufferSize, true);
+    }
+
+    public Lz4HCCompressor() {
+        this(64 * 1024);
+    }
+}
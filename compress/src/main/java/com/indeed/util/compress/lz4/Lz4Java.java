@@ -0,0 +1,447 @@
+package com.indeed.util.compress.lz4;
+
+import sun.misc.Unsafe;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Pure Java lz4 block compression, used by {@link Lz4Compressor} and {@link Lz4Decompressor}. Blocks are in the raw lz4
+ * block format (no frame header or checksums), so they can be decompressed by any lz4 implementation.
+ * <p>
+ * There are two compressors. The fast one is a port of LZ4_compress_generic: a single hash table probe per position,
+ * skipping ahead faster the longer it goes without a match. The high compression one keeps a hash chain of every
+ * position in the 64KB window, searches up to {@link #HC_MAX_ATTEMPTS} candidates per position for the longest match
+ * and defers a match by one byte if the next position has a longer one. It is several times slower to compress than the
+ * fast one and decompresses at the same speed.
+ * <p>
+ * Like {@link com.indeed.util.compress.snappy.SnappyJava}, reads and writes go through {@link Unsafe} with a base
+ * object and offset so that the same code handles heap arrays and direct buffers.
+ */
+public final class Lz4Java {
+    private static final Unsafe UNSAFE;
+    private static final long BYTE_ARRAY_BASE_OFFSET;
+    private static final long BUFFER_ADDRESS_OFFSET;
+
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    static {
+        try {
+            final Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            UNSAFE = (Unsafe)theUnsafe.get(null);
+            BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+            BUFFER_ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final int MIN_MATCH = 4;
+    // the format requires the last 5 bytes to be literals and the last match to start at least 12 bytes from the end
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int ML_MASK = 15;
+    private static final int RUN_MASK = 15;
+
+    private static final int HASH_LOG = 12;
+    // the fast compressor looks at every 2nd byte after 64 misses, every 3rd after 128 and so on
+    private static final int SKIP_TRIGGER = 6;
+
+    private static final int HC_HASH_LOG = 15;
+    private static final int HC_CHAIN_SIZE = 1 << 16;
+    public static final int HC_MAX_ATTEMPTS = 256;
+
+    private Lz4Java() {}
+
+    /**
+     * @return hash table for {@link #compress(byte[], int, int, byte[], int, int[])}, which can be reused by one thread
+     *         at a time
+     */
+    public static int[] newHashTable() {
+        return new int[1 << HASH_LOG];
+    }
+
+    /**
+     * @return hash table and chain for {@link #compressHC(byte[], int, int, byte[], int, int[])}, which can be reused by
+     *         one thread at a time
+     */
+    public static int[] newHCTable() {
+        return new int[(1 << HC_HASH_LOG) + HC_CHAIN_SIZE];
+    }
+
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses in[inOff, inOff+inLen) into out at outOff with the fast compressor. out must have room for
+     * {@link #maxCompressedLength(int)} bytes.
+     *
+     * @return number of compressed bytes
+     */
+    public static int compress(byte[] in, int inOff, int inLen, byte[] out, int outOff) {
+        return compress(in, inOff, inLen, out, outOff, newHashTable());
+    }
+
+    public static int compress(byte[] in, int inOff, int inLen, byte[] out, int outOff, int[] table) {
+        checkRange(in.length, inOff, inLen);
+        checkRange(out.length, outOff, maxCompressedLength(inLen));
+        return compress(in, BYTE_ARRAY_BASE_OFFSET + inOff, inLen, out, BYTE_ARRAY_BASE_OFFSET + outOff, table);
+    }
+
+    /**
+     * Compresses in[inOff, inOff+inLen) into out at outOff with the high compression compressor. out must have room for
+     * {@link #maxCompressedLength(int)} bytes.
+     *
+     * @return number of compressed bytes
+     */
+    public static int compressHC(byte[] in, int inOff, int inLen, byte[] out, int outOff) {
+        return compressHC(in, inOff, inLen, out, outOff, newHCTable());
+    }
+
+    public static int compressHC(byte[] in, int inOff, int inLen, byte[] out, int outOff, int[] table) {
+        checkRange(in.length, inOff, inLen);
+        checkRange(out.length, outOff, maxCompressedLength(inLen));
+        return compressHC(in, BYTE_ARRAY_BASE_OFFSET + inOff, inLen, out, BYTE_ARRAY_BASE_OFFSET + outOff, table);
+    }
+
+    /**
+     * Compresses inLen bytes at inOff of in into out at outOff, with the high compression compressor if hc is true.
+     * Offsets are absolute indexes into the buffers, positions and limits are ignored.
+     *
+     * @param table a table from {@link #newHashTable()}, or from {@link #newHCTable()} if hc is true
+     * @return number of compressed bytes
+     * @throws IOException if outLength is less than {@link #maxCompressedLength(int)}
+     */
+    public static int compress(ByteBuffer in, int inOff, int inLen, ByteBuffer out, int outOff, int outLength, int[] table, boolean hc) throws IOException {
+        if (outLength < maxCompressedLength(inLen)) {
+            throw new IOException("Could not compress data. Buffer length is too small.");
+        }
+        checkRange(in.capacity(), inOff, inLen);
+        checkRange(out.capacity(), outOff, outLength);
+        if (out.isReadOnly()) throw new IllegalArgumentException("out is read only");
+        return hc ? compressHC(base(in), address(in) + inOff, inLen, base(out), address(out) + outOff, table)
+                  : compress(base(in), address(in) + inOff, inLen, base(out), address(out) + outOff, table);
+    }
+
+    /**
+     * Decompresses the block in in[inOff, inOff+inLen) into out at outOff. lz4 blocks don't record their uncompressed
+     * length, so out must have room for all of it.
+     *
+     * @return number of decompressed bytes
+     * @throws IOException if the block is corrupt or doesn't fit in out
+     */
+    public static int decompress(byte[] in, int inOff, int inLen, byte[] out, int outOff) throws IOException {
+        checkRange(in.length, inOff, inLen);
+        checkRange(out.length, outOff, out.length - outOff);
+        return decompress(in, BYTE_ARRAY_BASE_OFFSET + inOff, inLen, out, BYTE_ARRAY_BASE_OFFSET + outOff, out.length - outOff);
+    }
+
+    /**
+     * Decompresses the block of inLen bytes at inOff of in into out at outOff. Offsets are absolute indexes into the
+     * buffers, positions and limits are ignored.
+     *
+     * @return number of decompressed bytes
+     * @throws IOException if the block is corrupt or longer than outLength
+     */
+    public static int decompress(ByteBuffer in, int inOff, int inLen, ByteBuffer out, int outOff, int outLength) throws IOException {
+        checkRange(in.capacity(), inOff, inLen);
+        checkRange(out.capacity(), outOff, outLength);
+        if (out.isReadOnly()) throw new IllegalArgumentException("out is read only");
+        return decompress(base(in), address(in) + inOff, inLen, base(out), address(out) + outOff, outLength);
+    }
+
+    private static void checkRange(int capacity, int off, int len) {
+        if (off < 0 || len < 0 || off > capacity - len) {
+            throw new IndexOutOfBoundsException("range [" + off + ", " + off + "+" + len + ") is outside of [0, " + capacity + ")");
+        }
+    }
+
+    private static Object base(ByteBuffer buffer) {
+        return buffer.isDirect() ? null : buffer.array();
+    }
+
+    private static long address(ByteBuffer buffer) {
+        if (buffer.isDirect()) return UNSAFE.getLong(buffer, BUFFER_ADDRESS_OFFSET);
+        if (!buffer.hasArray()) throw new IllegalArgumentException("buffer must be direct or have an accessible array");
+        return BYTE_ARRAY_BASE_OFFSET + buffer.arrayOffset();
+    }
+
+    private static int load32(Object base, long address) {
+        final int ret = UNSAFE.getInt(base, address);
+        return LITTLE_ENDIAN ? ret : Integer.reverseBytes(ret);
+    }
+
+    private static int hash(int bytes, int hashLog) {
+        return (bytes * -1640531535) >>> (32 - hashLog);
+    }
+
+    private static int compress(Object inBase, long base, int inLen, Object outBase, long out, int[] table) {
+        if (table.length < 1 << HASH_LOG) throw new IllegalArgumentException("hash table is too small");
+        long op = out;
+        int anchor = 0;
+        if (inLen > MF_LIMIT) {
+            final int mfLimit = inLen - MF_LIMIT;
+            final int matchLimit = inLen - LAST_LITERALS;
+            // 0 is a real position, so an empty entry is just a candidate that won't match
+            Arrays.fill(table, 0, 1 << HASH_LOG, 0);
+            int ip = 1;
+            int forwardHash = hash(load32(inBase, base + ip), HASH_LOG);
+            outer:
+            while (true) {
+                int forwardIp = ip;
+                int step = 1;
+                int searchMatchNb = 1 << SKIP_TRIGGER;
+                int match;
+                do {
+                    final int hash = forwardHash;
+                    ip = forwardIp;
+                    forwardIp += step;
+                    step = searchMatchNb++ >>> SKIP_TRIGGER;
+                    if (forwardIp > mfLimit) break outer;
+                    forwardHash = hash(load32(inBase, base + forwardIp), HASH_LOG);
+                    match = table[hash];
+                    table[hash] = ip;
+                } while (ip - match > MAX_DISTANCE || load32(inBase, base + match) != load32(inBase, base + ip));
+
+                // extend the match backwards into the pending literals
+                while (ip > anchor && match > 0 && UNSAFE.getByte(inBase, base + ip - 1) == UNSAFE.getByte(inBase, base + match - 1)) {
+                    ip--;
+                    match--;
+                }
+
+                // emit sequences for as long as the position right after each match also matches something
+                do {
+                    final int matchLength = MIN_MATCH + findMatchLength(inBase, base + match + MIN_MATCH, base + ip + MIN_MATCH, base + matchLimit);
+                    op = emitSequence(inBase, base + anchor, ip - anchor, ip - match, matchLength, outBase, op);
+                    ip += matchLength;
+                    anchor = ip;
+                    if (ip > mfLimit) break outer;
+                    table[hash(load32(inBase, base + ip - 2), HASH_LOG)] = ip - 2;
+                    final int hash = hash(load32(inBase, base + ip), HASH_LOG);
+                    match = table[hash];
+                    table[hash] = ip;
+                } while (ip - match <= MAX_DISTANCE && load32(inBase, base + match) == load32(inBase, base + ip));
+                forwardHash = hash(load32(inBase, base + ++ip), HASH_LOG);
+            }
+        }
+        op = emitLastLiterals(inBase, base + anchor, inLen - anchor, outBase, op);
+        return (int)(op - out);
+    }
+
+    private static int compressHC(Object inBase, long base, int inLen, Object outBase, long out, int[] table) {
+        if (table.length < (1 << HC_HASH_LOG) + HC_CHAIN_SIZE) throw new IllegalArgumentException("hash table is too small");
+        long op = out;
+        int anchor = 0;
+        if (inLen > MF_LIMIT) {
+            final int mfLimit = inLen - MF_LIMIT;
+            final int matchLimit = inLen - LAST_LITERALS;
+            // heads of the hash chains are at the start of the table, -1 ends a chain
+            Arrays.fill(table, 0, 1 << HC_HASH_LOG, -1);
+            final int[] nextToInsert = {0};
+            int ip = 0;
+            while (ip <= mfLimit) {
+                long match = findLongestMatch(inBase, base, ip, matchLimit, table, nextToInsert);
+                if (match == 0) {
+                    ip++;
+                    continue;
+                }
+                // take a longer match starting at the next byte instead, as long as there is one
+                while (ip < mfLimit) {
+                    final long next = findLongestMatch(inBase, base, ip + 1, matchLimit, table, nextToInsert);
+                    if ((int)next <= (int)match) break;
+                    match = next;
+                    ip++;
+                }
+                final int matchLength = (int)match;
+                op = emitSequence(inBase, base + anchor, ip - anchor, ip - (int)(match >>> 32), matchLength, outBase, op);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+        op = emitLastLiterals(inBase, base + anchor, inLen - anchor, outBase, op);
+        return (int)(op - out);
+    }
+
+    /**
+     * Adds the positions before ip to the hash chains and follows the chain for ip.
+     *
+     * @return the position of the longest match in the high 32 bits and its length in the low 32 bits, or 0 if there
+     *         is no match of at least {@link #MIN_MATCH} bytes
+     */
+    private static long findLongestMatch(Object inBase, long base, int ip, int matchLimit, int[] table, int[] nextToInsert) {
+        final int chain = 1 << HC_HASH_LOG;
+        for (int p = nextToInsert[0]; p < ip; p++) {
+            final int hash = hash(load32(inBase, base + p), HC_HASH_LOG);
+            table[chain + (p & (HC_CHAIN_SIZE - 1))] = table[hash];
+            table[hash] = p;
+        }
+        nextToInsert[0] = ip;
+        final int bytes = load32(inBase, base + ip);
+        int candidate = table[hash(bytes, HC_HASH_LOG)];
+        int bestLength = MIN_MATCH - 1;
+        int bestPosition = 0;
+        // a candidate within the window can't have had its chain entry overwritten, since that would take a position
+        // at least 64KB after it
+        for (int attempts = HC_MAX_ATTEMPTS; attempts > 0 && candidate >= 0 && ip - candidate <= MAX_DISTANCE; attempts--) {
+            if (UNSAFE.getByte(inBase, base + candidate + bestLength) == UNSAFE.getByte(inBase, base + ip + bestLength)
+                    && load32(inBase, base + candidate) == bytes) {
+                final int length = MIN_MATCH + findMatchLength(inBase, base + candidate + MIN_MATCH, base + ip + MIN_MATCH, base + matchLimit);
+                if (length > bestLength) {
+                    bestLength = length;
+                    bestPosition = candidate;
+                    if (ip + length >= matchLimit) break;
+                }
+            }
+            candidate = table[chain + (candidate & (HC_CHAIN_SIZE - 1))];
+        }
+        return bestLength < MIN_MATCH ? 0 : (long)bestPosition << 32 | bestLength;
+    }
+
+    private static int findMatchLength(Object base, long s1, long s2, long s2Limit) {
+        int matched = 0;
+        while (s2 + matched <= s2Limit - 8) {
+            final long x = UNSAFE.getLong(base, s2 + matched) ^ UNSAFE.getLong(base, s1 + matched);
+            if (x != 0) {
+                return matched + ((LITTLE_ENDIAN ? Long.numberOfTrailingZeros(x) : Long.numberOfLeadingZeros(x)) >>> 3);
+            }
+            matched += 8;
+        }
+        while (s2 + matched < s2Limit && UNSAFE.getByte(base, s1 + matched) == UNSAFE.getByte(base, s2 + matched)) {
+            matched++;
+        }
+        return matched;
+    }
+
+    private static long emitSequence(Object inBase, long literal, int literalLength, int offset, int matchLength, Object outBase, long op) {
+        final long token = op++;
+        int tokenBits;
+        if (literalLength >= RUN_MASK) {
+            tokenBits = RUN_MASK << 4;
+            op = emitLength(outBase, op, literalLength - RUN_MASK);
+        } else {
+            tokenBits = literalLength << 4;
+        }
+        if (literalLength <= 8) {
+            // the match after the literal is at least 12 bytes from the end of the input, and the output has at least
+            // that much room left too, so one 8 byte move is safe
+            UNSAFE.putLong(outBase, op, UNSAFE.getLong(inBase, literal));
+        } else {
+            UNSAFE.copyMemory(inBase, literal, outBase, op, literalLength);
+        }
+        op += literalLength;
+        UNSAFE.putByte(outBase, op++, (byte)offset);
+        UNSAFE.putByte(outBase, op++, (byte)(offset >>> 8));
+        if (matchLength - MIN_MATCH >= ML_MASK) {
+            tokenBits |= ML_MASK;
+            op = emitLength(outBase, op, matchLength - MIN_MATCH - ML_MASK);
+        } else {
+            tokenBits |= matchLength - MIN_MATCH;
+        }
+        UNSAFE.putByte(outBase, token, (byte)tokenBits);
+        return op;
+    }
+
+    private static long emitLastLiterals(Object inBase, long literal, int literalLength, Object outBase, long op) {
+        if (literalLength >= RUN_MASK) {
+            UNSAFE.putByte(outBase, op++, (byte)(RUN_MASK << 4));
+            op = emitLength(outBase, op, literalLength - RUN_MASK);
+        } else {
+            UNSAFE.putByte(outBase, op++, (byte)(literalLength << 4));
+        }
+        UNSAFE.copyMemory(inBase, literal, outBase, op, literalLength);
+        return op + literalLength;
+    }
+
+    private static long emitLength(Object outBase, long op, int length) {
+        while (length >= 255) {
+            UNSAFE.putByte(outBase, op++, (byte)255);
+            length -= 255;
+        }
+        UNSAFE.putByte(outBase, op++, (byte)length);
+        return op;
+    }
+
+    private static int decompress(Object inBase, long in, int inLen, Object outBase, long out, int outLength) throws IOException {
+        int ip = 0;
+        int op = 0;
+        while (true) {
+            if (ip >= inLen) throw new IOException("compressed block is truncated");
+            final int token = UNSAFE.getByte(inBase, in + ip++) & 0xFF;
+            int literalLength = token >>> 4;
+            if (literalLength == RUN_MASK) {
+                int b;
+                do {
+                    if (ip >= inLen) throw new IOException("compressed block is truncated");
+                    b = UNSAFE.getByte(inBase, in + ip++) & 0xFF;
+                    literalLength += b;
+                } while (b == 255 && literalLength > 0);
+                if (literalLength < 0) throw new IOException("invalid literal length");
+            }
+            if (literalLength > inLen - ip) throw new IOException("compressed block is truncated");
+            if (literalLength > outLength - op) throw new IOException("Could not decompress data. Buffer length is too small.");
+            if (literalLength <= 16 && inLen - ip >= 16 && outLength - op >= 16) {
+                // short literals are copied with two 8 byte moves, the extra bytes are overwritten later
+                UNSAFE.putLong(outBase, out + op, UNSAFE.getLong(inBase, in + ip));
+                UNSAFE.putLong(outBase, out + op + 8, UNSAFE.getLong(inBase, in + ip + 8));
+            } else {
+                UNSAFE.copyMemory(inBase, in + ip, outBase, out + op, literalLength);
+            }
+            ip += literalLength;
+            op += literalLength;
+            // the last sequence is only literals
+            if (ip == inLen) return op;
+
+            if (inLen - ip < 2) throw new IOException("compressed block is truncated");
+            final int offset = (UNSAFE.getByte(inBase, in + ip) & 0xFF) | (UNSAFE.getByte(inBase, in + ip + 1) & 0xFF) << 8;
+            ip += 2;
+            if (offset == 0 || offset > op) throw new IOException("invalid match offset " + offset + " at output position " + op);
+            int matchLength = token & ML_MASK;
+            if (matchLength == ML_MASK) {
+                int b;
+                do {
+                    if (ip >= inLen) throw new IOException("compressed block is truncated");
+                    b = UNSAFE.getByte(inBase, in + ip++) & 0xFF;
+                    matchLength += b;
+                } while (b == 255 && matchLength > 0);
+                if (matchLength < 0) throw new IOException("invalid match length");
+            }
+            matchLength += MIN_MATCH;
+            if (matchLength > outLength - op) throw new IOException("Could not decompress data. Buffer length is too small.");
+            copy(outBase, out + op - offset, out + op, matchLength, outLength - op);
+            op += matchLength;
+        }
+    }
+
+    /**
+     * Copies len bytes from src to dst, where the ranges overlap if dst-src is less than len and the copy repeats the
+     * last dst-src bytes. room is the number of bytes after dst that can be written.
+     */
+    private static void copy(Object base, long src, long dst, int len, int room) {
+        if (len + 16 <= room) {
+            // stores can overrun len by up to 15 bytes, which are overwritten by later output
+            // repeat a short pattern until it is at least 8 bytes long, so that every 8 byte load after that reads
+            // bytes that have already been written
+            while (dst - src < 8) {
+                UNSAFE.putLong(base, dst, UNSAFE.getLong(base, src));
+                len -= dst - src;
+                dst += dst - src;
+            }
+            for (int i = 0; i < len; i += 8) {
+                UNSAFE.putLong(base, dst + i, UNSAFE.getLong(base, src + i));
+            }
+        } else if (dst - src >= len) {
+            UNSAFE.copyMemory(base, src, base, dst, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                UNSAFE.putByte(base, dst + i, UNSAFE.getByte(base, src + i));
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package com.indeed.util.compress.snappy;
 
 import com.indeed.util.compress.Compressor;
+import com.indeed.util.compress.DirectCompressor;
 import com.indeed.util.compress.NativeCodeLoader;
 import org.apache.log4j.Logger;
 
@@ -29,8 +30,9 @@ import java.nio.ByteBuffer;
 /**
  * A {@link Compressor} based on the snappy compression algorithm.
  * http://code.google.com/p/snappy/
+ * Falls back to {@link SnappyJava} if the native library can't be loaded.
  */
-public class SnappyCompressor implements Compressor {
+public class SnappyCompressor implements Compressor, DirectCompressor {
   private static final Logger LOG = Logger.getLogger(SnappyCompressor.class);
   private static final int DEFAULT_DIRECT_BUFFER_SIZE = 64 * 1024;
 
@@ -39,6 +41,9 @@ public class SnappyCompressor implements Compressor {
   private static Class clazz = SnappyCompressor.class;
 
   private int directBufferSize;
+  // bytes of input compressed per call, less than directBufferSize for
+  // SnappyJava, which needs room for incompressible input in the output
+  private final int inputLimit;
   private Buffer compressedDirectBuf = null;
   private int uncompressedDirectBufLen;
   private Buffer uncompressedDirectBuf = null;
@@ -46,19 +51,22 @@ public class SnappyCompressor implements Compressor {
   private int userBufOff = 0, userBufLen = 0;
   private boolean finish, finished;
 
+  // only used by the pure java fallback
+  private short[] hashTable = null;
+
   private long bytesRead = 0L;
   private long bytesWritten = 0L;
 
   private static boolean nativeSnappyLoaded = false;
   
   static {
-    if (NativeCodeLoader.isNativeCodeLoaded()) {
-      try {
+    try {
+      if (NativeCodeLoader.isNativeCodeLoaded()) {
         initIDs();
         nativeSnappyLoaded = true;
-      } catch (Throwable t) {
-        LOG.error("failed to load SnappyCompressor", t);
       }
+    } catch (Throwable t) {
+      LOG.warn("native snappy is not available, SnappyCompressor will use SnappyJava", t);
     }
   }
   
@@ -73,12 +81,33 @@ public class SnappyCompressor implements Compressor {
    */
   public SnappyCompressor(int directBufferSize) {
     this.directBufferSize = directBufferSize;
+    inputLimit = nativeSnappyLoaded ? directBufferSize : maxInputLength(directBufferSize);
+    if (inputLimit <= 0) {
+      throw new IllegalArgumentException("directBufferSize " + directBufferSize +
+          " is too small for SnappyJava");
+    }
 
     uncompressedDirectBuf = ByteBuffer.allocateDirect(directBufferSize);
+    uncompressedDirectBuf.limit(inputLimit);
     compressedDirectBuf = ByteBuffer.allocateDirect(directBufferSize);
     compressedDirectBuf.position(directBufferSize);
   }
 
+  /**
+   * @return the largest input whose {@link #maxCompressedLength(int)} fits
+   *         in outputLength bytes
+   */
+  static int maxInputLength(int outputLength) {
+    int n = Math.max((int)((outputLength - 32L) * 6 / 7), 0);
+    while (maxCompressedLength(n + 1) <= outputLength) {
+      n++;
+    }
+    while (n > 0 && maxCompressedLength(n) > outputLength) {
+      n--;
+    }
+    return n;
+  }
+
   /**
    * Creates a new compressor with the default buffer size.
    */
@@ -129,7 +158,7 @@ public class SnappyCompressor implements Compressor {
     }
     finished = false;
 
-    uncompressedDirectBufLen = Math.min(userBufLen, directBufferSize);
+    uncompressedDirectBufLen = Math.min(userBufLen, inputLimit);
     ((ByteBuffer) uncompressedDirectBuf).put(userBuf, userBufOff,
         uncompressedDirectBufLen);
 
@@ -225,9 +254,10 @@ public class SnappyCompressor implements Compressor {
     }
 
     // Compress data
-    n = compressBytesDirect();
+    n = compressDirectBuf();
     compressedDirectBuf.limit(n);
     uncompressedDirectBuf.clear(); // snappy consumes all buffer input
+    uncompressedDirectBuf.limit(inputLimit);
 
     // Set 'finished' if snapy has consumed all user-data
     if (0 == userBufLen) {
@@ -250,6 +280,7 @@ public class SnappyCompressor implements Compressor {
     finish = false;
     finished = false;
     uncompressedDirectBuf.clear();
+    uncompressedDirectBuf.limit(inputLimit);
     uncompressedDirectBufLen = 0;
     compressedDirectBuf.clear();
     compressedDirectBuf.limit(0);
@@ -280,6 +311,84 @@ public class SnappyCompressor implements Compressor {
   public synchronized void end() {
   }
 
+  /**
+   * Returns the largest number of bytes that snappy can compress length
+   * bytes to.
+   *
+   * @param length Number of uncompressed bytes
+   * @return Size dst needs for {@link #compress(ByteBuffer, ByteBuffer)}
+   */
+  public static int maxCompressedLength(int length) {
+    return 32 + length + length / 6;
+  }
+
+  /**
+   * Compresses the remaining bytes of src into dst with a single call into
+   * snappy, by pointing the direct buffers snappy reads at src and dst.
+   * dst must have at least {@link #maxCompressedLength(int)} bytes remaining.
+   *
+   * @param src Direct buffer holding the uncompressed data
+   * @param dst Direct buffer to write the compressed data to
+   * @return The number of bytes of compressed data.
+   * @throws IOException if dst is too small
+   */
+  @Override
+  public synchronized int compress(ByteBuffer src, ByteBuffer dst)
+      throws IOException {
+    if (!src.isDirect() || !dst.isDirect()) {
+      throw new IllegalArgumentException("src and dst must be direct buffers");
+    }
+    final int len = src.remaining();
+    if (dst.remaining() < maxCompressedLength(len)) {
+      throw new IOException("dst has " + dst.remaining() + " bytes remaining, " +
+          maxCompressedLength(len) + " are required");
+    }
+    reset();
+    final Buffer originalCompressed = compressedDirectBuf;
+    final Buffer originalUncompressed = uncompressedDirectBuf;
+    final int originalBufferSize = directBufferSize;
+    compressedDirectBuf = dst.slice();
+    uncompressedDirectBuf = src.slice();
+    uncompressedDirectBufLen = len;
+    directBufferSize = dst.remaining();
+    final int n;
+    try {
+      n = compressDirectBuf();
+    } catch (InternalError e) {
+      throw new IOException(e.getMessage(), e);
+    } finally {
+      compressedDirectBuf = originalCompressed;
+      uncompressedDirectBuf = originalUncompressed;
+      uncompressedDirectBufLen = 0;
+      directBufferSize = originalBufferSize;
+    }
+    src.position(src.limit());
+    dst.position(dst.position() + n);
+    bytesRead += len;
+    bytesWritten += n;
+    finish = true;
+    finished = true;
+    return n;
+  }
+
+  /**
+   * Compresses uncompressedDirectBufLen bytes from the start of
+   * uncompressedDirectBuf into compressedDirectBuf, natively if possible.
+   */
+  private int compressDirectBuf() throws IOException {
+    if (nativeSnappyLoaded) {
+      return compressBytesDirect();
+    }
+    if (hashTable == null) {
+      hashTable = SnappyJava.newHashTable();
+    }
+    final int n = SnappyJava.compress((ByteBuffer) uncompressedDirectBuf, 0,
+        uncompressedDirectBufLen, (ByteBuffer) compressedDirectBuf, 0,
+        directBufferSize, hashTable);
+    uncompressedDirectBufLen = 0;
+    return n;
+  }
+
   private native static void initIDs();
 
   private native int compressBytesDirect();
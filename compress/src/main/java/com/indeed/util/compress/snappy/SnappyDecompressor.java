@@ -19,6 +19,7 @@
 package com.indeed.util.compress.snappy;
 
 import com.indeed.util.compress.Decompressor;
+import com.indeed.util.compress.DirectDecompressor;
 import com.indeed.util.compress.NativeCodeLoader;
 import org.apache.log4j.Logger;
 
@@ -29,8 +30,9 @@ import java.nio.ByteBuffer;
 /**
  * A {@link Decompressor} based on the snappy compression algorithm.
  * http://code.google.com/p/snappy/
+ * Falls back to {@link SnappyJava} if the native library can't be loaded.
  */
-public class SnappyDecompressor implements Decompressor {
+public class SnappyDecompressor implements Decompressor, DirectDecompressor {
   private static final Logger LOG = Logger.getLogger(SnappyCompressor.class);
   private static final int DEFAULT_DIRECT_BUFFER_SIZE = 64 * 1024;
 
@@ -49,13 +51,13 @@ public class SnappyDecompressor implements Decompressor {
   private static boolean nativeSnappyLoaded = false;
 
   static {
-    if (NativeCodeLoader.isNativeCodeLoaded()) {
-      try {
+    try {
+      if (NativeCodeLoader.isNativeCodeLoaded()) {
         initIDs();
         nativeSnappyLoaded = true;
-      } catch (Throwable t) {
-        LOG.error("failed to load SnappyDecompressor", t);
       }
+    } catch (Throwable t) {
+      LOG.warn("native snappy is not available, SnappyDecompressor will use SnappyJava", t);
     }
   }
   
@@ -232,7 +234,7 @@ public class SnappyDecompressor implements Decompressor {
       uncompressedDirectBuf.limit(directBufferSize);
 
       // Decompress data
-      n = decompressBytesDirect();
+      n = decompressDirectBuf();
       uncompressedDirectBuf.limit(n);
 
       if (userBufLen <= 0) {
@@ -275,6 +277,63 @@ public class SnappyDecompressor implements Decompressor {
     // do nothing
   }
 
+  /**
+   * Decompresses the snappy block in the remaining bytes of src into dst with
+   * a single call into snappy, by pointing the direct buffers snappy reads at
+   * src and dst.
+   *
+   * @param src Direct buffer holding exactly one compressed block
+   * @param dst Direct buffer to write the uncompressed data to
+   * @return The number of bytes of uncompressed data.
+   * @throws IOException if the block is invalid or dst is too small
+   */
+  @Override
+  public synchronized int decompress(ByteBuffer src, ByteBuffer dst)
+      throws IOException {
+    if (!src.isDirect() || !dst.isDirect()) {
+      throw new IllegalArgumentException("src and dst must be direct buffers");
+    }
+    reset();
+    final Buffer originalCompressed = compressedDirectBuf;
+    final Buffer originalUncompressed = uncompressedDirectBuf;
+    final int originalBufferSize = directBufferSize;
+    compressedDirectBuf = src.slice();
+    compressedDirectBufLen = src.remaining();
+    uncompressedDirectBuf = dst.slice();
+    directBufferSize = dst.remaining();
+    final int n;
+    try {
+      n = decompressDirectBuf();
+    } catch (InternalError e) {
+      throw new IOException(e.getMessage(), e);
+    } finally {
+      compressedDirectBuf = originalCompressed;
+      uncompressedDirectBuf = originalUncompressed;
+      compressedDirectBufLen = 0;
+      directBufferSize = originalBufferSize;
+    }
+    // snappy always consumes the whole block or throws
+    src.position(src.limit());
+    dst.position(dst.position() + n);
+    finished = true;
+    return n;
+  }
+
+  /**
+   * Decompresses compressedDirectBufLen bytes from the start of
+   * compressedDirectBuf into uncompressedDirectBuf, natively if possible.
+   */
+  private int decompressDirectBuf() throws IOException {
+    if (nativeSnappyLoaded) {
+      return decompressBytesDirect();
+    }
+    final int n = SnappyJava.decompress((ByteBuffer) compressedDirectBuf, 0,
+        compressedDirectBufLen, (ByteBuffer) uncompressedDirectBuf, 0,
+        directBufferSize);
+    compressedDirectBufLen = 0;
+    return n;
+  }
+
   private native static void initIDs();
 
   private native int decompressBytesDirect();
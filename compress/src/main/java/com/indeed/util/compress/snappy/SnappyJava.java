@@ -0,0 +1,435 @@
+package com.indeed.util.compress.snappy;
+
+import sun.misc.Unsafe;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Pure Java snappy block compression, used by {@link SnappyCompressor} and {@link SnappyDecompressor} when the native
+ * snappy library can't be loaded. The compressor is a port of the C++ library's algorithm (same hash function, hash
+ * table sizes, skipping heuristic and tag choices), so it produces the same blocks as the native library.
+ * <p>
+ * Reads and writes go through {@link Unsafe} with a base object and offset, so the same code handles heap arrays and
+ * direct buffers and does 4 and 8 byte loads where the C++ code does. All bounds are checked before the kernels run.
+ */
+public final class SnappyJava {
+    private static final Unsafe UNSAFE;
+    private static final long BYTE_ARRAY_BASE_OFFSET;
+    private static final long BUFFER_ADDRESS_OFFSET;
+
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    static {
+        try {
+            final Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            UNSAFE = (Unsafe)theUnsafe.get(null);
+            BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+            BUFFER_ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // input is compressed in independent fragments of this size
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int MAX_HASH_TABLE_SIZE = 1 << 14;
+    // the match finder stops this far from the end of a fragment so that it can do 8 byte loads without checks
+    private static final int INPUT_MARGIN_BYTES = 15;
+
+    private static final int LITERAL = 0;
+    private static final int COPY_1_BYTE_OFFSET = 1;
+    private static final int COPY_2_BYTE_OFFSET = 2;
+    private static final int COPY_4_BYTE_OFFSET = 3;
+
+    // for each tag byte, as in snappy's char_table: the length of a copy or short literal in bits 0-7, the high bits of
+    // a 1 byte offset in bits 8-10 and the number of bytes that follow the tag in bits 11-13
+    private static final short[] TAG_TABLE = tagTable();
+    private static final int[] EXTRA_MASK = {0, 0xFF, 0xFFFF, 0xFFFFFF, 0xFFFFFFFF};
+
+    private SnappyJava() {}
+
+    private static short[] tagTable() {
+        final short[] ret = new short[256];
+        for (int tag = 0; tag < 256; tag++) {
+            int len = 0;
+            int offsetHigh = 0;
+            final int extra;
+            switch (tag & 3) {
+                case LITERAL:
+                    extra = Math.max((tag >>> 2) + 1 - 60, 0);
+                    if (extra == 0) len = (tag >>> 2) + 1;
+                    break;
+                case COPY_1_BYTE_OFFSET:
+                    len = 4 + ((tag >>> 2) & 7);
+                    offsetHigh = tag >>> 5;
+                    extra = 1;
+                    break;
+                case COPY_2_BYTE_OFFSET:
+                    len = 1 + (tag >>> 2);
+                    extra = 2;
+                    break;
+                default:
+                    len = 1 + (tag >>> 2);
+                    extra = 4;
+                    break;
+            }
+            ret[tag] = (short)(len | offsetHigh << 8 | extra << 11);
+        }
+        return ret;
+    }
+
+    /**
+     * @return hash table for {@link #compress(byte[], int, int, byte[], int, short[])}, which can be reused by one
+     *         thread at a time
+     */
+    public static short[] newHashTable() {
+        return new short[MAX_HASH_TABLE_SIZE];
+    }
+
+    public static int maxCompressedLength(int length) {
+        return 32 + length + length / 6;
+    }
+
+    /**
+     * Compresses in[inOff, inOff+inLen) into out at outOff, which must have room for
+     * {@link #maxCompressedLength(int)} bytes.
+     *
+     * @return number of compressed bytes
+     */
+    public static int compress(byte[] in, int inOff, int inLen, byte[] out, int outOff) {
+        return compress(in, inOff, inLen, out, outOff, newHashTable());
+    }
+
+    public static int compress(byte[] in, int inOff, int inLen, byte[] out, int outOff, short[] table) {
+        checkRange(in.length, inOff, inLen);
+        checkRange(out.length, outOff, maxCompressedLength(inLen));
+        return compress(in, BYTE_ARRAY_BASE_OFFSET + inOff, inLen, out, BYTE_ARRAY_BASE_OFFSET + outOff, table);
+    }
+
+    /**
+     * Compresses inLen bytes at inOff of in into out at outOff. Offsets are absolute indexes into the buffers,
+     * positions and limits are ignored.
+     *
+     * @return number of compressed bytes
+     * @throws IOException if outLength is less than {@link #maxCompressedLength(int)}
+     */
+    public static int compress(ByteBuffer in, int inOff, int inLen, ByteBuffer out, int outOff, int outLength, short[] table) throws IOException {
+        if (outLength < maxCompressedLength(inLen)) {
+            throw new IOException("Could not compress data. Buffer length is too small.");
+        }
+        checkRange(in.capacity(), inOff, inLen);
+        checkRange(out.capacity(), outOff, outLength);
+        if (out.isReadOnly()) throw new IllegalArgumentException("out is read only");
+        return compress(base(in), address(in) + inOff, inLen, base(out), address(out) + outOff, table);
+    }
+
+    /**
+     * @return length of the data in the compressed block
+     * @throws IOException if the block doesn't start with a valid length
+     */
+    public static int uncompressedLength(byte[] in, int inOff, int inLen) throws IOException {
+        checkRange(in.length, inOff, inLen);
+        return (int)readUncompressedLength(in, BYTE_ARRAY_BASE_OFFSET + inOff, inLen);
+    }
+
+    /**
+     * Decompresses the block in in[inOff, inOff+inLen) into out at outOff.
+     *
+     * @return number of decompressed bytes
+     * @throws IOException if the block is corrupt or doesn't fit in out
+     */
+    public static int decompress(byte[] in, int inOff, int inLen, byte[] out, int outOff) throws IOException {
+        checkRange(in.length, inOff, inLen);
+        checkRange(out.length, outOff, out.length - outOff);
+        return decompress(in, BYTE_ARRAY_BASE_OFFSET + inOff, inLen, out, BYTE_ARRAY_BASE_OFFSET + outOff, out.length - outOff);
+    }
+
+    /**
+     * Decompresses the block of inLen bytes at inOff of in into out at outOff. Offsets are absolute indexes into the
+     * buffers, positions and limits are ignored.
+     *
+     * @return number of decompressed bytes
+     * @throws IOException if the block is corrupt or longer than outLength
+     */
+    public static int decompress(ByteBuffer in, int inOff, int inLen, ByteBuffer out, int outOff, int outLength) throws IOException {
+        checkRange(in.capacity(), inOff, inLen);
+        checkRange(out.capacity(), outOff, outLength);
+        if (out.isReadOnly()) throw new IllegalArgumentException("out is read only");
+        return decompress(base(in), address(in) + inOff, inLen, base(out), address(out) + outOff, outLength);
+    }
+
+    private static void checkRange(int capacity, int off, int len) {
+        if (off < 0 || len < 0 || off > capacity - len) {
+            throw new IndexOutOfBoundsException("range [" + off + ", " + off + "+" + len + ") is outside of [0, " + capacity + ")");
+        }
+    }
+
+    private static Object base(ByteBuffer buffer) {
+        return buffer.isDirect() ? null : buffer.array();
+    }
+
+    private static long address(ByteBuffer buffer) {
+        if (buffer.isDirect()) return UNSAFE.getLong(buffer, BUFFER_ADDRESS_OFFSET);
+        if (!buffer.hasArray()) throw new IllegalArgumentException("buffer must be direct or have an accessible array");
+        return BYTE_ARRAY_BASE_OFFSET + buffer.arrayOffset();
+    }
+
+    private static int load32(Object base, long address) {
+        final int ret = UNSAFE.getInt(base, address);
+        return LITTLE_ENDIAN ? ret : Integer.reverseBytes(ret);
+    }
+
+    private static long load64(Object base, long address) {
+        final long ret = UNSAFE.getLong(base, address);
+        return LITTLE_ENDIAN ? ret : Long.reverseBytes(ret);
+    }
+
+    private static int hash(int bytes, int shift) {
+        return (bytes * 0x1e35a7bd) >>> shift;
+    }
+
+    private static int compress(Object inBase, long in, int inLen, Object outBase, long out, short[] table) {
+        if (table.length < MAX_HASH_TABLE_SIZE) throw new IllegalArgumentException("hash table is too small");
+        long op = out;
+        // uncompressed length as a varint
+        int n = inLen;
+        while ((n & ~0x7F) != 0) {
+            UNSAFE.putByte(outBase, op++, (byte)(n | 0x80));
+            n >>>= 7;
+        }
+        UNSAFE.putByte(outBase, op++, (byte)n);
+        for (int pos = 0; pos < inLen; pos += BLOCK_SIZE) {
+            final int fragmentLength = Math.min(inLen - pos, BLOCK_SIZE);
+            int tableSize = 256;
+            while (tableSize < MAX_HASH_TABLE_SIZE && tableSize < fragmentLength) {
+                tableSize <<= 1;
+            }
+            Arrays.fill(table, 0, tableSize, (short)0);
+            op = compressFragment(inBase, in + pos, fragmentLength, outBase, op, table, 32 - Integer.numberOfTrailingZeros(tableSize));
+        }
+        return (int)(op - out);
+    }
+
+    /**
+     * Port of CompressFragment from snappy.cc. Indexes are relative to the start of the fragment, which is at most
+     * 64KB long so they fit in the hash table's shorts.
+     */
+    private static long compressFragment(Object inBase, long base, int inLen, Object outBase, long op, short[] table, int shift) {
+        int ip = 0;
+        int nextEmit = 0;
+        if (inLen >= INPUT_MARGIN_BYTES) {
+            final int ipLimit = inLen - INPUT_MARGIN_BYTES;
+            int nextHash = hash(load32(inBase, base + ++ip), shift);
+            outer:
+            while (true) {
+                // skip faster through data that doesn't compress: after 32 misses look at every 2nd byte, then every
+                // 3rd and so on
+                int skip = 32;
+                int nextIp = ip;
+                int candidate;
+                do {
+                    ip = nextIp;
+                    final int hash = nextHash;
+                    final int bytesBetweenHashLookups = skip >>> 5;
+                    skip += bytesBetweenHashLookups;
+                    nextIp = ip + bytesBetweenHashLookups;
+                    if (nextIp > ipLimit) break outer;
+                    nextHash = hash(load32(inBase, base + nextIp), shift);
+                    candidate = table[hash] & 0xFFFF;
+                    table[hash] = (short)ip;
+                } while (load32(inBase, base + ip) != load32(inBase, base + candidate));
+
+                op = emitLiteral(inBase, base + nextEmit, ip - nextEmit, outBase, op, true);
+
+                // emit copies for as long as the data right after each copy also matches something
+                long inputBytes;
+                int candidateBytes;
+                do {
+                    final int matched = 4 + findMatchLength(inBase, base + candidate + 4, base + ip + 4, base + inLen);
+                    op = emitCopy(outBase, op, ip - candidate, matched);
+                    ip += matched;
+                    nextEmit = ip;
+                    if (ip >= ipLimit) break outer;
+                    inputBytes = load64(inBase, base + ip - 1);
+                    table[hash((int)inputBytes, shift)] = (short)(ip - 1);
+                    final int curHash = hash((int)(inputBytes >>> 8), shift);
+                    candidate = table[curHash] & 0xFFFF;
+                    candidateBytes = load32(inBase, base + candidate);
+                    table[curHash] = (short)ip;
+                } while ((int)(inputBytes >>> 8) == candidateBytes);
+                nextHash = hash((int)(inputBytes >>> 16), shift);
+                ip++;
+            }
+        }
+        if (nextEmit < inLen) {
+            op = emitLiteral(inBase, base + nextEmit, inLen - nextEmit, outBase, op, false);
+        }
+        return op;
+    }
+
+    private static int findMatchLength(Object base, long s1, long s2, long s2Limit) {
+        int matched = 0;
+        while (s2 + matched <= s2Limit - 8) {
+            final long x = UNSAFE.getLong(base, s2 + matched) ^ UNSAFE.getLong(base, s1 + matched);
+            if (x != 0) {
+                return matched + ((LITTLE_ENDIAN ? Long.numberOfTrailingZeros(x) : Long.numberOfLeadingZeros(x)) >>> 3);
+            }
+            matched += 8;
+        }
+        while (s2 + matched < s2Limit && UNSAFE.getByte(base, s1 + matched) == UNSAFE.getByte(base, s2 + matched)) {
+            matched++;
+        }
+        return matched;
+    }
+
+    /**
+     * @param allowFastPath whether 16 bytes can be read from literal, which is true before the end of the input
+     *                      margin. 16 bytes can always be written to op because of the slack in maxCompressedLength.
+     */
+    private static long emitLiteral(Object inBase, long literal, int len, Object outBase, long op, boolean allowFastPath) {
+        int n = len - 1;
+        if (n < 60) {
+            UNSAFE.putByte(outBase, op++, (byte)(LITERAL | n << 2));
+            if (allowFastPath && len <= 16) {
+                UNSAFE.putLong(outBase, op, UNSAFE.getLong(inBase, literal));
+                UNSAFE.putLong(outBase, op + 8, UNSAFE.getLong(inBase, literal + 8));
+                return op + len;
+            }
+        } else {
+            final long tag = op++;
+            int count = 0;
+            while (n > 0) {
+                UNSAFE.putByte(outBase, op++, (byte)n);
+                n >>>= 8;
+                count++;
+            }
+            UNSAFE.putByte(outBase, tag, (byte)(LITERAL | (59 + count) << 2));
+        }
+        UNSAFE.copyMemory(inBase, literal, outBase, op, len);
+        return op + len;
+    }
+
+    private static long emitCopy(Object outBase, long op, int offset, int len) {
+        if (len < 12) return emitCopyAtMost64(outBase, op, offset, len, true);
+        while (len >= 68) {
+            op = emitCopyAtMost64(outBase, op, offset, 64, false);
+            len -= 64;
+        }
+        // keep the last copy at least 4 bytes long
+        if (len > 64) {
+            op = emitCopyAtMost64(outBase, op, offset, 60, false);
+            len -= 60;
+        }
+        return emitCopyAtMost64(outBase, op, offset, len, len < 12);
+    }
+
+    private static long emitCopyAtMost64(Object outBase, long op, int offset, int len, boolean lenLessThan12) {
+        if (lenLessThan12 && offset < 2048) {
+            UNSAFE.putByte(outBase, op, (byte)(COPY_1_BYTE_OFFSET + ((len - 4) << 2) + ((offset >>> 8) << 5)));
+            UNSAFE.putByte(outBase, op + 1, (byte)offset);
+            return op + 2;
+        }
+        UNSAFE.putByte(outBase, op, (byte)(COPY_2_BYTE_OFFSET + ((len - 1) << 2)));
+        UNSAFE.putByte(outBase, op + 1, (byte)offset);
+        UNSAFE.putByte(outBase, op + 2, (byte)(offset >>> 8));
+        return op + 3;
+    }
+
+    private static long readUncompressedLength(Object base, long in, int inLen) throws IOException {
+        long ret = 0;
+        for (int i = 0; i < 5; i++) {
+            if (i >= inLen) throw new IOException("compressed block is truncated");
+            final int b = UNSAFE.getByte(base, in + i) & 0xFF;
+            ret |= (long)(b & 0x7F) << (7 * i);
+            if (b < 0x80) {
+                if (ret > Integer.MAX_VALUE) throw new IOException("uncompressed length " + ret + " is too large");
+                return ret | (long)(i + 1) << 32;
+            }
+        }
+        throw new IOException("invalid uncompressed length");
+    }
+
+    private static int decompress(Object inBase, long in, int inLen, Object outBase, long out, int outLength) throws IOException {
+        final long header = readUncompressedLength(inBase, in, inLen);
+        final int uncompressedLength = (int)header;
+        if (uncompressedLength > outLength) {
+            throw new IOException("Could not decompress data. Buffer length is too small.");
+        }
+        int ip = (int)(header >>> 32);
+        int op = 0;
+        while (ip < inLen) {
+            final int tag = UNSAFE.getByte(inBase, in + ip++) & 0xFF;
+            final int entry = TAG_TABLE[tag];
+            final int extra = entry >>> 11;
+            if (extra > inLen - ip) throw new IOException("compressed block is truncated");
+            final int trailer = inLen - ip >= 4 ? load32(inBase, in + ip) & EXTRA_MASK[extra] : readTrailer(inBase, in + ip, extra);
+            ip += extra;
+            if ((tag & 3) == LITERAL) {
+                final int literalLength = extra == 0 ? entry & 0xFF : trailer + 1;
+                if (literalLength <= 0) throw new IOException("invalid literal length");
+                if (literalLength > inLen - ip) throw new IOException("compressed block is truncated");
+                if (literalLength > uncompressedLength - op) throw new IOException("compressed block is longer than its header");
+                if (literalLength <= 16 && inLen - ip >= 16 && uncompressedLength - op >= 16) {
+                    // short literals are copied with two 8 byte moves, the extra bytes are overwritten later
+                    UNSAFE.putLong(outBase, out + op, UNSAFE.getLong(inBase, in + ip));
+                    UNSAFE.putLong(outBase, out + op + 8, UNSAFE.getLong(inBase, in + ip + 8));
+                } else {
+                    UNSAFE.copyMemory(inBase, in + ip, outBase, out + op, literalLength);
+                }
+                ip += literalLength;
+                op += literalLength;
+            } else {
+                final int len = entry & 0xFF;
+                final int offset = (entry & 0x700) + trailer;
+                if (offset <= 0 || offset > op) throw new IOException("invalid copy offset " + offset + " at output position " + op);
+                if (len > uncompressedLength - op) throw new IOException("compressed block is longer than its header");
+                copy(outBase, out + op - offset, out + op, len, uncompressedLength - op);
+                op += len;
+            }
+        }
+        if (op != uncompressedLength) {
+            throw new IOException("compressed block is " + op + " bytes long but its header says " + uncompressedLength);
+        }
+        return op;
+    }
+
+    private static int readTrailer(Object base, long address, int length) {
+        int ret = 0;
+        for (int i = 0; i < length; i++) {
+            ret |= (UNSAFE.getByte(base, address + i) & 0xFF) << (8 * i);
+        }
+        return ret;
+    }
+
+    /**
+     * Copies len bytes from src to dst, where the ranges overlap if dst-src is less than len and the copy repeats the
+     * last dst-src bytes. room is the number of bytes after dst that can be written.
+     */
+    private static void copy(Object base, long src, long dst, int len, int room) {
+        if (len + 16 <= room) {
+            // stores can overrun len by up to 15 bytes, which are overwritten by later output
+            // repeat a short pattern until it is at least 8 bytes long, so that every 8 byte load after that reads
+            // bytes that have already been written
+            while (dst - src < 8) {
+                UNSAFE.putLong(base, dst, UNSAFE.getLong(base, src));
+                len -= dst - src;
+                dst += dst - src;
+            }
+            for (int i = 0; i < len; i += 8) {
+                UNSAFE.putLong(base, dst + i, UNSAFE.getLong(base, src + i));
+            }
+        } else if (dst - src >= len) {
+            UNSAFE.copyMemory(base, src, base, dst, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                UNSAFE.putByte(base, dst + i, UNSAFE.getByte(base, src + i));
+            }
+        }
+    }
+}
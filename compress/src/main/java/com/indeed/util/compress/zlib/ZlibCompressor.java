@@ -19,6 +19,7 @@
 package com.indeed.util.compress.zlib;
 
 import com.indeed.util.compress.Compressor;
+import com.indeed.util.compress.DirectCompressor;
 import com.indeed.util.compress.NativeCodeLoader;
 import org.apache.log4j.Logger;
 
@@ -32,7 +33,7 @@ import java.nio.ByteBuffer;
  * http://www.zlib.net/
  * 
  */
-public class ZlibCompressor implements Compressor {
+public class ZlibCompressor implements Compressor, DirectCompressor {
 
   private static final Logger LOG = Logger.getLogger(ZlibCompressor.class);
 
@@ -394,6 +395,62 @@ public class ZlibCompressor implements Compressor {
     end();
   }
   
+  /**
+   * Returns an upper bound on the number of bytes zlib can compress length
+   * bytes to, including the largest (gzip) header and trailer.
+   *
+   * @param length Number of uncompressed bytes
+   * @return Size dst needs for {@link #compress(ByteBuffer, ByteBuffer)}
+   */
+  public static int maxCompressedLength(int length) {
+    return length + ((length + 7) >> 3) + ((length + 63) >> 6) + 5 + 18;
+  }
+
+  /**
+   * Compresses the remaining bytes of src into a complete zlib stream in dst
+   * with a single native call, by pointing the direct buffers the native code
+   * reads at src and dst. dst is large enough if it has
+   * {@link #maxCompressedLength(int)} bytes remaining.
+   *
+   * @param src Direct buffer holding the uncompressed data
+   * @param dst Direct buffer to write the compressed data to
+   * @return The number of bytes of compressed data.
+   * @throws IOException if dst is too small
+   */
+  @Override
+  public synchronized int compress(ByteBuffer src, ByteBuffer dst)
+      throws IOException {
+    if (!src.isDirect() || !dst.isDirect()) {
+      throw new IllegalArgumentException("src and dst must be direct buffers");
+    }
+    reset();
+    final Buffer originalCompressed = compressedDirectBuf;
+    final Buffer originalUncompressed = uncompressedDirectBuf;
+    final int originalBufferSize = directBufferSize;
+    uncompressedDirectBuf = src.slice();
+    uncompressedDirectBufOff = 0;
+    uncompressedDirectBufLen = src.remaining();
+    compressedDirectBuf = dst.slice();
+    directBufferSize = dst.remaining();
+    finish = true;
+    final int n;
+    try {
+      n = deflateBytesDirect();
+    } finally {
+      compressedDirectBuf = originalCompressed;
+      uncompressedDirectBuf = originalUncompressed;
+      uncompressedDirectBufOff = uncompressedDirectBufLen = 0;
+      directBufferSize = originalBufferSize;
+    }
+    if (!finished) {
+      throw new IOException("dst is too small, " + dst.remaining() +
+          " bytes remaining");
+    }
+    src.position(src.limit());
+    dst.position(dst.position() + n);
+    return n;
+  }
+
   private void checkStream() {
     if (stream == 0)
       throw new NullPointerException();
@@ -19,6 +19,7 @@
 package com.indeed.util.compress.zlib;
 
 import com.indeed.util.compress.Decompressor;
+import com.indeed.util.compress.DirectDecompressor;
 import com.indeed.util.compress.NativeCodeLoader;
 
 import java.io.IOException;
@@ -31,7 +32,7 @@ import java.nio.ByteBuffer;
  * http://www.zlib.net/
  * 
  */
-public class ZlibDecompressor implements Decompressor {
+public class ZlibDecompressor implements Decompressor, DirectDecompressor {
   private static final int DEFAULT_DIRECT_BUFFER_SIZE = 64*1024;
   
   // HACK - Use this as a global lock in the JNI layer
@@ -291,6 +292,54 @@ public class ZlibDecompressor implements Decompressor {
     end();
   }
   
+  /**
+   * Decompresses the zlib stream that starts at the position of src into dst
+   * with a single native call, by pointing the direct buffers the native code
+   * reads at src and dst. Any bytes after the end of the stream are left in
+   * src.
+   *
+   * @param src Direct buffer holding the compressed stream
+   * @param dst Direct buffer to write the uncompressed data to
+   * @return The number of bytes of uncompressed data.
+   * @throws IOException if the stream is invalid or truncated or dst is too
+   *                     small
+   */
+  @Override
+  public synchronized int decompress(ByteBuffer src, ByteBuffer dst)
+      throws IOException {
+    if (!src.isDirect() || !dst.isDirect()) {
+      throw new IllegalArgumentException("src and dst must be direct buffers");
+    }
+    reset();
+    final Buffer originalCompressed = compressedDirectBuf;
+    final Buffer originalUncompressed = uncompressedDirectBuf;
+    final int originalBufferSize = directBufferSize;
+    compressedDirectBuf = src.slice();
+    compressedDirectBufOff = 0;
+    compressedDirectBufLen = src.remaining();
+    uncompressedDirectBuf = dst.slice();
+    directBufferSize = dst.remaining();
+    final int n;
+    final int consumed;
+    try {
+      n = inflateBytesDirect();
+      consumed = compressedDirectBufOff;
+    } finally {
+      compressedDirectBuf = originalCompressed;
+      uncompressedDirectBuf = originalUncompressed;
+      compressedDirectBufOff = compressedDirectBufLen = 0;
+      directBufferSize = originalBufferSize;
+    }
+    if (!finished) {
+      throw new IOException(n == dst.remaining() ?
+          "dst is too small, " + dst.remaining() + " bytes remaining" :
+          "compressed stream is truncated");
+    }
+    src.position(src.position() + consumed);
+    dst.position(dst.position() + n);
+    return n;
+  }
+
   private void checkStream() {
     if (stream == 0)
       throw new NullPointerException();
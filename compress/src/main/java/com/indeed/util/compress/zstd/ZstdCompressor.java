@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.indeed.util.compress.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdException;
+import com.github.luben.zstd.util.Native;
+import com.indeed.util.compress.Compressor;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Compressor} based on the zstandard compression algorithm, using
+ * the native library bundled with zstd-jni. Each block is compressed into
+ * one complete zstd frame.
+ * http://facebook.github.io/zstd/
+ *
+ * The compression level and dictionary are kept across {@link #reset()}, so
+ * that a pooled compressor doesn't have to load its dictionary again for
+ * every stream.
+ */
+public class ZstdCompressor implements Compressor {
+  private static final Logger LOG = Logger.getLogger(ZstdCompressor.class);
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  public static final int DEFAULT_LEVEL = 3;
+
+  private final int bufferSize;
+  private final ByteBuffer compressedBuf;
+  private int uncompressedBufLen;
+  private final ByteBuffer uncompressedBuf;
+  private byte[] userBuf = null;
+  private int userBufOff = 0, userBufLen = 0;
+  private boolean finish, finished;
+
+  private final ZstdCompressCtx ctx;
+  private int level;
+  private byte[] dictionary = null;
+  private int dictionaryOff, dictionaryLen;
+  private ZstdDictCompress compressDictionary = null;
+
+  private long bytesRead = 0L;
+  private long bytesWritten = 0L;
+
+  private static boolean nativeZstdLoaded = false;
+
+  static {
+    try {
+      Native.load();
+      nativeZstdLoaded = true;
+    } catch (Throwable t) {
+      LOG.warn("native zstd is not available", t);
+    }
+  }
+
+  public static boolean isNativeCodeLoaded() {
+    return nativeZstdLoaded;
+  }
+
+  /**
+   * Creates a new compressor.
+   *
+   * @param bufferSize size of the buffers to be used.
+   * @param level      zstd compression level.
+   */
+  public ZstdCompressor(int bufferSize, int level) {
+    this.bufferSize = bufferSize;
+
+    uncompressedBuf = ByteBuffer.allocate(bufferSize);
+    compressedBuf = ByteBuffer.allocate(bufferSize);
+    compressedBuf.position(bufferSize);
+
+    ctx = new ZstdCompressCtx();
+    this.level = level;
+    ctx.setLevel(level);
+  }
+
+  /**
+   * Creates a new compressor with the default buffer size and level.
+   */
+  public ZstdCompressor() {
+    this(DEFAULT_BUFFER_SIZE, DEFAULT_LEVEL);
+  }
+
+  /**
+   * Sets input data for compression.
+   * This should be called whenever #needsInput() returns
+   * <code>true</code> indicating that more input data is required.
+   *
+   * @param b   Input data
+   * @param off Start offset
+   * @param len Length
+   */
+  @Override
+  public synchronized void setInput(byte[] b, int off, int len) {
+    if (b == null) {
+      throw new NullPointerException();
+    }
+    if (off < 0 || len < 0 || off > b.length - len) {
+      throw new ArrayIndexOutOfBoundsException();
+    }
+    finished = false;
+
+    if (len > uncompressedBuf.remaining()) {
+      // save data; now !needsInput
+      this.userBuf = b;
+      this.userBufOff = off;
+      this.userBufLen = len;
+    } else {
+      uncompressedBuf.put(b, off, len);
+      uncompressedBufLen = uncompressedBuf.position();
+    }
+
+    bytesRead += len;
+  }
+
+  /**
+   * If a write would exceed the capacity of the buffers, it is set
+   * aside to be loaded by this function while the compressed data are
+   * consumed.
+   */
+  synchronized void setInputFromSavedData() {
+    if (0 >= userBufLen) {
+      return;
+    }
+    finished = false;
+
+    uncompressedBufLen = Math.min(userBufLen, bufferSize);
+    uncompressedBuf.put(userBuf, userBufOff, uncompressedBufLen);
+
+    // Note how much data is being fed to zstd
+    userBufOff += uncompressedBufLen;
+    userBufLen -= uncompressedBufLen;
+  }
+
+  /**
+   * Sets the zstd compression level, from {@link Zstd#minCompressionLevel()}
+   * to {@link Zstd#maxCompressionLevel()}.
+   */
+  public synchronized void setLevel(int level) {
+    if (level == this.level) {
+      return;
+    }
+    this.level = level;
+    ctx.setLevel(level);
+    // dictionaries are digested for a particular level
+    loadDictionary();
+  }
+
+  /**
+   * Sets the dictionary used to compress every following block, such as one
+   * from {@link ZstdDictionaryTrainer}. An empty dictionary removes it.
+   * Loading a dictionary is expensive, so setting the same range of the same
+   * array again does nothing; the array must not be modified afterwards.
+   *
+   * @param b   Dictionary data bytes
+   * @param off Start offset
+   * @param len Length
+   */
+  @Override
+  public synchronized void setDictionary(byte[] b, int off, int len) {
+    if (b == null) {
+      throw new NullPointerException();
+    }
+    if (off < 0 || len < 0 || off > b.length - len) {
+      throw new ArrayIndexOutOfBoundsException();
+    }
+    if (len == 0) {
+      b = null;
+      off = 0;
+    }
+    if (b == dictionary && off == dictionaryOff && len == dictionaryLen) {
+      return;
+    }
+    dictionary = b;
+    dictionaryOff = off;
+    dictionaryLen = len;
+    loadDictionary();
+  }
+
+  private void loadDictionary() {
+    if (compressDictionary != null) {
+      compressDictionary.close();
+      compressDictionary = null;
+    }
+    if (dictionary == null) {
+      // drops the dictionary along with the level
+      ctx.reset();
+      ctx.setLevel(level);
+    } else {
+      compressDictionary = new ZstdDictCompress(dictionary, dictionaryOff,
+          dictionaryLen, level);
+      ctx.loadDict(compressDictionary);
+    }
+  }
+
+  /**
+   * Returns true if the input data buffer is empty and
+   * #setInput() should be called to provide more input.
+   *
+   * @return <code>true</code> if the input data buffer is empty and
+   *         #setInput() should be called in order to provide more input.
+   */
+  @Override
+  public synchronized boolean needsInput() {
+    return !(compressedBuf.remaining() > 0
+        || uncompressedBuf.remaining() == 0 || userBufLen > 0);
+  }
+
+  /**
+   * When called, indicates that compression should end
+   * with the current contents of the input buffer.
+   */
+  @Override
+  public synchronized void finish() {
+    finish = true;
+  }
+
+  /**
+   * Returns true if the end of the compressed
+   * data output stream has been reached.
+   *
+   * @return <code>true</code> if the end of the compressed
+   *         data output stream has been reached.
+   */
+  @Override
+  public synchronized boolean finished() {
+    // Check if all uncompressed data has been consumed
+    return (finish && finished && compressedBuf.remaining() == 0);
+  }
+
+  /**
+   * Fills specified buffer with compressed data. Returns actual number
+   * of bytes of compressed data. A return value of 0 indicates that
+   * needsInput() should be called in order to determine if more input
+   * data is required.
+   *
+   * @param b   Buffer for the compressed data
+   * @param off Start offset of the data
+   * @param len Size of the buffer
+   * @return The actual number of bytes of compressed data.
+   */
+  @Override
+  public synchronized int compress(byte[] b, int off, int len)
+      throws IOException {
+    if (b == null) {
+      throw new NullPointerException();
+    }
+    if (off < 0 || len < 0 || off > b.length - len) {
+      throw new ArrayIndexOutOfBoundsException();
+    }
+
+    // Check if there is compressed data
+    int n = compressedBuf.remaining();
+    if (n > 0) {
+      n = Math.min(n, len);
+      compressedBuf.get(b, off, n);
+      bytesWritten += n;
+      return n;
+    }
+
+    // Re-initialize the zstd's output buffer
+    compressedBuf.clear();
+    compressedBuf.limit(0);
+    if (0 == uncompressedBuf.position()) {
+      // No compressed data, so we should have !needsInput or !finished
+      setInputFromSavedData();
+      if (0 == uncompressedBuf.position()) {
+        // Called without data; write nothing
+        finished = true;
+        return 0;
+      }
+    }
+
+    // Compress data
+    try {
+      n = ctx.compressByteArray(compressedBuf.array(), 0, bufferSize,
+          uncompressedBuf.array(), 0, uncompressedBufLen);
+    } catch (ZstdException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    uncompressedBufLen = 0;
+    compressedBuf.limit(n);
+    uncompressedBuf.clear(); // zstd consumes all buffer input
+
+    // Set 'finished' if zstd has consumed all user-data
+    if (0 == userBufLen) {
+      finished = true;
+    }
+
+    // Get atmost 'len' bytes
+    n = Math.min(n, len);
+    bytesWritten += n;
+    compressedBuf.get(b, off, n);
+
+    return n;
+  }
+
+  /**
+   * Resets compressor so that a new set of input data can be processed.
+   */
+  @Override
+  public synchronized void reset() {
+    finish = false;
+    finished = false;
+    uncompressedBuf.clear();
+    uncompressedBufLen = 0;
+    compressedBuf.clear();
+    compressedBuf.limit(0);
+    userBufOff = userBufLen = 0;
+    bytesRead = bytesWritten = 0L;
+  }
+
+  /**
+   * Return number of bytes given to this compressor since last reset.
+   */
+  @Override
+  public synchronized long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * Return number of bytes consumed by callers of compress since last reset.
+   */
+  @Override
+  public synchronized long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * Closes the compressor and frees its native memory.
+   */
+  @Override
+  public synchronized void end() {
+    if (compressDictionary != null) {
+      compressDictionary.close();
+      compressDictionary = null;
+    }
+    ctx.close();
+  }
+}
@@ -0,0 +1,74 @@
+package com.indeed.util.compress.zstd;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Trains zstd dictionaries for {@link com.indeed.util.compress.ZstdCodec} from a uniform random sample of records,
+ * so that it can be pointed at a whole day of logs without holding them in memory. Records should be the size of the
+ * streams the dictionary will be used for, since the dictionary only helps with the first few KB of each stream.
+ */
+public final class ZstdDictionaryTrainer {
+    private static final Logger log = Logger.getLogger(ZstdDictionaryTrainer.class);
+
+    // zstd recommends training on about 100 times as many bytes as the dictionary will hold
+    private static final int SAMPLE_BYTES_PER_DICTIONARY_BYTE = 100;
+
+    private ZstdDictionaryTrainer() {}
+
+    public static byte[] train(Iterable<byte[]> records, int dictionarySize) {
+        return train(records.iterator(), dictionarySize, dictionarySize * SAMPLE_BYTES_PER_DICTIONARY_BYTE, new Random());
+    }
+
+    /**
+     * Trains a dictionary on a sample of at most sampleSize bytes of records. Once the sample is full, the nth record
+     * replaces a random sampled record with probability sample size / n, as long as it fits.
+     *
+     * @return a dictionary of at most dictionarySize bytes
+     * @throws IllegalArgumentException if zstd can't train a dictionary from the records, usually because there are too
+     *                                  few of them
+     */
+    public static byte[] train(Iterator<byte[]> records, int dictionarySize, int sampleSize, Random random) {
+        final List<byte[]> sample = new ArrayList<byte[]>();
+        long sampleBytes = 0;
+        long count = 0;
+        boolean full = false;
+        while (records.hasNext()) {
+            final byte[] record = records.next();
+            if (record.length == 0 || record.length > sampleSize) continue;
+            count++;
+            if (!full && sampleBytes + record.length <= sampleSize) {
+                sample.add(record);
+                sampleBytes += record.length;
+                continue;
+            }
+            full = true;
+            final long index = (long)(random.nextDouble() * count);
+            if (index < sample.size()) {
+                final byte[] replaced = sample.get((int)index);
+                if (sampleBytes - replaced.length + record.length <= sampleSize) {
+                    sample.set((int)index, record);
+                    sampleBytes += record.length - replaced.length;
+                }
+            }
+        }
+        final ZstdDictTrainer trainer = new ZstdDictTrainer((int)sampleBytes, dictionarySize);
+        for (final byte[] record : sample) {
+            trainer.addSample(record);
+        }
+        final byte[] dictionary;
+        try {
+            dictionary = trainer.trainSamples();
+        } catch (ZstdException e) {
+            throw new IllegalArgumentException("could not train a dictionary from " + sample.size() + " records: " + e.getMessage(), e);
+        }
+        log.info("trained a " + dictionary.length + " byte dictionary from " + sample.size() + " of " + count + " records");
+        return dictionary;
+    }
+}
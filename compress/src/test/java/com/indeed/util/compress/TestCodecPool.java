@@ -0,0 +1,186 @@
+package com.indeed.util.compress;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestCodecPool {
+
+    @Test
+    public void testReuse() {
+        final FakeCodec codec = new FakeCodec(FakeCompressor.class);
+        final long created = CodecPool.getCompressorsCreated();
+        final Compressor compressor = CodecPool.getCompressor(codec);
+        final Compressor other = CodecPool.getCompressor(codec);
+        assertNotSame(compressor, other);
+        CodecPool.returnCompressor(compressor);
+        assertEquals(1, ((FakeCompressor)compressor).resets);
+        assertSame(compressor, CodecPool.getCompressor(codec));
+        assertEquals(created+2, CodecPool.getCompressorsCreated());
+        CodecPool.returnCompressor(compressor);
+        CodecPool.returnCompressor(other);
+        assertEquals(0, ((FakeCompressor)compressor).ends);
+
+        final Decompressor decompressor = CodecPool.getDecompressor(codec);
+        CodecPool.returnDecompressor(decompressor);
+        assertEquals(1, ((FakeDecompressor)decompressor).resets);
+        assertSame(decompressor, CodecPool.getDecompressor(codec));
+        CodecPool.returnDecompressor(decompressor);
+    }
+
+    @Test
+    public void testDoNotPool() {
+        final FakeCodec codec = new FakeCodec(UnpooledCompressor.class);
+        final long returned = CodecPool.getCompressorsReturned();
+        final Compressor compressor = CodecPool.getCompressor(codec);
+        CodecPool.returnCompressor(compressor);
+        assertEquals(1, ((FakeCompressor)compressor).ends);
+        assertEquals(0, ((FakeCompressor)compressor).resets);
+        assertEquals(returned+1, CodecPool.getCompressorsReturned());
+        final Compressor next = CodecPool.getCompressor(codec);
+        assertNotSame(compressor, next);
+        CodecPool.returnCompressor(next);
+    }
+
+    @Test
+    public void testDoubleReturn() {
+        final FakeCodec codec = new FakeCodec(DoubleReturnedCompressor.class);
+        final long returned = CodecPool.getCompressorsReturned();
+        final Compressor compressor = CodecPool.getCompressor(codec);
+        CodecPool.returnCompressor(compressor);
+        CodecPool.returnCompressor(compressor);
+        assertEquals(1, ((FakeCompressor)compressor).resets);
+        assertEquals(0, ((FakeCompressor)compressor).ends);
+        assertEquals(returned+1, CodecPool.getCompressorsReturned());
+        // the instance is only pooled once, so two borrowers never share it
+        final Compressor first = CodecPool.getCompressor(codec);
+        final Compressor second = CodecPool.getCompressor(codec);
+        assertSame(compressor, first);
+        assertNotSame(first, second);
+        CodecPool.returnCompressor(first);
+        CodecPool.returnCompressor(second);
+    }
+
+    @Test
+    public void testLeak() {
+        final FakeCodec codec = new FakeCodec(LeakedCompressor.class);
+        final long leaks = CodecPool.getLeakCount();
+        final Compressor compressor = CodecPool.getCompressor(codec);
+        CodecPool.simulateLeak(compressor);
+        assertEquals(leaks+1, CodecPool.getLeakCount());
+        // only counted once
+        CodecPool.simulateLeak(compressor);
+        assertEquals(leaks+1, CodecPool.getLeakCount());
+    }
+
+    @Test
+    public void testGzip() {
+        if (!NativeCodeLoader.isNativeCodeLoaded()) return;
+        final GzipCodec codec = new GzipCodec();
+        final Compressor compressor = CodecPool.getCompressor(codec);
+        CodecPool.returnCompressor(compressor);
+        assertSame(compressor, CodecPool.getCompressor(codec));
+        assertTrue(compressor.needsInput());
+        CodecPool.returnCompressor(compressor);
+    }
+
+    private static final class FakeCodec implements CompressionCodec {
+        private final Class<? extends FakeCompressor> compressorType;
+
+        private FakeCodec(Class<? extends FakeCompressor> compressorType) {
+            this.compressorType = compressorType;
+        }
+
+        @Override
+        public CompressionOutputStream createOutputStream(OutputStream out) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompressionOutputStream createOutputStream(OutputStream out, Compressor compressor) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Class<? extends Compressor> getCompressorType() {
+            return compressorType;
+        }
+
+        @Override
+        public Compressor createCompressor() {
+            try {
+                return compressorType.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public CompressionInputStream createInputStream(InputStream in) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompressionInputStream createInputStream(InputStream in, Decompressor decompressor) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Class<? extends Decompressor> getDecompressorType() {
+            return FakeDecompressor.class;
+        }
+
+        @Override
+        public Decompressor createDecompressor() {
+            return new FakeDecompressor();
+        }
+
+        @Override
+        public String getDefaultExtension() {
+            return ".fake";
+        }
+    }
+
+    public static class FakeCompressor implements Compressor {
+        int resets = 0;
+        int ends = 0;
+
+        public void setInput(byte[] b, int off, int len) {}
+        public boolean needsInput() { return true; }
+        public void setDictionary(byte[] b, int off, int len) {}
+        public long getBytesRead() { return 0; }
+        public long getBytesWritten() { return 0; }
+        public void finish() {}
+        public boolean finished() { return false; }
+        public int compress(byte[] b, int off, int len) { return 0; }
+        public void reset() { resets++; }
+        public void end() { ends++; }
+    }
+
+    @DoNotPool
+    public static final class UnpooledCompressor extends FakeCompressor {}
+
+    public static final class LeakedCompressor extends FakeCompressor {}
+
+    public static final class DoubleReturnedCompressor extends FakeCompressor {}
+
+    public static final class FakeDecompressor implements Decompressor {
+        int resets = 0;
+
+        public void setInput(byte[] b, int off, int len) {}
+        public boolean needsInput() { return true; }
+        public void setDictionary(byte[] b, int off, int len) {}
+        public boolean needsDictionary() { return false; }
+        public boolean finished() { return false; }
+        public int decompress(byte[] b, int off, int len) { return 0; }
+        public int getRemaining() { return 0; }
+        public void reset() { resets++; }
+        public void end() {}
+    }
+}
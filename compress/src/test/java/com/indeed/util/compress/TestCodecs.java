@@ -2,6 +2,7 @@ package com.indeed.util.compress;
 
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
+import com.indeed.util.compress.zstd.ZstdCompressor;
 import junit.framework.TestCase;
 import org.apache.log4j.Logger;
 
@@ -26,10 +27,29 @@ public final class TestCodecs extends TestCase {
 */    }
 
     public static void testSnappy() throws IOException {
-/*        SnappyCodec codec = new SnappyCodec();
+        SnappyCodec codec = new SnappyCodec();
         testCodec(codec);
         testEmpty(codec);
-*/    }
+    }
+
+    public static void testLz4() throws IOException {
+        Lz4Codec codec = new Lz4Codec();
+        testCodec(codec);
+        testEmpty(codec);
+    }
+
+    public static void testLz4HC() throws IOException {
+        Lz4Codec codec = new Lz4Codec(true);
+        testCodec(codec);
+        testEmpty(codec);
+    }
+
+    public static void testZstd() throws IOException {
+        if (!ZstdCompressor.isNativeCodeLoaded()) return;
+        ZstdCodec codec = new ZstdCodec();
+        testCodec(codec);
+        testEmpty(codec);
+    }
 
     public static void testCodec(CompressionCodec codec) throws IOException {
         for (int i = 0; i < 10; i++) {
@@ -0,0 +1,127 @@
+package com.indeed.util.compress;
+
+import com.google.common.io.ByteStreams;
+import com.indeed.util.compress.snappy.SnappyCompressor;
+import com.indeed.util.compress.snappy.SnappyDecompressor;
+import com.indeed.util.compress.zlib.ZlibCompressor;
+import com.indeed.util.compress.zlib.ZlibDecompressor;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestDirectCompression {
+
+    private static byte[] data(int length) {
+        final Random random = new Random(0);
+        final byte[] ret = new byte[length];
+        for (int i = 0; i < length; i++) {
+            ret[i] = (byte)('a'+random.nextInt(4));
+        }
+        return ret;
+    }
+
+    private static ByteBuffer direct(byte[] bytes, int offset, int capacity) {
+        final ByteBuffer ret = ByteBuffer.allocateDirect(capacity);
+        ret.position(offset);
+        ret.put(bytes);
+        ret.flip();
+        ret.position(offset);
+        return ret;
+    }
+
+    private static byte[] remaining(ByteBuffer buffer) {
+        final byte[] ret = new byte[buffer.remaining()];
+        buffer.get(ret);
+        return ret;
+    }
+
+    private static void roundTrip(DirectCompressor compressor, DirectDecompressor decompressor, int maxCompressedLength) throws IOException {
+        final byte[] original = data(300000);
+        // offsets check that the buffer positions are respected
+        final ByteBuffer src = direct(original, 7, original.length+7);
+        final ByteBuffer compressed = ByteBuffer.allocateDirect(maxCompressedLength+3);
+        compressed.position(3);
+        final int compressedLength = compressor.compress(src, compressed);
+        assertEquals(src.limit(), src.position());
+        assertEquals(3+compressedLength, compressed.position());
+        assertTrue(compressedLength < original.length);
+        compressed.flip();
+        compressed.position(3);
+        final ByteBuffer uncompressed = ByteBuffer.allocateDirect(original.length+5);
+        uncompressed.position(5);
+        assertEquals(original.length, decompressor.decompress(compressed, uncompressed));
+        assertEquals(compressed.limit(), compressed.position());
+        uncompressed.flip();
+        uncompressed.position(5);
+        assertArrayEquals(original, remaining(uncompressed));
+
+        compressed.position(3);
+        try {
+            decompressor.decompress(compressed, ByteBuffer.allocateDirect(original.length-1));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testZlib() throws IOException {
+        if (!NativeCodeLoader.isNativeCodeLoaded()) return;
+        final byte[] original = data(300000);
+        roundTrip(new ZlibCompressor(), new ZlibDecompressor(), ZlibCompressor.maxCompressedLength(original.length));
+        try {
+            new ZlibCompressor().compress(direct(original, 0, original.length), ByteBuffer.allocateDirect(100));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testGzipStreamAfterDirect() throws IOException {
+        if (!NativeCodeLoader.isNativeCodeLoaded()) return;
+        final GzipCodec codec = new GzipCodec();
+        final byte[] original = data(100000);
+        final Compressor compressor = codec.createCompressor();
+        final ByteBuffer compressed = ByteBuffer.allocateDirect(ZlibCompressor.maxCompressedLength(original.length));
+        ((DirectCompressor)compressor).compress(direct(original, 0, original.length), compressed);
+        compressed.flip();
+        // the direct output is a normal gzip stream
+        final byte[] copy = ByteStreams.toByteArray(codec.createInputStream(new ByteArrayInputStream(remaining(compressed))));
+        assertArrayEquals(original, copy);
+
+        // and the compressor still works as a stream compressor once it is reset
+        compressor.reset();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final CompressionOutputStream compressionOut = codec.createOutputStream(out, compressor);
+        compressionOut.write(original);
+        compressionOut.close();
+        final Decompressor decompressor = codec.createDecompressor();
+        final ByteBuffer uncompressed = ByteBuffer.allocateDirect(original.length);
+        ((DirectDecompressor)decompressor).decompress(direct(out.toByteArray(), 0, out.size()), uncompressed);
+        uncompressed.flip();
+        assertArrayEquals(original, remaining(uncompressed));
+    }
+
+    @Test
+    public void testSnappy() throws IOException {
+        roundTrip(new SnappyCompressor(), new SnappyDecompressor(), SnappyCompressor.maxCompressedLength(300000));
+    }
+
+    @Test
+    public void testHeapBuffers() throws IOException {
+        if (!NativeCodeLoader.isNativeCodeLoaded()) return;
+        try {
+            new ZlibCompressor().compress(ByteBuffer.wrap(data(10)), ByteBuffer.allocateDirect(100));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.indeed.util.compress.lz4;
+
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestLz4Java {
+
+    private static byte[] compress(byte[] in, boolean hc) {
+        final byte[] out = new byte[Lz4Java.maxCompressedLength(in.length)];
+        final int length = hc ? Lz4Java.compressHC(in, 0, in.length, out, 0) : Lz4Java.compress(in, 0, in.length, out, 0);
+        return Arrays.copyOf(out, length);
+    }
+
+    private static byte[] decompress(byte[] in, int length) throws IOException {
+        final byte[] out = new byte[length];
+        assertEquals(length, Lz4Java.decompress(in, 0, in.length, out, 0));
+        return out;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final Random random = new Random(0);
+        // sizes around the end of block limits and the 64KB window
+        for (final int length : new int[] {0, 1, 12, 13, 14, 17, 100, 4096, 65535, 65536, 65537, 200000}) {
+            for (int kind = 0; kind < 3; kind++) {
+                final byte[] in = new byte[length];
+                for (int i = 0; i < length; i++) {
+                    in[i] = (byte)(kind == 0 ? random.nextInt() : kind == 1 ? 'a'+random.nextInt(4) : i%7);
+                }
+                for (final boolean hc : new boolean[] {false, true}) {
+                    final byte[] compressed = compress(in, hc);
+                    assertTrue(compressed.length <= Lz4Java.maxCompressedLength(length));
+                    assertArrayEquals(in, decompress(compressed, length));
+                }
+            }
+        }
+        final byte[] logs = Files.toByteArray(new File("src/test/resources/jobsearchlogs.out"));
+        final byte[] fast = compress(logs, false);
+        final byte[] hc = compress(logs, true);
+        assertTrue(fast.length < logs.length/2);
+        assertTrue(hc.length < fast.length);
+        assertArrayEquals(logs, decompress(fast, logs.length));
+        assertArrayEquals(logs, decompress(hc, logs.length));
+    }
+
+    @Test
+    public void testKnownBlocks() throws IOException {
+        assertArrayEquals(new byte[] {0}, compress(new byte[0], false));
+        assertArrayEquals(new byte[] {0x10, 'a'}, compress(new byte[] {'a'}, true));
+        // a literal, a 19 byte match with an extra length byte and the last literals
+        final byte[] block = {0x1F, 'a', 1, 0, 0, 0x50, 'b', 'b', 'b', 'b', 'b'};
+        assertArrayEquals("aaaaaaaaaaaaaaaaaaaabbbbb".getBytes("UTF-8"), decompress(block, 25));
+    }
+
+    @Test
+    public void testCorrupt() {
+        final byte[][] blocks = {
+                {},
+                // literal runs past the end of the input
+                {0x40, 'a'},
+                // match with an offset before the start of the output
+                {0x10, 'a', 2, 0, 0x00},
+                // match with offset 0
+                {0x10, 'a', 0, 0, 0x00},
+                // truncated offset
+                {0x10, 'a', 1},
+        };
+        for (final byte[] block : blocks) {
+            try {
+                decompress(block, 100);
+                fail(Arrays.toString(block));
+            } catch (IOException expected) {
+            }
+        }
+        try {
+            Lz4Java.decompress(new byte[] {0x50, 'a', 'b', 'c', 'd', 'e'}, 0, 6, new byte[4], 0);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testDirectBuffers() throws IOException {
+        final byte[] in = Files.toByteArray(new File("src/test/resources/jobsearchlogs.out"));
+        final ByteBuffer src = ByteBuffer.allocateDirect(in.length);
+        src.put(in);
+        final ByteBuffer compressed = ByteBuffer.allocateDirect(Lz4Java.maxCompressedLength(in.length));
+        final int length = Lz4Java.compress(src, 0, in.length, compressed, 0, compressed.capacity(), Lz4Java.newHCTable(), true);
+        final byte[] heapCompressed = new byte[length];
+        compressed.get(heapCompressed);
+        assertArrayEquals(compress(in, true), heapCompressed);
+        final ByteBuffer out = ByteBuffer.allocate(in.length+10);
+        assertEquals(in.length, Lz4Java.decompress(compressed, 0, length, out, 10, in.length));
+        assertArrayEquals(in, Arrays.copyOfRange(out.array(), 10, 10+in.length));
+    }
+}
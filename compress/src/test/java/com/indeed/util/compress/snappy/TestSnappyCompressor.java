@@ -0,0 +1,50 @@
+package com.indeed.util.compress.snappy;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestSnappyCompressor {
+
+    @Test
+    public void testMaxInputLength() {
+        for (int outputLength = 0; outputLength < 100000; outputLength++) {
+            final int n = SnappyCompressor.maxInputLength(outputLength);
+            assertTrue(n == 0 || SnappyCompressor.maxCompressedLength(n) <= outputLength);
+            assertTrue(SnappyCompressor.maxCompressedLength(n+1) > outputLength);
+        }
+    }
+
+    @Test
+    public void testFullBuffer() throws IOException {
+        final int bufferSize = 64*1024;
+        final Random random = new Random(0);
+        // incompressible, so the compressed size exceeds the input size
+        final byte[] in = new byte[bufferSize];
+        random.nextBytes(in);
+        final SnappyCompressor compressor = new SnappyCompressor(bufferSize);
+        final ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        final byte[] block = new byte[bufferSize];
+        for (int round = 0; round < 2; round++) {
+            compressor.reset();
+            compressor.setInput(in, 0, in.length);
+            compressor.finish();
+            // each call produces one complete snappy block
+            while (!compressor.finished()) {
+                final int n = compressor.compress(block, 0, block.length);
+                final byte[] out = new byte[SnappyJava.uncompressedLength(block, 0, n)];
+                SnappyJava.decompress(block, 0, n, out, 0);
+                uncompressed.write(out);
+            }
+        }
+        final byte[] expected = Arrays.copyOf(in, in.length*2);
+        System.arraycopy(in, 0, expected, in.length, in.length);
+        assertArrayEquals(expected, uncompressed.toByteArray());
+    }
+}
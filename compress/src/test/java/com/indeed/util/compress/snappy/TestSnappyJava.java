@@ -0,0 +1,158 @@
+package com.indeed.util.compress.snappy;
+
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestSnappyJava {
+
+    private static byte[] compress(byte[] in) {
+        final byte[] out = new byte[SnappyJava.maxCompressedLength(in.length)];
+        return Arrays.copyOf(out, SnappyJava.compress(in, 0, in.length, out, 0));
+    }
+
+    private static byte[] decompress(byte[] in) throws IOException {
+        final byte[] out = new byte[SnappyJava.uncompressedLength(in, 0, in.length)];
+        assertEquals(out.length, SnappyJava.decompress(in, 0, in.length, out, 0));
+        return out;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final Random random = new Random(0);
+        // sizes around the input margin and the 64KB fragments
+        for (final int length : new int[] {0, 1, 14, 15, 16, 100, 4096, 65535, 65536, 65537, 200000}) {
+            for (int kind = 0; kind < 3; kind++) {
+                final byte[] in = new byte[length];
+                for (int i = 0; i < length; i++) {
+                    in[i] = (byte)(kind == 0 ? random.nextInt() : kind == 1 ? 'a'+random.nextInt(4) : i%7);
+                }
+                final byte[] compressed = compress(in);
+                assertTrue(compressed.length <= SnappyJava.maxCompressedLength(length));
+                assertArrayEquals(in, decompress(compressed));
+            }
+        }
+        final byte[] logs = Files.toByteArray(new File("src/test/resources/jobsearchlogs.out"));
+        final byte[] compressed = compress(logs);
+        assertTrue(compressed.length < logs.length/2);
+        assertArrayEquals(logs, decompress(compressed));
+    }
+
+    @Test
+    public void testKnownBlocks() throws IOException {
+        assertArrayEquals(new byte[] {0}, compress(new byte[0]));
+        assertArrayEquals(new byte[] {1, 0, 'a'}, compress(new byte[] {'a'}));
+        // a 4 byte literal then a copy of length 16, which is too long for a copy with a 1 byte offset
+        final byte[] abcd = "abcdabcdabcdabcdabcd".getBytes("UTF-8");
+        assertArrayEquals(new byte[] {20, 3<<2, 'a', 'b', 'c', 'd', (byte)(2 | 15<<2), 4, 0}, compress(abcd));
+
+        // one of each other kind of tag: copies with 1 and 4 byte offsets and a literal with a 1 byte length
+        final byte[] block = new byte[12+61];
+        int i = 0;
+        block[i++] = 75;
+        block[i++] = 0;
+        block[i++] = 'y';
+        block[i++] = (byte)(1 | (7-4) << 2);
+        block[i++] = 1;
+        block[i++] = (byte)(3 | (6-1) << 2);
+        block[i++] = 8;
+        block[i++] = 0;
+        block[i++] = 0;
+        block[i++] = 0;
+        block[i++] = (byte)(60 << 2);
+        block[i++] = 60;
+        Arrays.fill(block, i, block.length, (byte)'x');
+        final byte[] expected = new byte[75];
+        Arrays.fill(expected, 0, 14, (byte)'y');
+        Arrays.fill(expected, 14, 75, (byte)'x');
+        assertArrayEquals(expected, decompress(block));
+    }
+
+    /**
+     * Blocks as libsnappy 1.1.x lays them out: the first byte of a run goes out as a literal, copies are split into
+     * 64 byte pieces with a 60 byte piece when fewer than 68 would be left, and literals over 60 and 256 bytes take
+     * 1 and 2 length bytes. libsnappy isn't available to the build, so these are worked out from its encoder
+     * rather than captured from it.
+     */
+    @Test
+    public void testLibsnappyBlocks() throws IOException {
+        final byte[] a100 = new byte[100];
+        Arrays.fill(a100, (byte)'a');
+        final byte[] a100Block = {100, 0, 'a', (byte)(2 | 63<<2), 1, 0, (byte)(2 | 34<<2), 1, 0};
+        assertArrayEquals(a100Block, compress(a100));
+        assertArrayEquals(a100, decompress(a100Block));
+
+        // 1 + 64 + 60 + 6, the last piece short enough for a copy with a 1 byte offset
+        final byte[] a131 = new byte[131];
+        Arrays.fill(a131, (byte)'a');
+        final byte[] a131Block = {(byte)0x83, 1, 0, 'a', (byte)(2 | 63<<2), 1, 0, (byte)(2 | 59<<2), 1, 0, (byte)(1 | (6-4)<<2), 1};
+        assertArrayEquals(a131Block, compress(a131));
+        assertArrayEquals(a131, decompress(a131Block));
+
+        for (final int length : new int[] {100, 300}) {
+            // no 4 byte sequence repeats, so nothing to copy
+            final byte[] in = new byte[length];
+            new Random(length).nextBytes(in);
+            final byte[] header = length < 256 ?
+                    new byte[] {(byte)length, (byte)(60 << 2), (byte)(length-1)} :
+                    new byte[] {(byte)(length | 0x80), (byte)(length >>> 7), (byte)(61 << 2), (byte)(length-1), (byte)((length-1) >>> 8)};
+            final byte[] block = Arrays.copyOf(header, header.length+length);
+            System.arraycopy(in, 0, block, header.length, length);
+            assertArrayEquals(block, compress(in));
+            assertArrayEquals(in, decompress(block));
+        }
+    }
+
+    @Test
+    public void testCorrupt() {
+        final byte[][] blocks = {
+                {},
+                {(byte)0x80},
+                // literal runs past the end of the input
+                {5, 4<<2, 'a'},
+                // copy with an offset before the start of the output
+                {4, 0, 'a', 1, 2},
+                // copy with offset 0
+                {5, 0, 'a', (byte)(1 | 0<<2), 0},
+                // more output than the header says
+                {2, 0, 'a', 0, 'b', 0, 'c'},
+        };
+        for (final byte[] block : blocks) {
+            try {
+                decompress(block);
+                fail(Arrays.toString(block));
+            } catch (IOException expected) {
+            }
+        }
+        try {
+            SnappyJava.decompress(new byte[] {5, 4<<2, 'a', 'b', 'c', 'd', 'e'}, 0, 7, new byte[4], 0);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testDirectBuffers() throws IOException {
+        final byte[] in = Files.toByteArray(new File("src/test/resources/jobsearchlogs.out"));
+        final ByteBuffer src = ByteBuffer.allocateDirect(in.length);
+        src.put(in);
+        final ByteBuffer compressed = ByteBuffer.allocateDirect(SnappyJava.maxCompressedLength(in.length));
+        final int length = SnappyJava.compress(src, 0, in.length, compressed, 0, compressed.capacity(), SnappyJava.newHashTable());
+        final byte[] heapCompressed = new byte[length];
+        compressed.get(heapCompressed);
+        assertArrayEquals(compress(in), heapCompressed);
+        final ByteBuffer out = ByteBuffer.allocate(in.length+10);
+        assertEquals(in.length, SnappyJava.decompress(compressed, 0, length, out, 10, in.length));
+        assertArrayEquals(in, Arrays.copyOfRange(out.array(), 10, 10+in.length));
+    }
+}
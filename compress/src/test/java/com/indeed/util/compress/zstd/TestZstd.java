@@ -0,0 +1,129 @@
+package com.indeed.util.compress.zstd;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.indeed.util.compress.CodecPool;
+import com.indeed.util.compress.CompressionCodec;
+import com.indeed.util.compress.CompressionOutputStream;
+import com.indeed.util.compress.Compressor;
+import com.indeed.util.compress.Decompressor;
+import com.indeed.util.compress.ZstdCodec;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class TestZstd {
+
+    private static final String[] WORDS = {"software", "engineer", "nurse", "driver", "austin", "tx", "new", "york", "ny"};
+
+    @Before
+    public void setUp() {
+        assumeTrue(ZstdCompressor.isNativeCodeLoaded());
+    }
+
+    private static List<byte[]> records(int count, Random random) {
+        final List<byte[]> ret = new ArrayList<byte[]>();
+        for (int i = 0; i < count; i++) {
+            final String record = "{\"uid\":\"" + Long.toHexString(random.nextLong()) + "\",\"type\":\"jobsearch\",\"q\":\""
+                    + WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + "\",\"page\":"
+                    + random.nextInt(10) + ",\"sort\":\"" + (random.nextBoolean() ? "date" : "relevance")
+                    + "\",\"results\":" + random.nextInt(1000) + ",\"country\":\"US\",\"language\":\"en\"}";
+            ret.add(record.getBytes(StandardCharsets.UTF_8));
+        }
+        return ret;
+    }
+
+    private static byte[] compress(CompressionCodec codec, byte[] data) throws IOException {
+        final Compressor compressor = CodecPool.getCompressor(codec);
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final CompressionOutputStream compressed = codec.createOutputStream(out, compressor);
+            compressed.write(data);
+            compressed.close();
+            return out.toByteArray();
+        } finally {
+            CodecPool.returnCompressor(compressor);
+        }
+    }
+
+    private static byte[] decompress(CompressionCodec codec, byte[] data) throws IOException {
+        final Decompressor decompressor = CodecPool.getDecompressor(codec);
+        try {
+            return ByteStreams.toByteArray(codec.createInputStream(new ByteArrayInputStream(data), decompressor));
+        } finally {
+            CodecPool.returnDecompressor(decompressor);
+        }
+    }
+
+    @Test
+    public void testLevels() throws IOException {
+        final byte[] logs = Files.toByteArray(new File("src/test/resources/jobsearchlogs.out"));
+        final ZstdCodec fast = new ZstdCodec(1);
+        final ZstdCodec small = new ZstdCodec(19);
+        final byte[] fastCompressed = compress(fast, logs);
+        final byte[] smallCompressed = compress(small, logs);
+        assertTrue(smallCompressed.length < fastCompressed.length);
+        // the level doesn't matter to the decompressor
+        assertArrayEquals(logs, decompress(small, fastCompressed));
+        assertArrayEquals(logs, decompress(fast, smallCompressed));
+        try {
+            new ZstdCodec(1000);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testDictionary() throws IOException {
+        final Random random = new Random(0);
+        final byte[] dictionary = ZstdDictionaryTrainer.train(records(2000, random), 4096);
+        assertTrue(dictionary.length > 0 && dictionary.length <= 4096);
+        final ZstdCodec plain = new ZstdCodec();
+        final ZstdCodec withDictionary = new ZstdCodec(ZstdCompressor.DEFAULT_LEVEL, dictionary);
+
+        long plainBytes = 0;
+        long dictionaryBytes = 0;
+        // alternating between codecs also checks that pooled compressors pick up each codec's dictionary
+        for (final byte[] record : records(100, random)) {
+            final byte[] plainCompressed = compress(plain, record);
+            final byte[] dictionaryCompressed = compress(withDictionary, record);
+            plainBytes += plainCompressed.length;
+            dictionaryBytes += dictionaryCompressed.length;
+            assertArrayEquals(record, decompress(plain, plainCompressed));
+            assertArrayEquals(record, decompress(withDictionary, dictionaryCompressed));
+        }
+        assertTrue(plainBytes + " " + dictionaryBytes, dictionaryBytes * 2 < plainBytes);
+
+        try {
+            decompress(plain, compress(withDictionary, records(1, random).get(0)));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testTrainerSamples() {
+        final Random random = new Random(0);
+        // far more records than fit in the sample
+        final byte[] dictionary = ZstdDictionaryTrainer.train(records(20000, random).iterator(), 1024, 100*1024, random);
+        assertTrue(dictionary.length > 0 && dictionary.length <= 1024);
+        try {
+            ZstdDictionaryTrainer.train(records(1, random), 1024);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.indeed.util.mmap;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sequential block reads and writes of a file with O_DIRECT, for large scans that shouldn't go through the page cache
+ * and evict the pages of mapped indexes. Blocks are read into and written from page aligned {@link NativeBuffer}s and
+ * handed to callers as {@link DirectMemory}.
+ * <p>
+ * O_DIRECT is requested through the JDK's {@code com.sun.nio.file.ExtendedOpenOption.DIRECT}, which is available from
+ * Java 10. If the JDK or the filesystem doesn't support it the file is opened normally and the same code paths are
+ * used with buffered I/O, {@link Reader#isDirectIO()} and {@link Writer#isDirectIO()} report which one is in use.
+ */
+public final class AlignedDirectFile {
+    private static final Logger log = Logger.getLogger(AlignedDirectFile.class);
+
+    private static final OpenOption DIRECT = directOpenOption();
+
+    private AlignedDirectFile() {}
+
+    @SuppressWarnings("unchecked")
+    private static OpenOption directOpenOption() {
+        try {
+            final Class extendedOpenOption = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+            return (OpenOption)Enum.valueOf(extendedOpenOption, "DIRECT");
+        } catch (ClassNotFoundException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Direct reads and writes go straight to the native buffers through {@link DirectMemory#asByteBuffer}, so O_DIRECT
+     * is only used once wrapping the buffer has succeeded.
+     *
+     * @return the file opened with O_DIRECT, or null if that isn't supported
+     */
+    private static FileChannel openDirect(Path path, DirectMemory buffer, OpenOption... options) {
+        if (DIRECT == null) return null;
+        try {
+            buffer.asByteBuffer(0, MMapBuffer.PAGE_SIZE);
+        } catch (UnsupportedOperationException e) {
+            log.warn("native memory can't be wrapped in a ByteBuffer, falling back to buffered io for " + path, e);
+            return null;
+        }
+        final OpenOption[] directOptions = new OpenOption[options.length+1];
+        System.arraycopy(options, 0, directOptions, 0, options.length);
+        directOptions[options.length] = DIRECT;
+        try {
+            return FileChannel.open(path, directOptions);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("O_DIRECT is not supported for " + path + ", falling back to buffered io", e);
+        }
+        return null;
+    }
+
+    private static void checkBlockSize(int blockSize) {
+        if (blockSize <= 0 || blockSize%MMapBuffer.PAGE_SIZE != 0) {
+            throw new IllegalArgumentException("blockSize must be a positive multiple of " + MMapBuffer.PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Opens path for a sequential scan that prefetches the next block on a background thread while the current one is
+     * being processed.
+     *
+     * @param blockSize size of each read, a multiple of {@link MMapBuffer#PAGE_SIZE}
+     */
+    public static Reader reader(Path path, int blockSize, ByteOrder order) throws IOException {
+        return new Reader(path, blockSize, order, true);
+    }
+
+    /**
+     * @param prefetch if false, blocks are read on the calling thread when {@link Reader#next()} is called
+     */
+    public static Reader reader(Path path, int blockSize, ByteOrder order, boolean prefetch) throws IOException {
+        return new Reader(path, blockSize, order, prefetch);
+    }
+
+    /**
+     * Creates or truncates path and opens it for sequential writes of blockSize blocks.
+     *
+     * @param blockSize size of each write, a multiple of {@link MMapBuffer#PAGE_SIZE}
+     */
+    public static Writer writer(Path path, int blockSize, ByteOrder order) throws IOException {
+        return new Writer(path, blockSize, order);
+    }
+
+    /**
+     * Reads length bytes at position into memory, reading straight into the native buffer when the channel is direct.
+     * Direct reads have to be a whole number of pages, so ioLength is length rounded up to a page for the last block
+     * of the file and the kernel stops at the end of the file.
+     */
+    private static void readFully(FileChannel channel, boolean direct, long position, DirectMemory memory, int ioLength, int length) throws IOException {
+        final ByteBuffer buffer = direct ? memory.asByteBuffer(0, ioLength) : ByteBuffer.allocate(length);
+        while (buffer.position() < length) {
+            if (channel.read(buffer, position+buffer.position()) < 0) {
+                throw new EOFException("file ended at " + (position+buffer.position()) + " while reading " + length + " bytes at " + position);
+            }
+        }
+        if (!direct) {
+            buffer.flip();
+            memory.putBytes(0, buffer);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, boolean direct, long position, DirectMemory memory, int length) throws IOException {
+        final ByteBuffer buffer;
+        if (direct) {
+            buffer = memory.asByteBuffer(0, length);
+        } else {
+            buffer = ByteBuffer.allocate(length);
+            memory.getBytes(0, buffer);
+            buffer.flip();
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position+buffer.position());
+        }
+    }
+
+    /**
+     * Reads a file a block at a time. Not thread safe.
+     */
+    public static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final boolean direct;
+        private final int blockSize;
+        private final long length;
+        private final NativeBuffer[] buffers;
+        private final ExecutorService prefetcher;
+
+        // position of the next block to read or prefetch, only updated by the thread doing the read
+        private long nextPosition = 0;
+        private long position = 0;
+        // buffer being prefetched into
+        private int pendingBuffer = 0;
+        private Future<Integer> pending = null;
+
+        private Reader(Path path, int blockSize, ByteOrder order, boolean prefetch) throws IOException {
+            checkBlockSize(blockSize);
+            this.blockSize = blockSize;
+            buffers = new NativeBuffer[prefetch ? 2 : 1];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = NativeBuffer.allocatePageAligned(blockSize, order);
+            }
+            FileChannel channel = null;
+            try {
+                channel = openDirect(path, buffers[0].memory(), StandardOpenOption.READ);
+                direct = channel != null;
+                if (!direct) channel = FileChannel.open(path, StandardOpenOption.READ);
+                length = channel.size();
+            } catch (IOException | RuntimeException e) {
+                if (channel != null) channel.close();
+                for (final NativeBuffer buffer : buffers) {
+                    buffer.close();
+                }
+                throw e;
+            }
+            this.channel = channel;
+            if (prefetch) {
+                prefetcher = Executors.newSingleThreadExecutor(
+                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("AlignedDirectFile-prefetch-%d").build()
+                );
+                prefetch();
+            } else {
+                prefetcher = null;
+            }
+        }
+
+        private int read(int buffer) throws IOException {
+            final int readLength = (int)Math.min(blockSize, length-nextPosition);
+            readFully(channel, direct, nextPosition, buffers[buffer].memory(), direct ? (int)roundToPage(readLength) : readLength, readLength);
+            nextPosition += readLength;
+            return readLength;
+        }
+
+        private void prefetch() {
+            if (nextPosition >= length) {
+                pending = null;
+                return;
+            }
+            final int buffer = pendingBuffer;
+            pending = prefetcher.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    return read(buffer);
+                }
+            });
+        }
+
+        /**
+         * @return the next block of the file, or null at the end of the file. The memory is only valid until the next
+         *         call to next() or close(). Every block but the last is blockSize bytes long.
+         */
+        public DirectMemory next() throws IOException {
+            if (prefetcher == null) {
+                if (nextPosition >= length) return null;
+                position = nextPosition;
+                return buffers[0].memory().slice(0, read(0));
+            }
+            if (pending == null) return null;
+            final int readLength;
+            try {
+                readLength = pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for prefetch", e);
+            } catch (ExecutionException e) {
+                pending = null;
+                if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+                throw new IOException(e.getCause());
+            }
+            position = nextPosition-readLength;
+            final int ready = pendingBuffer;
+            pendingBuffer = 1-ready;
+            prefetch();
+            return buffers[ready].memory().slice(0, readLength);
+        }
+
+        /**
+         * @return offset in the file of the block last returned by {@link #next()}
+         */
+        public long position() {
+            return position;
+        }
+
+        public long length() {
+            return length;
+        }
+
+        public boolean isDirectIO() {
+            return direct;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (prefetcher != null) {
+                    // the prefetch has to finish before its buffer is freed
+                    if (pending != null) {
+                        try {
+                            pending.get();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } catch (ExecutionException e) {
+                            log.warn("prefetch failed", e.getCause());
+                        }
+                    }
+                    prefetcher.shutdown();
+                }
+                channel.close();
+            } finally {
+                for (final NativeBuffer buffer : buffers) {
+                    buffer.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a file a block at a time. Not thread safe.
+     */
+    public static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final boolean direct;
+        private final int blockSize;
+        private final NativeBuffer buffer;
+        private final DirectMemory memory;
+
+        // bytes written to the file, always a multiple of blockSize until close
+        private long written = 0;
+        private int buffered = 0;
+
+        private Writer(Path path, int blockSize, ByteOrder order) throws IOException {
+            checkBlockSize(blockSize);
+            this.blockSize = blockSize;
+            buffer = NativeBuffer.allocatePageAligned(blockSize, order);
+            memory = buffer.memory();
+            try {
+                final FileChannel directChannel = openDirect(path, memory, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                direct = directChannel != null;
+                channel = direct ? directChannel : FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                buffer.close();
+                throw e;
+            }
+        }
+
+        public void write(byte[] bytes) throws IOException {
+            write(bytes, 0, bytes.length);
+        }
+
+        public void write(byte[] bytes, int start, int length) throws IOException {
+            if (start < 0 || length < 0 || start+length > bytes.length) throw new IndexOutOfBoundsException();
+            while (length > 0) {
+                final int copy = Math.min(length, blockSize-buffered);
+                memory.putBytes(buffered, bytes, start, copy);
+                advance(copy);
+                start += copy;
+                length -= copy;
+            }
+        }
+
+        public void write(Memory source) throws IOException {
+            write(source, 0, source.length());
+        }
+
+        public void write(Memory source, long start, long length) throws IOException {
+            if (start < 0 || length < 0 || start+length > source.length()) throw new IndexOutOfBoundsException();
+            while (length > 0) {
+                final int copy = (int)Math.min(length, blockSize-buffered);
+                source.getBytes(start, memory, buffered, copy);
+                advance(copy);
+                start += copy;
+                length -= copy;
+            }
+        }
+
+        private void advance(int length) throws IOException {
+            buffered += length;
+            if (buffered == blockSize) {
+                writeFully(channel, direct, written, memory, blockSize);
+                written += blockSize;
+                buffered = 0;
+            }
+        }
+
+        /**
+         * @return number of bytes written, including ones still buffered
+         */
+        public long position() {
+            return written+buffered;
+        }
+
+        public boolean isDirectIO() {
+            return direct;
+        }
+
+        /**
+         * Writes the last partial block and closes the file. Direct writes have to be whole pages, so the last block
+         * is padded and the file truncated back to the bytes that were written.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (buffered > 0) {
+                    final int padded = direct ? (int)roundToPage(buffered) : buffered;
+                    for (int i = buffered; i < padded; i++) {
+                        memory.putByte(i, (byte)0);
+                    }
+                    writeFully(channel, direct, written, memory, padded);
+                    written += buffered;
+                    buffered = 0;
+                    channel.truncate(written);
+                }
+                channel.close();
+            } finally {
+                buffer.close();
+            }
+        }
+    }
+
+    private static long roundToPage(long length) {
+        return (length+MMapBuffer.PAGE_SIZE-1)/MMapBuffer.PAGE_SIZE*MMapBuffer.PAGE_SIZE;
+    }
+}
@@ -0,0 +1,301 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.core.hash.MurmurHash;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bloom filter whose bits live in a {@link Memory}, so a filter built into a file can be mapped and queried without
+ * loading it. Keys are hashed once with {@link MurmurHash#hash64(byte[])} and the probe positions are derived from the
+ * two halves of the hash by double hashing.
+ * <p>
+ * The {@link Layout#BLOCKED} layout puts all the probes for a key into one 64 byte block, so a lookup touches a single
+ * cache line (and a single page of a mapped file) instead of one per probe. It has a slightly higher false positive
+ * rate than the standard layout for the same number of bits.
+ * <p>
+ * Bits are addressed a byte at a time so the bit array doesn't depend on the byte order of the memory, the header is
+ * written in the memory's byte order. Concurrent reads are safe, adds must be externally synchronized.
+ */
+public final class BloomFilter {
+    private static final long MAGIC = 0x314d4f4f4c42L; // "BLOOM1"
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int LAYOUT_OFFSET = 8;
+    private static final int NUM_HASHES_OFFSET = 12;
+    private static final int NUM_BITS_OFFSET = 16;
+
+    static final int HEADER_LENGTH = 64;
+
+    static final int BLOCK_BITS = 512;
+    private static final int BLOCK_BYTES = BLOCK_BITS/8;
+
+    public enum Layout {
+        STANDARD,
+        BLOCKED
+    }
+
+    private final Memory memory;
+    private final Memory bits;
+    private final Layout layout;
+    private final int numHashes;
+    private final long numBits;
+    private final long numBlocks;
+
+    private BloomFilter(Memory memory, Layout layout, int numHashes, long numBits) {
+        this.memory = memory;
+        this.layout = layout;
+        this.numHashes = numHashes;
+        this.numBits = numBits;
+        numBlocks = numBits/BLOCK_BITS;
+        bits = memory.slice(HEADER_LENGTH, numBits/8);
+    }
+
+    /**
+     * @return number of bits a filter for expectedInsertions keys needs to have a false positive rate of fpp
+     */
+    public static long optimalNumBits(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0) throw new IllegalArgumentException("expectedInsertions must be > 0");
+        if (fpp <= 0 || fpp >= 1) throw new IllegalArgumentException("fpp must be > 0 and < 1");
+        return Math.max(64, (long)Math.ceil(-expectedInsertions*Math.log(fpp)/(Math.log(2)*Math.log(2))));
+    }
+
+    /**
+     * @return number of hashes that minimizes the false positive rate of a filter with numBits bits holding
+     *         expectedInsertions keys
+     */
+    public static int optimalNumHashes(long expectedInsertions, long numBits) {
+        return Math.max(1, (int)Math.round((double)numBits/expectedInsertions*Math.log(2)));
+    }
+
+    // rounds to a whole number of longs, or of blocks for the blocked layout
+    private static long roundNumBits(long numBits, Layout layout) {
+        final long unit = layout == Layout.BLOCKED ? BLOCK_BITS : 64;
+        return (numBits+unit-1)/unit*unit;
+    }
+
+    /**
+     * @return bytes of memory needed by {@link #create(Memory, long, double, Layout)}
+     */
+    public static long bytesRequired(long expectedInsertions, double fpp, Layout layout) {
+        return bytesRequired(optimalNumBits(expectedInsertions, fpp), layout);
+    }
+
+    /**
+     * @return bytes of memory needed by {@link #create(Memory, long, int, Layout)}
+     */
+    public static long bytesRequired(long numBits, Layout layout) {
+        return HEADER_LENGTH+roundNumBits(numBits, layout)/8;
+    }
+
+    /**
+     * Creates an empty filter sized for expectedInsertions keys at a false positive rate of fpp.
+     */
+    public static BloomFilter create(Memory memory, long expectedInsertions, double fpp, Layout layout) {
+        final long numBits = optimalNumBits(expectedInsertions, fpp);
+        return create(memory, numBits, optimalNumHashes(expectedInsertions, numBits), layout);
+    }
+
+    /**
+     * Creates an empty filter in memory, overwriting the first {@link #bytesRequired(long, Layout)} bytes.
+     *
+     * @param numBits rounded up to a multiple of 64, or of 512 for the blocked layout
+     */
+    public static BloomFilter create(Memory memory, long numBits, int numHashes, Layout layout) {
+        if (numBits <= 0) throw new IllegalArgumentException("numBits must be > 0");
+        if (numHashes <= 0 || numHashes > 255) throw new IllegalArgumentException("numHashes must be between 1 and 255");
+        final long rounded = roundNumBits(numBits, layout);
+        if (HEADER_LENGTH+rounded/8 > memory.length()) {
+            throw new IllegalArgumentException("memory is too small, " + (HEADER_LENGTH+rounded/8) + " bytes are required");
+        }
+        for (long i = 0; i < HEADER_LENGTH+rounded/8; i += 8) {
+            memory.putLong(i, 0);
+        }
+        memory.putInt(LAYOUT_OFFSET, layout.ordinal());
+        memory.putInt(NUM_HASHES_OFFSET, numHashes);
+        memory.putLong(NUM_BITS_OFFSET, rounded);
+        memory.putLong(MAGIC_OFFSET, MAGIC);
+        return new BloomFilter(memory, layout, numHashes, rounded);
+    }
+
+    /**
+     * Opens a filter previously created in memory, for example one in a mapped file.
+     */
+    public static BloomFilter open(Memory memory) {
+        if (memory.length() < HEADER_LENGTH || memory.getLong(MAGIC_OFFSET) != MAGIC) {
+            throw new IllegalArgumentException("memory does not contain a bloom filter or has a different byte order");
+        }
+        final int layout = memory.getInt(LAYOUT_OFFSET);
+        if (layout < 0 || layout >= Layout.values().length) throw new IllegalArgumentException("unknown layout " + layout);
+        final long numBits = memory.getLong(NUM_BITS_OFFSET);
+        if (HEADER_LENGTH+numBits/8 > memory.length()) throw new IllegalArgumentException("bloom filter is truncated");
+        return new BloomFilter(memory, Layout.values()[layout], memory.getInt(NUM_HASHES_OFFSET), numBits);
+    }
+
+    public static long hash(byte[] key) {
+        return MurmurHash.hash64(key);
+    }
+
+    public static long hash(String key) {
+        return MurmurHash.hash64(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void add(byte[] key) {
+        addHash(hash(key));
+    }
+
+    public void add(String key) {
+        addHash(hash(key));
+    }
+
+    public boolean mightContain(byte[] key) {
+        return mightContainHash(hash(key));
+    }
+
+    public boolean mightContain(String key) {
+        return mightContainHash(hash(key));
+    }
+
+    /**
+     * Adds a key given its {@link #hash(byte[])}, for callers that probe several filters with the same key.
+     */
+    public void addHash(long hash) {
+        final int h1 = (int)hash;
+        final int h2 = (int)(hash >>> 32);
+        if (layout == Layout.BLOCKED) {
+            final long blockStart = block(hash)*BLOCK_BYTES;
+            final int step = h2|1;
+            for (int i = 0; i < numHashes; i++) {
+                setBit(blockStart, (h1+i*step)&(BLOCK_BITS-1));
+            }
+        } else {
+            for (int i = 0; i < numHashes; i++) {
+                setBit(0, index(h1, h2, i));
+            }
+        }
+    }
+
+    public boolean mightContainHash(long hash) {
+        final int h1 = (int)hash;
+        final int h2 = (int)(hash >>> 32);
+        if (layout == Layout.BLOCKED) {
+            final long blockStart = block(hash)*BLOCK_BYTES;
+            final int step = h2|1;
+            for (int i = 0; i < numHashes; i++) {
+                if (!getBit(blockStart, (h1+i*step)&(BLOCK_BITS-1))) return false;
+            }
+        } else {
+            for (int i = 0; i < numHashes; i++) {
+                if (!getBit(0, index(h1, h2, i))) return false;
+            }
+        }
+        return true;
+    }
+
+    private long block(long hash) {
+        return block(hash, numBlocks);
+    }
+
+    // the probes within a block only use bits 0-8 and 32-40 of the hash, which the high bits alone would overlap
+    // past 2^23 blocks, so the block comes from a remix of the whole hash (murmur3's fmix64) instead
+    static long block(long hash, long numBlocks) {
+        long mixed = hash;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xff51afd7ed558ccdL;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xc4ceb9fe1a85ec53L;
+        mixed ^= mixed >>> 33;
+        if (numBlocks <= 1L << 32) {
+            return ((mixed >>> 32)*numBlocks) >>> 32;
+        }
+        return (mixed >>> 1) % numBlocks;
+    }
+
+    private long index(int h1, int h2, int i) {
+        long combined = (long)h1+(long)i*h2;
+        if (combined < 0) combined = ~combined;
+        return combined % numBits;
+    }
+
+    private void setBit(long base, long bit) {
+        final long address = base+(bit >>> 3);
+        bits.putByte(address, (byte)(bits.getByte(address)|(1 << (bit&7))));
+    }
+
+    private boolean getBit(long base, long bit) {
+        return (bits.getByte(base+(bit >>> 3))&(1 << (bit&7))) != 0;
+    }
+
+    /**
+     * ORs the bits of other into this filter, so this filter then contains every key added to either. Both filters
+     * must have the same layout, number of bits and number of hashes.
+     */
+    public void merge(BloomFilter other) {
+        if (!isCompatible(other)) {
+            throw new IllegalArgumentException("filters must have the same layout, number of bits and number of hashes");
+        }
+        final boolean reverse = bits.getOrder() != other.bits.getOrder();
+        for (long i = 0; i < numBits/8; i += 8) {
+            final long otherBits = other.bits.getLong(i);
+            bits.putLong(i, bits.getLong(i)|(reverse ? Long.reverseBytes(otherBits) : otherBits));
+        }
+    }
+
+    public boolean isCompatible(BloomFilter other) {
+        return layout == other.layout && numBits == other.numBits && numHashes == other.numHashes;
+    }
+
+    /**
+     * @return number of bits that are set
+     */
+    public long bitCount() {
+        long count = 0;
+        for (long i = 0; i < numBits/8; i += 8) {
+            count += Long.bitCount(bits.getLong(i));
+        }
+        return count;
+    }
+
+    /**
+     * Estimates the false positive rate from the bits that are actually set, which accounts for duplicate and merged
+     * keys. For the blocked layout the rate is averaged over the blocks, since a key only probes its own block.
+     */
+    public double expectedFpp() {
+        if (layout == Layout.BLOCKED) {
+            double sum = 0;
+            for (long block = 0; block < numBlocks; block++) {
+                int set = 0;
+                for (int i = 0; i < BLOCK_BYTES; i += 8) {
+                    set += Long.bitCount(bits.getLong(block*BLOCK_BYTES+i));
+                }
+                sum += Math.pow((double)set/BLOCK_BITS, numHashes);
+            }
+            return sum/numBlocks;
+        }
+        return Math.pow((double)bitCount()/numBits, numHashes);
+    }
+
+    /**
+     * @return estimate of the number of distinct keys added, from the number of bits that are set
+     */
+    public long approximateElementCount() {
+        final long set = bitCount();
+        if (set == numBits) return Long.MAX_VALUE;
+        return Math.round(-Math.log1p(-(double)set/numBits)*numBits/numHashes);
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public Memory memory() {
+        return memory;
+    }
+}
@@ -15,6 +15,8 @@ public final class DirectMemory extends AbstractMemory {
     private final ByteOrder order;
     private final DirectDataAccess directDataAccess;
 
+    private final boolean nativeOrder;
+
     private final long address;
     private final long length;
 
@@ -22,7 +24,8 @@ public final class DirectMemory extends AbstractMemory {
         this.address = address;
         this.length = length;
         this.order = order;
-        directDataAccess = order.equals(ByteOrder.nativeOrder()) ? NativeEndianDirectDataAccess.getInstance() : ReverseEndianDirectDataAccess.getInstance();
+        nativeOrder = order.equals(ByteOrder.nativeOrder());
+        directDataAccess = nativeOrder ? NativeEndianDirectDataAccess.getInstance() : ReverseEndianDirectDataAccess.getInstance();
     }
 
     private void checkBounds(long l, long length) {
@@ -41,6 +44,14 @@ public final class DirectMemory extends AbstractMemory {
         }
     }
 
+    private static void checkArrayBounds(final int arrayLength, final int start, final int length) {
+        if (debug) {
+            if (start < 0) throw new IndexOutOfBoundsException("start cannot be less than zero");
+            if (length < 0) throw new IllegalArgumentException("length cannot be less than zero");
+            if (start > arrayLength-length) throw new IndexOutOfBoundsException("start plus length cannot be greater than length of array");
+        }
+    }
+
     @Override
     public byte getByte(final long l) {
         checkBounds(l, 1);
@@ -155,7 +166,7 @@ public final class DirectMemory extends AbstractMemory {
     @Override
     public void putBytes(long l, Memory source, long start, long length) {
         if (source.isDirect()) {
-            putBytes(l, (DirectMemory) source, start, length);
+            putBytes(l, asDirectMemory(source), start, length);
         } else {
             source.getBytes(start, this, l, length);
         }
@@ -197,6 +208,122 @@ public final class DirectMemory extends AbstractMemory {
         NativeMemoryUtils.copyToArray(address + l, bytes, start, length);
     }
 
+    /**
+     * Copies length ints starting at l into ints. If the memory isn't in native byte order the bytes of each element are
+     * reversed as it is copied.
+     */
+    public void getInts(final long l, final int[] ints, final int start, final int length) {
+        checkBounds(l, length*4L);
+        checkArrayBounds(ints.length, start, length);
+        final long arrayOffset = NativeEndianDirectDataAccess.INT_ARRAY_OFFSET+start*4L;
+        if (nativeOrder) {
+            NativeEndianDirectDataAccess.getInstance().copyToArray(address+l, ints, arrayOffset, length*4L);
+        } else {
+            NativeEndianDirectDataAccess.getInstance().copyToArrayReversing4(address+l, ints, arrayOffset, length*4L);
+        }
+    }
+
+    /**
+     * Copies length ints from ints into memory starting at l.
+     */
+    public void putInts(final long l, final int[] ints, final int start, final int length) {
+        checkBounds(l, length*4L);
+        checkArrayBounds(ints.length, start, length);
+        final long arrayOffset = NativeEndianDirectDataAccess.INT_ARRAY_OFFSET+start*4L;
+        if (nativeOrder) {
+            NativeEndianDirectDataAccess.getInstance().copyFromArray(ints, arrayOffset, address+l, length*4L);
+        } else {
+            NativeEndianDirectDataAccess.getInstance().copyFromArrayReversing4(ints, arrayOffset, address+l, length*4L);
+        }
+    }
+
+    /**
+     * Copies length longs starting at l into longs. If the memory isn't in native byte order the bytes of each element are
+     * reversed as it is copied.
+     */
+    public void getLongs(final long l, final long[] longs, final int start, final int length) {
+        checkBounds(l, length*8L);
+        checkArrayBounds(longs.length, start, length);
+        final long arrayOffset = NativeEndianDirectDataAccess.LONG_ARRAY_OFFSET+start*8L;
+        if (nativeOrder) {
+            NativeEndianDirectDataAccess.getInstance().copyToArray(address+l, longs, arrayOffset, length*8L);
+        } else {
+            NativeEndianDirectDataAccess.getInstance().copyToArrayReversing8(address+l, longs, arrayOffset, length*8L);
+        }
+    }
+
+    /**
+     * Copies length longs from longs into memory starting at l.
+     */
+    public void putLongs(final long l, final long[] longs, final int start, final int length) {
+        checkBounds(l, length*8L);
+        checkArrayBounds(longs.length, start, length);
+        final long arrayOffset = NativeEndianDirectDataAccess.LONG_ARRAY_OFFSET+start*8L;
+        if (nativeOrder) {
+            NativeEndianDirectDataAccess.getInstance().copyFromArray(longs, arrayOffset, address+l, length*8L);
+        } else {
+            NativeEndianDirectDataAccess.getInstance().copyFromArrayReversing8(longs, arrayOffset, address+l, length*8L);
+        }
+    }
+
+    /**
+     * Copies length floats starting at l into floats. If the memory isn't in native byte order the bytes of each element are
+     * reversed as it is copied.
+     */
+    public void getFloats(final long l, final float[] floats, final int start, final int length) {
+        checkBounds(l, length*4L);
+        checkArrayBounds(floats.length, start, length);
+        final long arrayOffset = NativeEndianDirectDataAccess.FLOAT_ARRAY_OFFSET+start*4L;
+        if (nativeOrder) {
+            NativeEndianDirectDataAccess.getInstance().copyToArray(address+l, floats, arrayOffset, length*4L);
+        } else {
+            NativeEndianDirectDataAccess.getInstance().copyToArrayReversing4(address+l, floats, arrayOffset, length*4L);
+        }
+    }
+
+    /**
+     * Copies length floats from floats into memory starting at l.
+     */
+    public void putFloats(final long l, final float[] floats, final int start, final int length) {
+        checkBounds(l, length*4L);
+        checkArrayBounds(floats.length, start, length);
+        final long arrayOffset = NativeEndianDirectDataAccess.FLOAT_ARRAY_OFFSET+start*4L;
+        if (nativeOrder) {
+            NativeEndianDirectDataAccess.getInstance().copyFromArray(floats, arrayOffset, address+l, length*4L);
+        } else {
+            NativeEndianDirectDataAccess.getInstance().copyFromArrayReversing4(floats, arrayOffset, address+l, length*4L);
+        }
+    }
+
+    /**
+     * Copies length doubles starting at l into doubles. If the memory isn't in native byte order the bytes of each element are
+     * reversed as it is copied.
+     */
+    public void getDoubles(final long l, final double[] doubles, final int start, final int length) {
+        checkBounds(l, length*8L);
+        checkArrayBounds(doubles.length, start, length);
+        final long arrayOffset = NativeEndianDirectDataAccess.DOUBLE_ARRAY_OFFSET+start*8L;
+        if (nativeOrder) {
+            NativeEndianDirectDataAccess.getInstance().copyToArray(address+l, doubles, arrayOffset, length*8L);
+        } else {
+            NativeEndianDirectDataAccess.getInstance().copyToArrayReversing8(address+l, doubles, arrayOffset, length*8L);
+        }
+    }
+
+    /**
+     * Copies length doubles from doubles into memory starting at l.
+     */
+    public void putDoubles(final long l, final double[] doubles, final int start, final int length) {
+        checkBounds(l, length*8L);
+        checkArrayBounds(doubles.length, start, length);
+        final long arrayOffset = NativeEndianDirectDataAccess.DOUBLE_ARRAY_OFFSET+start*8L;
+        if (nativeOrder) {
+            NativeEndianDirectDataAccess.getInstance().copyFromArray(doubles, arrayOffset, address+l, length*8L);
+        } else {
+            NativeEndianDirectDataAccess.getInstance().copyFromArrayReversing8(doubles, arrayOffset, address+l, length*8L);
+        }
+    }
+
     public void getBytes(long l, DirectMemory dest) {
         getBytes(l, dest, 0, dest.length());
     }
@@ -215,7 +342,7 @@ public final class DirectMemory extends AbstractMemory {
     @Override
     public void getBytes(long l, Memory dest, long start, long length) {
         if (dest.isDirect()) {
-            getBytes(l, (DirectMemory) dest, start, length);
+            getBytes(l, asDirectMemory(dest), start, length);
         } else {
             dest.putBytes(start, this, l, length);
         }
@@ -253,6 +380,86 @@ public final class DirectMemory extends AbstractMemory {
         return new DirectMemory(address+startAddress, sliceLength, order);
     }
 
+    /**
+     * Wraps a range of this memory as a direct ByteBuffer without copying it, in the byte order of this memory. The
+     * ByteBuffer does not keep the memory alive and must not be used after the memory is closed.
+     *
+     * @throws UnsupportedOperationException if the native library is too old and the jdk does not allow creating
+     * direct ByteBuffers by reflection
+     */
+    public ByteBuffer asByteBuffer(long l, int length) {
+        checkBounds(l, length);
+        return NativeMemoryUtils.wrapDirect(address+l, length).order(getOrder());
+    }
+
+    /**
+     * @see #asByteBuffer(long, int)
+     */
+    public ByteBuffer asByteBuffer() {
+        if (length > Integer.MAX_VALUE) throw new IllegalArgumentException("memory of length " + length + " does not fit in a ByteBuffer");
+        return asByteBuffer(0, (int)length);
+    }
+
+    /**
+     * Returns a view of this memory that does no bounds checking on element access. The range of the view is validated
+     * once here and again whenever it is sliced (including by the typed array views), but an out of range get or put
+     * on the returned memory reads or writes arbitrary memory and can crash the JVM. Only use it in hot loops whose
+     * indexes are already known to be in range.
+     *
+     * @return unchecked view of this memory
+     */
+    public UncheckedDirectMemory unchecked() {
+        return new UncheckedDirectMemory(this);
+    }
+
+    private long checkAligned(final long l) {
+        checkBounds(l, 8);
+        final long a = address+l;
+        if ((a&7) != 0) throw new IllegalArgumentException("address of " + l + " is not 8 byte aligned");
+        return a;
+    }
+
+    private long toNativeOrder(final long l) {
+        return directDataAccess == NativeEndianDirectDataAccess.getInstance() ? l : Long.reverseBytes(l);
+    }
+
+    /**
+     * Reads a long with acquire semantics, everything written before the matching {@link #putLongOrdered(long, long)}
+     * or {@link #putLongVolatile(long, long)} is visible after it. l must be 8 byte aligned.
+     */
+    public long getLongVolatile(final long l) {
+        return toNativeOrder(NativeEndianDirectDataAccess.getInstance().getLongVolatile(checkAligned(l)));
+    }
+
+    public void putLongVolatile(final long l, final long value) {
+        NativeEndianDirectDataAccess.getInstance().putLongVolatile(checkAligned(l), toNativeOrder(value));
+    }
+
+    /**
+     * Writes a long with release semantics, cheaper than {@link #putLongVolatile(long, long)} since it doesn't wait for
+     * the write to become visible. Used to publish data written before it. l must be 8 byte aligned.
+     */
+    public void putLongOrdered(final long l, final long value) {
+        NativeEndianDirectDataAccess.getInstance().putLongOrdered(checkAligned(l), toNativeOrder(value));
+    }
+
+    /**
+     * Atomically sets the long at l to value if it is currently expected, with the memory effects of a volatile read
+     * and write. l must be 8 byte aligned.
+     *
+     * @return true if the long was set
+     */
+    public boolean compareAndSwapLong(final long l, final long expected, final long value) {
+        return NativeEndianDirectDataAccess.getInstance().compareAndSwapLong(checkAligned(l), toNativeOrder(expected), toNativeOrder(value));
+    }
+
+    static DirectMemory asDirectMemory(Memory memory) {
+        if (memory instanceof UncheckedDirectMemory) {
+            return ((UncheckedDirectMemory) memory).checked();
+        }
+        return (DirectMemory) memory;
+    }
+
     @Override
     public long length() {
         return length;
@@ -0,0 +1,41 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.compress.DirectCompressor;
+import com.indeed.util.compress.DirectDecompressor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses and decompresses {@link DirectMemory} such as a block of a mapped file in place, by handing the native
+ * codecs direct ByteBuffers over the memory instead of copying it into heap arrays. Requires util-compress on the
+ * classpath.
+ */
+public final class DirectMemoryCompression {
+    private DirectMemoryCompression() {}
+
+    /**
+     * Compresses all of src into the start of dst.
+     *
+     * @return number of compressed bytes written to dst
+     * @throws IOException if dst is too small
+     */
+    public static int compress(DirectCompressor compressor, DirectMemory src, DirectMemory dst) throws IOException {
+        return compressor.compress(src.asByteBuffer(), asByteBuffer(dst));
+    }
+
+    /**
+     * Decompresses the compressed block at the start of src into the start of dst.
+     *
+     * @return number of decompressed bytes written to dst
+     * @throws IOException if the compressed data is invalid or dst is too small
+     */
+    public static int decompress(DirectDecompressor decompressor, DirectMemory src, DirectMemory dst) throws IOException {
+        return decompressor.decompress(src.asByteBuffer(), asByteBuffer(dst));
+    }
+
+    // output only needs to be as large as the result, so a memory too long for a ByteBuffer is truncated
+    private static ByteBuffer asByteBuffer(DirectMemory memory) {
+        return memory.asByteBuffer(0, (int)Math.min(memory.length(), Integer.MAX_VALUE));
+    }
+}
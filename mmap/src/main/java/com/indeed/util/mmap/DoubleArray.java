@@ -26,6 +26,10 @@ public final class DoubleArray {
     }
 
     public void get(final long index, final double[] doubles, final int start, final int length) {
+        if (buffer instanceof DirectMemory) {
+            ((DirectMemory)buffer).getDoubles(index*TYPE_SIZE, doubles, start, length);
+            return;
+        }
         for (int i = 0; i < length; i++) {
             doubles[start+i] = buffer.getDouble((index+i)*TYPE_SIZE);
         }
@@ -48,6 +52,10 @@ public final class DoubleArray {
     }
 
     public void set(final long index, final double[] doubles, final int start, final int length) {
+        if (buffer instanceof DirectMemory) {
+            ((DirectMemory)buffer).putDoubles(index*TYPE_SIZE, doubles, start, length);
+            return;
+        }
         for (int i = 0; i < length; i++) {
             buffer.putDouble((index+i)*TYPE_SIZE, doubles[start+i]);
         }
@@ -0,0 +1,173 @@
+package com.indeed.util.mmap;
+
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Epoch based reclamation for resources that readers use without holding a reference count, such as the memory of an
+ * {@link MMapBuffer}. Readers bracket their accesses with {@link #enter()} and {@link Reader#close()}, which only
+ * write a per thread epoch. {@link #retire(Closeable)} defers closing a resource until every reader that entered
+ * before it was retired has exited.
+ * <pre>
+ *   try (EpochReclaimer.Reader reader = reclaimer.enter()) {
+ *       final MMapBuffer buffer = current.get();
+ *       ...read buffer.memory()...
+ *   }
+ * </pre>
+ * A reader must not get hold of a resource before entering or use it after exiting. A resource should be unpublished
+ * (so that new readers can't find it) before it is retired.
+ */
+public final class EpochReclaimer {
+    private static final Logger log = Logger.getLogger(EpochReclaimer.class);
+
+    private static final long INACTIVE = Long.MAX_VALUE;
+
+    private final AtomicLong epoch = new AtomicLong();
+
+    private final CopyOnWriteArrayList<Reader> readers = new CopyOnWriteArrayList<>();
+
+    private final ThreadLocal<Reader> threadReader = new ThreadLocal<Reader>() {
+        @Override
+        protected Reader initialValue() {
+            final Reader reader = new Reader(Thread.currentThread());
+            readers.add(reader);
+            return reader;
+        }
+    };
+
+    private final ConcurrentLinkedQueue<Retired> retired = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final ReentrantLock reclaimLock = new ReentrantLock();
+
+    /**
+     * Enters a read side critical section for the calling thread. Critical sections can be nested, the thread exits
+     * when the returned reader is closed as many times as it was entered.
+     *
+     * @return the reader for the calling thread, close it on the same thread to exit
+     */
+    public Reader enter() {
+        final Reader reader = threadReader.get();
+        if (reader.depth++ == 0) {
+            reader.epoch = epoch.get();
+        }
+        return reader;
+    }
+
+    /**
+     * Closes resource once every reader that is currently in a critical section has exited. Closes it before
+     * returning if there are no such readers.
+     */
+    public void retire(Closeable resource) {
+        // readers that enter from now on see a later epoch than the resource, so they can't hold it up
+        retired.add(new Retired(epoch.getAndIncrement(), resource));
+        pendingCount.incrementAndGet();
+        reclaim();
+    }
+
+    /**
+     * Closes every retired resource that no reader can still be using. Called by {@link #retire(Closeable)} and when
+     * the last reader exits, so it only needs to be called directly to retry after another thread held the reclaim
+     * lock.
+     *
+     * @return number of resources closed
+     */
+    public int reclaim() {
+        if (!reclaimLock.tryLock()) return 0;
+        try {
+            // the iterator also sees resources retired after the readers were scanned, which readers that entered
+            // since then may be using, so only resources retired before the scan can be closed
+            final long limit = epoch.get();
+            final long safeBefore = Math.min(limit, oldestActiveEpoch());
+            int closed = 0;
+            for (final Iterator<Retired> iterator = retired.iterator(); iterator.hasNext(); ) {
+                final Retired next = iterator.next();
+                if (next.epoch >= safeBefore) continue;
+                iterator.remove();
+                pendingCount.decrementAndGet();
+                closed++;
+                try {
+                    next.resource.close();
+                } catch (IOException | RuntimeException e) {
+                    log.error("error closing retired resource " + next.resource, e);
+                }
+            }
+            return closed;
+        } finally {
+            reclaimLock.unlock();
+        }
+    }
+
+    private long oldestActiveEpoch() {
+        long oldest = INACTIVE;
+        for (final Reader reader : readers) {
+            final long readerEpoch = reader.epoch;
+            if (readerEpoch == INACTIVE) {
+                if (!reader.owner.isAlive()) readers.remove(reader);
+            } else {
+                oldest = Math.min(oldest, readerEpoch);
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * @return number of retired resources that haven't been closed yet
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * @return number of threads that have entered and are still alive or haven't been cleaned up yet
+     */
+    public int getReaderCount() {
+        return readers.size();
+    }
+
+    /**
+     * Per thread read side state, returned by {@link #enter()}.
+     */
+    public final class Reader implements Closeable {
+        private final Thread owner;
+        // INACTIVE when outside of a critical section, otherwise the epoch at entry
+        private volatile long epoch = INACTIVE;
+        // only touched by the owner
+        private int depth = 0;
+
+        private Reader(Thread owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Exits the critical section entered by the matching {@link #enter()}.
+         */
+        @Override
+        public void close() {
+            if (Thread.currentThread() != owner) throw new IllegalStateException("readers must exit on the thread that entered");
+            if (depth <= 0) throw new IllegalStateException("reader is not in a critical section");
+            if (--depth == 0) {
+                epoch = INACTIVE;
+                if (pendingCount.get() > 0) reclaim();
+            }
+        }
+    }
+
+    private static final class Retired {
+        final long epoch;
+        final Closeable resource;
+
+        Retired(long epoch, Closeable resource) {
+            this.epoch = epoch;
+            this.resource = resource;
+        }
+    }
+}
@@ -26,6 +26,10 @@ public final class FloatArray {
     }
 
     public void get(final long index, final float[] floats, final int start, final int length) {
+        if (buffer instanceof DirectMemory) {
+            ((DirectMemory)buffer).getFloats(index*TYPE_SIZE, floats, start, length);
+            return;
+        }
         for (int i = 0; i < length; i++) {
             floats[start+i] = buffer.getFloat((index+i)*TYPE_SIZE);
         }
@@ -48,6 +52,10 @@ public final class FloatArray {
     }
 
     public void set(final long index, final float[] floats, final int start, final int length) {
+        if (buffer instanceof DirectMemory) {
+            ((DirectMemory)buffer).putFloats(index*TYPE_SIZE, floats, start, length);
+            return;
+        }
         for (int i = 0; i < length; i++) {
             buffer.putFloat((index+i)*TYPE_SIZE, floats[start+i]);
         }
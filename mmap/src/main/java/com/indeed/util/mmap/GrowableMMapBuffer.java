@@ -0,0 +1,189 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.core.reference.AtomicSharedReference;
+import com.indeed.util.core.reference.SharedReference;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+
+/**
+ * Read write mapping of a whole file that can grow while other threads are reading it.
+ *
+ * Growing extends the file and first tries to mremap the mapping in place, which keeps every address that has been
+ * handed out valid. If the address space after the mapping is taken, or mremap isn't available (OS X or an old native
+ * library), the file is mapped again at a new address. Either way no data is copied.
+ *
+ * Readers don't use {@link #memory()}, they {@link #acquire()} a reference to the memory of the current epoch and close
+ * it when they are done. Each growth starts a new epoch. A mapping that has been replaced is only unmapped once every
+ * reference to it has been closed, so readers never see their memory unmapped underneath them. Readers that want to
+ * see appended data compare the epoch they acquired with {@link #getEpoch()} and re-acquire when it has changed.
+ *
+ * Growing and closing must be done by a single writer thread.
+ */
+public final class GrowableMMapBuffer implements BufferResource {
+    private static final Logger log = Logger.getLogger(GrowableMMapBuffer.class);
+
+    private static volatile boolean remapInPlaceSupported = true;
+
+    private final Path path;
+    private final ByteOrder order;
+    private final RandomAccessFile raf;
+    private final int fd;
+
+    private final AtomicSharedReference<DirectMemory> current = AtomicSharedReference.create();
+
+    private SharedReference<Mapping> mapping;
+    private DirectMemory memory;
+    private volatile long epoch = 0;
+    private boolean closed = false;
+
+    /**
+     * @param path          file to map, created if it doesn't exist
+     * @param initialLength the file is extended to at least this many bytes, must be > 0
+     */
+    public GrowableMMapBuffer(Path path, long initialLength, ByteOrder order) throws IOException {
+        if (initialLength <= 0) throw new IllegalArgumentException("error mapping [" + path + "]: initialLength must be > 0");
+        this.path = path;
+        this.order = order;
+        raf = new RandomAccessFile(path.toFile(), "rw");
+        boolean success = false;
+        try {
+            fd = MMapBuffer.getFd(raf);
+            final long length = Math.max(raf.length(), initialLength);
+            if (raf.length() < length) {
+                raf.setLength(length);
+            }
+            mapping = SharedReference.create(map(length));
+            publish(mapping, length);
+            success = true;
+        } finally {
+            if (!success) raf.close();
+        }
+    }
+
+    /**
+     * Grows the file and the mapping to at least minLength bytes, at least doubling the length when it grows.
+     */
+    public void ensureCapacity(long minLength) throws IOException {
+        if (closed) throw new IllegalStateException("GrowableMMapBuffer for [" + path + "] is closed");
+        final long length = memory.length();
+        if (minLength <= length) return;
+        final long newLength = Math.max(minLength, length*2);
+        raf.setLength(newLength);
+        final Mapping oldMapping = mapping.get();
+        if (remapInPlace(oldMapping.address, length, newLength)) {
+            oldMapping.length = newLength;
+            publish(mapping, newLength);
+        } else {
+            final SharedReference<Mapping> newMapping = SharedReference.create(map(newLength));
+            publish(newMapping, newLength);
+            final SharedReference<Mapping> oldRef = mapping;
+            mapping = newMapping;
+            // only unmaps if no readers are still using the old mapping
+            oldRef.close();
+        }
+    }
+
+    private Mapping map(long length) throws IOException {
+        final long address = MMapBuffer.mmap(length, MMapBuffer.READ_WRITE, MMapBuffer.MAP_SHARED, fd, 0);
+        if (address == MMapBuffer.MAP_FAILED) {
+            throw new IOException("mmap(" + path + ", 0, " + length + ", READ_WRITE) failed [Errno " + MMapBuffer.errno() + "]");
+        }
+        return new Mapping(address, length);
+    }
+
+    private static boolean remapInPlace(long address, long oldLength, long newLength) {
+        if (!remapInPlaceSupported) return false;
+        try {
+            return MMapBuffer.mremapInPlace(address, oldLength, newLength) == address;
+        } catch (UnsatisfiedLinkError e) {
+            log.info("loaded libindeedmmap predates mremapInPlace, growing mappings by remapping");
+            remapInPlaceSupported = false;
+            return false;
+        }
+    }
+
+    private void publish(SharedReference<Mapping> viewOf, long length) throws IOException {
+        memory = new DirectMemory(viewOf.get().address, length, order);
+        // every epoch holds its own reference to the mapping it is a view of
+        current.set(memory, viewOf.copy());
+        epoch++;
+    }
+
+    /**
+     * @return reference to the memory of the current epoch, which stays mapped until the reference is closed
+     */
+    public SharedReference<DirectMemory> acquire() {
+        final SharedReference<DirectMemory> ret = current.getCopy();
+        if (ret == null) throw new IllegalStateException("GrowableMMapBuffer for [" + path + "] is closed");
+        return ret;
+    }
+
+    /**
+     * @return number of times the memory has been replaced, starting at 1
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Memory for the writer. Only valid until the next call to {@link #ensureCapacity(long)} or {@link #close()}.
+     */
+    @Override
+    public DirectMemory memory() {
+        return memory;
+    }
+
+    public long length() {
+        return memory.length();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public void sync(long position, long length) throws IOException {
+        if (position < 0 || length < 0 || position+length > memory.length()) throw new IndexOutOfBoundsException();
+        final long address = mapping.get().address;
+        final long ap = address+position;
+        final long a = ap/MMapBuffer.PAGE_SIZE*MMapBuffer.PAGE_SIZE;
+        if (MMapBuffer.msync(a, length+(ap-a)) != 0) {
+            throw new IOException("msync failed [Errno " + MMapBuffer.errno() + "]");
+        }
+    }
+
+    /**
+     * Closes the file. The mapping is unmapped once all references returned by {@link #acquire()} are closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            current.unset();
+            mapping.close();
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static final class Mapping implements Closeable {
+        private final long address;
+        // only grows while the writer holds its reference, so it is final by the time the mapping is unmapped
+        private volatile long length;
+
+        private Mapping(long address, long length) {
+            this.address = address;
+            this.length = length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (MMapBuffer.munmap(address, length) != 0) throw new IOException("munmap failed [Errno " + MMapBuffer.errno() + "]");
+        }
+    }
+}
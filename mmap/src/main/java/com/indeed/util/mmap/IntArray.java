@@ -26,6 +26,10 @@ public final class IntArray {
     }
 
     public void get(final long index, final int[] ints, final int start, final int length) {
+        if (buffer instanceof DirectMemory) {
+            ((DirectMemory)buffer).getInts(index*TYPE_SIZE, ints, start, length);
+            return;
+        }
         for (int i = 0; i < length; i++) {
             ints[start+i] = buffer.getInt((index+i)*TYPE_SIZE);
         }
@@ -48,6 +52,10 @@ public final class IntArray {
     }
 
     public void set(final long index, final int[] ints, final int start, final int length) {
+        if (buffer instanceof DirectMemory) {
+            ((DirectMemory)buffer).putInts(index*TYPE_SIZE, ints, start, length);
+            return;
+        }
         for (int i = 0; i < length; i++) {
             buffer.putInt((index+i)*TYPE_SIZE, ints[start+i]);
         }
@@ -69,6 +77,149 @@ public final class IntArray {
         return length;
     }
 
+    private void checkRange(final long start, final long length) {
+        if (start < 0) throw new IndexOutOfBoundsException("start must be >= 0");
+        if (length < 0) throw new IllegalArgumentException("length must be >= 0");
+        if (start+length > this.length) throw new IndexOutOfBoundsException("start+length must be <= length()");
+    }
+
+    // bulk operations check the whole range once so the loops can skip the per element bounds checks
+    private Memory uncheckedBuffer() {
+        return buffer instanceof DirectMemory ? ((DirectMemory)buffer).unchecked() : buffer;
+    }
+
+    public void fill(final int value) {
+        fill(0, length, value);
+    }
+
+    public void fill(final long start, final long length, final int value) {
+        checkRange(start, length);
+        final Memory memory = uncheckedBuffer();
+        for (long i = start*TYPE_SIZE, end = (start+length)*TYPE_SIZE; i < end; i += TYPE_SIZE) {
+            memory.putInt(i, value);
+        }
+    }
+
+    /**
+     * Same contract as {@link java.util.Arrays#binarySearch(int[], int, int, int)}, the range must be sorted.
+     *
+     * @return index of key if it is in the range, otherwise -(insertion point)-1
+     */
+    public long binarySearch(final long start, final long length, final int key) {
+        checkRange(start, length);
+        final Memory memory = uncheckedBuffer();
+        long lo = start;
+        long hi = start+length-1;
+        while (lo <= hi) {
+            final long mid = (lo+hi) >>> 1;
+            final int value = memory.getInt(mid*TYPE_SIZE);
+            if (value < key) {
+                lo = mid+1;
+            } else if (value > key) {
+                hi = mid-1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo+1);
+    }
+
+    public long binarySearch(final int key) {
+        return binarySearch(0, length, key);
+    }
+
+    /**
+     * @return index of the first occurrence of value in the range, or -1
+     */
+    public long indexOf(final long start, final long length, final int value) {
+        checkRange(start, length);
+        final Memory memory = uncheckedBuffer();
+        for (long i = start*TYPE_SIZE, end = (start+length)*TYPE_SIZE; i < end; i += TYPE_SIZE) {
+            if (memory.getInt(i) == value) return i/TYPE_SIZE;
+        }
+        return -1;
+    }
+
+    public long indexOf(final int value) {
+        return indexOf(0, length, value);
+    }
+
+    public long count(final long start, final long length, final int value) {
+        checkRange(start, length);
+        final Memory memory = uncheckedBuffer();
+        long count = 0;
+        for (long i = start*TYPE_SIZE, end = (start+length)*TYPE_SIZE; i < end; i += TYPE_SIZE) {
+            if (memory.getInt(i) == value) count++;
+        }
+        return count;
+    }
+
+    public long count(final int value) {
+        return count(0, length, value);
+    }
+
+    /**
+     * @return sum of the range, wrapping on overflow
+     */
+    public long sum(final long start, final long length) {
+        checkRange(start, length);
+        final Memory memory = uncheckedBuffer();
+        // independent accumulators let the loads and adds of consecutive elements overlap
+        long sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        long i = start*TYPE_SIZE;
+        final long end = (start+length)*TYPE_SIZE;
+        for (; i+4*TYPE_SIZE <= end; i += 4*TYPE_SIZE) {
+            sum0 += memory.getInt(i);
+            sum1 += memory.getInt(i+TYPE_SIZE);
+            sum2 += memory.getInt(i+2*TYPE_SIZE);
+            sum3 += memory.getInt(i+3*TYPE_SIZE);
+        }
+        for (; i < end; i += TYPE_SIZE) {
+            sum0 += memory.getInt(i);
+        }
+        return sum0+sum1+sum2+sum3;
+    }
+
+    public long sum() {
+        return sum(0, length);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the range is empty
+     */
+    public int min(final long start, final long length) {
+        checkRange(start, length);
+        if (length == 0) throw new IllegalArgumentException("min of empty range");
+        final Memory memory = uncheckedBuffer();
+        int min = memory.getInt(start*TYPE_SIZE);
+        for (long i = (start+1)*TYPE_SIZE, end = (start+length)*TYPE_SIZE; i < end; i += TYPE_SIZE) {
+            min = Math.min(min, memory.getInt(i));
+        }
+        return min;
+    }
+
+    public int min() {
+        return min(0, length);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the range is empty
+     */
+    public int max(final long start, final long length) {
+        checkRange(start, length);
+        if (length == 0) throw new IllegalArgumentException("max of empty range");
+        final Memory memory = uncheckedBuffer();
+        int max = memory.getInt(start*TYPE_SIZE);
+        for (long i = (start+1)*TYPE_SIZE, end = (start+length)*TYPE_SIZE; i < end; i += TYPE_SIZE) {
+            max = Math.max(max, memory.getInt(i));
+        }
+        return max;
+    }
+
+    public int max() {
+        return max(0, length);
+    }
+
     public IntArray slice(final long start, final long length) {
         return new IntArray(buffer, start*TYPE_SIZE, length);
     }
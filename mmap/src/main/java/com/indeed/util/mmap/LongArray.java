@@ -26,6 +26,10 @@ public final class LongArray {
     }
 
     public void get(final long index, final long[] longs, final int start, final int length) {
+        if (buffer instanceof DirectMemory) {
+            ((DirectMemory)buffer).getLongs(index*TYPE_SIZE, longs, start, length);
+            return;
+        }
         for (int i = 0; i < length; i++) {
             longs[start+i] = buffer.getLong((index+i)*TYPE_SIZE);
         }
@@ -48,6 +52,10 @@ public final class LongArray {
     }
 
     public void set(final long index, final long[] longs, final int start, final int length) {
+        if (buffer instanceof DirectMemory) {
+            ((DirectMemory)buffer).putLongs(index*TYPE_SIZE, longs, start, length);
+            return;
+        }
         for (int i = 0; i < length; i++) {
             buffer.putLong((index+i)*TYPE_SIZE, longs[start+i]);
         }
@@ -69,6 +77,149 @@ public final class LongArray {
         return length;
     }
 
+    private void checkRange(final long start, final long length) {
+        if (start < 0) throw new IndexOutOfBoundsException("start must be >= 0");
+        if (length < 0) throw new IllegalArgumentException("length must be >= 0");
+        if (start+length > this.length) throw new IndexOutOfBoundsException("start+length must be <= length()");
+    }
+
+    // bulk operations check the whole range once so the loops can skip the per element bounds checks
+    private Memory uncheckedBuffer() {
+        return buffer instanceof DirectMemory ? ((DirectMemory)buffer).unchecked() : buffer;
+    }
+
+    public void fill(final long value) {
+        fill(0, length, value);
+    }
+
+    public void fill(final long start, final long length, final long value) {
+        checkRange(start, length);
+        final Memory memory = uncheckedBuffer();
+        for (long i = start*TYPE_SIZE, end = (start+length)*TYPE_SIZE; i < end; i += TYPE_SIZE) {
+            memory.putLong(i, value);
+        }
+    }
+
+    /**
+     * Same contract as {@link java.util.Arrays#binarySearch(long[], int, int, long)}, the range must be sorted.
+     *
+     * @return index of key if it is in the range, otherwise -(insertion point)-1
+     */
+    public long binarySearch(final long start, final long length, final long key) {
+        checkRange(start, length);
+        final Memory memory = uncheckedBuffer();
+        long lo = start;
+        long hi = start+length-1;
+        while (lo <= hi) {
+            final long mid = (lo+hi) >>> 1;
+            final long value = memory.getLong(mid*TYPE_SIZE);
+            if (value < key) {
+                lo = mid+1;
+            } else if (value > key) {
+                hi = mid-1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo+1);
+    }
+
+    public long binarySearch(final long key) {
+        return binarySearch(0, length, key);
+    }
+
+    /**
+     * @return index of the first occurrence of value in the range, or -1
+     */
+    public long indexOf(final long start, final long length, final long value) {
+        checkRange(start, length);
+        final Memory memory = uncheckedBuffer();
+        for (long i = start*TYPE_SIZE, end = (start+length)*TYPE_SIZE; i < end; i += TYPE_SIZE) {
+            if (memory.getLong(i) == value) return i/TYPE_SIZE;
+        }
+        return -1;
+    }
+
+    public long indexOf(final long value) {
+        return indexOf(0, length, value);
+    }
+
+    public long count(final long start, final long length, final long value) {
+        checkRange(start, length);
+        final Memory memory = uncheckedBuffer();
+        long count = 0;
+        for (long i = start*TYPE_SIZE, end = (start+length)*TYPE_SIZE; i < end; i += TYPE_SIZE) {
+            if (memory.getLong(i) == value) count++;
+        }
+        return count;
+    }
+
+    public long count(final long value) {
+        return count(0, length, value);
+    }
+
+    /**
+     * @return sum of the range, wrapping on overflow
+     */
+    public long sum(final long start, final long length) {
+        checkRange(start, length);
+        final Memory memory = uncheckedBuffer();
+        // independent accumulators let the loads and adds of consecutive elements overlap
+        long sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        long i = start*TYPE_SIZE;
+        final long end = (start+length)*TYPE_SIZE;
+        for (; i+4*TYPE_SIZE <= end; i += 4*TYPE_SIZE) {
+            sum0 += memory.getLong(i);
+            sum1 += memory.getLong(i+TYPE_SIZE);
+            sum2 += memory.getLong(i+2*TYPE_SIZE);
+            sum3 += memory.getLong(i+3*TYPE_SIZE);
+        }
+        for (; i < end; i += TYPE_SIZE) {
+            sum0 += memory.getLong(i);
+        }
+        return sum0+sum1+sum2+sum3;
+    }
+
+    public long sum() {
+        return sum(0, length);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the range is empty
+     */
+    public long min(final long start, final long length) {
+        checkRange(start, length);
+        if (length == 0) throw new IllegalArgumentException("min of empty range");
+        final Memory memory = uncheckedBuffer();
+        long min = memory.getLong(start*TYPE_SIZE);
+        for (long i = (start+1)*TYPE_SIZE, end = (start+length)*TYPE_SIZE; i < end; i += TYPE_SIZE) {
+            min = Math.min(min, memory.getLong(i));
+        }
+        return min;
+    }
+
+    public long min() {
+        return min(0, length);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the range is empty
+     */
+    public long max(final long start, final long length) {
+        checkRange(start, length);
+        if (length == 0) throw new IllegalArgumentException("max of empty range");
+        final Memory memory = uncheckedBuffer();
+        long max = memory.getLong(start*TYPE_SIZE);
+        for (long i = (start+1)*TYPE_SIZE, end = (start+length)*TYPE_SIZE; i < end; i += TYPE_SIZE) {
+            max = Math.max(max, memory.getLong(i));
+        }
+        return max;
+    }
+
+    public long max() {
+        return max(0, length);
+    }
+
     public LongArray slice(final long start, final long length) {
         return new LongArray(buffer, start*TYPE_SIZE, length);
     }
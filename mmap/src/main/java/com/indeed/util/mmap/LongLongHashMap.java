@@ -0,0 +1,375 @@
+package com.indeed.util.mmap;
+
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Open addressing long to long hash map stored entirely in {@link Memory}, for maps too large to keep on the heap.
+ *
+ * Entries are key/value pairs of longs in a power of two sized table and collisions are resolved with linear probing.
+ * Key 0 marks an empty slot so it is stored in the header instead of the table. Removal shifts the following entries
+ * back instead of leaving tombstones, so lookups never slow down after many removals.
+ *
+ * Maps created with the constructor live in a {@link NativeBuffer} and are resized into a new NativeBuffer when they
+ * exceed their load factor. {@link #writeTo(File)} writes the table to a file that {@link #openReadOnly(File)} maps
+ * back in without any deserialization. {@link #open(Memory)} reads a table from any other memory.
+ *
+ * Not thread safe. Read only maps can be shared between threads.
+ */
+public final class LongLongHashMap implements Closeable {
+    private static final Logger log = Logger.getLogger(LongLongHashMap.class);
+
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // "LLHMAP01"
+    private static final long MAGIC = 0x4c4c484d41503031L;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int HAS_ZERO_KEY_OFFSET = 24;
+    private static final int ZERO_VALUE_OFFSET = 32;
+    private static final int HEADER_LENGTH = 64;
+
+    private static final int ENTRY_LENGTH = 16;
+
+    private static final long MIN_CAPACITY = 16;
+
+    private final float loadFactor;
+    private final boolean readOnly;
+
+    private Closeable buffer;
+    private Memory memory;
+    private long capacity;
+    private long mask;
+    private long threshold;
+    private long size;
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    public LongLongHashMap(long expectedSize) {
+        this(expectedSize, 0.75f);
+    }
+
+    /**
+     * @param expectedSize number of entries the map can hold before it has to resize
+     * @param loadFactor   fraction of the table that can be full before it is resized
+     */
+    public LongLongHashMap(long expectedSize, float loadFactor) {
+        if (expectedSize < 0) throw new IllegalArgumentException("expectedSize must be >= 0");
+        if (!(loadFactor > 0 && loadFactor < 1)) throw new IllegalArgumentException("loadFactor must be > 0 and < 1");
+        this.loadFactor = loadFactor;
+        readOnly = false;
+        allocate(capacityFor(expectedSize, loadFactor));
+    }
+
+    private LongLongHashMap(Memory memory, Closeable buffer) {
+        if (memory.length() < HEADER_LENGTH || memory.getLong(MAGIC_OFFSET) != MAGIC) {
+            throw new IllegalArgumentException("memory does not contain a LongLongHashMap");
+        }
+        loadFactor = 0;
+        readOnly = true;
+        this.buffer = buffer;
+        this.memory = memory;
+        setCapacity(memory.getLong(CAPACITY_OFFSET));
+        if (Long.bitCount(capacity) != 1 || memory.length() < tableLength(capacity)) {
+            throw new IllegalArgumentException("LongLongHashMap table is truncated or corrupt, capacity " + capacity + " length " + memory.length());
+        }
+        size = memory.getLong(SIZE_OFFSET);
+        hasZeroKey = memory.getLong(HAS_ZERO_KEY_OFFSET) != 0;
+        zeroValue = memory.getLong(ZERO_VALUE_OFFSET);
+    }
+
+    /**
+     * Read only map over a table previously written by {@link #writeTo(File)}. The memory must be little endian and
+     * must stay valid for as long as the map is used.
+     */
+    public static LongLongHashMap open(Memory memory) {
+        if (!ORDER.equals(memory.getOrder())) throw new IllegalArgumentException("memory must be little endian");
+        return new LongLongHashMap(memory, null);
+    }
+
+    /**
+     * Maps in a table previously written by {@link #writeTo(File)}. Closing the map unmaps the file.
+     */
+    public static LongLongHashMap openReadOnly(File file) throws IOException {
+        final MMapBuffer buffer = new MMapBuffer(file, FileChannel.MapMode.READ_ONLY, ORDER);
+        try {
+            return new LongLongHashMap(buffer.memory(), buffer);
+        } catch (RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    private static long capacityFor(long expectedSize, float loadFactor) {
+        final long minCapacity = Math.max((long)Math.ceil(expectedSize/(double)loadFactor), MIN_CAPACITY);
+        if (minCapacity > 1L<<58) throw new IllegalArgumentException("expectedSize too large: " + expectedSize);
+        return Long.highestOneBit(minCapacity-1) << 1;
+    }
+
+    private static long tableLength(long capacity) {
+        return HEADER_LENGTH+capacity*ENTRY_LENGTH;
+    }
+
+    private void setCapacity(long capacity) {
+        this.capacity = capacity;
+        mask = capacity-1;
+        threshold = (long)(capacity*(double)loadFactor);
+    }
+
+    private void allocate(long capacity) {
+        final NativeBuffer nativeBuffer = new NativeBuffer(tableLength(capacity), ORDER);
+        buffer = nativeBuffer;
+        memory = nativeBuffer.memory();
+        setCapacity(capacity);
+        // small buffers are malloced and not zeroed
+        for (long slot = 0; slot < capacity; slot++) {
+            memory.putLong(keyOffset(slot), 0);
+        }
+        memory.putLong(MAGIC_OFFSET, MAGIC);
+        memory.putLong(CAPACITY_OFFSET, capacity);
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        memory.putLong(SIZE_OFFSET, size);
+        memory.putLong(HAS_ZERO_KEY_OFFSET, hasZeroKey ? 1 : 0);
+        memory.putLong(ZERO_VALUE_OFFSET, zeroValue);
+    }
+
+    private static long keyOffset(long slot) {
+        return HEADER_LENGTH+slot*ENTRY_LENGTH;
+    }
+
+    private static long valueOffset(long slot) {
+        return HEADER_LENGTH+slot*ENTRY_LENGTH+8;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * @return slot containing key, or the empty slot where it would be inserted
+     */
+    private long find(long key) {
+        long slot = mix(key)&mask;
+        while (true) {
+            final long current = memory.getLong(keyOffset(slot));
+            if (current == key || current == 0) return slot;
+            slot = (slot+1)&mask;
+        }
+    }
+
+    public long get(long key, long defaultValue) {
+        if (key == 0) return hasZeroKey ? zeroValue : defaultValue;
+        final long slot = find(key);
+        return memory.getLong(keyOffset(slot)) == 0 ? defaultValue : memory.getLong(valueOffset(slot));
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) return hasZeroKey;
+        return memory.getLong(keyOffset(find(key))) != 0;
+    }
+
+    /**
+     * @return true if the key was not already in the map
+     */
+    public boolean put(long key, long value) {
+        checkWritable();
+        if (key == 0) {
+            final boolean added = !hasZeroKey;
+            hasZeroKey = true;
+            zeroValue = value;
+            writeHeader();
+            return added;
+        }
+        long slot = find(key);
+        if (memory.getLong(keyOffset(slot)) != 0) {
+            memory.putLong(valueOffset(slot), value);
+            return false;
+        }
+        if (size+1 > threshold) {
+            resize(capacity*2);
+            slot = find(key);
+        }
+        memory.putLong(keyOffset(slot), key);
+        memory.putLong(valueOffset(slot), value);
+        size++;
+        memory.putLong(SIZE_OFFSET, size);
+        return true;
+    }
+
+    /**
+     * @return true if the key was in the map
+     */
+    public boolean remove(long key) {
+        checkWritable();
+        if (key == 0) {
+            final boolean removed = hasZeroKey;
+            hasZeroKey = false;
+            zeroValue = 0;
+            writeHeader();
+            return removed;
+        }
+        final long slot = find(key);
+        if (memory.getLong(keyOffset(slot)) == 0) return false;
+        shiftKeys(slot);
+        size--;
+        memory.putLong(SIZE_OFFSET, size);
+        return true;
+    }
+
+    /**
+     * Backward shift deletion, moves every entry after the removed slot whose probe sequence passes through the hole
+     * back into it until an empty slot is reached.
+     */
+    private void shiftKeys(long pos) {
+        while (true) {
+            final long last = pos;
+            pos = (pos+1)&mask;
+            long current;
+            while (true) {
+                current = memory.getLong(keyOffset(pos));
+                if (current == 0) {
+                    memory.putLong(keyOffset(last), 0);
+                    return;
+                }
+                final long ideal = mix(current)&mask;
+                if (last <= pos ? last >= ideal || ideal > pos : last >= ideal && ideal > pos) break;
+                pos = (pos+1)&mask;
+            }
+            memory.putLong(keyOffset(last), current);
+            memory.putLong(valueOffset(last), memory.getLong(valueOffset(pos)));
+        }
+    }
+
+    private void resize(long newCapacity) {
+        final Closeable oldBuffer = buffer;
+        final Memory oldMemory = memory;
+        final long oldCapacity = capacity;
+        allocate(newCapacity);
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            final long key = oldMemory.getLong(keyOffset(slot));
+            if (key != 0) {
+                final long newSlot = find(key);
+                memory.putLong(keyOffset(newSlot), key);
+                memory.putLong(valueOffset(newSlot), oldMemory.getLong(valueOffset(slot)));
+            }
+        }
+        closeBuffer(oldBuffer);
+    }
+
+    private void checkWritable() {
+        if (readOnly) throw new UnsupportedOperationException("LongLongHashMap is read only");
+    }
+
+    public long size() {
+        return size+(hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return number of slots in the table
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return the table, including its header
+     */
+    public Memory memory() {
+        return memory.slice(0, tableLength(capacity));
+    }
+
+    /**
+     * Writes the table to a file that can be opened with {@link #openReadOnly(File)}.
+     */
+    public void writeTo(File file) throws IOException {
+        final long length = tableLength(capacity);
+        try (MMapBuffer out = new MMapBuffer(file, 0, length, FileChannel.MapMode.READ_WRITE, ORDER)) {
+            out.memory().putBytes(0, memory, 0, length);
+            out.sync(0, length);
+        }
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Iterates over the entries in table order. The map must not be modified while iterating.
+     */
+    public final class Cursor {
+        private long slot = hasZeroKey ? -2 : -1;
+        private long key;
+        private long value;
+
+        private Cursor() {
+        }
+
+        /**
+         * @return false if there are no more entries
+         */
+        public boolean next() {
+            if (slot == -2) {
+                slot = -1;
+                key = 0;
+                value = zeroValue;
+                return true;
+            }
+            while (++slot < capacity) {
+                final long k = memory.getLong(keyOffset(slot));
+                if (k != 0) {
+                    key = k;
+                    value = memory.getLong(valueOffset(slot));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        public long getValue() {
+            return value;
+        }
+    }
+
+    private static void closeBuffer(Closeable buffer) {
+        if (buffer == null) return;
+        try {
+            buffer.close();
+        } catch (IOException e) {
+            log.error("error closing LongLongHashMap buffer", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        final Closeable toClose = buffer;
+        buffer = null;
+        if (toClose != null) toClose.close();
+    }
+}
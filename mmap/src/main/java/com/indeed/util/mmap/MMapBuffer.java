@@ -3,7 +3,9 @@ package com.indeed.util.mmap;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.io.Closeables;
+import org.apache.log4j.Logger;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileNotFoundException;
@@ -14,13 +16,17 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author jplaisance
  */
 public final class MMapBuffer implements BufferResource {
+    private static final Logger log = Logger.getLogger(MMapBuffer.class);
 
     private static final Field FD_FIELD;
     public static final int PAGE_SIZE = 4096;
@@ -33,6 +39,39 @@ public final class MMapBuffer implements BufferResource {
     static final int MAP_SHARED = 1;
     static final int MAP_PRIVATE = 2;
     static final int MAP_ANONYMOUS = 4;
+    static final int MAP_POPULATE = 8;
+    static final int MAP_HUGETLB = 16;
+
+    static final int MADV_NORMAL = 0;
+    static final int MADV_RANDOM = 1;
+    static final int MADV_SEQUENTIAL = 2;
+    static final int MADV_WILLNEED = 3;
+    static final int MADV_DONTNEED = 4;
+    static final int MADV_HUGEPAGE = 5;
+    static final int MADV_NOHUGEPAGE = 6;
+
+    /**
+     * Access pattern hints for {@link #advise(long, long, Advice)}. See madvise(2) for the exact semantics of each.
+     */
+    public enum Advice {
+        NORMAL(MADV_NORMAL),
+        RANDOM(MADV_RANDOM),
+        SEQUENTIAL(MADV_SEQUENTIAL),
+        WILLNEED(MADV_WILLNEED),
+        DONTNEED(MADV_DONTNEED),
+        /**
+         * enable transparent huge pages for the range, linux only.
+         * file backed mappings only get huge pages on kernels that support read only THP for the underlying filesystem.
+         */
+        HUGEPAGE(MADV_HUGEPAGE),
+        NOHUGEPAGE(MADV_NOHUGEPAGE);
+
+        private final int value;
+
+        Advice(final int value) {
+            this.value = value;
+        }
+    }
 
     static {
         LoadIndeedMMap.loadLibrary();
@@ -53,6 +92,13 @@ public final class MMapBuffer implements BufferResource {
 
     private final long address;
     private final DirectMemory memory;
+    private final Path path;
+    private final long offset;
+    private final EpochReclaimer reclaimer;
+
+    // residency measurements using the mapping, close defers the munmap until the last one is unpinned
+    private int pins = 0;
+    private boolean closed = false;
 
     private static RandomAccessFile open(Path path, FileChannel.MapMode mapMode) throws FileNotFoundException {
         if (Files.notExists(path) && mapMode == FileChannel.MapMode.READ_ONLY) {
@@ -98,6 +144,13 @@ public final class MMapBuffer implements BufferResource {
     }
 
     public MMapBuffer(RandomAccessFile raf, Path path, long offset, long length, FileChannel.MapMode mapMode, ByteOrder order, boolean closeFile) throws IOException {
+        this(raf, path, offset, length, mapMode, order, closeFile, 0, null);
+    }
+
+    private MMapBuffer(RandomAccessFile raf, Path path, long offset, long length, FileChannel.MapMode mapMode, ByteOrder order, boolean closeFile, int extraFlags, EpochReclaimer reclaimer) throws IOException {
+        this.path = path;
+        this.offset = offset;
+        this.reclaimer = reclaimer;
         try {
             if (offset < 0) throw new IllegalArgumentException("error mapping [" + path + "]: offset must be >= 0");
             if (length <= 0) {
@@ -120,13 +173,8 @@ public final class MMapBuffer implements BufferResource {
                         throw new IllegalArgumentException("cannot open file [" + path + "] in read only mode with offset+length > file.length()");
                     }
                 }
-                final int fd;
-                try {
-                    fd = FD_FIELD.getInt(raf.getFD());
-                } catch (IllegalAccessException e) {
-                    throw new RuntimeException(e);
-                }
-                address = mmap(length, prot, MAP_SHARED, fd, offset);
+                final int fd = getFd(raf);
+                address = mmap(length, prot, MAP_SHARED | extraFlags, fd, offset);
                 if (address == MAP_FAILED) {
                     final int errno = errno();
                     throw new IOException("mmap(" + path + ", " + offset + ", " + length + ", " + mapMode + ") failed [Errno " + errno + "]");
@@ -144,20 +192,49 @@ public final class MMapBuffer implements BufferResource {
         }
     }
 
+    static int getFd(RandomAccessFile raf) throws IOException {
+        try {
+            return FD_FIELD.getInt(raf.getFD());
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     static native long mmap(long length, int prot, int flags, int fd, long offset);
 
     static native int munmap(long address, long length);
 
     static native long mremap(long address, long oldLength, long newLength);
 
-    private static native int msync(long address, long length);
+    /**
+     * like mremap but fails instead of moving the mapping if it can't be grown where it is
+     */
+    static native long mremapInPlace(long address, long oldLength, long newLength);
+
+    static native int msync(long address, long length);
 
     private static native int madvise(long address, long length);
 
     private static native int madviseDontNeed(long address, long length);
 
+    private static native int madvise0(long address, long length, int advice);
+
     static native int errno();
 
+    private static native int supportedMapFlags();
+
+    /**
+     * @return the flags that the loaded libindeedmmap passes on to mmap, older libraries drop MAP_POPULATE and
+     *         MAP_HUGETLB
+     */
+    static int getSupportedMapFlags() {
+        try {
+            return supportedMapFlags();
+        } catch (UnsatisfiedLinkError e) {
+            return MAP_SHARED | MAP_PRIVATE | MAP_ANONYMOUS;
+        }
+    }
+
     //this is not particularly useful, the syscall takes forever
     public void advise(long position, long length) throws IOException {
         final long ap = address+position;
@@ -169,6 +246,21 @@ public final class MMapBuffer implements BufferResource {
         }
     }
 
+    public void advise(long position, long length, Advice advice) throws IOException {
+        final long ap = address+position;
+        final long a = (ap)/PAGE_SIZE*PAGE_SIZE;
+        final long l = Math.min(length+(ap-a), address+memory.length()-ap);
+        final int err;
+        try {
+            err = madvise0(a, l, advice.value);
+        } catch (UnsatisfiedLinkError e) {
+            throw new UnsupportedOperationException("loaded libindeedmmap predates madvise0, rebuild the native library", e);
+        }
+        if (err != 0) {
+            throw new IOException("madvise(" + advice + ") failed [Errno " + errno() + "]");
+        }
+    }
+
     public void sync(long position, long length) throws IOException {
         final long ap = address+position;
         final long a = (ap)/PAGE_SIZE*PAGE_SIZE;
@@ -209,22 +301,207 @@ public final class MMapBuffer implements BufferResource {
         return errno();
     }
 
+    /**
+     * Unmaps the buffer. If the buffer was built with {@link Builder#setReclaimer(EpochReclaimer)} the munmap is
+     * deferred until every reader that entered the reclaimer before this call has exited, and errors from it are
+     * logged instead of thrown.
+     */
     @Override
     public void close() throws IOException {
         if (openBuffersTracker != null) {
             openBuffersTracker.beforeMMapBufferClosed(this);
         }
+        synchronized (this) {
+            closed = true;
+            if (pins > 0) return;
+        }
+        release();
+    }
+
+    /**
+     * Keeps the mapping from being unmapped until {@link #unpin()}, even if the buffer is closed in the meantime.
+     *
+     * @return false if the buffer is already closed
+     */
+    synchronized boolean pin() {
+        if (closed) return false;
+        pins++;
+        return true;
+    }
+
+    void unpin() throws IOException {
+        synchronized (this) {
+            if (--pins > 0 || !closed) return;
+        }
+        release();
+    }
 
+    private void release() throws IOException {
         //hack to deal with 0 byte files
         if (address != 0) {
-            if (munmap(address, memory.length()) != 0) throw new IOException("munmap failed [Errno " + errno() + "]");
+            if (reclaimer != null) {
+                reclaimer.retire(new Closeable() {
+                    @Override
+                    public void close() throws IOException {
+                        unmap();
+                    }
+
+                    @Override
+                    public String toString() {
+                        return "mapping of " + path;
+                    }
+                });
+            } else {
+                unmap();
+            }
         }
     }
+
+    private void unmap() throws IOException {
+        if (munmap(address, memory.length()) != 0) throw new IOException("munmap failed [Errno " + errno() + "]");
+    }
     
     public DirectMemory memory() {
         return memory;
     }
 
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return offset in the file of the start of this mapping
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public static Builder builder(File file, ByteOrder order) {
+        return new Builder(file.toPath(), order);
+    }
+
+    public static Builder builder(Path path, ByteOrder order) {
+        return new Builder(path, order);
+    }
+
+    /**
+     * Builder for mappings that need more than the plain MAP_SHARED mapping of the constructors.
+     * <pre>
+     *   MMapBuffer buffer = MMapBuffer.builder(path, ByteOrder.LITTLE_ENDIAN)
+     *           .setPopulate(true)
+     *           .setAdvice(MMapBuffer.Advice.RANDOM)
+     *           .build();
+     * </pre>
+     * Defaults to mapping the whole file read only.
+     */
+    public static final class Builder {
+        private static final AtomicBoolean populateWarned = new AtomicBoolean(false);
+
+        private final Path path;
+        private long offset = 0;
+        private long length = -1;
+        private FileChannel.MapMode mapMode = FileChannel.MapMode.READ_ONLY;
+        private final ByteOrder order;
+        private boolean populate = false;
+        private boolean hugeTlb = false;
+        private Advice advice = null;
+        private EpochReclaimer reclaimer = null;
+
+        private Builder(Path path, ByteOrder order) {
+            if (order == null) throw new IllegalArgumentException("order must not be null for MMapBuffer");
+            this.path = path;
+            this.order = order;
+        }
+
+        public Builder setOffset(long offset) {
+            this.offset = offset;
+            return this;
+        }
+
+        /**
+         * @param length length of the mapping, defaults to the size of the file minus the offset
+         */
+        public Builder setLength(long length) {
+            this.length = length;
+            return this;
+        }
+
+        public Builder setMapMode(FileChannel.MapMode mapMode) {
+            this.mapMode = mapMode;
+            return this;
+        }
+
+        /**
+         * @param populate if true, map with MAP_POPULATE to prefault the whole mapping before the constructor returns.
+         *                 this moves the cost of the first touch page faults into the mapping call. ignored, with a
+         *                 warning logged once, on OS X and if the loaded libindeedmmap predates supportedMapFlags.
+         */
+        public Builder setPopulate(boolean populate) {
+            this.populate = populate;
+            return this;
+        }
+
+        /**
+         * @param hugeTlb if true, map with MAP_HUGETLB. only valid for files on a hugetlbfs mount, use
+         *                {@link Advice#HUGEPAGE} for transparent huge pages on regular files. {@link #build()} throws
+         *                UnsupportedOperationException on OS X and if the loaded libindeedmmap predates
+         *                supportedMapFlags.
+         */
+        public Builder setHugeTlb(boolean hugeTlb) {
+            this.hugeTlb = hugeTlb;
+            return this;
+        }
+
+        /**
+         * @param advice madvise hint applied to the whole mapping after it is created
+         */
+        public Builder setAdvice(Advice advice) {
+            this.advice = advice;
+            return this;
+        }
+
+        /**
+         * @param reclaimer if set, {@link MMapBuffer#close()} defers the munmap until the readers of reclaimer that
+         *                  could still be using the mapping have exited, so readers don't need to hold a
+         *                  SharedReference to the buffer
+         */
+        public Builder setReclaimer(EpochReclaimer reclaimer) {
+            this.reclaimer = reclaimer;
+            return this;
+        }
+
+        public MMapBuffer build() throws IOException {
+            final int supportedFlags = getSupportedMapFlags();
+            if (hugeTlb && (supportedFlags & MAP_HUGETLB) == 0) {
+                throw new UnsupportedOperationException("MAP_HUGETLB is not supported by the loaded libindeedmmap");
+            }
+            if (populate && (supportedFlags & MAP_POPULATE) == 0 && !populateWarned.getAndSet(true)) {
+                log.warn("MAP_POPULATE is not supported by the loaded libindeedmmap, mappings will not be prefaulted");
+            }
+            final RandomAccessFile raf = open(path, mapMode);
+            final long mapLength;
+            try {
+                mapLength = length < 0 ? raf.length()-offset : length;
+            } catch (IOException e) {
+                Closeables.close(raf, true);
+                throw e;
+            }
+            int flags = 0;
+            if (populate) flags |= MAP_POPULATE;
+            if (hugeTlb) flags |= MAP_HUGETLB;
+            final MMapBuffer buffer = new MMapBuffer(raf, path, offset, mapLength, mapMode, order, true, flags, reclaimer);
+            if (advice != null && mapLength > 0) {
+                try {
+                    buffer.advise(0, mapLength, advice);
+                } catch (IOException | RuntimeException e) {
+                    Closeables.close(buffer, true);
+                    throw e;
+                }
+            }
+            return buffer;
+        }
+    }
+
     /**
      * @return true, if open buffers tracking is enabled, else false
      *
@@ -282,6 +559,19 @@ public final class MMapBuffer implements BufferResource {
             }
         }
 
+        /**
+         * @return the open tracked buffers, each pinned so it stays mapped until the caller unpins it
+         */
+        List<MMapBuffer> pinOpenTrackedBuffers() {
+            synchronized (mmapBufferSet) {
+                final List<MMapBuffer> ret = new ArrayList<MMapBuffer>(mmapBufferSet.size());
+                for (final MMapBuffer buffer : mmapBufferSet.keySet()) {
+                    if (buffer.pin()) ret.add(buffer);
+                }
+                return ret;
+            }
+        }
+
         void forEachOpenTrackedBuffer(final Function<MMapBuffer, ?> action) {
             synchronized (mmapBufferSet) {
                 for (final MMapBuffer buffer : mmapBufferSet.keySet()) {
@@ -0,0 +1,340 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.io.SafeFiles;
+import com.indeed.util.io.VIntUtils;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Append only log of byte records in a directory of fixed size memory mapped segments, written by one thread and
+ * tailed by any number of reader threads.
+ *
+ * Each segment starts with a header holding the commit position of the segment and whether it is sealed, followed by
+ * records written as a VInt length (see {@link VIntUtils}) and the record bytes. The writer copies a record into the
+ * mapping and then publishes it by writing the commit position with release ordering. Readers poll the commit position
+ * with acquire ordering, so they see every record up to it and never make a syscall to check for new data.
+ *
+ * When a record doesn't fit in the active segment the next segment is created, initialized under a temporary name,
+ * synced and renamed into place with {@link SafeFiles#rename(Path, Path)} so a crash never leaves a partially
+ * initialized segment. The full segment is then synced and sealed, which tells readers to move on to the next one. A
+ * crash between the two leaves a full segment unsealed, so every segment but the last is sealed when the log is opened.
+ *
+ * A position is segmentNumber*segmentSize plus the offset of a record in its segment. Records are only durable after
+ * {@link #sync()}.
+ */
+public final class MMapLog implements Closeable {
+    private static final Logger log = Logger.getLogger(MMapLog.class);
+
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // "MMAPLOG1"
+    private static final long MAGIC = 0x4d4d41504c4f4731L;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int COMMIT_OFFSET = 8;
+    private static final int SEALED_OFFSET = 16;
+    // commit position gets its own cache line
+    static final int HEADER_LENGTH = 64;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{20})\\.log");
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long segmentSize;
+
+    private final List<Segment> segments = new CopyOnWriteArrayList<Segment>();
+
+    private final SegmentOutput out = new SegmentOutput();
+
+    private Segment active;
+    private long writeOffset;
+    private boolean closed = false;
+
+    /**
+     * Opens the log in directory, creating it if it doesn't exist.
+     *
+     * @param segmentSize size of each segment file, the largest record is a little smaller than this
+     */
+    public MMapLog(Path directory, long segmentSize) throws IOException {
+        if (segmentSize <= HEADER_LENGTH) throw new IllegalArgumentException("segmentSize must be > " + HEADER_LENGTH);
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        SafeFiles.ensureDirectoryExists(directory);
+        try {
+            openSegments();
+            if (segments.isEmpty()) {
+                segments.add(createSegment(0));
+            }
+            active = segments.get(segments.size()-1);
+            if (active.isSealed()) {
+                roll();
+            }
+            writeOffset = active.getCommitOffset();
+        } catch (IOException | RuntimeException e) {
+            closeSegments();
+            throw e;
+        }
+    }
+
+    private void openSegments() throws IOException {
+        final List<Long> numbers = new ArrayList<Long>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (final Path file : files) {
+                final String name = file.getFileName().toString();
+                final Matcher matcher = SEGMENT_NAME.matcher(name);
+                if (matcher.matches()) {
+                    numbers.add(Long.parseLong(matcher.group(1)));
+                } else if (name.endsWith(TMP_SUFFIX)) {
+                    log.info("deleting partially created segment " + file);
+                    Files.delete(file);
+                }
+            }
+        }
+        Collections.sort(numbers);
+        for (int i = 0; i < numbers.size(); i++) {
+            if (numbers.get(i) != i) throw new IOException("segment " + i + " of " + directory + " is missing");
+            final Path path = segmentPath(i);
+            if (Files.size(path) != segmentSize) {
+                throw new IOException("segment " + path + " has length " + Files.size(path) + ", expected " + segmentSize);
+            }
+            final Segment segment = new Segment(i, new MMapBuffer(path, FileChannel.MapMode.READ_WRITE, ORDER));
+            segments.add(segment);
+            if (segment.memory.getLong(MAGIC_OFFSET) != MAGIC) throw new IOException(path + " is not an MMapLog segment");
+        }
+        for (int i = 0; i < segments.size()-1; i++) {
+            final Segment segment = segments.get(i);
+            if (!segment.isSealed()) {
+                log.info("sealing segment " + segment.number + " of " + directory + " which was followed by a new segment before it was sealed");
+                seal(segment);
+            }
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%020d.log", number));
+    }
+
+    private Segment createSegment(long number) throws IOException {
+        final Path path = segmentPath(number);
+        final Path tmp = path.resolveSibling(path.getFileName() + TMP_SUFFIX);
+        try (MMapBuffer buffer = new MMapBuffer(tmp, 0, segmentSize, FileChannel.MapMode.READ_WRITE, ORDER)) {
+            buffer.memory().putLong(COMMIT_OFFSET, HEADER_LENGTH);
+            buffer.memory().putLong(SEALED_OFFSET, 0);
+            buffer.memory().putLong(MAGIC_OFFSET, MAGIC);
+            buffer.sync(0, HEADER_LENGTH);
+        }
+        SafeFiles.rename(tmp, path);
+        return new Segment(number, new MMapBuffer(path, FileChannel.MapMode.READ_WRITE, ORDER));
+    }
+
+    private void roll() throws IOException {
+        final Segment next = createSegment(active.number+1);
+        // the next segment must be visible before readers see the seal
+        segments.add(next);
+        seal(active);
+        active = next;
+        writeOffset = HEADER_LENGTH;
+    }
+
+    private void seal(Segment segment) throws IOException {
+        segment.buffer.sync(0, segmentSize);
+        segment.memory.putLongOrdered(SEALED_OFFSET, 1);
+        segment.buffer.sync(0, HEADER_LENGTH);
+    }
+
+    /**
+     * @return position of the record
+     */
+    public long append(byte[] bytes) throws IOException {
+        return append(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return position of the record
+     */
+    public long append(byte[] bytes, int start, int length) throws IOException {
+        if (closed) throw new IllegalStateException("MMapLog for " + directory + " is closed");
+        final long recordLength = VIntUtils.getVIntLength(length)+length;
+        if (recordLength > segmentSize-HEADER_LENGTH) {
+            throw new IllegalArgumentException("record of " + length + " bytes does not fit in a segment of " + segmentSize + " bytes");
+        }
+        if (writeOffset+recordLength > segmentSize) {
+            roll();
+        }
+        final long recordOffset = writeOffset;
+        out.position = recordOffset;
+        VIntUtils.writeVInt(out, length);
+        active.memory.putBytes(out.position, bytes, start, length);
+        writeOffset = out.position+length;
+        active.memory.putLongOrdered(COMMIT_OFFSET, writeOffset);
+        return active.number*segmentSize+recordOffset;
+    }
+
+    /**
+     * @return position after the last committed record, where the next record will start unless it causes a roll
+     */
+    public long getCommitPosition() {
+        return active.number*segmentSize+writeOffset;
+    }
+
+    /**
+     * Syncs the committed records of the active segment to disk, full segments are synced when they are sealed.
+     */
+    public void sync() throws IOException {
+        active.buffer.sync(0, writeOffset);
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return reader starting at the first record in the log
+     */
+    public Reader reader() {
+        return new Reader(segments.get(0), HEADER_LENGTH);
+    }
+
+    /**
+     * @param position position of a record returned by {@link #append(byte[])} or {@link Reader#position()}, or a
+     *                 commit position
+     */
+    public Reader reader(long position) {
+        long number = position/segmentSize;
+        long offset = position%segmentSize;
+        if (offset == 0 && number > 0) {
+            // commit position at the very end of a full segment
+            number--;
+            offset = segmentSize;
+        }
+        if (position < 0 || number >= segments.size() || offset < HEADER_LENGTH) throw new IllegalArgumentException("invalid position " + position);
+        return new Reader(segments.get((int)number), offset);
+    }
+
+    /**
+     * Unmaps all segments. Readers must not be used after the log is closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            sync();
+        } finally {
+            closeSegments();
+        }
+    }
+
+    private void closeSegments() {
+        for (final Segment segment : segments) {
+            try {
+                segment.buffer.close();
+            } catch (IOException e) {
+                log.error("error closing segment " + segment.number + " of " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * Reads records in order from one thread. {@link #next()} returns false when it has caught up with the writer and
+     * can be called again later to pick up new records.
+     */
+    public final class Reader {
+        private Segment segment;
+        private long offset;
+        private MemoryDataInput in;
+        private DirectMemory record;
+        private long recordPosition = -1;
+
+        private Reader(Segment segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+            in = new MemoryDataInput(segment.memory);
+        }
+
+        /**
+         * @return true if a record was read, false if there are no committed records after the current one
+         */
+        public boolean next() throws IOException {
+            while (true) {
+                if (offset < segment.getCommitOffset()) {
+                    in.seek(offset);
+                    final int length = VIntUtils.readVInt(in);
+                    record = segment.memory.slice(in.position(), length);
+                    recordPosition = segment.number*segmentSize+offset;
+                    offset = in.position()+length;
+                    return true;
+                }
+                if (!segment.isSealed()) return false;
+                // the seal is written after the last commit, check again in case records were added in between
+                if (offset < segment.getCommitOffset()) continue;
+                segment = segments.get((int)(segment.number+1));
+                offset = HEADER_LENGTH;
+                in = new MemoryDataInput(segment.memory);
+            }
+        }
+
+        /**
+         * @return the current record, a view of the mapped segment that is valid until the log is closed
+         */
+        public DirectMemory record() {
+            if (record == null) throw new IllegalStateException("next() has not returned a record");
+            return record;
+        }
+
+        /**
+         * @return position of the current record
+         */
+        public long position() {
+            return recordPosition;
+        }
+    }
+
+    private static final class Segment {
+        private final long number;
+        private final MMapBuffer buffer;
+        private final DirectMemory memory;
+
+        private Segment(long number, MMapBuffer buffer) {
+            this.number = number;
+            this.buffer = buffer;
+            memory = buffer.memory();
+        }
+
+        private long getCommitOffset() {
+            return memory.getLongVolatile(COMMIT_OFFSET);
+        }
+
+        private boolean isSealed() {
+            return memory.getLongVolatile(SEALED_OFFSET) != 0;
+        }
+    }
+
+    // lets VIntUtils write length prefixes straight into the active segment
+    private final class SegmentOutput extends OutputStream {
+        private long position;
+
+        @Override
+        public void write(int b) {
+            active.memory.putByte(position++, (byte)b);
+        }
+    }
+}
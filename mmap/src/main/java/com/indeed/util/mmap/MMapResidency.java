@@ -0,0 +1,181 @@
+package com.indeed.util.mmap;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Page cache residency of mapped memory, measured with mincore.
+ *
+ * Besides the total resident page count each measurement splits the memory into a fixed number of equal regions and
+ * records the fraction of each region that is resident, which shows which parts of a file are hot.
+ */
+public final class MMapResidency {
+    private static final Logger log = Logger.getLogger(MMapResidency.class);
+
+    private static final int PAGE_SIZE = MMapBuffer.PAGE_SIZE;
+
+    // pages checked per mincore call, bounds the size of the vector to 64k
+    private static final int CHUNK_PAGES = 65536;
+
+    private static final char[] HEAT = "0123456789".toCharArray();
+
+    private final Path path;
+    private final long offset;
+    private final long length;
+    private final long totalPages;
+    private final long residentPages;
+    private final long[] regionPages;
+    private final long[] regionResidentPages;
+
+    private MMapResidency(Path path, long offset, long length, long totalPages, long residentPages, long[] regionPages, long[] regionResidentPages) {
+        this.path = path;
+        this.offset = offset;
+        this.length = length;
+        this.totalPages = totalPages;
+        this.residentPages = residentPages;
+        this.regionPages = regionPages;
+        this.regionResidentPages = regionResidentPages;
+    }
+
+    /**
+     * @param memory  memory to measure
+     * @param regions number of regions to split the memory into for {@link #getRegionResidentFractions()}
+     */
+    public static MMapResidency of(DirectMemory memory, int regions) {
+        return measure(null, 0, memory, regions);
+    }
+
+    public static MMapResidency of(MMapBuffer buffer, int regions) {
+        return measure(buffer.getPath(), buffer.getOffset(), buffer.memory(), regions);
+    }
+
+    /**
+     * Measures every buffer tracked by {@link MMapBuffer}. The tracker lock is only held to take a snapshot of the
+     * buffers, so opening and closing buffers isn't blocked by the measurement. Buffers closed while they are being
+     * measured are unmapped once their measurement finishes.
+     *
+     * @return residency of all open tracked buffers, or an empty list if tracking is not enabled
+     */
+    public static List<MMapResidency> ofTrackedBuffers(final int regions) {
+        final MMapBuffer.Tracker tracker = MMapBuffer.openBuffersTracker;
+        if (tracker == null) {
+            return Collections.emptyList();
+        }
+        final List<MMapBuffer> buffers = tracker.pinOpenTrackedBuffers();
+        final List<MMapResidency> ret = new ArrayList<MMapResidency>(buffers.size());
+        for (final MMapBuffer buffer : buffers) {
+            try {
+                ret.add(of(buffer, regions));
+            } finally {
+                try {
+                    buffer.unpin();
+                } catch (IOException e) {
+                    log.error("error unmapping " + buffer.getPath() + " after measuring it", e);
+                }
+            }
+        }
+        return ret;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static MMapResidency measure(Path path, long offset, DirectMemory memory, int regions) {
+        if (regions <= 0) throw new IllegalArgumentException("regions must be > 0");
+        final long start = memory.getAddress()/PAGE_SIZE*PAGE_SIZE;
+        final long totalPages = memory.length() == 0 ? 0 : (memory.getAddress()+memory.length()-start+PAGE_SIZE-1)/PAGE_SIZE;
+        final long[] regionPages = new long[regions];
+        final long[] regionResidentPages = new long[regions];
+        long residentPages = 0;
+        if (totalPages > 0) {
+            final int vecLength = (int)Math.min(totalPages, CHUNK_PAGES);
+            try (NativeBuffer vec = new NativeBuffer(vecLength, ByteOrder.nativeOrder())) {
+                final DirectMemory vecMemory = vec.memory();
+                for (long page = 0; page < totalPages; page += vecLength) {
+                    final int pages = (int)Math.min(vecLength, totalPages-page);
+                    NativeMemoryUtils.mincore(start+page*PAGE_SIZE, (long)pages*PAGE_SIZE, vecMemory);
+                    for (int i = 0; i < pages; i++) {
+                        final int region = (int)((page+i)*regions/totalPages);
+                        regionPages[region]++;
+                        if ((vecMemory.getByte(i)&1) != 0) {
+                            regionResidentPages[region]++;
+                            residentPages++;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.error("error freeing mincore vector", e);
+            }
+        }
+        return new MMapResidency(path, offset, memory.length(), totalPages, residentPages, regionPages, regionResidentPages);
+    }
+
+    /**
+     * @return mapped file, or null if this was measured from memory that isn't a tracked file mapping
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getTotalPages() {
+        return totalPages;
+    }
+
+    public long getResidentPages() {
+        return residentPages;
+    }
+
+    /**
+     * @return resident pages in bytes, capped at the length of the memory since the first and last pages may be partial
+     */
+    public long getResidentBytes() {
+        return Math.min(residentPages*PAGE_SIZE, length);
+    }
+
+    /**
+     * @return fraction of each region that is resident, in order from the start of the memory
+     */
+    public double[] getRegionResidentFractions() {
+        final double[] ret = new double[regionPages.length];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = regionPages[i] == 0 ? 0 : (double)regionResidentPages[i]/regionPages[i];
+        }
+        return ret;
+    }
+
+    /**
+     * @return one digit per region from 0 (nothing resident) to 9 (90% or more resident), eg "9930000001"
+     */
+    public String getHeatmap() {
+        final StringBuilder ret = new StringBuilder(regionPages.length);
+        for (final double fraction : getRegionResidentFractions()) {
+            ret.append(HEAT[Math.min((int)(fraction*HEAT.length), HEAT.length-1)]);
+        }
+        return ret.toString();
+    }
+
+    /**
+     * @return "path" for mappings that start at the beginning of the file, "path@offset" otherwise
+     */
+    public String getName() {
+        final String name = String.valueOf(path);
+        return offset == 0 ? name : name + "@" + offset;
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " " + getResidentBytes() + "/" + length + " [" + getHeatmap() + "]";
+    }
+}
@@ -0,0 +1,85 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.varexport.Export;
+import com.indeed.util.varexport.VarExporter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Exports the page cache residency of all buffers tracked by {@link MMapBuffer} through {@link VarExporter}.
+ * Requires tracking to be enabled with -Dcom.indeed.util.mmap.MMapBuffer.enableTracking=true and util-varexport on the classpath.
+ *
+ * Residency is measured at most once per refresh interval no matter how often the variables are read.
+ */
+public final class MMapResidencyExporter {
+    private final int regions;
+    private final long refreshIntervalMillis;
+
+    private List<MMapResidency> residency = null;
+    private long lastRefresh = 0;
+
+    /**
+     * @param namespace             VarExporter namespace to export to
+     * @param regions               number of regions in each file heatmap
+     * @param refreshIntervalMillis minimum time between measurements
+     */
+    public MMapResidencyExporter(String namespace, int regions, long refreshIntervalMillis) {
+        if (regions <= 0) throw new IllegalArgumentException("regions must be > 0");
+        this.regions = regions;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        VarExporter.forNamespace(namespace).includeInGlobal().export(this, "");
+    }
+
+    private synchronized List<MMapResidency> residency() {
+        final long now = System.currentTimeMillis();
+        if (residency == null || now-lastRefresh >= refreshIntervalMillis) {
+            residency = MMapResidency.ofTrackedBuffers(regions);
+            lastRefresh = now;
+        }
+        return residency;
+    }
+
+    @Export(name="mmap-tracked-buffers", doc="Number of open tracked MMapBuffers")
+    public int getTrackedBuffers() {
+        return residency().size();
+    }
+
+    @Export(name="mmap-tracked-bytes", doc="Total length of open tracked MMapBuffers")
+    public long getTrackedBytes() {
+        long ret = 0;
+        for (final MMapResidency r : residency()) {
+            ret += r.getLength();
+        }
+        return ret;
+    }
+
+    @Export(name="mmap-resident-bytes", doc="Bytes of open tracked MMapBuffers that are resident in the page cache")
+    public long getResidentBytes() {
+        long ret = 0;
+        for (final MMapResidency r : residency()) {
+            ret += r.getResidentBytes();
+        }
+        return ret;
+    }
+
+    @Export(name="mmap-resident-bytes-by-file", doc="Resident bytes per mapped file", expand=true)
+    public Map<String, Long> getResidentBytesByFile() {
+        final Map<String, Long> ret = new TreeMap<String, Long>();
+        for (final MMapResidency r : residency()) {
+            final Long current = ret.get(r.getName());
+            ret.put(r.getName(), (current == null ? 0 : current) + r.getResidentBytes());
+        }
+        return ret;
+    }
+
+    @Export(name="mmap-heatmap-by-file", doc="Residency of each mapped file as one digit per region, in file order, where each region is 1/regions of the mapping and goes from 0 (cold) to 9 (hot)", expand=true)
+    public Map<String, String> getHeatmapByFile() {
+        final Map<String, String> ret = new TreeMap<String, String>();
+        for (final MMapResidency r : residency()) {
+            ret.put(r.getName(), r.getHeatmap());
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,237 @@
+package com.indeed.util.mmap;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Faults in the pages of mapped memory on a bounded pool of background threads so that the first requests after
+ * opening a large file don't pay for the page faults.
+ *
+ * Pages are checked with mincore in chunks and only pages that are not already resident are touched. All warming done
+ * by one warmer shares a single rate limit on the bytes faulted in per second.
+ *
+ * The memory being warmed must not be unmapped or freed until its {@link Progress} is done.
+ */
+public final class MMapWarmer implements Closeable {
+    private static final Logger log = Logger.getLogger(MMapWarmer.class);
+
+    private static final int PAGE_SIZE = MMapBuffer.PAGE_SIZE;
+
+    private static final int DEFAULT_CHUNK_PAGES = 256;
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final RateLimiter rateLimiter;
+    private final int chunkPages;
+
+    /**
+     * @param threads           number of background threads used to fault in pages
+     * @param maxBytesPerSecond maximum number of bytes faulted in per second across all warming, or 0 for no limit
+     */
+    public MMapWarmer(int threads, long maxBytesPerSecond) {
+        this(threads, maxBytesPerSecond, DEFAULT_CHUNK_PAGES);
+    }
+
+    MMapWarmer(int threads, long maxBytesPerSecond, int chunkPages) {
+        if (threads <= 0) throw new IllegalArgumentException("threads must be > 0");
+        if (maxBytesPerSecond < 0) throw new IllegalArgumentException("maxBytesPerSecond must be >= 0");
+        if (chunkPages <= 0) throw new IllegalArgumentException("chunkPages must be > 0");
+        this.threads = threads;
+        this.chunkPages = chunkPages;
+        rateLimiter = maxBytesPerSecond > 0 ? RateLimiter.create(maxBytesPerSecond) : null;
+        executor = new ThreadPoolExecutor(
+                threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("MMapWarmer-%d").build()
+        );
+    }
+
+    public Progress warm(MMapBuffer buffer) {
+        return warm(buffer.memory());
+    }
+
+    @SuppressWarnings("deprecation")
+    public Progress warm(DirectMemory memory) {
+        final long address = memory.getAddress();
+        final long start = address/PAGE_SIZE*PAGE_SIZE;
+        final long end = address+memory.length();
+        final long totalPages = memory.length() == 0 ? 0 : (end-start+PAGE_SIZE-1)/PAGE_SIZE;
+        final long chunks = (totalPages+chunkPages-1)/chunkPages;
+        final int workers = (int)Math.min(threads, chunks);
+        final Progress progress = new Progress(memory, start, totalPages, workers, executor);
+        for (int i = 0; i < workers; i++) {
+            final Worker worker = new Worker(progress);
+            progress.workers.add(worker);
+        }
+        for (final Worker worker : progress.workers) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                // the warmer was closed
+                progress.failure = e;
+                worker.finish();
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * @return number of pages of memory that are currently resident
+     */
+    public static long residentPages(DirectMemory memory) {
+        return MMapResidency.of(memory, 1).getResidentPages();
+    }
+
+    /**
+     * Stops all warming. Memory that is being warmed must not be freed until its progress is done, warming that had
+     * not started yet is done as soon as this returns.
+     */
+    @Override
+    public void close() {
+        for (final Runnable queued : executor.shutdownNow()) {
+            ((Worker)queued).finish();
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final Progress progress;
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+
+        private Worker(Progress progress) {
+            this.progress = progress;
+        }
+
+        /**
+         * Counts the worker down exactly once, whether it ran or was dropped from the queue before it started.
+         */
+        private void finish() {
+            if (finished.compareAndSet(false, true)) {
+                progress.done.countDown();
+            }
+        }
+
+        @Override
+        public void run() {
+            try (NativeBuffer vec = new NativeBuffer(chunkPages, ByteOrder.nativeOrder())) {
+                long chunk;
+                while (!progress.cancelled && !Thread.currentThread().isInterrupted() && (chunk = progress.nextChunk.getAndIncrement())*chunkPages < progress.totalPages) {
+                    warmChunk(chunk*chunkPages, (int)Math.min(chunkPages, progress.totalPages-chunk*chunkPages), vec.memory());
+                }
+            } catch (Throwable t) {
+                log.error("error warming memory", t);
+                progress.failure = t;
+            } finally {
+                finish();
+            }
+        }
+
+        @SuppressWarnings("deprecation")
+        private void warmChunk(long firstPage, int pages, DirectMemory vec) {
+            final DirectMemory memory = progress.memory;
+            final long chunkStart = progress.start+firstPage*PAGE_SIZE;
+            NativeMemoryUtils.mincore(chunkStart, (long)pages*PAGE_SIZE, vec);
+            int missing = 0;
+            for (int i = 0; i < pages; i++) {
+                if ((vec.getByte(i)&1) == 0) missing++;
+            }
+            progress.residentPages.addAndGet(pages-missing);
+            if (missing == 0) return;
+            if (rateLimiter != null) {
+                rateLimiter.acquire(missing*PAGE_SIZE);
+            }
+            int sum = 0;
+            for (int i = 0; i < pages; i++) {
+                if ((vec.getByte(i)&1) == 0) {
+                    // the first page may begin before the memory if its address is not page aligned
+                    final long offset = Math.max(chunkStart+(long)i*PAGE_SIZE-memory.getAddress(), 0);
+                    sum += memory.getByte(offset);
+                }
+            }
+            progress.sink.addAndGet(sum);
+            progress.residentPages.addAndGet(missing);
+        }
+    }
+
+    /**
+     * Tracks the warming of one memory region. Resident page counts only include pages seen by the warmer so far, use
+     * {@link MMapWarmer#residentPages(DirectMemory)} for a fresh count.
+     */
+    public static final class Progress {
+        private final DirectMemory memory;
+        private final long start;
+        private final long totalPages;
+        private final AtomicLong nextChunk = new AtomicLong();
+        private final AtomicLong residentPages = new AtomicLong();
+        private final CountDownLatch done;
+        private final List<Worker> workers;
+        private final ThreadPoolExecutor executor;
+        private volatile boolean cancelled = false;
+        private volatile Throwable failure = null;
+        // keeps the page touching reads from being optimized away
+        private final AtomicLong sink = new AtomicLong();
+
+        private Progress(DirectMemory memory, long start, long totalPages, int workers, ThreadPoolExecutor executor) {
+            this.memory = memory;
+            this.start = start;
+            this.totalPages = totalPages;
+            done = new CountDownLatch(workers);
+            this.workers = new ArrayList<Worker>(workers);
+            this.executor = executor;
+        }
+
+        public long getResidentPages() {
+            return residentPages.get();
+        }
+
+        public long getTotalPages() {
+            return totalPages;
+        }
+
+        /**
+         * @return fraction of the pages that are resident, 1 for empty memory
+         */
+        public double getResidentFraction() {
+            return totalPages == 0 ? 1 : (double)residentPages.get()/totalPages;
+        }
+
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /**
+         * Stops warming. Workers that are still queued are removed so that the progress is done as soon as the
+         * running ones finish their current chunk.
+         */
+        public void cancel() {
+            cancelled = true;
+            for (final Worker worker : workers) {
+                if (executor.remove(worker)) {
+                    worker.finish();
+                }
+            }
+        }
+
+        /**
+         * @return true if warming finished, false if the timeout elapsed first
+         * @throws ExecutionException if warming failed
+         */
+        public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException {
+            if (!done.await(timeout, unit)) return false;
+            if (failure != null) throw new ExecutionException(failure);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.indeed.util.mmap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes {@link Memory} to channels. {@link DirectMemory} is wrapped in direct ByteBuffers so the channel reads it in
+ * place instead of through a copy into a byte[], and mapped file regions can be sent with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which is sendfile on Linux.
+ */
+public final class MemoryChannels {
+    // largest ByteBuffer handed to a channel at once
+    private static final int MAX_CHUNK = 1 << 30;
+
+    // size of the buffer used to copy heap memory and direct memory that can't be wrapped
+    private static final int COPY_BUFFER_SIZE = 64*1024;
+
+    private MemoryChannels() {}
+
+    /**
+     * Writes all of memory to channel.
+     *
+     * @return number of bytes written
+     */
+    public static long write(Memory memory, WritableByteChannel channel) throws IOException {
+        return write(memory, 0, memory.length(), channel);
+    }
+
+    /**
+     * Writes length bytes of memory starting at position to channel, blocking until they have all been written.
+     *
+     * @return number of bytes written
+     */
+    public static long write(Memory memory, long position, long length, WritableByteChannel channel) throws IOException {
+        if (position < 0 || length < 0 || position+length > memory.length()) throw new IndexOutOfBoundsException();
+        if (memory.isDirect() && NativeMemoryUtils.canWrapDirect()) {
+            final DirectMemory direct = DirectMemory.asDirectMemory(memory);
+            for (long written = 0; written < length; written += MAX_CHUNK) {
+                writeFully(direct.asByteBuffer(position+written, (int)Math.min(MAX_CHUNK, length-written)), channel);
+            }
+        } else {
+            final ByteBuffer copyBuffer = ByteBuffer.allocate((int)Math.min(COPY_BUFFER_SIZE, length));
+            for (long written = 0; written < length; written += copyBuffer.capacity()) {
+                copyBuffer.clear();
+                copyBuffer.limit((int)Math.min(copyBuffer.capacity(), length-written));
+                memory.getBytes(position+written, copyBuffer);
+                copyBuffer.flip();
+                writeFully(copyBuffer, channel);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes all of each memory to channel with gathering writes, so the memories go out in as few system calls as
+     * the channel allows.
+     *
+     * @return number of bytes written
+     */
+    public static long write(Memory[] memories, GatheringByteChannel channel) throws IOException {
+        long total = 0;
+        boolean wrappable = NativeMemoryUtils.canWrapDirect();
+        for (final Memory memory : memories) {
+            total += memory.length();
+            wrappable &= memory.isDirect() && memory.length() <= MAX_CHUNK;
+        }
+        if (!wrappable) {
+            for (final Memory memory : memories) {
+                write(memory, channel);
+            }
+            return total;
+        }
+        final ByteBuffer[] buffers = new ByteBuffer[memories.length];
+        for (int i = 0; i < memories.length; i++) {
+            buffers[i] = DirectMemory.asDirectMemory(memories[i]).asByteBuffer();
+        }
+        long written = 0;
+        int first = 0;
+        while (written < total) {
+            written += channel.write(buffers, first, buffers.length-first);
+            while (first < buffers.length && !buffers[first].hasRemaining()) {
+                first++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Sends length bytes of the file mapped by buffer, starting at position in the mapping, to target with
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)}. The bytes are read from the file rather than
+     * the mapping, so writes to a shared mapping that haven't been synced are still visible but writes to a private
+     * mapping are not. Opens the file for every call, use {@link #transferTo(FileChannel, MMapBuffer, long, long,
+     * WritableByteChannel)} to reuse an open channel.
+     *
+     * @return number of bytes sent
+     */
+    public static long transferTo(MMapBuffer buffer, long position, long length, WritableByteChannel target) throws IOException {
+        try (FileChannel file = FileChannel.open(buffer.getPath(), StandardOpenOption.READ)) {
+            return transferTo(file, buffer, position, length, target);
+        }
+    }
+
+    /**
+     * @param file open channel for the file mapped by buffer
+     * @see #transferTo(MMapBuffer, long, long, WritableByteChannel)
+     */
+    public static long transferTo(FileChannel file, MMapBuffer buffer, long position, long length, WritableByteChannel target) throws IOException {
+        if (position < 0 || length < 0 || position+length > buffer.memory().length()) throw new IndexOutOfBoundsException();
+        final long start = buffer.getOffset()+position;
+        long sent = 0;
+        while (sent < length) {
+            final long transferred = file.transferTo(start+sent, length-sent, target);
+            if (transferred <= 0) {
+                if (start+sent >= file.size()) throw new IOException(buffer.getPath() + " was truncated while it was being sent");
+                // transferTo gave up, eg on a full non blocking target, so write the rest from the mapping
+                sent += write(buffer.memory(), position+sent, length-sent, target);
+            } else {
+                sent += transferred;
+            }
+        }
+        return sent;
+    }
+
+    private static void writeFully(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import org.apache.log4j.Logger;
 
 import java.io.DataInput;
 import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 
 /**
  * DataInput for memory with same endianness as underlying memory.
@@ -13,12 +15,22 @@ public final class MemoryDataInput implements DataInput {
 
     private static final Logger log = Logger.getLogger(MemoryDataInput.class);
     
+    private static final long CONTINUATION_BITS = 0x8080808080808080L;
+
     private final Memory memory;
+    // wide reads check that all 8 bytes are in range themselves, so they can skip the bounds checks of direct memory
+    private final Memory wideReadMemory;
+    private final long length;
+    // wide reads need the byte at position in the low bits of the long
+    private final boolean reverseWideReads;
 
     private long position = 0;
 
     public MemoryDataInput(final Memory memory) {
         this.memory = memory;
+        wideReadMemory = memory instanceof DirectMemory ? ((DirectMemory)memory).unchecked() : memory;
+        length = memory.length();
+        reverseWideReads = memory.getOrder() == ByteOrder.BIG_ENDIAN;
     }
 
     @Override
@@ -110,6 +122,151 @@ public final class MemoryDataInput implements DataInput {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Reads a VInt written by {@link com.indeed.util.io.VIntUtils#writeVInt(java.io.DataOutput, int)}. One and two
+     * byte values are read directly, longer values are decoded from a single 8 byte read.
+     */
+    public int readVInt() throws IOException {
+        final byte b0 = memory.getByte(position);
+        if (b0 >= 0) {
+            position++;
+            return b0;
+        }
+        final byte b1 = memory.getByte(position+1);
+        if (b1 >= 0) {
+            position += 2;
+            return (b0&0x7F)|(b1<<7);
+        }
+        // kept small enough to inline, longer values are decoded out of line
+        if (position+8 <= length) return readLongVInt(wideRead());
+        return readVIntByteAtATime();
+    }
+
+    private int readLongVInt(long word) throws IOException {
+        final int length = vintLength(word);
+        if (length > 5) return readVIntByteAtATime();
+        position += length;
+        return (int)compact(word&((1L<<(length*8))-1));
+    }
+
+    private int readVIntByteAtATime() throws IOException {
+        byte b = readByte();
+        int i = b & 0x7F;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            b = readByte();
+            i |= (b & 0x7F) << shift;
+        }
+        return i;
+    }
+
+    /**
+     * Reads a VInt written by {@link com.indeed.util.io.VIntUtils#writeSVInt(java.io.DataOutput, int)}.
+     */
+    public int readSVInt() throws IOException {
+        final int i = readVInt();
+        return (i >>> 1) ^ (-(i & 1));
+    }
+
+    /**
+     * Reads a VInt64 written by {@link com.indeed.util.io.VIntUtils#writeVInt64(java.io.DataOutput, long)}. One and two
+     * byte values are read directly, longer values of up to 56 bits are decoded from a single 8 byte read.
+     */
+    public long readVInt64() throws IOException {
+        final byte b0 = memory.getByte(position);
+        if (b0 >= 0) {
+            position++;
+            return b0;
+        }
+        final byte b1 = memory.getByte(position+1);
+        if (b1 >= 0) {
+            position += 2;
+            return (b0&0x7F)|(b1<<7);
+        }
+        if (position+8 <= length) return readLongVInt64(wideRead());
+        return readVInt64ByteAtATime();
+    }
+
+    private long readLongVInt64(long word) throws IOException {
+        final int length = vintLength(word);
+        if (length > 8) return readVInt64ByteAtATime();
+        position += length;
+        return compact(length == 8 ? word : word&((1L<<(length*8))-1));
+    }
+
+    private long readVInt64ByteAtATime() throws IOException {
+        byte b = readByte();
+        long i = b & 0x7F;
+        for (long shift = 7; (b & 0x80) != 0; shift += 7) {
+            b = readByte();
+            i |= (b & 0x7FL) << shift;
+        }
+        return i;
+    }
+
+    /**
+     * Reads a VInt64 written by {@link com.indeed.util.io.VIntUtils#writeSVInt64(java.io.DataOutput, long)}.
+     */
+    public long readSVInt64() throws IOException {
+        final long i = readVInt64();
+        return (i >>> 1) ^ (-(i & 1));
+    }
+
+    private long wideRead() {
+        final long word = wideReadMemory.getLong(position);
+        return reverseWideReads ? Long.reverseBytes(word) : word;
+    }
+
+    // number of bytes up to and including the first byte without a continuation bit, 9 if there isn't one
+    private static int vintLength(long word) {
+        return (Long.numberOfTrailingZeros(~word&CONTINUATION_BITS)>>>3)+1;
+    }
+
+    // packs the low 7 bits of each byte of x together, continuation bits fall outside the masks
+    private static long compact(long x) {
+        return (x&0x7FL)
+                | ((x>>>1)&0x3F80L)
+                | ((x>>>2)&0x1FC000L)
+                | ((x>>>3)&0xFE00000L)
+                | ((x>>>4)&0x7F0000000L)
+                | ((x>>>5)&0x3F800000000L)
+                | ((x>>>6)&0x1FC0000000000L)
+                | ((x>>>7)&0xFE000000000000L);
+    }
+
+    /**
+     * Reads length bytes of UTF-8. ASCII is checked for and copied 8 bytes at a time without going through a
+     * CharsetDecoder.
+     */
+    public String readUTF8(int length) throws IOException {
+        if (length < 0) throw new IllegalArgumentException("length must be >= 0");
+        if (position+length > memory.length()) throw new IndexOutOfBoundsException("position+length must be <= length()");
+        final char[] chars = new char[length];
+        int i = 0;
+        while (i+8 <= length) {
+            final long word = memory.getLong(position+i);
+            if ((word&CONTINUATION_BITS) != 0) break;
+            final long le = reverseWideReads ? Long.reverseBytes(word) : word;
+            for (int j = 0; j < 8; j++) {
+                chars[i+j] = (char)((le>>>(j*8))&0x7F);
+            }
+            i += 8;
+        }
+        while (i < length) {
+            final byte b = memory.getByte(position+i);
+            if (b < 0) break;
+            chars[i++] = (char)b;
+        }
+        if (i == length) {
+            position += length;
+            return new String(chars);
+        }
+        // non ascii, decode the rest of the string with the jdk decoder
+        final byte[] rest = new byte[length-i];
+        memory.getBytes(position+i, rest);
+        position += length;
+        return new String(chars, 0, i) + new String(rest, StandardCharsets.UTF_8);
+    }
+
     public void seek(long position) {
         this.position = position;
     }
@@ -119,6 +276,6 @@ public final class MemoryDataInput implements DataInput {
     }
 
     public long length() {
-        return memory.length();
+        return length;
     }
 }
@@ -112,6 +112,22 @@ public final class NativeBuffer implements BufferResource {
         }
     }
 
+    /**
+     * Allocates a buffer whose address is page aligned, as reads and writes of files opened with O_DIRECT require.
+     * The length is rounded up to a whole number of pages.
+     */
+    public static NativeBuffer allocatePageAligned(long length, ByteOrder order) {
+        if (length <= 0) throw new IllegalArgumentException("length must be > 0");
+        final long pages = (length+MMapBuffer.PAGE_SIZE-1)/MMapBuffer.PAGE_SIZE;
+        final long alignedLength = pages*MMapBuffer.PAGE_SIZE;
+        // anonymous mappings always start on a page boundary
+        final long address = MMapBuffer.mmap(alignedLength, MMapBuffer.READ_WRITE, MMapBuffer.MAP_PRIVATE | MMapBuffer.MAP_ANONYMOUS, -1, 0);
+        if (address == MMapBuffer.MAP_FAILED) {
+            throw new RuntimeException("anonymous mmap failed with error "+MMapBuffer.errno());
+        }
+        return new NativeBuffer(address, new DirectMemory(address, alignedLength, order), true);
+    }
+
     private NativeBuffer(long address, DirectMemory memory, boolean mmapped) {
         this.address = address;
         this.memory = memory;
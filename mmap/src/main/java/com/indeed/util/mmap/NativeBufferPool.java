@@ -0,0 +1,237 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.core.reference.SharedReference;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of {@link NativeBuffer}s with power of 2 capacities, for code that would otherwise malloc and free a buffer for
+ * every request.
+ *
+ * {@link #borrow(long)} returns a {@link SharedReference} that puts the buffer back in the pool when it and all of its
+ * copies are closed. The pool is split into stripes chosen by thread id so threads rarely contend for a lock. Returned
+ * buffers are freed instead of pooled once the pool holds maxPooledBytes.
+ *
+ * When the SharedReference debug property (com.indeed.common.util.reference.SharedReference.debug) is set the pool
+ * records where every buffer was borrowed, and logs that stack trace and counts a leak when a reference is garbage
+ * collected without being closed.
+ *
+ * Borrowed buffers must not be closed or realloced directly.
+ */
+public final class NativeBufferPool implements Closeable {
+    private static final Logger log = Logger.getLogger(NativeBufferPool.class);
+
+    private static final boolean debug = Boolean.getBoolean("com.indeed.common.util.reference.SharedReference.debug");
+
+    public static final long MIN_CAPACITY = 64;
+
+    private final ByteOrder order;
+    private final long maxPooledBytes;
+    private final Stripe[] stripes;
+    private final boolean trackLeaks;
+
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    private final ReferenceQueue<SharedReference<NativeBuffer>> collected = new ReferenceQueue<SharedReference<NativeBuffer>>();
+    private final Set<LeakTracker> trackers = Collections.newSetFromMap(new ConcurrentHashMap<LeakTracker, Boolean>());
+
+    private volatile boolean closed = false;
+
+    public NativeBufferPool(ByteOrder order, long maxPooledBytes) {
+        this(order, maxPooledBytes, Runtime.getRuntime().availableProcessors());
+    }
+
+    public NativeBufferPool(ByteOrder order, long maxPooledBytes, int stripes) {
+        this(order, maxPooledBytes, stripes, debug);
+    }
+
+    NativeBufferPool(ByteOrder order, long maxPooledBytes, int stripes, boolean trackLeaks) {
+        if (maxPooledBytes < 0) throw new IllegalArgumentException("maxPooledBytes must be >= 0");
+        if (stripes <= 0) throw new IllegalArgumentException("stripes must be > 0");
+        this.order = order;
+        this.maxPooledBytes = maxPooledBytes;
+        this.trackLeaks = trackLeaks;
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * @return capacity of the buffers that borrow(minCapacity) returns
+     */
+    public static long capacityFor(long minCapacity) {
+        if (minCapacity < 0) throw new IllegalArgumentException("minCapacity must be >= 0");
+        if (minCapacity <= MIN_CAPACITY) return MIN_CAPACITY;
+        return Long.highestOneBit(minCapacity-1) << 1;
+    }
+
+    private Stripe stripe() {
+        return stripes[(int)(Thread.currentThread().getId()%stripes.length)];
+    }
+
+    /**
+     * @return reference to a buffer with a capacity of at least minCapacity rounded up to a power of 2. Closing the
+     * reference returns the buffer to the pool. The contents of the buffer are not cleared.
+     */
+    public SharedReference<NativeBuffer> borrow(long minCapacity) {
+        if (closed) throw new IllegalStateException("pool is closed");
+        pollLeaks();
+        final long capacity = capacityFor(minCapacity);
+        final int sizeClass = Long.numberOfTrailingZeros(capacity);
+        NativeBuffer buffer = stripe().poll(sizeClass);
+        if (buffer != null) {
+            pooledBytes.addAndGet(-capacity);
+        } else {
+            buffer = new NativeBuffer(capacity, order);
+        }
+        borrowed.incrementAndGet();
+        final Returner returner = new Returner(buffer);
+        final SharedReference<NativeBuffer> ref = SharedReference.create(buffer, returner);
+        if (trackLeaks) {
+            returner.tracker = new LeakTracker(ref, buffer, new Throwable("borrowed here"));
+            trackers.add(returner.tracker);
+        }
+        return ref;
+    }
+
+    private void release(NativeBuffer buffer, LeakTracker tracker) throws IOException {
+        borrowed.decrementAndGet();
+        if (tracker != null) {
+            trackers.remove(tracker);
+            tracker.clear();
+        }
+        final long capacity = buffer.memory().length();
+        if (!closed && pooledBytes.addAndGet(capacity) <= maxPooledBytes) {
+            stripe().offer(Long.numberOfTrailingZeros(capacity), buffer);
+        } else {
+            pooledBytes.addAndGet(-capacity);
+            buffer.close();
+        }
+    }
+
+    private void pollLeaks() {
+        if (!trackLeaks) return;
+        LeakTracker tracker;
+        while ((tracker = (LeakTracker)collected.poll()) != null) {
+            if (trackers.remove(tracker)) {
+                leaks.incrementAndGet();
+                borrowed.decrementAndGet();
+                log.error("NativeBuffer of " + tracker.buffer.memory().length() + " bytes borrowed from pool was never returned", tracker.borrowedAt);
+            }
+        }
+    }
+
+    /**
+     * For tests, counts ref as leaked on the next poll as if it had been garbage collected without being closed.
+     */
+    void simulateLeak(SharedReference<NativeBuffer> ref) {
+        for (final LeakTracker tracker : trackers) {
+            if (tracker.get() == ref) tracker.enqueue();
+        }
+    }
+
+    /**
+     * @return bytes held by buffers sitting in the pool
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /**
+     * @return number of buffers that have been borrowed and not returned
+     */
+    public long getBorrowedCount() {
+        pollLeaks();
+        return borrowed.get();
+    }
+
+    /**
+     * @return number of leaked references found, always 0 unless the SharedReference debug property is set
+     */
+    public long getLeakCount() {
+        pollLeaks();
+        return leaks.get();
+    }
+
+    /**
+     * Frees all pooled buffers. Buffers returned after the pool is closed are freed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (final Stripe stripe : stripes) {
+            for (final NativeBuffer buffer : stripe.drain()) {
+                pooledBytes.addAndGet(-buffer.memory().length());
+                buffer.close();
+            }
+        }
+    }
+
+    private static final class Stripe {
+        private final ArrayDeque<NativeBuffer>[] buffers = newBuffers();
+
+        @SuppressWarnings("unchecked")
+        private static ArrayDeque<NativeBuffer>[] newBuffers() {
+            return new ArrayDeque[64];
+        }
+
+        private synchronized NativeBuffer poll(int sizeClass) {
+            final ArrayDeque<NativeBuffer> deque = buffers[sizeClass];
+            return deque == null ? null : deque.pollLast();
+        }
+
+        private synchronized void offer(int sizeClass, NativeBuffer buffer) {
+            if (buffers[sizeClass] == null) buffers[sizeClass] = new ArrayDeque<NativeBuffer>();
+            buffers[sizeClass].addLast(buffer);
+        }
+
+        private synchronized ArrayDeque<NativeBuffer> drain() {
+            final ArrayDeque<NativeBuffer> ret = new ArrayDeque<NativeBuffer>();
+            for (int i = 0; i < buffers.length; i++) {
+                if (buffers[i] != null) {
+                    ret.addAll(buffers[i]);
+                    buffers[i] = null;
+                }
+            }
+            return ret;
+        }
+    }
+
+    private final class Returner implements Closeable {
+        private final NativeBuffer buffer;
+        private LeakTracker tracker;
+
+        private Returner(NativeBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            release(buffer, tracker);
+        }
+    }
+
+    private final class LeakTracker extends WeakReference<SharedReference<NativeBuffer>> {
+        private final NativeBuffer buffer;
+        private final Throwable borrowedAt;
+
+        private LeakTracker(SharedReference<NativeBuffer> ref, NativeBuffer buffer, Throwable borrowedAt) {
+            super(ref, collected);
+            this.buffer = buffer;
+            this.borrowedAt = borrowedAt;
+        }
+    }
+}
@@ -106,4 +106,89 @@ final class NativeEndianDirectDataAccess implements DirectDataAccess {
     public void copyMemory(long source, long dest, long length) {
         UNSAFE.copyMemory(source, dest, length);
     }
+
+    long getLongVolatile(long address) {
+        return UNSAFE.getLongVolatile(null, address);
+    }
+
+    void putLongVolatile(long address, long val) {
+        UNSAFE.putLongVolatile(null, address, val);
+    }
+
+    void putLongOrdered(long address, long val) {
+        UNSAFE.putOrderedLong(null, address, val);
+    }
+
+    boolean compareAndSwapLong(long address, long expected, long val) {
+        return UNSAFE.compareAndSwapLong(null, address, expected, val);
+    }
+
+    static final long INT_ARRAY_OFFSET = UNSAFE.arrayBaseOffset(int[].class);
+    static final long LONG_ARRAY_OFFSET = UNSAFE.arrayBaseOffset(long[].class);
+    static final long FLOAT_ARRAY_OFFSET = UNSAFE.arrayBaseOffset(float[].class);
+    static final long DOUBLE_ARRAY_OFFSET = UNSAFE.arrayBaseOffset(double[].class);
+
+    // copies between memory and arrays are split up so a long copy doesn't hold off safepoints
+    private static final long COPY_CHUNK = 1024*1024;
+
+    void copyToArray(long address, Object array, long arrayOffset, long length) {
+        for (long copied = 0; copied < length; copied += COPY_CHUNK) {
+            UNSAFE.copyMemory(null, address+copied, array, arrayOffset+copied, Math.min(COPY_CHUNK, length-copied));
+        }
+    }
+
+    /**
+     * Like {@link #copyToArray(long, Object, long, long)} but reverses the byte order of each 4 byte element. Swaps
+     * two elements per 8 byte load, reversing the long swaps the elements as well as their bytes so it is rotated
+     * to put them back.
+     */
+    void copyToArrayReversing4(long address, Object array, long arrayOffset, long length) {
+        // int counters so the jit treats these as counted loops and unrolls them, the counts are at most an array length
+        final int pairs = (int)(length >>> 3);
+        for (int i = 0; i < pairs; i++) {
+            final long offset = (long)i << 3;
+            UNSAFE.putLong(array, arrayOffset+offset, Long.rotateLeft(Long.reverseBytes(UNSAFE.getLong(address+offset)), 32));
+        }
+        if ((length&4) != 0) {
+            final long offset = length-4;
+            UNSAFE.putInt(array, arrayOffset+offset, Integer.reverseBytes(UNSAFE.getInt(address+offset)));
+        }
+    }
+
+    /**
+     * Like {@link #copyToArray(long, Object, long, long)} but reverses the byte order of each 8 byte element.
+     */
+    void copyToArrayReversing8(long address, Object array, long arrayOffset, long length) {
+        final int count = (int)(length >>> 3);
+        for (int i = 0; i < count; i++) {
+            final long offset = (long)i << 3;
+            UNSAFE.putLong(array, arrayOffset+offset, Long.reverseBytes(UNSAFE.getLong(address+offset)));
+        }
+    }
+
+    void copyFromArray(Object array, long arrayOffset, long address, long length) {
+        for (long copied = 0; copied < length; copied += COPY_CHUNK) {
+            UNSAFE.copyMemory(array, arrayOffset+copied, null, address+copied, Math.min(COPY_CHUNK, length-copied));
+        }
+    }
+
+    void copyFromArrayReversing4(Object array, long arrayOffset, long address, long length) {
+        final int pairs = (int)(length >>> 3);
+        for (int i = 0; i < pairs; i++) {
+            final long offset = (long)i << 3;
+            UNSAFE.putLong(address+offset, Long.reverseBytes(Long.rotateLeft(UNSAFE.getLong(array, arrayOffset+offset), 32)));
+        }
+        if ((length&4) != 0) {
+            final long offset = length-4;
+            UNSAFE.putInt(address+offset, Integer.reverseBytes(UNSAFE.getInt(array, arrayOffset+offset)));
+        }
+    }
+
+    void copyFromArrayReversing8(Object array, long arrayOffset, long address, long length) {
+        final int count = (int)(length >>> 3);
+        for (int i = 0; i < count; i++) {
+            final long offset = (long)i << 3;
+            UNSAFE.putLong(address+offset, Long.reverseBytes(UNSAFE.getLong(array, arrayOffset+offset)));
+        }
+    }
 }
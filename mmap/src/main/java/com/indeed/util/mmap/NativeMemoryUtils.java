@@ -2,6 +2,8 @@ package com.indeed.util.mmap;
 
 import org.apache.log4j.Logger;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.nio.ByteBuffer;
 
 /**
@@ -47,6 +49,73 @@ final class NativeMemoryUtils {
         }
     }
 
+    private static final boolean HAS_NEW_DIRECT_BYTE_BUFFER = hasNewDirectByteBuffer();
+
+    // fallback for native libraries built before newDirectByteBuffer, null if the jdk doesn't allow access to it
+    private static final Constructor<?> DIRECT_BYTE_BUFFER_CONSTRUCTOR = HAS_NEW_DIRECT_BYTE_BUFFER ? null : directByteBufferConstructor();
+
+    private static boolean hasNewDirectByteBuffer() {
+        try {
+            // zero length, so the address is never dereferenced
+            newDirectByteBuffer(1, 0);
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            log.debug("loaded libindeedmmap predates newDirectByteBuffer", e);
+            return false;
+        }
+    }
+
+    private static Constructor<?> directByteBufferConstructor() {
+        try {
+            final Class<?> directByteBuffer = Class.forName("java.nio.DirectByteBuffer");
+            Constructor<?> constructor;
+            try {
+                constructor = directByteBuffer.getDeclaredConstructor(long.class, int.class);
+            } catch (NoSuchMethodException e) {
+                constructor = directByteBuffer.getDeclaredConstructor(long.class, long.class);
+            }
+            constructor.setAccessible(true);
+            // setAccessible succeeding doesn't guarantee newInstance will
+            newInstance(constructor, 1, 0);
+            return constructor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("java.nio.DirectByteBuffer(long, int) is not accessible", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return a direct ByteBuffer over length bytes at addr that does not own the memory
+     */
+    static ByteBuffer wrapDirect(long addr, int length) {
+        if (HAS_NEW_DIRECT_BYTE_BUFFER) {
+            return newDirectByteBuffer(addr, length);
+        }
+        if (DIRECT_BYTE_BUFFER_CONSTRUCTOR == null) {
+            throw new UnsupportedOperationException("loaded libindeedmmap predates newDirectByteBuffer and java.nio.DirectByteBuffer is not accessible");
+        }
+        try {
+            return newInstance(DIRECT_BYTE_BUFFER_CONSTRUCTOR, addr, length);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+
+    private static ByteBuffer newInstance(Constructor<?> constructor, long addr, int length)
+            throws InstantiationException, IllegalAccessException, InvocationTargetException {
+        if (constructor.getParameterTypes()[1] == int.class) {
+            return (ByteBuffer)constructor.newInstance(addr, length);
+        }
+        return (ByteBuffer)constructor.newInstance(addr, (long)length);
+    }
+
+    /**
+     * @return true if {@link #wrapDirect(long, int)} will succeed, checked once when the class is loaded
+     */
+    static boolean canWrapDirect() {
+        return HAS_NEW_DIRECT_BYTE_BUFFER || DIRECT_BYTE_BUFFER_CONSTRUCTOR != null;
+    }
+
     static void mlock(long addr, long len) {
         if (len < 0) throw new IndexOutOfBoundsException();
         int err = mlock0(addr, len);
@@ -86,6 +155,8 @@ final class NativeMemoryUtils {
         }
     }
 
+    private static native ByteBuffer newDirectByteBuffer(long addr, long length);
+
     static native void copyToDirectBuffer(long srcAddr, ByteBuffer dest, int offset, int length);
 
     static native void copyFromDirectBuffer(ByteBuffer source, int offset, long destAddr, int length);
@@ -0,0 +1,314 @@
+package com.indeed.util.mmap;
+
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Allocates {@link DirectMemory} from a few large {@link NativeBuffer} chunks instead of a malloc per allocation.
+ *
+ * Allocations are rounded up to a power of 2 size class from {@link #MIN_SIZE_CLASS} to slabSize. Chunks are carved
+ * into slabs of slabSize bytes, and a slab is split into slots of a single size class the first time that class runs
+ * out of free slots. Freed slots go on a free list for their class and are reused by later allocations of the same
+ * class. Allocations larger than slabSize get a NativeBuffer of their own.
+ *
+ * Chunks are mapped with room to spare and start at a multiple of slabSize, so slots are aligned to their size class.
+ * Memory is not zeroed. {@link #reset()} frees every allocation at once while
+ * keeping the chunks, for arenas that hold the allocations of one request or one batch.
+ *
+ * All methods are synchronized.
+ */
+public final class OffHeapArena implements Closeable {
+    private static final Logger log = Logger.getLogger(OffHeapArena.class);
+
+    public static final int MIN_SIZE_CLASS = 16;
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE_CLASS);
+
+    // size class of slabs that haven't been carved yet
+    private static final byte NO_CLASS = -1;
+
+    private final long chunkSize;
+    private final int slabSize;
+    private final ByteOrder order;
+
+    private final List<Chunk> chunks = new ArrayList<Chunk>();
+    // aligned chunk start address -> chunk, to check that freed memory came from this arena
+    private final TreeMap<Long, Chunk> chunksByAddress = new TreeMap<Long, Chunk>();
+    private final Map<Long, NativeBuffer> largeAllocations = new HashMap<Long, NativeBuffer>();
+
+    // free slot addresses for each size class, used as stacks
+    private final long[][] freeSlots;
+    private final int[] freeCounts;
+
+    private int chunkIndex = 0;
+    private long chunkOffset = 0;
+
+    private long slabBytes = 0;
+    private long usedBytes = 0;
+    private long allocatedBytes = 0;
+    private long largeBytes = 0;
+    private long liveAllocations = 0;
+    private boolean closed = false;
+
+    /**
+     * Uses 4MB chunks and 64KB slabs.
+     */
+    public OffHeapArena(ByteOrder order) {
+        this(4*1024*1024, 64*1024, order);
+    }
+
+    /**
+     * @param chunkSize size of each NativeBuffer, a multiple of slabSize
+     * @param slabSize size of each slab and of the largest size class, a power of 2 of at least MIN_SIZE_CLASS
+     */
+    public OffHeapArena(long chunkSize, int slabSize, ByteOrder order) {
+        if (slabSize < MIN_SIZE_CLASS || Integer.bitCount(slabSize) != 1) throw new IllegalArgumentException("slabSize must be a power of 2 >= " + MIN_SIZE_CLASS);
+        if (chunkSize < slabSize || chunkSize%slabSize != 0) throw new IllegalArgumentException("chunkSize must be a multiple of slabSize");
+        this.chunkSize = chunkSize;
+        this.slabSize = slabSize;
+        this.order = order;
+        final int classes = Integer.numberOfTrailingZeros(slabSize)-MIN_SHIFT+1;
+        freeSlots = new long[classes][];
+        freeCounts = new int[classes];
+        for (int i = 0; i < classes; i++) {
+            freeSlots[i] = new long[16];
+        }
+    }
+
+    private static int sizeClass(long size) {
+        if (size <= MIN_SIZE_CLASS) return 0;
+        return 64-Long.numberOfLeadingZeros(size-1)-MIN_SHIFT;
+    }
+
+    private static long classSize(int sizeClass) {
+        return (long)MIN_SIZE_CLASS << sizeClass;
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("arena is closed");
+    }
+
+    /**
+     * @return memory of exactly size bytes, valid until it is freed or the arena is reset or closed
+     */
+    public synchronized DirectMemory allocate(long size) {
+        checkOpen();
+        if (size < 0) throw new IllegalArgumentException("size must be >= 0");
+        final long address;
+        if (size > slabSize) {
+            final NativeBuffer buffer = new NativeBuffer(size, order);
+            address = buffer.memory().getAddress();
+            largeAllocations.put(address, buffer);
+            largeBytes += size;
+            usedBytes += size;
+        } else {
+            final int sizeClass = sizeClass(size);
+            if (freeCounts[sizeClass] == 0) {
+                carveSlab(sizeClass);
+            }
+            address = freeSlots[sizeClass][--freeCounts[sizeClass]];
+            usedBytes += classSize(sizeClass);
+        }
+        allocatedBytes += size;
+        liveAllocations++;
+        return new DirectMemory(address, size, order);
+    }
+
+    private void carveSlab(int sizeClass) {
+        if (chunkOffset == chunkSize || chunks.isEmpty()) {
+            if (chunks.isEmpty() || chunkIndex == chunks.size()-1) {
+                final Chunk chunk = new Chunk();
+                chunks.add(chunk);
+                chunksByAddress.put(chunk.base, chunk);
+                chunkIndex = chunks.size()-1;
+            } else {
+                // chunks kept by reset are reused before new ones are allocated
+                chunkIndex++;
+            }
+            chunkOffset = 0;
+        }
+        final Chunk chunk = chunks.get(chunkIndex);
+        final long slab = chunk.base+chunkOffset;
+        chunk.slabClasses[(int)(chunkOffset/slabSize)] = (byte)sizeClass;
+        chunkOffset += slabSize;
+        slabBytes += slabSize;
+        final long classSize = classSize(sizeClass);
+        final int slots = (int)(slabSize/classSize);
+        long[] stack = freeSlots[sizeClass];
+        if (freeCounts[sizeClass]+slots > stack.length) {
+            final long[] grown = new long[Math.max(stack.length*2, freeCounts[sizeClass]+slots)];
+            System.arraycopy(stack, 0, grown, 0, freeCounts[sizeClass]);
+            freeSlots[sizeClass] = stack = grown;
+        }
+        // pushed in reverse so slots are handed out in address order
+        for (int i = slots-1; i >= 0; i--) {
+            stack[freeCounts[sizeClass]++] = slab+i*classSize;
+        }
+    }
+
+    /**
+     * Frees memory returned by {@link #allocate(long)}. Only the exact memory returned by allocate may be freed, slices
+     * of it are rejected if they don't match the size class of their slab. Freeing memory twice is not detected and
+     * corrupts the arena.
+     */
+    public synchronized void free(DirectMemory memory) throws IOException {
+        checkOpen();
+        final long address = memory.getAddress();
+        final long size = memory.length();
+        if (size > slabSize) {
+            final NativeBuffer buffer = largeAllocations.remove(address);
+            if (buffer == null || buffer.memory().length() != size) throw new IllegalArgumentException("memory was not allocated by this arena");
+            buffer.close();
+            largeBytes -= size;
+            usedBytes -= size;
+        } else {
+            final Map.Entry<Long, Chunk> chunk = chunksByAddress.floorEntry(address);
+            if (chunk == null || address+size > chunk.getKey()+chunkSize) throw new IllegalArgumentException("memory was not allocated by this arena");
+            final int sizeClass = sizeClass(size);
+            final long offset = address-chunk.getKey();
+            if ((offset&(classSize(sizeClass)-1)) != 0) throw new IllegalArgumentException("memory was not allocated by this arena");
+            // a slice of a larger slot would otherwise go on the free list of the smaller class and be handed out twice
+            if (chunk.getValue().slabClasses[(int)(offset/slabSize)] != sizeClass) {
+                throw new IllegalArgumentException("memory of length " + size + " is not a slot allocated by this arena");
+            }
+            long[] stack = freeSlots[sizeClass];
+            if (freeCounts[sizeClass] == stack.length) {
+                final long[] grown = new long[stack.length*2];
+                System.arraycopy(stack, 0, grown, 0, stack.length);
+                freeSlots[sizeClass] = stack = grown;
+            }
+            stack[freeCounts[sizeClass]++] = address;
+            usedBytes -= classSize(sizeClass);
+        }
+        allocatedBytes -= size;
+        liveAllocations--;
+    }
+
+    /**
+     * Frees every allocation at once. Chunks are kept and reused, large allocations are released.
+     */
+    public synchronized void reset() {
+        checkOpen();
+        closeLargeAllocations();
+        for (int i = 0; i < freeCounts.length; i++) {
+            freeCounts[i] = 0;
+        }
+        for (final Chunk chunk : chunks) {
+            Arrays.fill(chunk.slabClasses, NO_CLASS);
+        }
+        chunkIndex = 0;
+        chunkOffset = 0;
+        slabBytes = 0;
+        usedBytes = 0;
+        allocatedBytes = 0;
+        liveAllocations = 0;
+    }
+
+    private void closeLargeAllocations() {
+        for (final NativeBuffer buffer : largeAllocations.values()) {
+            try {
+                buffer.close();
+            } catch (IOException e) {
+                log.error("error closing large allocation", e);
+            }
+        }
+        largeAllocations.clear();
+        largeBytes = 0;
+    }
+
+    /**
+     * @return bytes of native memory held by the arena, all chunks plus large allocations
+     */
+    public synchronized long getReservedBytes() {
+        return chunks.size()*chunkSize+largeBytes;
+    }
+
+    /**
+     * @return bytes requested by live allocations
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return bytes taken up by live allocations after rounding up to their size class
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return bytes in free slots of slabs that have been split into a size class, only reusable by that size class
+     */
+    public synchronized long getFreeSlabBytes() {
+        return slabBytes-(usedBytes-largeBytes);
+    }
+
+    public synchronized long getLiveAllocations() {
+        return liveAllocations;
+    }
+
+    /**
+     * @return fraction of reserved memory that holds requested bytes
+     */
+    public synchronized double getOccupancy() {
+        final long reserved = getReservedBytes();
+        return reserved == 0 ? 0 : (double)allocatedBytes/reserved;
+    }
+
+    /**
+     * @return fraction of the bytes used by live allocations that is lost to rounding up to a size class
+     */
+    public synchronized double getInternalFragmentation() {
+        return usedBytes == 0 ? 0 : (double)(usedBytes-allocatedBytes)/usedBytes;
+    }
+
+    /**
+     * @return fraction of the bytes carved into slabs that sits in free slots, which can't be used by other size
+     * classes
+     */
+    public synchronized double getExternalFragmentation() {
+        return slabBytes == 0 ? 0 : (double)getFreeSlabBytes()/slabBytes;
+    }
+
+    /**
+     * Releases all native memory. Memory allocated from the arena must not be used after it is closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        closeLargeAllocations();
+        for (final Chunk chunk : chunks) {
+            chunk.buffer.close();
+        }
+        chunks.clear();
+        chunksByAddress.clear();
+    }
+
+    private final class Chunk {
+        private final NativeBuffer buffer;
+        // start of the first slab, a multiple of slabSize
+        private final long base;
+        private final byte[] slabClasses;
+
+        private Chunk() {
+            // the mapping starts on a page, so at most slabSize-PAGE_SIZE bytes are skipped to align it and the pages
+            // past the end of the chunk are never touched
+            final long padding = Math.max(slabSize-MMapBuffer.PAGE_SIZE, 0);
+            buffer = NativeBuffer.allocatePageAligned(chunkSize+padding, order);
+            final long address = buffer.memory().getAddress();
+            base = (address+slabSize-1)/slabSize*slabSize;
+            slabClasses = new byte[(int)(chunkSize/slabSize)];
+            Arrays.fill(slabClasses, NO_CLASS);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.indeed.util.mmap;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Array of unsigned values of a fixed width from 1 to 64 bits, packed without padding over any {@link Memory}.
+ *
+ * Values are packed into 64 bit words read in the byte order of the memory. Value i occupies bits i*bitsPerValue to
+ * (i+1)*bitsPerValue-1 of the bit stream, counting from the least significant bit of the first word, so a value may
+ * span two words. {@link #bytesRequired(long, int)} rounds up to a whole word so every word can be read with getLong.
+ *
+ * Ints are packed as unsigned 32 bit values.
+ */
+public final class PackedIntArray {
+    private final Memory buffer;
+    private final long length;
+    private final int bitsPerValue;
+    private final long mask;
+
+    public PackedIntArray(Memory buffer, long address, long length, int bitsPerValue) {
+        checkBitsPerValue(bitsPerValue);
+        if (address < 0) throw new IndexOutOfBoundsException("address must be >= 0");
+        if (length < 0) throw new IllegalArgumentException("length must be >= 0");
+        final long bytes = bytesRequired(length, bitsPerValue);
+        if (address+bytes > buffer.length()) throw new IndexOutOfBoundsException("address+bytesRequired(length, bitsPerValue) must be <= buffer.length()");
+        this.buffer = buffer.slice(address, bytes);
+        this.length = length;
+        this.bitsPerValue = bitsPerValue;
+        mask = mask(bitsPerValue);
+    }
+
+    private static void checkBitsPerValue(int bitsPerValue) {
+        if (bitsPerValue < 1 || bitsPerValue > 64) throw new IllegalArgumentException("bitsPerValue must be between 1 and 64");
+    }
+
+    private static long mask(int bitsPerValue) {
+        return bitsPerValue == 64 ? -1L : (1L<<bitsPerValue)-1;
+    }
+
+    /**
+     * @return number of bytes needed to hold length values of bitsPerValue bits, a multiple of 8
+     */
+    public static long bytesRequired(long length, int bitsPerValue) {
+        checkBitsPerValue(bitsPerValue);
+        return (length*bitsPerValue+63)/64*8;
+    }
+
+    /**
+     * @return smallest number of bits that can hold every value from 0 to maxValue, treating maxValue as unsigned
+     */
+    public static int bitsRequired(long maxValue) {
+        return Math.max(64-Long.numberOfLeadingZeros(maxValue), 1);
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + length);
+    }
+
+    private void checkRange(long index, long length) {
+        if (index < 0) throw new IndexOutOfBoundsException("index must be >= 0");
+        if (length < 0) throw new IllegalArgumentException("length must be >= 0");
+        if (index+length > this.length) throw new IndexOutOfBoundsException("index+length must be <= length()");
+    }
+
+    private static long checkValue(long value, long mask, int bitsPerValue) {
+        if ((value&~mask) != 0) throw new IllegalArgumentException("value 0x" + Long.toHexString(value) + " does not fit in " + bitsPerValue + " bits");
+        return value;
+    }
+
+    // the range is checked once for bulk operations so the loops can skip the per element bounds checks
+    private Memory uncheckedBuffer() {
+        return buffer instanceof DirectMemory ? ((DirectMemory)buffer).unchecked() : buffer;
+    }
+
+    public long get(final long index) {
+        checkIndex(index);
+        final long bitIndex = index*bitsPerValue;
+        final long wordOffset = (bitIndex>>>6)*8;
+        final int shift = (int)(bitIndex&63);
+        long value = buffer.getLong(wordOffset) >>> shift;
+        if (shift+bitsPerValue > 64) {
+            value |= buffer.getLong(wordOffset+8) << (64-shift);
+        }
+        return value&mask;
+    }
+
+    public void set(final long index, final long value) {
+        checkIndex(index);
+        checkValue(value, mask, bitsPerValue);
+        final long bitIndex = index*bitsPerValue;
+        final long wordOffset = (bitIndex>>>6)*8;
+        final int shift = (int)(bitIndex&63);
+        buffer.putLong(wordOffset, (buffer.getLong(wordOffset)&~(mask<<shift))|(value<<shift));
+        if (shift+bitsPerValue > 64) {
+            final int lowBits = 64-shift;
+            buffer.putLong(wordOffset+8, (buffer.getLong(wordOffset+8)&~(mask>>>lowBits))|(value>>>lowBits));
+        }
+    }
+
+    public void get(final long index, final long[] values, final int start, final int length) {
+        checkRange(index, length);
+        if (start < 0 || start+length > values.length) throw new IndexOutOfBoundsException();
+        final Memory memory = uncheckedBuffer();
+        final long bitIndex = index*bitsPerValue;
+        long wordOffset = (bitIndex>>>6)*8;
+        int shift = (int)(bitIndex&63);
+        long word = length == 0 ? 0 : memory.getLong(wordOffset);
+        for (int i = 0; i < length; i++) {
+            long value = word >>> shift;
+            final int end = shift+bitsPerValue;
+            if (end > 64) {
+                wordOffset += 8;
+                word = memory.getLong(wordOffset);
+                value |= word << (64-shift);
+                shift = end-64;
+            } else if (end == 64) {
+                shift = 0;
+                // don't read past the last word
+                if (i+1 < length) {
+                    wordOffset += 8;
+                    word = memory.getLong(wordOffset);
+                }
+            } else {
+                shift = end;
+            }
+            values[start+i] = value&mask;
+        }
+    }
+
+    public void get(final long index, final long[] values) {
+        get(index, values, 0, values.length);
+    }
+
+    /**
+     * Decodes into ints, values wider than 32 bits are truncated.
+     */
+    public void get(final long index, final int[] values, final int start, final int length) {
+        if (start < 0 || length < 0 || start+length > values.length) throw new IndexOutOfBoundsException();
+        final long[] chunk = new long[Math.min(length, 1024)];
+        for (int i = 0; i < length; i += chunk.length) {
+            final int chunkLength = Math.min(chunk.length, length-i);
+            get(index+i, chunk, 0, chunkLength);
+            for (int j = 0; j < chunkLength; j++) {
+                values[start+i+j] = (int)chunk[j];
+            }
+        }
+    }
+
+    public void get(final long index, final int[] values) {
+        get(index, values, 0, values.length);
+    }
+
+    public void set(final long index, final long[] values, final int start, final int length) {
+        checkRange(index, length);
+        if (start < 0 || start+length > values.length) throw new IndexOutOfBoundsException();
+        for (int i = 0; i < length; i++) {
+            checkValue(values[start+i], mask, bitsPerValue);
+        }
+        final Memory memory = uncheckedBuffer();
+        final long bitIndex = index*bitsPerValue;
+        long wordOffset = (bitIndex>>>6)*8;
+        int shift = (int)(bitIndex&63);
+        // keep the bits of the first word that come before index
+        long word = shift == 0 ? 0 : memory.getLong(wordOffset)&((1L<<shift)-1);
+        for (int i = 0; i < length; i++) {
+            final long value = values[start+i];
+            word |= value << shift;
+            final int end = shift+bitsPerValue;
+            if (end >= 64) {
+                memory.putLong(wordOffset, word);
+                wordOffset += 8;
+                shift = end-64;
+                word = shift == 0 ? 0 : value >>> (bitsPerValue-shift);
+            } else {
+                shift = end;
+            }
+        }
+        if (shift > 0) {
+            // keep the bits of the last word that come after index+length
+            memory.putLong(wordOffset, word|(memory.getLong(wordOffset)&~((1L<<shift)-1)));
+        }
+    }
+
+    public void set(final long index, final long[] values) {
+        set(index, values, 0, values.length);
+    }
+
+    public void set(final long index, final int[] values, final int start, final int length) {
+        if (start < 0 || length < 0 || start+length > values.length) throw new IndexOutOfBoundsException();
+        final long[] chunk = new long[Math.min(length, 1024)];
+        for (int i = 0; i < length; i += chunk.length) {
+            final int chunkLength = Math.min(chunk.length, length-i);
+            for (int j = 0; j < chunkLength; j++) {
+                chunk[j] = values[start+i+j]&0xFFFFFFFFL;
+            }
+            set(index+i, chunk, 0, chunkLength);
+        }
+    }
+
+    public void set(final long index, final int[] values) {
+        set(index, values, 0, values.length);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public int bitsPerValue() {
+        return bitsPerValue;
+    }
+
+    /**
+     * Packs values onto a DataOutput in the layout read by PackedIntArray, for columns that are written as a stream.
+     * Words are written with writeLong, so the output must be read back as memory with the byte order the DataOutput
+     * writes in, eg big endian for a DataOutputStream. {@link #finish()} must be called after the last value.
+     */
+    public static final class Writer {
+        private final DataOutput out;
+        private final int bitsPerValue;
+        private final long mask;
+
+        private long word = 0;
+        private int shift = 0;
+        private long count = 0;
+        private boolean finished = false;
+
+        public Writer(DataOutput out, int bitsPerValue) {
+            checkBitsPerValue(bitsPerValue);
+            this.out = out;
+            this.bitsPerValue = bitsPerValue;
+            mask = mask(bitsPerValue);
+        }
+
+        public void add(long value) throws IOException {
+            if (finished) throw new IllegalStateException("writer is finished");
+            checkValue(value, mask, bitsPerValue);
+            word |= value << shift;
+            final int end = shift+bitsPerValue;
+            if (end >= 64) {
+                out.writeLong(word);
+                shift = end-64;
+                word = shift == 0 ? 0 : value >>> (bitsPerValue-shift);
+            } else {
+                shift = end;
+            }
+            count++;
+        }
+
+        public void add(long[] values, int start, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                add(values[start+i]);
+            }
+        }
+
+        public void add(long[] values) throws IOException {
+            add(values, 0, values.length);
+        }
+
+        public void add(int[] values, int start, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                add(values[start+i]&0xFFFFFFFFL);
+            }
+        }
+
+        public void add(int[] values) throws IOException {
+            add(values, 0, values.length);
+        }
+
+        /**
+         * @return number of values added
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Writes the last partially filled word. Does not close the DataOutput.
+         */
+        public void finish() throws IOException {
+            if (finished) return;
+            finished = true;
+            if (shift > 0) {
+                out.writeLong(word);
+            }
+        }
+    }
+}
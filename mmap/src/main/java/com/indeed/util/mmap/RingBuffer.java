@@ -0,0 +1,343 @@
+package com.indeed.util.mmap;
+
+/**
+ * Bounded queue of fixed size slots laid out on {@link DirectMemory}, with one producer and any number of competing
+ * consumers. Since all of the state lives in the memory, a ring buffer created on an {@link MMapBuffer} of a file in
+ * /dev/shm can be opened with {@link #open(DirectMemory, WaitStrategy)} by other processes to pass messages between
+ * processes without copying them through a socket.
+ *
+ * Every slot has a sequence word. A slot is free for sequence s when its word is s, published when it is s+1 and
+ * released by its consumer by setting it to s+capacity, which frees it for the next lap. Consumers claim published
+ * slots by compare and swapping the shared consumer sequence, and the producer only writes to slots whose sequence
+ * word says they are free, so a slow consumer holds up the producer but is never overwritten.
+ *
+ * The producer and consumer sequences in the header are each padded out to their own pair of cache lines so the
+ * producer and consumers don't invalidate each other's lines.
+ *
+ * There must be only one producer across all threads and processes using the ring buffer.
+ */
+public final class RingBuffer {
+    // "RINGBUF1"
+    private static final long MAGIC = 0x52494e4742554631L;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SLOT_SIZE_OFFSET = 16;
+    // adjacent cache lines are often fetched together, so padding is two 64 byte lines
+    private static final int PRODUCER_OFFSET = 128;
+    private static final int CONSUMER_OFFSET = 256;
+    static final int HEADER_LENGTH = 384;
+
+    private static final int SLOT_SEQUENCE_OFFSET = 0;
+    private static final int SLOT_LENGTH_OFFSET = 8;
+    private static final int SLOT_HEADER_LENGTH = 16;
+
+    private final DirectMemory memory;
+    private final int capacity;
+    private final int mask;
+    private final int slotSize;
+    private final long slotStride;
+    private final WaitStrategy waitStrategy;
+
+    // next sequence the producer will claim
+    private long claimed;
+
+    private RingBuffer(DirectMemory memory, int capacity, int slotSize, WaitStrategy waitStrategy) {
+        this.memory = memory;
+        this.capacity = capacity;
+        this.slotSize = slotSize;
+        this.waitStrategy = waitStrategy;
+        mask = capacity-1;
+        slotStride = slotStride(slotSize);
+        claimed = memory.getLongVolatile(PRODUCER_OFFSET);
+    }
+
+    private static long slotStride(int slotSize) {
+        return SLOT_HEADER_LENGTH+((slotSize+7L)&~7L);
+    }
+
+    private static void checkSize(int capacity, int slotSize) {
+        // with one slot, published for s (s+1) would be the same word as free for s+1
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity must be a power of 2 >= 2");
+        if (slotSize < 0) throw new IllegalArgumentException("slotSize must be >= 0");
+    }
+
+    /**
+     * @return number of bytes of memory needed for a ring buffer of capacity slots of slotSize bytes
+     */
+    public static long bytesRequired(int capacity, int slotSize) {
+        checkSize(capacity, slotSize);
+        return HEADER_LENGTH+capacity*slotStride(slotSize);
+    }
+
+    /**
+     * Initializes an empty ring buffer at the start of memory. memory must be 8 byte aligned and nothing else may be
+     * using it yet.
+     *
+     * @param capacity number of slots, a power of 2 of at least 2
+     * @param slotSize maximum size of a message
+     */
+    public static RingBuffer create(DirectMemory memory, int capacity, int slotSize, WaitStrategy waitStrategy) {
+        final long bytes = bytesRequired(capacity, slotSize);
+        if (memory.length() < bytes) throw new IllegalArgumentException("memory of length " + memory.length() + " is smaller than the " + bytes + " bytes required");
+        memory.putLong(CAPACITY_OFFSET, capacity);
+        memory.putLong(SLOT_SIZE_OFFSET, slotSize);
+        memory.putLong(PRODUCER_OFFSET, 0);
+        memory.putLong(CONSUMER_OFFSET, 0);
+        final long stride = slotStride(slotSize);
+        for (int i = 0; i < capacity; i++) {
+            memory.putLong(HEADER_LENGTH+i*stride+SLOT_SEQUENCE_OFFSET, i);
+        }
+        // other processes check the magic before anything else, so it goes last
+        memory.putLongOrdered(MAGIC_OFFSET, MAGIC);
+        return new RingBuffer(memory, capacity, slotSize, waitStrategy);
+    }
+
+    /**
+     * Opens a ring buffer that was created by {@link #create(DirectMemory, int, int, WaitStrategy)}, usually in a
+     * different process.
+     */
+    public static RingBuffer open(DirectMemory memory, WaitStrategy waitStrategy) {
+        if (memory.length() < HEADER_LENGTH || memory.getLongVolatile(MAGIC_OFFSET) != MAGIC) {
+            throw new IllegalArgumentException("memory does not contain a ring buffer");
+        }
+        final int capacity = (int)memory.getLong(CAPACITY_OFFSET);
+        final int slotSize = (int)memory.getLong(SLOT_SIZE_OFFSET);
+        final long bytes = bytesRequired(capacity, slotSize);
+        if (memory.length() < bytes) throw new IllegalArgumentException("memory of length " + memory.length() + " is smaller than the " + bytes + " bytes required");
+        return new RingBuffer(memory, capacity, slotSize, waitStrategy);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int slotSize() {
+        return slotSize;
+    }
+
+    /**
+     * @return approximate number of published messages that have not been claimed by a consumer
+     */
+    public long size() {
+        return Math.max(memory.getLongVolatile(PRODUCER_OFFSET)-memory.getLongVolatile(CONSUMER_OFFSET), 0);
+    }
+
+    private long slotOffset(long sequence) {
+        return HEADER_LENGTH+(sequence&mask)*slotStride;
+    }
+
+    private long slotSequence(long sequence) {
+        return memory.getLongVolatile(slotOffset(sequence)+SLOT_SEQUENCE_OFFSET);
+    }
+
+    private void checkCount(int count) {
+        if (count <= 0 || count > capacity) throw new IllegalArgumentException("count must be between 1 and capacity");
+    }
+
+    /**
+     * @return the payload of the slot for sequence, to be written by the producer before it is published or read by
+     * the consumer that claimed it before it is released
+     */
+    public DirectMemory slot(long sequence) {
+        return memory.slice(slotOffset(sequence)+SLOT_HEADER_LENGTH, slotSize);
+    }
+
+    /**
+     * @return length of the message in the slot for sequence
+     */
+    public int length(long sequence) {
+        return memory.getInt(slotOffset(sequence)+SLOT_LENGTH_OFFSET);
+    }
+
+    /**
+     * Sets the length of the message in a claimed slot, must be called by the producer before the slot is published.
+     */
+    public void setLength(long sequence, int length) {
+        if (length < 0 || length > slotSize) throw new IllegalArgumentException("length must be between 0 and " + slotSize);
+        memory.putInt(slotOffset(sequence)+SLOT_LENGTH_OFFSET, length);
+    }
+
+    /**
+     * Claims count consecutive slots for the producer, waiting until they are free.
+     *
+     * @return sequence of the first slot
+     */
+    public long claim(int count) throws InterruptedException {
+        checkCount(count);
+        final long first = claimed;
+        for (long sequence = first; sequence < first+count; sequence++) {
+            for (int attempt = 0; slotSequence(sequence) != sequence; attempt++) {
+                waitStrategy.idle(attempt);
+            }
+        }
+        claimed = first+count;
+        return first;
+    }
+
+    /**
+     * Claims count consecutive slots for the producer if they are all free.
+     *
+     * @return sequence of the first slot, or -1 if there are not count free slots
+     */
+    public long tryClaim(int count) {
+        checkCount(count);
+        final long first = claimed;
+        // slots are released in any order so each one has to be checked
+        for (long sequence = first; sequence < first+count; sequence++) {
+            if (slotSequence(sequence) != sequence) return -1;
+        }
+        claimed = first+count;
+        return first;
+    }
+
+    /**
+     * Publishes count claimed slots starting at first to the consumers. Their lengths must already be set.
+     */
+    public void publish(long first, int count) {
+        checkCount(count);
+        if (first < 0 || first+count > claimed) throw new IllegalArgumentException("slots " + first + " to " + (first+count) + " have not been claimed");
+        for (long sequence = first; sequence < first+count; sequence++) {
+            memory.putLongOrdered(slotOffset(sequence)+SLOT_SEQUENCE_OFFSET, sequence+1);
+        }
+        if (first+count > memory.getLong(PRODUCER_OFFSET)) {
+            memory.putLongOrdered(PRODUCER_OFFSET, first+count);
+        }
+        waitStrategy.signalAll();
+    }
+
+    /**
+     * Copies a message into the next slot and publishes it, waiting for a free slot.
+     */
+    public void put(byte[] bytes, int start, int length) throws InterruptedException {
+        if (length > slotSize) throw new IllegalArgumentException("message of " + length + " bytes is larger than slotSize " + slotSize);
+        final long sequence = claim(1);
+        write(sequence, bytes, start, length);
+    }
+
+    public void put(byte[] bytes) throws InterruptedException {
+        put(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Copies a message into the next slot and publishes it if there is a free slot.
+     *
+     * @return true if the message was published
+     */
+    public boolean offer(byte[] bytes, int start, int length) {
+        if (length > slotSize) throw new IllegalArgumentException("message of " + length + " bytes is larger than slotSize " + slotSize);
+        final long sequence = tryClaim(1);
+        if (sequence < 0) return false;
+        write(sequence, bytes, start, length);
+        return true;
+    }
+
+    public boolean offer(byte[] bytes) {
+        return offer(bytes, 0, bytes.length);
+    }
+
+    private void write(long sequence, byte[] bytes, int start, int length) {
+        memory.putBytes(slotOffset(sequence)+SLOT_HEADER_LENGTH, bytes, start, length);
+        setLength(sequence, length);
+        publish(sequence, 1);
+    }
+
+    /**
+     * @return a new consumer, which must only be used by one thread
+     */
+    public Consumer consumer() {
+        return new Consumer();
+    }
+
+    /**
+     * Claims batches of published slots. Every message is claimed by exactly one consumer. Claimed slots can't be
+     * reused by the producer until they are released.
+     */
+    public final class Consumer {
+        private long first;
+        private int count = 0;
+
+        private Consumer() {}
+
+        /**
+         * Claims up to maxCount published slots if any are available. Slots from an earlier claim must be released first.
+         *
+         * @return number of slots claimed, 0 if nothing has been published
+         */
+        public int tryClaim(int maxCount) {
+            if (maxCount <= 0) throw new IllegalArgumentException("maxCount must be > 0");
+            if (count > 0) throw new IllegalStateException("previously claimed slots have not been released");
+            while (true) {
+                final long head = memory.getLongVolatile(CONSUMER_OFFSET);
+                int available = 0;
+                while (available < maxCount && slotSequence(head+available) == head+available+1) {
+                    available++;
+                }
+                if (available == 0) {
+                    // the slot is either unpublished, or head is stale because another consumer already took it
+                    if (slotSequence(head)-(head+1) < 0) return 0;
+                    continue;
+                }
+                if (memory.compareAndSwapLong(CONSUMER_OFFSET, head, head+available)) {
+                    first = head;
+                    count = available;
+                    return available;
+                }
+            }
+        }
+
+        /**
+         * Claims up to maxCount published slots, waiting until at least one is available.
+         *
+         * @return number of slots claimed
+         */
+        public int claim(int maxCount) throws InterruptedException {
+            int claimed;
+            for (int attempt = 0; (claimed = tryClaim(maxCount)) == 0; attempt++) {
+                waitStrategy.idle(attempt);
+            }
+            return claimed;
+        }
+
+        /**
+         * @return sequence of the first claimed slot
+         */
+        public long first() {
+            if (count == 0) throw new IllegalStateException("no slots are claimed");
+            return first;
+        }
+
+        /**
+         * @return number of claimed slots
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Releases all claimed slots back to the producer.
+         */
+        public void release() {
+            for (long sequence = first; sequence < first+count; sequence++) {
+                memory.putLongOrdered(slotOffset(sequence)+SLOT_SEQUENCE_OFFSET, sequence+capacity);
+            }
+            count = 0;
+            waitStrategy.signalAll();
+        }
+
+        /**
+         * Copies the next message into bytes and releases its slot, waiting until a message is available.
+         *
+         * @param bytes must be at least slotSize bytes long
+         * @return length of the message
+         */
+        public int take(byte[] bytes) throws InterruptedException {
+            if (bytes.length < slotSize) throw new IllegalArgumentException("bytes must be at least slotSize " + slotSize + " bytes long");
+            claim(1);
+            final int length = length(first);
+            memory.getBytes(slotOffset(first)+SLOT_HEADER_LENGTH, bytes, 0, length);
+            release();
+            return length;
+        }
+    }
+}
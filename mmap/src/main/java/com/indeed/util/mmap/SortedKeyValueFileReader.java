@@ -0,0 +1,182 @@
+package com.indeed.util.mmap;
+
+import com.google.common.collect.AbstractIterator;
+import com.indeed.util.serialization.Serializer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Reads a sorted key/value file written by {@link SortedKeyValueFileWriter}.
+ *
+ * The file is mapped with {@link MMapBuffer} and nothing but a sparse index of every indexInterval'th key is loaded onto
+ * the heap. Lookups binary search the sparse index and then the offsets of the entries in one interval, deserializing
+ * keys straight out of the mapped file. Only the entry that is returned is deserialized in full.
+ *
+ * Thread safe.
+ */
+public final class SortedKeyValueFileReader<K, V> implements Closeable, Iterable<Map.Entry<K, V>> {
+    private static final int DEFAULT_INDEX_INTERVAL = 64;
+
+    private final File file;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final Comparator<? super K> comparator;
+    private final int indexInterval;
+
+    private final MMapBuffer buffer;
+    private final DirectMemory memory;
+    private final LongArray offsets;
+    private final long count;
+    private final K[] index;
+
+    public SortedKeyValueFileReader(File file, Serializer<K> keySerializer, Serializer<V> valueSerializer, Comparator<? super K> comparator) throws IOException {
+        this(file, keySerializer, valueSerializer, comparator, DEFAULT_INDEX_INTERVAL);
+    }
+
+    /**
+     * @param indexInterval one of every indexInterval keys is kept on the heap, larger intervals use less heap but
+     *                      read more keys from the file per lookup
+     */
+    @SuppressWarnings("unchecked")
+    public SortedKeyValueFileReader(File file, Serializer<K> keySerializer, Serializer<V> valueSerializer, Comparator<? super K> comparator, int indexInterval) throws IOException {
+        if (indexInterval <= 0) throw new IllegalArgumentException("indexInterval must be > 0");
+        this.file = file;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.comparator = comparator;
+        this.indexInterval = indexInterval;
+        buffer = new MMapBuffer(file, FileChannel.MapMode.READ_ONLY, SortedKeyValueFileWriter.ORDER);
+        try {
+            memory = buffer.memory();
+            final long trailer = memory.length()-SortedKeyValueFileWriter.TRAILER_LENGTH;
+            if (trailer < 0 || memory.getLong(trailer+16) != SortedKeyValueFileWriter.MAGIC) {
+                throw new IOException(file + " is not a sorted key/value file");
+            }
+            final long offsetsStart = memory.getLong(trailer);
+            count = memory.getLong(trailer+8);
+            if (offsetsStart < 0 || count < 0 || offsetsStart+count*8 != trailer) {
+                throw new IOException(file + " is corrupt, offsets at " + offsetsStart + " count " + count + " trailer at " + trailer);
+            }
+            offsets = memory.longArray(offsetsStart, count);
+            final long indexSize = (count+indexInterval-1)/indexInterval;
+            if (indexSize > Integer.MAX_VALUE) throw new IllegalArgumentException("indexInterval " + indexInterval + " is too small for " + count + " entries");
+            index = (K[])new Object[(int)indexSize];
+            for (int i = 0; i < index.length; i++) {
+                index[i] = readKey(new MemoryDataInput(memory), (long)i*indexInterval);
+            }
+        } catch (IOException | RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    private K readKey(MemoryDataInput in, long entry) throws IOException {
+        in.seek(offsets.get(entry));
+        return keySerializer.read(in);
+    }
+
+    /**
+     * @return index of the first entry with a key >= key, or size() if there is none
+     */
+    private long lowerBound(K key) throws IOException {
+        // last sparse index entry <= key
+        int lo = 0;
+        int hi = index.length-1;
+        while (lo <= hi) {
+            final int mid = (lo+hi) >>> 1;
+            if (comparator.compare(index[mid], key) <= 0) {
+                lo = mid+1;
+            } else {
+                hi = mid-1;
+            }
+        }
+        if (hi < 0) return 0;
+        final MemoryDataInput in = new MemoryDataInput(memory);
+        long start = (long)hi*indexInterval;
+        long end = Math.min(start+indexInterval, count);
+        while (start < end) {
+            final long mid = (start+end) >>> 1;
+            if (comparator.compare(readKey(in, mid), key) < 0) {
+                start = mid+1;
+            } else {
+                end = mid;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * @return the value for key, or null if the key is not in the file
+     */
+    public V get(K key) throws IOException {
+        final long entry = lowerBound(key);
+        if (entry == count) return null;
+        final MemoryDataInput in = new MemoryDataInput(memory);
+        if (comparator.compare(readKey(in, entry), key) != 0) return null;
+        return valueSerializer.read(in);
+    }
+
+    public boolean containsKey(K key) throws IOException {
+        final long entry = lowerBound(key);
+        return entry < count && comparator.compare(readKey(new MemoryDataInput(memory), entry), key) == 0;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Iterator over all entries in key order. IOExceptions while reading entries are rethrown as RuntimeExceptions.
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator(0, count);
+    }
+
+    /**
+     * Iterator over the entries with keys from fromInclusive to toExclusive in key order. A null bound is unbounded.
+     */
+    public Iterator<Map.Entry<K, V>> iterator(K fromInclusive, K toExclusive) throws IOException {
+        final long start = fromInclusive == null ? 0 : lowerBound(fromInclusive);
+        final long end = toExclusive == null ? count : lowerBound(toExclusive);
+        return new EntryIterator(start, Math.max(start, end));
+    }
+
+    private final class EntryIterator extends AbstractIterator<Map.Entry<K, V>> {
+        private final MemoryDataInput in = new MemoryDataInput(memory);
+        private final long end;
+        private long entry;
+
+        private EntryIterator(long start, long end) {
+            this.entry = start;
+            this.end = end;
+            if (start < end) in.seek(offsets.get(start));
+        }
+
+        @Override
+        protected Map.Entry<K, V> computeNext() {
+            if (entry >= end) return endOfData();
+            try {
+                // entries are contiguous so there is no need to seek
+                final K key = keySerializer.read(in);
+                final V value = valueSerializer.read(in);
+                entry++;
+                return new AbstractMap.SimpleImmutableEntry<K, V>(key, value);
+            } catch (IOException e) {
+                throw new RuntimeException("error reading entry " + entry + " of " + file, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.close();
+    }
+}
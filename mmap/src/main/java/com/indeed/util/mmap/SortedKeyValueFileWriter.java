@@ -0,0 +1,110 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.serialization.Serializer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.util.Comparator;
+
+/**
+ * Writes an immutable sorted key/value file that is read with {@link SortedKeyValueFileReader}.
+ *
+ * The file contains the serialized entries in key order, each key immediately followed by its value, then a big endian
+ * long array with the offset of each entry and a trailer with the position of the offsets, the entry count and a
+ * magic number. Offsets are buffered off heap until the writer is closed.
+ */
+public final class SortedKeyValueFileWriter<K, V> implements Closeable {
+    static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+
+    // "SRTDKV01"
+    static final long MAGIC = 0x535254444b563031L;
+
+    static final int TRAILER_LENGTH = 24;
+
+    private static final int COPY_BUFFER_LENGTH = 65536;
+
+    private final File file;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final Comparator<? super K> comparator;
+
+    private final DynamicMMapBufferDataOutputStream out;
+    private NativeBuffer offsets;
+    private long count = 0;
+    private K lastKey = null;
+    private boolean closed = false;
+
+    /**
+     * @param comparator order of the keys, must be the same comparator the file is read with
+     */
+    public SortedKeyValueFileWriter(File file, Serializer<K> keySerializer, Serializer<V> valueSerializer, Comparator<? super K> comparator) throws IOException {
+        this.file = file;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.comparator = comparator;
+        out = new DynamicMMapBufferDataOutputStream(file, ORDER);
+        offsets = new NativeBuffer(8*1024, ORDER);
+    }
+
+    /**
+     * @throws IllegalArgumentException if key is not greater than the previous key
+     */
+    public void put(K key, V value) throws IOException {
+        if (closed) throw new IllegalStateException("writer for [" + file + "] is closed");
+        if (count > 0 && comparator.compare(lastKey, key) >= 0) {
+            throw new IllegalArgumentException("keys must be written in strictly increasing order, " + key + " written after " + lastKey);
+        }
+        if ((count+1)*8 > offsets.memory().length()) {
+            offsets = offsets.realloc(offsets.memory().length()*2);
+        }
+        offsets.memory().putLong(count*8, out.position());
+        keySerializer.write(key, out);
+        valueSerializer.write(value, out);
+        lastKey = key;
+        count++;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Writes the offsets and trailer and truncates the file to its final length.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        final long length;
+        try {
+            while (out.position()%8 != 0) {
+                out.writeByte(0);
+            }
+            final long offsetsStart = out.position();
+            final byte[] copyBuffer = new byte[COPY_BUFFER_LENGTH];
+            final DirectMemory offsetsMemory = offsets.memory();
+            for (long position = 0; position < count*8; position += copyBuffer.length) {
+                final int chunk = (int)Math.min(copyBuffer.length, count*8-position);
+                offsetsMemory.getBytes(position, copyBuffer, 0, chunk);
+                out.write(copyBuffer, 0, chunk);
+            }
+            out.writeLong(offsetsStart);
+            out.writeLong(count);
+            out.writeLong(MAGIC);
+            length = out.position();
+            out.sync();
+        } finally {
+            try {
+                out.close();
+            } finally {
+                offsets.close();
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+}
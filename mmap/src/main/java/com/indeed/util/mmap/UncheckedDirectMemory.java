@@ -0,0 +1,174 @@
+package com.indeed.util.mmap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * DirectMemory without per access bounds checks, obtained from {@link DirectMemory#unchecked()}.
+ *
+ * Element gets and puts go straight to the underlying address. Slicing and bulk copies are still range checked since
+ * the check is amortized over the whole operation. Accessing an index outside of this memory is undefined behavior and
+ * will likely crash the JVM.
+ */
+public final class UncheckedDirectMemory extends AbstractMemory {
+    private final DirectMemory checked;
+    private final DirectDataAccess directDataAccess;
+
+    private final long address;
+    private final long length;
+
+    @SuppressWarnings("deprecation")
+    UncheckedDirectMemory(DirectMemory checked) {
+        this.checked = checked;
+        this.address = checked.getAddress();
+        this.length = checked.length();
+        directDataAccess = checked.getOrder().equals(ByteOrder.nativeOrder()) ? NativeEndianDirectDataAccess.getInstance() : ReverseEndianDirectDataAccess.getInstance();
+    }
+
+    @Override
+    public byte getByte(final long l) {
+        return directDataAccess.getByte(address+l);
+    }
+
+    @Override
+    public void putByte(final long l, final byte b) {
+        directDataAccess.putByte(address + l, b);
+    }
+
+    @Override
+    public short getShort(final long l) {
+        return directDataAccess.getShort(address+l);
+    }
+
+    @Override
+    public void putShort(final long l, final short i) {
+        directDataAccess.putShort(address + l, i);
+    }
+
+    @Override
+    public char getChar(final long l) {
+        return directDataAccess.getChar(address+l);
+    }
+
+    @Override
+    public void putChar(final long l, final char c) {
+        directDataAccess.putChar(address + l, c);
+    }
+
+    @Override
+    public int getInt(final long l) {
+        return directDataAccess.getInt(address+l);
+    }
+
+    @Override
+    public void putInt(final long l, final int i) {
+        directDataAccess.putInt(address + l, i);
+    }
+
+    @Override
+    public long getLong(final long l) {
+        return directDataAccess.getLong(address+l);
+    }
+
+    @Override
+    public void putLong(final long l, final long l1) {
+        directDataAccess.putLong(address + l, l1);
+    }
+
+    @Override
+    public float getFloat(final long l) {
+        return directDataAccess.getFloat(address+l);
+    }
+
+    @Override
+    public void putFloat(final long l, final float v) {
+        directDataAccess.putFloat(address + l, v);
+    }
+
+    @Override
+    public double getDouble(final long l) {
+        return directDataAccess.getDouble(address+l);
+    }
+
+    @Override
+    public void putDouble(final long l, final double v) {
+        directDataAccess.putDouble(address + l, v);
+    }
+
+    @Override
+    public void putBytes(final long l, final byte[] bytes) {
+        checked.putBytes(l, bytes);
+    }
+
+    @Override
+    public void putBytes(final long l, final byte[] bytes, final int start, final int length) {
+        checked.putBytes(l, bytes, start, length);
+    }
+
+    @Override
+    public void putBytes(final long l, final Memory source) {
+        checked.putBytes(l, source);
+    }
+
+    @Override
+    public void putBytes(final long l, final Memory source, final long start, final long length) {
+        checked.putBytes(l, source, start, length);
+    }
+
+    @Override
+    public void putBytes(final long l, final ByteBuffer source) {
+        checked.putBytes(l, source);
+    }
+
+    @Override
+    public void getBytes(final long l, final byte[] bytes) {
+        checked.getBytes(l, bytes);
+    }
+
+    @Override
+    public void getBytes(final long l, final byte[] bytes, final int start, final int length) {
+        checked.getBytes(l, bytes, start, length);
+    }
+
+    @Override
+    public void getBytes(final long l, final Memory dest) {
+        checked.getBytes(l, dest);
+    }
+
+    @Override
+    public void getBytes(final long l, final Memory dest, final long start, final long length) {
+        checked.getBytes(l, dest, start, length);
+    }
+
+    @Override
+    public void getBytes(final long l, final ByteBuffer dest) {
+        checked.getBytes(l, dest);
+    }
+
+    @Override
+    public UncheckedDirectMemory slice(final long startAddress, final long sliceLength) {
+        return new UncheckedDirectMemory(checked.slice(startAddress, sliceLength));
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public boolean isDirect() {
+        return true;
+    }
+
+    @Override
+    public ByteOrder getOrder() {
+        return checked.getOrder();
+    }
+
+    /**
+     * @return bounds checked view of the same memory
+     */
+    public DirectMemory checked() {
+        return checked;
+    }
+}
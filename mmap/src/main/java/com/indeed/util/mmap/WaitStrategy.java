@@ -0,0 +1,109 @@
+package com.indeed.util.mmap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * How a thread waits for another thread to change shared memory, used by {@link RingBuffer}.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Called every time the awaited condition is checked and found false.
+     *
+     * @param attempt number of times the condition has been checked since the wait started, starting at 0
+     */
+    void idle(int attempt) throws InterruptedException;
+
+    /**
+     * Called after the shared memory has changed in a way that other threads may be waiting for.
+     */
+    void signalAll();
+
+    /**
+     * Busy spins. Lowest latency, but burns a core for every waiting thread.
+     */
+    public static final class Spinning implements WaitStrategy {
+        @Override
+        public void idle(int attempt) throws InterruptedException {
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+
+        @Override
+        public void signalAll() {
+        }
+    }
+
+    /**
+     * Spins for a number of attempts and then yields the cpu on every attempt.
+     */
+    public static final class Yielding implements WaitStrategy {
+        private final int spins;
+
+        public Yielding() {
+            this(100);
+        }
+
+        public Yielding(int spins) {
+            this.spins = spins;
+        }
+
+        @Override
+        public void idle(int attempt) throws InterruptedException {
+            if (Thread.interrupted()) throw new InterruptedException();
+            if (attempt >= spins) {
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public void signalAll() {
+        }
+    }
+
+    /**
+     * Waits on a condition that is signalled by threads in this process. Since the other side of shared memory may be
+     * another process that can't signal the condition, waits time out after maxWaitNanos and check again.
+     */
+    public static final class Blocking implements WaitStrategy {
+        private final long maxWaitNanos;
+        private final Lock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        public Blocking() {
+            this(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        public Blocking(long maxWaitNanos) {
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        @Override
+        public void idle(int attempt) throws InterruptedException {
+            waiters.incrementAndGet();
+            lock.lock();
+            try {
+                changed.awaitNanos(maxWaitNanos);
+            } finally {
+                lock.unlock();
+                waiters.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void signalAll() {
+            // skip the lock when nobody is waiting, which is almost always the case under load
+            if (waiters.get() == 0) return;
+            lock.lock();
+            try {
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
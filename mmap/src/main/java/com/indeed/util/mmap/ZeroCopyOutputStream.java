@@ -1,6 +1,7 @@
 package com.indeed.util.mmap;
 
 import com.google.common.io.ByteStreams;
+import com.indeed.util.core.reference.SharedReference;
 import org.apache.log4j.Logger;
 
 import java.io.DataOutput;
@@ -8,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Zero Copy is sort of a lie, it's zero copy if realloc decides not to copy for sizes less than MMAP_THRESHOLD (default 256 k) and
@@ -21,6 +23,9 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
     private NativeBuffer buffer;
     private DirectMemory memory;
 
+    private final NativeBufferPool pool;
+    private SharedReference<NativeBuffer> pooledBuffer;
+
     public ZeroCopyOutputStream() {
         this(65536, ByteOrder.BIG_ENDIAN);
     }
@@ -28,14 +33,38 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
     public ZeroCopyOutputStream(int initialSize, ByteOrder order) {
         buffer = new NativeBuffer(initialSize, order);
         memory = buffer.memory();
+        pool = null;
+    }
+
+    /**
+     * Borrows its buffers from pool and returns them when it grows or is closed, instead of allocating its own.
+     * The byte order of the stream is the byte order of the pool.
+     */
+    public ZeroCopyOutputStream(NativeBufferPool pool, int initialSize) {
+        this.pool = pool;
+        pooledBuffer = pool.borrow(initialSize);
+        buffer = pooledBuffer.get();
+        memory = buffer.memory();
+    }
+
+    private void grow() throws IOException {
+        if (pool == null) {
+            buffer = buffer.realloc(memory.length()*2);
+        } else {
+            final SharedReference<NativeBuffer> grown = pool.borrow(memory.length()*2);
+            grown.get().memory().putBytes(0, memory, 0, currentAddress);
+            pooledBuffer.close();
+            pooledBuffer = grown;
+            buffer = grown.get();
+        }
+        memory = buffer.memory();
     }
 
     private long currentAddress = 0;
 
     public void writeBoolean(final boolean v) throws IOException {
         if (currentAddress + 1 > memory.length()) {
-            buffer = buffer.realloc(memory.length()*2);
-            memory = buffer.memory();
+            grow();
             writeBoolean(v);
         } else {
             memory.putByte(currentAddress, (byte)(v ? 1 : 0));
@@ -45,8 +74,7 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
 
     public void writeByte(final int v) throws IOException {
         if (currentAddress + 1 > memory.length()) {
-            buffer = buffer.realloc(memory.length()*2);
-            memory = buffer.memory();
+            grow();
             writeByte(v);
         } else {
             memory.putByte(currentAddress, (byte)v);
@@ -56,8 +84,7 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
 
     public void writeShort(final int v) throws IOException {
         if (currentAddress + 2 > memory.length()) {
-            buffer = buffer.realloc(memory.length()*2);
-            memory = buffer.memory();
+            grow();
             writeShort(v);
         } else {
             memory.putShort(currentAddress, (short)v);
@@ -67,8 +94,7 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
 
     public void writeChar(final int v) throws IOException {
         if (currentAddress + 2 > memory.length()) {
-            buffer = buffer.realloc(memory.length()*2);
-            memory = buffer.memory();
+            grow();
             writeChar(v);
         } else {
             memory.putChar(currentAddress, (char)v);
@@ -78,8 +104,7 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
 
     public void writeInt(final int v) throws IOException {
         if (currentAddress + 4 > memory.length()) {
-            buffer = buffer.realloc(memory.length()*2);
-            memory = buffer.memory();
+            grow();
             writeInt(v);
         } else {
             memory.putInt(currentAddress, v);
@@ -89,8 +114,7 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
 
     public void writeLong(final long v) throws IOException {
         if (currentAddress + 8 > memory.length()) {
-            buffer = buffer.realloc(memory.length()*2);
-            memory = buffer.memory();
+            grow();
             writeLong(v);
         } else {
             memory.putLong(currentAddress, v);
@@ -100,8 +124,7 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
 
     public void writeFloat(final float v) throws IOException {
         if (currentAddress + 4 > memory.length()) {
-            buffer = buffer.realloc(memory.length()*2);
-            memory = buffer.memory();
+            grow();
             writeFloat(v);
         } else {
             memory.putFloat(currentAddress, v);
@@ -111,8 +134,7 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
 
     public void writeDouble(final double v) throws IOException {
         if (currentAddress + 8 > memory.length()) {
-            buffer = buffer.realloc(memory.length()*2);
-            memory = buffer.memory();
+            grow();
             writeDouble(v);
         } else {
             memory.putDouble(currentAddress, v);
@@ -142,8 +164,7 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
             throw new IndexOutOfBoundsException();
         }
         if (currentAddress + len > memory.length()) {
-            buffer = buffer.realloc(memory.length()*2);
-            memory = buffer.memory();
+            grow();
             write(b, off, len);
         } else {
             memory.putBytes(currentAddress, b, off, len);
@@ -153,7 +174,11 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
 
     @Override
     public void close() throws IOException {
-        buffer.close();
+        if (pooledBuffer != null) {
+            pooledBuffer.close();
+        } else {
+            buffer.close();
+        }
     }
 
     public long position() {
@@ -174,6 +199,10 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
         ByteStreams.copy(in, outputStream);
     }
 
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        MemoryChannels.write(memory(), channel);
+    }
+
     //the input stream returned by this call is invalidated by closing or writing additional data to this output stream
     public InputStream getInputStream() {
         return new MemoryInputStream(memory());
@@ -22,9 +22,36 @@ int get_c_flags(int flags) {
     if (flags & com_indeed_util_mmap_MMapBuffer_MAP_ANONYMOUS) {
         c_flags |= MAP_ANONYMOUS;
     }
+    // MAP_POPULATE and MAP_HUGETLB are linux only, they are ignored where unsupported
+#ifdef MAP_POPULATE
+    if (flags & com_indeed_util_mmap_MMapBuffer_MAP_POPULATE) {
+        c_flags |= MAP_POPULATE;
+    }
+#endif
+#ifdef MAP_HUGETLB
+    if (flags & com_indeed_util_mmap_MMapBuffer_MAP_HUGETLB) {
+        c_flags |= MAP_HUGETLB;
+    }
+#endif
     return c_flags;
 }
 
+// returns -1 for advice that is not supported on this platform
+int get_c_advice(int advice) {
+    switch (advice) {
+        case com_indeed_util_mmap_MMapBuffer_MADV_NORMAL: return MADV_NORMAL;
+        case com_indeed_util_mmap_MMapBuffer_MADV_RANDOM: return MADV_RANDOM;
+        case com_indeed_util_mmap_MMapBuffer_MADV_SEQUENTIAL: return MADV_SEQUENTIAL;
+        case com_indeed_util_mmap_MMapBuffer_MADV_WILLNEED: return MADV_WILLNEED;
+        case com_indeed_util_mmap_MMapBuffer_MADV_DONTNEED: return MADV_DONTNEED;
+#ifdef MADV_HUGEPAGE
+        case com_indeed_util_mmap_MMapBuffer_MADV_HUGEPAGE: return MADV_HUGEPAGE;
+        case com_indeed_util_mmap_MMapBuffer_MADV_NOHUGEPAGE: return MADV_NOHUGEPAGE;
+#endif
+        default: return -1;
+    }
+}
+
 /*
  * Class:     com_indeed_util_mmap_MMapBuffer
  * Method:    mmap
@@ -76,6 +103,26 @@ JNIEXPORT jlong JNICALL Java_com_indeed_util_mmap_MMapBuffer_mremap (JNIEnv* env
     return (jlong)map_addr;
 }
 
+/*
+ * Class:     com_indeed_util_mmap_MMapBuffer
+ * Method:    mremapInPlace
+ * Signature: (JJJ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_indeed_util_mmap_MMapBuffer_mremapInPlace (JNIEnv* env, jclass class, jlong address, jlong oldSize, jlong newSize) {
+    void* map_addr;
+#ifdef MREMAP_MAYMOVE
+    map_addr = mremap((void*)address, oldSize, newSize, 0);
+#else
+    // mremap not supported on OSX
+    errno = ENOSYS;
+    return com_indeed_util_mmap_MMapBuffer_MAP_FAILED;
+#endif
+    if (map_addr == MAP_FAILED) {
+        return com_indeed_util_mmap_MMapBuffer_MAP_FAILED;
+    }
+    return (jlong)map_addr;
+}
+
 /*
  * Class:     com_indeed_util_mmap_MMapBuffer
  * Method:    msync
@@ -103,6 +150,21 @@ JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_madviseDontNeed (JNI
     return madvise((void*)address, length, MADV_DONTNEED);
 }
 
+/*
+ * Class:     com_indeed_util_mmap_MMapBuffer
+ * Method:    madvise0
+ * Signature: (JJI)I
+ */
+JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_madvise0 (JNIEnv* env, jclass class, jlong address, jlong length, jint advice) {
+    int c_advice;
+    c_advice = get_c_advice(advice);
+    if (c_advice == -1) {
+        errno = EINVAL;
+        return -1;
+    }
+    return madvise((void*)address, length, c_advice);
+}
+
 /*
  * Class:     com_indeed_util_mmap_MMapBuffer
  * Method:    errno
@@ -111,3 +173,19 @@ JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_madviseDontNeed (JNI
 JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_errno (JNIEnv* env, jclass class) {
     return errno;
 }
+
+/*
+ * Class:     com_indeed_util_mmap_MMapBuffer
+ * Method:    supportedMapFlags
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_supportedMapFlags (JNIEnv* env, jclass class) {
+    jint flags = com_indeed_util_mmap_MMapBuffer_MAP_SHARED | com_indeed_util_mmap_MMapBuffer_MAP_PRIVATE | com_indeed_util_mmap_MMapBuffer_MAP_ANONYMOUS;
+#ifdef MAP_POPULATE
+    flags |= com_indeed_util_mmap_MMapBuffer_MAP_POPULATE;
+#endif
+#ifdef MAP_HUGETLB
+    flags |= com_indeed_util_mmap_MMapBuffer_MAP_HUGETLB;
+#endif
+    return flags;
+}
@@ -21,6 +21,24 @@ extern "C" {
 #define com_indeed_util_mmap_MMapBuffer_MAP_PRIVATE 2L
 #undef com_indeed_util_mmap_MMapBuffer_MAP_ANONYMOUS
 #define com_indeed_util_mmap_MMapBuffer_MAP_ANONYMOUS 4L
+#undef com_indeed_util_mmap_MMapBuffer_MAP_POPULATE
+#define com_indeed_util_mmap_MMapBuffer_MAP_POPULATE 8L
+#undef com_indeed_util_mmap_MMapBuffer_MAP_HUGETLB
+#define com_indeed_util_mmap_MMapBuffer_MAP_HUGETLB 16L
+#undef com_indeed_util_mmap_MMapBuffer_MADV_NORMAL
+#define com_indeed_util_mmap_MMapBuffer_MADV_NORMAL 0L
+#undef com_indeed_util_mmap_MMapBuffer_MADV_RANDOM
+#define com_indeed_util_mmap_MMapBuffer_MADV_RANDOM 1L
+#undef com_indeed_util_mmap_MMapBuffer_MADV_SEQUENTIAL
+#define com_indeed_util_mmap_MMapBuffer_MADV_SEQUENTIAL 2L
+#undef com_indeed_util_mmap_MMapBuffer_MADV_WILLNEED
+#define com_indeed_util_mmap_MMapBuffer_MADV_WILLNEED 3L
+#undef com_indeed_util_mmap_MMapBuffer_MADV_DONTNEED
+#define com_indeed_util_mmap_MMapBuffer_MADV_DONTNEED 4L
+#undef com_indeed_util_mmap_MMapBuffer_MADV_HUGEPAGE
+#define com_indeed_util_mmap_MMapBuffer_MADV_HUGEPAGE 5L
+#undef com_indeed_util_mmap_MMapBuffer_MADV_NOHUGEPAGE
+#define com_indeed_util_mmap_MMapBuffer_MADV_NOHUGEPAGE 6L
 /*
  * Class:     com_indeed_util_mmap_MMapBuffer
  * Method:    mmap
@@ -45,6 +63,14 @@ JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_munmap
 JNIEXPORT jlong JNICALL Java_com_indeed_util_mmap_MMapBuffer_mremap
   (JNIEnv *, jclass, jlong, jlong, jlong);
 
+/*
+ * Class:     com_indeed_util_mmap_MMapBuffer
+ * Method:    mremapInPlace
+ * Signature: (JJJ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_indeed_util_mmap_MMapBuffer_mremapInPlace
+  (JNIEnv *, jclass, jlong, jlong, jlong);
+
 /*
  * Class:     com_indeed_util_mmap_MMapBuffer
  * Method:    msync
@@ -69,6 +95,14 @@ JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_madvise
 JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_madviseDontNeed
   (JNIEnv *, jclass, jlong, jlong);
 
+/*
+ * Class:     com_indeed_util_mmap_MMapBuffer
+ * Method:    madvise0
+ * Signature: (JJI)I
+ */
+JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_madvise0
+  (JNIEnv *, jclass, jlong, jlong, jint);
+
 /*
  * Class:     com_indeed_util_mmap_MMapBuffer
  * Method:    errno
@@ -77,6 +111,14 @@ JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_madviseDontNeed
 JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_errno
   (JNIEnv *, jclass);
 
+/*
+ * Class:     com_indeed_util_mmap_MMapBuffer
+ * Method:    supportedMapFlags
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_supportedMapFlags
+  (JNIEnv *, jclass);
+
 #ifdef __cplusplus
 }
 #endif
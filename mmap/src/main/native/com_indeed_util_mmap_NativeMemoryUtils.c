@@ -80,3 +80,12 @@ JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_NativeMemoryUtils_mincore(JNIEn
     }
     return err;
 }
+
+/*
+ * Class:     com_indeed_util_mmap_NativeMemoryUtils
+ * Method:    newDirectByteBuffer
+ * Signature: (JJ)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_com_indeed_util_mmap_NativeMemoryUtils_newDirectByteBuffer(JNIEnv* env, jclass class, jlong addr, jlong length) {
+    return (*env)->NewDirectByteBuffer(env, (void*)addr, length);
+}
@@ -75,6 +75,14 @@ JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_NativeMemoryUtils_munlock0
 JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_NativeMemoryUtils_mincore
   (JNIEnv *, jclass, jlong, jlong, jlong);
 
+/*
+ * Class:     com_indeed_util_mmap_NativeMemoryUtils
+ * Method:    newDirectByteBuffer
+ * Signature: (JJ)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_com_indeed_util_mmap_NativeMemoryUtils_newDirectByteBuffer
+  (JNIEnv *, jclass, jlong, jlong);
+
 #ifdef __cplusplus
 }
 #endif
@@ -107,4 +107,22 @@ public class DirectMemoryTest extends TestCase {
             assertEquals((byte) i, directMemory2.getByte(i));
         }
     }
+
+    public void testLongVolatile() throws Exception {
+        // both memories map the same file, so each sees the other's writes in its own byte order
+        directMemory.putLongOrdered(8, 0x0102030405060708L);
+        assertEquals(0x0102030405060708L, directMemory.getLongVolatile(8));
+        assertEquals(0x0807060504030201L, directMemory2.getLongVolatile(8));
+        directMemory2.putLongVolatile(16, 42);
+        assertEquals(42, directMemory2.getLong(16));
+        assertEquals(42, directMemory.getLongVolatile(16) >>> 56);
+        try {
+            directMemory.getLongVolatile(4);
+            fail();
+        } catch (IllegalArgumentException success) {}
+        try {
+            directMemory.putLongOrdered(length - 4, 0);
+            fail();
+        } catch (IndexOutOfBoundsException success) {}
+    }
 }
@@ -102,4 +102,42 @@ public class DoubleArrayTest extends TestCase {
             } catch (IndexOutOfBoundsException success) {}
         }
     }
+
+    public void testBulkByteOrders() {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            final DoubleArray[] arrays = {
+                    new HeapMemory(length*8, order).doubleArray(0, length),
+                    new NativeBuffer(length*8, order).memory().doubleArray(0L, length)
+            };
+            for (DoubleArray array : arrays) {
+                for (int i = 0; i < length; i++) {
+                    array.set(i, i*1.5);
+                }
+                final double[] values = new double[length+3];
+                array.get(0, values, 3, length);
+                for (int i = 0; i < length; i++) {
+                    assertEquals(i*1.5, values[i+3], 0);
+                }
+                final double[] tail = new double[10];
+                array.get(length-10, tail);
+                assertEquals((length-1)*1.5, tail[9], 0);
+
+                for (int i = 0; i < length; i++) {
+                    values[i] = -i/3.0;
+                }
+                array.set(1, values, 0, length-1);
+                for (int i = 1; i < length; i++) {
+                    assertEquals(values[i-1], array.get(i), 0);
+                }
+                try {
+                    array.get(length-1, new double[2]);
+                    fail();
+                } catch (IndexOutOfBoundsException success) {}
+                try {
+                    array.get(0, new double[2], 1, 2);
+                    fail();
+                } catch (IndexOutOfBoundsException success) {}
+            }
+        }
+    }
 }
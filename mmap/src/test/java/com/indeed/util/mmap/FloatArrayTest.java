@@ -102,4 +102,42 @@ public class FloatArrayTest extends TestCase {
             } catch (IndexOutOfBoundsException success) {}
         }
     }
+
+    public void testBulkByteOrders() {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            final FloatArray[] arrays = {
+                    new HeapMemory(length*4, order).floatArray(0, length),
+                    new NativeBuffer(length*4, order).memory().floatArray(0L, length)
+            };
+            for (FloatArray array : arrays) {
+                for (int i = 0; i < length; i++) {
+                    array.set(i, i*1.5f);
+                }
+                final float[] values = new float[length+3];
+                array.get(0, values, 3, length);
+                for (int i = 0; i < length; i++) {
+                    assertEquals(i*1.5f, values[i+3], 0);
+                }
+                final float[] tail = new float[10];
+                array.get(length-10, tail);
+                assertEquals((length-1)*1.5f, tail[9], 0);
+
+                for (int i = 0; i < length; i++) {
+                    values[i] = -i/3f;
+                }
+                array.set(1, values, 0, length-1);
+                for (int i = 1; i < length; i++) {
+                    assertEquals(values[i-1], array.get(i), 0);
+                }
+                try {
+                    array.get(length-1, new float[2]);
+                    fail();
+                } catch (IndexOutOfBoundsException success) {}
+                try {
+                    array.get(0, new float[2], 1, 2);
+                    fail();
+                } catch (IndexOutOfBoundsException success) {}
+            }
+        }
+    }
 }
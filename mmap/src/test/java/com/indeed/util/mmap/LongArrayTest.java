@@ -70,6 +70,52 @@ public class LongArrayTest extends TestCase {
         }
     }
 
+    public void testBulkOperations() {
+        for (LongArray array : longArrays) {
+            for (int i = 0; i < length; i++) {
+                array.set(i, i - 100);
+            }
+            assertEquals(-100, array.min());
+            assertEquals(length - 101, array.max());
+            assertEquals(-50, array.min(50, 10));
+            assertEquals(-41, array.max(50, 10));
+            long expectedSum = 0;
+            for (int i = 0; i < length; i++) {
+                expectedSum += i - 100;
+            }
+            assertEquals(expectedSum, array.sum());
+            assertEquals(-50 - 49 - 48, array.sum(50, 3));
+            assertEquals(0, array.sum(7, 0));
+
+            assertEquals(100, array.indexOf(0));
+            assertEquals(-1, array.indexOf(length));
+            assertEquals(-1, array.indexOf(0, 100, 0));
+            assertEquals(200, array.binarySearch(100));
+            assertEquals(-1, array.binarySearch(-101));
+            assertEquals(-length - 1, array.binarySearch(length));
+            assertEquals(-16, array.binarySearch(10, 5, 0));
+
+            array.fill(10, 20, length);
+            assertEquals(20, array.count(length));
+            assertEquals(length, array.get(10));
+            assertEquals(length, array.get(29));
+            assertEquals(-70, array.get(30));
+            array.fill(3);
+            assertEquals(length, array.count(0, length, 3));
+            assertEquals(3, array.min());
+            assertEquals(3, array.max());
+
+            try {
+                array.sum(length - 1, 2);
+                fail();
+            } catch (IndexOutOfBoundsException success) {}
+            try {
+                array.min(0, 0);
+                fail();
+            } catch (IllegalArgumentException success) {}
+        }
+    }
+
     public void testThrownExceptions() {
         for (LongArray longArray : longArrays) {
             try {
@@ -102,4 +148,42 @@ public class LongArrayTest extends TestCase {
             } catch (IndexOutOfBoundsException success) {}
         }
     }
+
+    public void testBulkByteOrders() {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            final LongArray[] arrays = {
+                    new HeapMemory(length*8, order).longArray(0, length),
+                    new NativeBuffer(length*8, order).memory().longArray(0L, length)
+            };
+            for (LongArray array : arrays) {
+                for (int i = 0; i < length; i++) {
+                    array.set(i, i*0x0102030405060708L);
+                }
+                final long[] values = new long[length+3];
+                array.get(0, values, 3, length);
+                for (int i = 0; i < length; i++) {
+                    assertEquals(i*0x0102030405060708L, values[i+3]);
+                }
+                final long[] tail = new long[10];
+                array.get(length-10, tail);
+                assertEquals((length-1)*0x0102030405060708L, tail[9]);
+
+                for (int i = 0; i < length; i++) {
+                    values[i] = -i*31L;
+                }
+                array.set(1, values, 0, length-1);
+                for (int i = 1; i < length; i++) {
+                    assertEquals(values[i-1], array.get(i));
+                }
+                try {
+                    array.get(length-1, new long[2]);
+                    fail();
+                } catch (IndexOutOfBoundsException success) {}
+                try {
+                    array.get(0, new long[2], 1, 2);
+                    fail();
+                } catch (IndexOutOfBoundsException success) {}
+            }
+        }
+    }
 }
@@ -1,12 +1,18 @@
 package com.indeed.util.mmap;
 
+import com.google.common.base.Charsets;
+import com.indeed.util.io.VIntUtils;
 import junit.framework.TestCase;
 import org.apache.log4j.Logger;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
+import java.util.Random;
 
 /**
  * @author goodwin
@@ -124,6 +130,58 @@ public class MemoryInputTest extends TestCase {
         }
     }
 
+    public void testVInts() throws Exception {
+        final Random rand = new Random(0);
+        final int count = 4000;
+        final int[] ints = new int[count];
+        final long[] longs = new long[count];
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < count; i++) {
+            // every encoded length, including negative values
+            ints[i] = rand.nextInt() >> rand.nextInt(32);
+            longs[i] = rand.nextLong() >> rand.nextInt(64);
+            VIntUtils.writeVInt((DataOutput)out, ints[i]);
+            VIntUtils.writeSVInt((DataOutput)out, ints[i]);
+            VIntUtils.writeVInt64((DataOutput)out, longs[i]);
+            VIntUtils.writeSVInt64((DataOutput)out, longs[i]);
+        }
+        out.flush();
+        final byte[] encoded = bytes.toByteArray();
+        assertTrue(encoded.length <= length);
+
+        for (int m = 0; m < memoryArray.length; m++) {
+            // ends exactly at the end of memory so the last values take the byte at a time path
+            final Memory memory = memoryArray[m].slice(length-encoded.length, encoded.length);
+            memory.putBytes(0, encoded);
+            final MemoryDataInput in = new MemoryDataInput(memory);
+            for (int i = 0; i < count; i++) {
+                assertEquals(ints[i], in.readVInt());
+                assertEquals(ints[i], in.readSVInt());
+                assertEquals(longs[i], in.readVInt64());
+                assertEquals(longs[i], in.readSVInt64());
+            }
+            assertEquals(encoded.length, in.position());
+        }
+    }
+
+    public void testReadUTF8() throws Exception {
+        final String[] strings = {"", "a", "posting", "0123456789abcdefghij", "caf\u00e9 au lait", "\u65e5\u672c\u8a9e", "emoji \ud83d\ude00 at the end"};
+        for (Memory memory : memoryArray) {
+            final MemoryDataInput in = new MemoryDataInput(memory);
+            long position = 0;
+            for (String string : strings) {
+                final byte[] utf8 = string.getBytes(Charsets.UTF_8);
+                memory.putBytes(position, utf8);
+                position += utf8.length;
+            }
+            for (String string : strings) {
+                assertEquals(string, in.readUTF8(string.getBytes(Charsets.UTF_8).length));
+            }
+            assertEquals(position, in.position());
+        }
+    }
+
     public void testReadByte() throws Exception {
         for (Memory aMemoryArray : memoryArray) {
             ByteArray byteArray = aMemoryArray.byteArray(0L, length);
@@ -0,0 +1,143 @@
+package com.indeed.util.mmap;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+public class PackedIntArrayTest extends TestCase {
+    private static final int LENGTH = 1000;
+
+    private static long[] randomValues(Random rand, int length, int bitsPerValue) {
+        final long mask = bitsPerValue == 64 ? -1L : (1L << bitsPerValue) - 1;
+        final long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = rand.nextLong() & mask;
+        }
+        return values;
+    }
+
+    private static Memory[] memories(long length) {
+        return new Memory[]{
+                new HeapMemory((int)length, ByteOrder.LITTLE_ENDIAN),
+                new HeapMemory((int)length, ByteOrder.BIG_ENDIAN),
+                new NativeBuffer(length, ByteOrder.nativeOrder()).memory(),
+        };
+    }
+
+    public void testSingleValues() {
+        final Random rand = new Random(0);
+        for (int bits = 1; bits <= 64; bits++) {
+            for (final Memory memory : memories(PackedIntArray.bytesRequired(LENGTH, bits))) {
+                final PackedIntArray array = new PackedIntArray(memory, 0, LENGTH, bits);
+                final long[] values = randomValues(rand, LENGTH, bits);
+                for (int i = 0; i < LENGTH; i++) {
+                    array.set(i, values[i]);
+                }
+                for (int i = 0; i < LENGTH; i++) {
+                    assertEquals(values[i], array.get(i));
+                }
+                // overwriting a value doesn't disturb its neighbors
+                array.set(LENGTH / 2, 0);
+                assertEquals(values[LENGTH / 2 - 1], array.get(LENGTH / 2 - 1));
+                assertEquals(0, array.get(LENGTH / 2));
+                assertEquals(values[LENGTH / 2 + 1], array.get(LENGTH / 2 + 1));
+            }
+        }
+    }
+
+    public void testBulk() {
+        final Random rand = new Random(0);
+        for (int bits = 1; bits <= 64; bits++) {
+            for (final Memory memory : memories(PackedIntArray.bytesRequired(LENGTH, bits))) {
+                final PackedIntArray array = new PackedIntArray(memory, 0, LENGTH, bits);
+                final long[] values = randomValues(rand, LENGTH, bits);
+                array.set(0, values);
+                final long[] decoded = new long[LENGTH];
+                array.get(0, decoded);
+                assertTrue(Arrays.equals(values, decoded));
+
+                // unaligned range in the middle leaves the values around it alone
+                final long[] middle = randomValues(rand, 37, bits);
+                array.set(101, middle, 0, middle.length);
+                for (int i = 0; i < LENGTH; i++) {
+                    final long expected = i >= 101 && i < 101 + middle.length ? middle[i - 101] : values[i];
+                    assertEquals(expected, array.get(i));
+                }
+                final long[] decodedMiddle = new long[middle.length + 2];
+                array.get(101, decodedMiddle, 1, middle.length);
+                assertTrue(Arrays.equals(middle, Arrays.copyOfRange(decodedMiddle, 1, middle.length + 1)));
+            }
+        }
+    }
+
+    public void testInts() {
+        final int[] values = new int[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            values[i] = i * 7;
+        }
+        final int bits = PackedIntArray.bitsRequired(7 * (LENGTH - 1));
+        assertEquals(13, bits);
+        final PackedIntArray array = new PackedIntArray(new HeapMemory((int)PackedIntArray.bytesRequired(LENGTH, bits), ByteOrder.LITTLE_ENDIAN), 0, LENGTH, bits);
+        array.set(0, values);
+        final int[] decoded = new int[LENGTH];
+        array.get(0, decoded);
+        assertTrue(Arrays.equals(values, decoded));
+
+        final PackedIntArray wide = new PackedIntArray(new HeapMemory(8, ByteOrder.LITTLE_ENDIAN), 0, 2, 32);
+        wide.set(0, new int[]{-1, 5});
+        assertEquals(0xFFFFFFFFL, wide.get(0));
+        assertEquals(5, wide.get(1));
+    }
+
+    public void testWriter() throws Exception {
+        final Random rand = new Random(0);
+        for (int bits = 1; bits <= 64; bits++) {
+            final long[] values = randomValues(rand, LENGTH, bits);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final PackedIntArray.Writer writer = new PackedIntArray.Writer(new DataOutputStream(bytes), bits);
+            writer.add(values, 0, 10);
+            for (int i = 10; i < LENGTH; i++) {
+                writer.add(values[i]);
+            }
+            writer.finish();
+            assertEquals(LENGTH, writer.count());
+            assertEquals(PackedIntArray.bytesRequired(LENGTH, bits), bytes.size());
+            final PackedIntArray array = new PackedIntArray(new HeapMemory(bytes.toByteArray(), ByteOrder.BIG_ENDIAN), 0, LENGTH, bits);
+            final long[] decoded = new long[LENGTH];
+            array.get(0, decoded);
+            assertTrue(Arrays.equals(values, decoded));
+        }
+    }
+
+    public void testThrownExceptions() {
+        final PackedIntArray array = new PackedIntArray(new HeapMemory(16, ByteOrder.LITTLE_ENDIAN), 0, 10, 12);
+        try {
+            array.set(0, 1 << 12);
+            fail();
+        } catch (IllegalArgumentException success) {}
+        try {
+            array.set(0, new long[]{1, -1});
+            fail();
+        } catch (IllegalArgumentException success) {}
+        try {
+            array.get(10);
+            fail();
+        } catch (IndexOutOfBoundsException success) {}
+        try {
+            array.get(5, new long[6]);
+            fail();
+        } catch (IndexOutOfBoundsException success) {}
+        try {
+            new PackedIntArray(new HeapMemory(16, ByteOrder.LITTLE_ENDIAN), 0, 11, 12);
+            fail();
+        } catch (IndexOutOfBoundsException success) {}
+        try {
+            new PackedIntArray(new HeapMemory(16, ByteOrder.LITTLE_ENDIAN), 0, 1, 65);
+            fail();
+        } catch (IllegalArgumentException success) {}
+    }
+}
@@ -0,0 +1,117 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+public class TestAlignedDirectFile {
+
+    private static final int BLOCK_SIZE = 16*1024;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void testPageAlignedNativeBuffer() throws Exception {
+        try (NativeBuffer buffer = NativeBuffer.allocatePageAligned(100, ByteOrder.LITTLE_ENDIAN)) {
+            assertEquals(0, buffer.memory().getAddress()%MMapBuffer.PAGE_SIZE);
+            assertEquals(MMapBuffer.PAGE_SIZE, buffer.memory().length());
+        }
+    }
+
+    private static byte[] read(Path path, boolean prefetch) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (AlignedDirectFile.Reader reader = AlignedDirectFile.reader(path, BLOCK_SIZE, ByteOrder.LITTLE_ENDIAN, prefetch)) {
+            DirectMemory block;
+            while ((block = reader.next()) != null) {
+                assertEquals(out.size(), reader.position());
+                final byte[] bytes = new byte[(int)block.length()];
+                block.getBytes(0, bytes);
+                out.write(bytes);
+            }
+            assertNull(reader.next());
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final byte[] bytes = new byte[3*BLOCK_SIZE+1234];
+        new Random(0).nextBytes(bytes);
+        final Path path = tempDir.getRoot().toPath().resolve("scan");
+        try (AlignedDirectFile.Writer writer = AlignedDirectFile.writer(path, BLOCK_SIZE, ByteOrder.LITTLE_ENDIAN)) {
+            writer.write(bytes, 0, 100);
+            final HeapMemory rest = new HeapMemory(bytes.length-100, ByteOrder.LITTLE_ENDIAN);
+            rest.putBytes(0, bytes, 100, bytes.length-100);
+            writer.write(rest);
+            assertEquals(bytes.length, writer.position());
+        }
+        // the padding of the last block is truncated away
+        assertArrayEquals(bytes, Files.readAllBytes(path));
+        assertArrayEquals(bytes, read(path, true));
+        assertArrayEquals(bytes, read(path, false));
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        final Path path = tempDir.newFile("empty").toPath();
+        assertEquals(0, read(path, true).length);
+        assertEquals(0, read(path, false).length);
+    }
+
+    /**
+     * Run by {@link #testWithoutJavaNioOpened()} in a jvm where java.nio.DirectByteBuffer is not accessible. java.io
+     * still has to be opened for NativeBuffer.
+     */
+    public static final class WithoutJavaNioOpened {
+        public static void main(String[] args) throws Exception {
+            final byte[] bytes = new byte[2*BLOCK_SIZE+1234];
+            new Random(0).nextBytes(bytes);
+            final Path path = Paths.get(args[0]);
+            try (AlignedDirectFile.Writer writer = AlignedDirectFile.writer(path, BLOCK_SIZE, ByteOrder.LITTLE_ENDIAN)) {
+                writer.write(bytes);
+                if (writer.isDirectIO()) System.exit(2);
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (AlignedDirectFile.Reader reader = AlignedDirectFile.reader(path, BLOCK_SIZE, ByteOrder.LITTLE_ENDIAN)) {
+                if (reader.isDirectIO()) System.exit(2);
+                DirectMemory block;
+                while ((block = reader.next()) != null) {
+                    final byte[] blockBytes = new byte[(int)block.length()];
+                    block.getBytes(0, blockBytes);
+                    out.write(blockBytes);
+                }
+            }
+            System.exit(Arrays.equals(bytes, out.toByteArray()) ? 0 : 1);
+        }
+    }
+
+    @Test
+    public void testWithoutJavaNioOpened() throws Exception {
+        // modules only exist from java 9
+        assumeTrue(!System.getProperty("java.specification.version").startsWith("1."));
+        // the native library doesn't have newDirectByteBuffer, so the file has to fall back to buffered io
+        final Process process = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "--add-opens", "java.base/java.io=ALL-UNNAMED",
+                "-cp", System.getProperty("java.class.path"),
+                WithoutJavaNioOpened.class.getName(),
+                tempDir.getRoot().toPath().resolve("scan").toString()
+        ).inheritIO().start();
+        assertEquals(0, process.waitFor());
+    }
+}
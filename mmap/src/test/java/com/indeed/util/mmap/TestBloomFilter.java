@@ -0,0 +1,130 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBloomFilter {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static final int KEYS = 20000;
+
+    private static void checkFpp(BloomFilter.Layout layout) {
+        final HeapMemory memory = new HeapMemory((int)BloomFilter.bytesRequired(KEYS, 0.01, layout), ByteOrder.LITTLE_ENDIAN);
+        final BloomFilter filter = BloomFilter.create(memory, KEYS, 0.01, layout);
+        for (int i = 0; i < KEYS; i++) {
+            filter.add("key" + i);
+        }
+        for (int i = 0; i < KEYS; i++) {
+            assertTrue(filter.mightContain("key" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("other" + i)) falsePositives++;
+        }
+        final double fpp = falsePositives/100000.0;
+        assertTrue(layout + " fpp " + fpp, fpp < 0.02);
+        final double expected = filter.expectedFpp();
+        assertTrue(layout + " expected fpp " + expected + " actual " + fpp, Math.abs(expected-fpp) < 0.005);
+        assertEquals(KEYS, filter.approximateElementCount(), KEYS*0.05);
+    }
+
+    @Test
+    public void testStandard() {
+        checkFpp(BloomFilter.Layout.STANDARD);
+    }
+
+    @Test
+    public void testBlocked() {
+        checkFpp(BloomFilter.Layout.BLOCKED);
+    }
+
+    @Test
+    public void testBlockIndependentOfProbes() {
+        // hashes that share the bits the probes use should still spread over every block, past 2^23 blocks too
+        final Random random = new Random(0);
+        final long probeBits = 0x1ff000001ffL;
+        for (final long numBlocks : new long[] {1L << 20, 1L << 24, 3L << 32}) {
+            final int[] counts = new int[16];
+            int odd = 0;
+            for (int i = 0; i < 16000; i++) {
+                final long hash = (random.nextLong() & ~probeBits) | (0x123000000abL & probeBits);
+                final long block = BloomFilter.block(hash, numBlocks);
+                assertTrue(block >= 0 && block < numBlocks);
+                counts[(int)(block*16/numBlocks)]++;
+                odd += block&1;
+            }
+            for (final int count : counts) {
+                assertEquals(1000, count, 150);
+            }
+            assertEquals(8000, odd, 400);
+        }
+    }
+
+    @Test
+    public void testSizes() {
+        assertEquals(64+512/8, BloomFilter.bytesRequired(1, BloomFilter.Layout.BLOCKED));
+        assertEquals(64+8, BloomFilter.bytesRequired(1, BloomFilter.Layout.STANDARD));
+        assertEquals(7, BloomFilter.optimalNumHashes(1000, BloomFilter.optimalNumBits(1000, 0.01)));
+    }
+
+    @Test
+    public void testMerge() {
+        final long bytes = BloomFilter.bytesRequired(1000, 0.01, BloomFilter.Layout.BLOCKED);
+        final BloomFilter a = BloomFilter.create(new HeapMemory((int)bytes, ByteOrder.LITTLE_ENDIAN), 1000, 0.01, BloomFilter.Layout.BLOCKED);
+        // merging is independent of the byte order of either memory
+        final BloomFilter b = BloomFilter.create(new HeapMemory((int)bytes, ByteOrder.BIG_ENDIAN), 1000, 0.01, BloomFilter.Layout.BLOCKED);
+        for (int i = 0; i < 500; i++) {
+            a.add("a" + i);
+            b.add("b" + i);
+        }
+        assertFalse(a.mightContain("b1") && a.mightContain("b2") && a.mightContain("b3"));
+        a.merge(b);
+        for (int i = 0; i < 500; i++) {
+            assertTrue(a.mightContain("a" + i));
+            assertTrue(a.mightContain("b" + i));
+        }
+        final BloomFilter c = BloomFilter.create(new HeapMemory((int)bytes, ByteOrder.LITTLE_ENDIAN), 1000, 0.01, BloomFilter.Layout.STANDARD);
+        try {
+            a.merge(c);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testMapped() throws Exception {
+        final File file = tempDir.newFile("bloom");
+        final long bytes = BloomFilter.bytesRequired(KEYS, 0.01, BloomFilter.Layout.BLOCKED);
+        try (MMapBuffer buffer = new MMapBuffer(file, 0, bytes, FileChannel.MapMode.READ_WRITE, ByteOrder.BIG_ENDIAN)) {
+            final BloomFilter filter = BloomFilter.create(buffer.memory(), KEYS, 0.01, BloomFilter.Layout.BLOCKED);
+            for (int i = 0; i < KEYS; i++) {
+                filter.add(("key" + i).getBytes("UTF-8"));
+            }
+        }
+        try (MMapBuffer buffer = new MMapBuffer(file, FileChannel.MapMode.READ_ONLY, ByteOrder.BIG_ENDIAN)) {
+            final BloomFilter filter = BloomFilter.open(buffer.memory());
+            assertEquals(BloomFilter.Layout.BLOCKED, filter.getLayout());
+            for (int i = 0; i < KEYS; i++) {
+                assertTrue(filter.mightContain("key" + i));
+            }
+        }
+        try (MMapBuffer buffer = new MMapBuffer(file, FileChannel.MapMode.READ_ONLY, ByteOrder.LITTLE_ENDIAN)) {
+            BloomFilter.open(buffer.memory());
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.compress.NativeCodeLoader;
+import com.indeed.util.compress.zlib.ZlibCompressor;
+import com.indeed.util.compress.zlib.ZlibDecompressor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestDirectMemoryCompression {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void testMappedBlock() throws Exception {
+        if (!NativeCodeLoader.isNativeCodeLoaded()) return;
+        final int length = 1 << 20;
+        final File file = tempDir.newFile("compressed");
+        final int compressedLength;
+        try (
+                NativeBuffer original = new NativeBuffer(length, ByteOrder.LITTLE_ENDIAN);
+                MMapBuffer mapped = new MMapBuffer(file, 0, ZlibCompressor.maxCompressedLength(length), FileChannel.MapMode.READ_WRITE, ByteOrder.LITTLE_ENDIAN)
+        ) {
+            for (int i = 0; i < length; i += 4) {
+                original.memory().putInt(i, i/64);
+            }
+            compressedLength = DirectMemoryCompression.compress(new ZlibCompressor(), original.memory(), mapped.memory());
+        }
+        try (
+                MMapBuffer mapped = new MMapBuffer(file, 0, compressedLength, FileChannel.MapMode.READ_ONLY, ByteOrder.LITTLE_ENDIAN);
+                NativeBuffer copy = new NativeBuffer(length, ByteOrder.LITTLE_ENDIAN)
+        ) {
+            assertEquals(length, DirectMemoryCompression.decompress(new ZlibDecompressor(), mapped.memory(), copy.memory()));
+            for (int i = 0; i < length; i += 4) {
+                assertEquals(i/64, copy.memory().getInt(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TestEpochReclaimer {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static Closeable counter(final AtomicInteger closed) {
+        return new Closeable() {
+            @Override
+            public void close() {
+                closed.incrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void testRetireWithoutReaders() {
+        final EpochReclaimer reclaimer = new EpochReclaimer();
+        final AtomicInteger closed = new AtomicInteger();
+        reclaimer.retire(counter(closed));
+        assertEquals(1, closed.get());
+        assertEquals(0, reclaimer.getPendingCount());
+    }
+
+    @Test
+    public void testDeferredUntilReaderExits() {
+        final EpochReclaimer reclaimer = new EpochReclaimer();
+        final AtomicInteger closed = new AtomicInteger();
+        final EpochReclaimer.Reader reader = reclaimer.enter();
+        // nested critical sections share the outer epoch
+        assertSame(reader, reclaimer.enter());
+        reclaimer.retire(counter(closed));
+        assertEquals(0, closed.get());
+        assertEquals(1, reclaimer.getPendingCount());
+        reader.close();
+        assertEquals(0, closed.get());
+        reader.close();
+        assertEquals(1, closed.get());
+        assertEquals(0, reclaimer.getPendingCount());
+        try {
+            reader.close();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testLaterReadersDontBlockReclaim() throws Exception {
+        final EpochReclaimer reclaimer = new EpochReclaimer();
+        final AtomicInteger closed = new AtomicInteger();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch retired = new CountDownLatch(1);
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try (EpochReclaimer.Reader reader = reclaimer.enter()) {
+                    entered.countDown();
+                    retired.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        thread.start();
+        entered.await();
+        reclaimer.retire(counter(closed));
+        // a reader that enters after the retire can't see the resource, so only the other thread holds it up
+        try (EpochReclaimer.Reader reader = reclaimer.enter()) {
+            assertEquals(0, closed.get());
+            retired.countDown();
+            thread.join();
+            assertEquals(1, closed.get());
+        }
+        // the exited thread is dropped on the next scan
+        reclaimer.reclaim();
+        assertEquals(1, reclaimer.getReaderCount());
+    }
+
+    @Test
+    public void testRetiredDuringReclaim() throws Exception {
+        final EpochReclaimer reclaimer = new EpochReclaimer();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch exit = new CountDownLatch(1);
+        final CountDownLatch closing = new CountDownLatch(1);
+        final CountDownLatch finishClose = new CountDownLatch(1);
+        final AtomicInteger closed = new AtomicInteger();
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                final EpochReclaimer.Reader reader = reclaimer.enter();
+                entered.countDown();
+                try {
+                    exit.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                // exiting reclaims on this thread, which holds the reclaim lock through the blocking close
+                reader.close();
+            }
+        };
+        reader.start();
+        entered.await();
+        reclaimer.retire(new Closeable() {
+            @Override
+            public void close() {
+                closing.countDown();
+                try {
+                    finishClose.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        reclaimer.retire(counter(closed));
+        exit.countDown();
+        closing.await();
+
+        final AtomicInteger closedLater = new AtomicInteger();
+        final EpochReclaimer.Reader mainReader = reclaimer.enter();
+        reclaimer.retire(counter(closedLater));
+        finishClose.countDown();
+        reader.join();
+        assertEquals(1, closed.get());
+        // the reclaiming thread scanned readers before this thread entered, so it must not have closed the resource
+        assertEquals(0, closedLater.get());
+        assertEquals(1, reclaimer.getPendingCount());
+        mainReader.close();
+        assertEquals(1, closedLater.get());
+        assertEquals(0, reclaimer.getPendingCount());
+    }
+
+    @Test
+    public void testSwapMMapBuffers() throws Exception {
+        final File file = tempDir.newFile("index");
+        try (MMapBuffer buffer = new MMapBuffer(file, 0, 64*1024, FileChannel.MapMode.READ_WRITE, ByteOrder.LITTLE_ENDIAN)) {
+            for (int i = 0; i < 64*1024; i += 8) {
+                buffer.memory().putLong(i, i);
+            }
+        }
+        final EpochReclaimer reclaimer = new EpochReclaimer();
+        final MMapBuffer.Builder builder = MMapBuffer.builder(file, ByteOrder.LITTLE_ENDIAN).setReclaimer(reclaimer);
+        final AtomicReference<MMapBuffer> current = new AtomicReference<>(builder.build());
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final Thread[] readers = new Thread[2];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!done.get()) {
+                            try (EpochReclaimer.Reader reader = reclaimer.enter()) {
+                                final DirectMemory memory = current.get().memory();
+                                for (int i = 0; i < 64*1024; i += 4096) {
+                                    if (memory.getLong(i) != i) throw new AssertionError("bad value at " + i);
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        error.set(e);
+                    }
+                }
+            };
+            readers[t].start();
+        }
+        for (int i = 0; i < 200; i++) {
+            current.getAndSet(builder.build()).close();
+        }
+        done.set(true);
+        for (final Thread reader : readers) {
+            reader.join();
+        }
+        current.get().close();
+        assertEquals(null, error.get());
+        assertEquals(0, reclaimer.getPendingCount());
+    }
+}
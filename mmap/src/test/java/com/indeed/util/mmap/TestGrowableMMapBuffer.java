@@ -0,0 +1,121 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.core.reference.SharedReference;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestGrowableMMapBuffer {
+
+    @Test
+    public void testGrow() throws Exception {
+        final File file = File.createTempFile("TestGrowableMMapBuffer", "");
+        file.deleteOnExit();
+        try (GrowableMMapBuffer buffer = new GrowableMMapBuffer(file.toPath(), MMapBuffer.PAGE_SIZE, ByteOrder.nativeOrder())) {
+            assertEquals(1, buffer.getEpoch());
+            assertEquals(MMapBuffer.PAGE_SIZE, buffer.length());
+            for (int i = 0; i < 1024; i++) {
+                buffer.memory().putInt(i * 4, i);
+            }
+            buffer.ensureCapacity(MMapBuffer.PAGE_SIZE);
+            assertEquals(1, buffer.getEpoch());
+
+            final SharedReference<DirectMemory> reader = buffer.acquire();
+            buffer.ensureCapacity(MMapBuffer.PAGE_SIZE + 1);
+            assertEquals(2, buffer.getEpoch());
+            assertEquals(2 * MMapBuffer.PAGE_SIZE, buffer.length());
+            assertEquals(2 * MMapBuffer.PAGE_SIZE, file.length());
+            buffer.memory().putInt(MMapBuffer.PAGE_SIZE, 1234);
+
+            // the old epoch is still mapped while the reader holds it
+            assertEquals(MMapBuffer.PAGE_SIZE, reader.get().length());
+            for (int i = 0; i < 1024; i++) {
+                assertEquals(i, reader.get().getInt(i * 4));
+            }
+            reader.close();
+
+            try (SharedReference<DirectMemory> next = buffer.acquire()) {
+                assertEquals(2 * MMapBuffer.PAGE_SIZE, next.get().length());
+                assertEquals(1023, next.get().getInt(1023 * 4));
+                assertEquals(1234, next.get().getInt(MMapBuffer.PAGE_SIZE));
+            }
+
+            buffer.ensureCapacity(10 * MMapBuffer.PAGE_SIZE);
+            assertEquals(10 * MMapBuffer.PAGE_SIZE, buffer.length());
+            buffer.sync(0, buffer.length());
+        }
+        assertEquals(10 * MMapBuffer.PAGE_SIZE, file.length());
+        try (MMapBuffer mmap = new MMapBuffer(file, FileChannel.MapMode.READ_ONLY, ByteOrder.nativeOrder())) {
+            assertEquals(1234, mmap.memory().getInt(MMapBuffer.PAGE_SIZE));
+        }
+    }
+
+    @Test
+    public void testReaderOutlivesBuffer() throws Exception {
+        final File file = File.createTempFile("TestGrowableMMapBuffer", "");
+        file.deleteOnExit();
+        final SharedReference<DirectMemory> reader;
+        try (GrowableMMapBuffer buffer = new GrowableMMapBuffer(file.toPath(), 16, ByteOrder.nativeOrder())) {
+            buffer.memory().putLong(8, 42);
+            reader = buffer.acquire();
+        }
+        assertEquals(42, reader.get().getLong(8));
+        reader.close();
+    }
+
+    @Test
+    public void testReaderAfterRemap() throws Exception {
+        final File file = File.createTempFile("TestGrowableMMapBuffer", "");
+        file.deleteOnExit();
+        final SharedReference<DirectMemory> afterGrow;
+        final SharedReference<DirectMemory> afterSecondGrow;
+        try (GrowableMMapBuffer buffer = new GrowableMMapBuffer(file.toPath(), MMapBuffer.PAGE_SIZE, ByteOrder.nativeOrder())) {
+            buffer.ensureCapacity(64 * MMapBuffer.PAGE_SIZE);
+            buffer.memory().putLong(63 * MMapBuffer.PAGE_SIZE, 42);
+            // the epoch after a grow must hold the mapping it views, not the one it replaced
+            afterGrow = buffer.acquire();
+            buffer.ensureCapacity(128 * MMapBuffer.PAGE_SIZE);
+            assertEquals(42, afterGrow.get().getLong(63 * MMapBuffer.PAGE_SIZE));
+            afterSecondGrow = buffer.acquire();
+        }
+        assertEquals(42, afterGrow.get().getLong(63 * MMapBuffer.PAGE_SIZE));
+        assertEquals(42, afterSecondGrow.get().getLong(63 * MMapBuffer.PAGE_SIZE));
+        afterSecondGrow.get().putLong(127 * MMapBuffer.PAGE_SIZE, 43);
+        afterGrow.close();
+        afterSecondGrow.close();
+    }
+
+    @Test
+    public void testExistingFile() throws Exception {
+        final File file = File.createTempFile("TestGrowableMMapBuffer", "");
+        file.deleteOnExit();
+        try (MMapBuffer mmap = new MMapBuffer(file, 0, 3 * MMapBuffer.PAGE_SIZE, FileChannel.MapMode.READ_WRITE, ByteOrder.nativeOrder())) {
+            mmap.memory().putInt(2 * MMapBuffer.PAGE_SIZE, 7);
+        }
+        try (GrowableMMapBuffer buffer = new GrowableMMapBuffer(file.toPath(), 1, ByteOrder.nativeOrder())) {
+            assertEquals(3 * MMapBuffer.PAGE_SIZE, buffer.length());
+            assertEquals(7, buffer.memory().getInt(2 * MMapBuffer.PAGE_SIZE));
+        }
+    }
+
+    @Test
+    public void testClosed() throws Exception {
+        final File file = File.createTempFile("TestGrowableMMapBuffer", "");
+        file.deleteOnExit();
+        final GrowableMMapBuffer buffer = new GrowableMMapBuffer(file.toPath(), 16, ByteOrder.nativeOrder());
+        buffer.close();
+        buffer.close();
+        try {
+            buffer.acquire();
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("closed"));
+        }
+    }
+}
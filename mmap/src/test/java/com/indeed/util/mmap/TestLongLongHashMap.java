@@ -0,0 +1,108 @@
+package com.indeed.util.mmap;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestLongLongHashMap {
+
+    @Test
+    public void testRandomOperations() throws Exception {
+        final Random rand = new Random(0);
+        final Map<Long, Long> expected = new HashMap<Long, Long>();
+        try (LongLongHashMap map = new LongLongHashMap(0, 0.5f)) {
+            for (int i = 0; i < 100000; i++) {
+                // small key range so that puts, overwrites and removes all collide often
+                final long key = rand.nextInt(20000) - 10000;
+                final long value = rand.nextLong();
+                if (rand.nextInt(3) == 0) {
+                    assertEquals(expected.remove(key) != null, map.remove(key));
+                } else {
+                    assertEquals(expected.put(key, value) == null, map.put(key, value));
+                }
+            }
+            assertEquals(expected.size(), map.size());
+            assertTrue(map.capacity() >= expected.size() * 2);
+            for (long key = -10000; key < 10000; key++) {
+                assertEquals(expected.containsKey(key), map.containsKey(key));
+                assertEquals(expected.containsKey(key) ? expected.get(key) : -1L, map.get(key, -1));
+            }
+            final Map<Long, Long> iterated = new HashMap<Long, Long>();
+            final LongLongHashMap.Cursor cursor = map.cursor();
+            while (cursor.next()) {
+                assertEquals(null, iterated.put(cursor.getKey(), cursor.getValue()));
+            }
+            assertEquals(expected, iterated);
+        }
+    }
+
+    @Test
+    public void testZeroKey() throws Exception {
+        try (LongLongHashMap map = new LongLongHashMap(10)) {
+            assertFalse(map.containsKey(0));
+            assertEquals(5, map.get(0, 5));
+            assertTrue(map.put(0, 7));
+            assertFalse(map.put(0, 8));
+            assertEquals(8, map.get(0, 5));
+            assertEquals(1, map.size());
+            final LongLongHashMap.Cursor cursor = map.cursor();
+            assertTrue(cursor.next());
+            assertEquals(0, cursor.getKey());
+            assertEquals(8, cursor.getValue());
+            assertFalse(cursor.next());
+            assertTrue(map.remove(0));
+            assertFalse(map.remove(0));
+            assertTrue(map.isEmpty());
+        }
+    }
+
+    @Test
+    public void testReadOnlyFile() throws Exception {
+        final File file = File.createTempFile("TestLongLongHashMap", "");
+        file.deleteOnExit();
+        try (LongLongHashMap map = new LongLongHashMap(1000)) {
+            for (long i = 0; i < 5000; i++) {
+                map.put(i * 31, i);
+            }
+            map.writeTo(file);
+        }
+        try (LongLongHashMap map = LongLongHashMap.openReadOnly(file)) {
+            assertTrue(map.isReadOnly());
+            assertEquals(5000, map.size());
+            for (long i = 0; i < 5000; i++) {
+                assertEquals(i, map.get(i * 31, -1));
+            }
+            assertEquals(-1, map.get(1, -1));
+            try {
+                map.put(1, 1);
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+            try (LongLongHashMap view = LongLongHashMap.open(map.memory())) {
+                assertEquals(4999, view.get(4999 * 31, -1));
+            }
+        }
+    }
+
+    @Test
+    public void testOpenInvalid() throws Exception {
+        try (NativeBuffer buffer = new NativeBuffer(128, ByteOrder.LITTLE_ENDIAN)) {
+            try {
+                LongLongHashMap.open(buffer.memory());
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
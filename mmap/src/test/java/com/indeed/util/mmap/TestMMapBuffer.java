@@ -9,16 +9,20 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author jsgroth
  */
 @SuppressWarnings("deprecation")
 public class TestMMapBuffer {
+    private static final int PAGE_COUNT = 16;
+
     @Test(expected = FileNotFoundException.class)
     public void testReadNoFile() throws IOException {
         File f = File.createTempFile("asdf", "");
@@ -46,6 +50,99 @@ public class TestMMapBuffer {
         buffer.close();
     }
 
+    @Test
+    public void testBuilder() throws IOException {
+        File f = File.createTempFile("asdf", "");
+        MMapBuffer buffer = MMapBuffer.builder(f, ByteOrder.LITTLE_ENDIAN)
+                .setLength(PAGE_COUNT * MMapBuffer.PAGE_SIZE)
+                .setMapMode(FileChannel.MapMode.READ_WRITE)
+                .setPopulate(true)
+                .build();
+        try {
+            assertEquals(PAGE_COUNT * MMapBuffer.PAGE_SIZE, buffer.memory().length());
+            assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.memory().getOrder());
+            buffer.memory().putLong(8, 1234);
+            buffer.sync(0, buffer.memory().length());
+        } finally {
+            buffer.close();
+        }
+
+        buffer = MMapBuffer.builder(f.toPath(), ByteOrder.LITTLE_ENDIAN).setOffset(MMapBuffer.PAGE_SIZE).build();
+        try {
+            assertEquals((PAGE_COUNT - 1) * MMapBuffer.PAGE_SIZE, buffer.memory().length());
+        } finally {
+            buffer.close();
+        }
+
+        buffer = MMapBuffer.builder(f, ByteOrder.LITTLE_ENDIAN).setPopulate(true).build();
+        try {
+            assertEquals(1234, buffer.memory().getLong(8));
+        } finally {
+            buffer.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilderRequiresOrder() throws IOException {
+        File f = File.createTempFile("asdf", "");
+        MMapBuffer.builder(f, null);
+    }
+
+    @Test
+    public void testBuilderClosesBufferWhenAdviceFails() throws IOException {
+        File f = File.createTempFile("asdf", "");
+        try {
+            MMapBuffer.setTrackingEnabled(true);
+            try {
+                MMapBuffer.builder(f, ByteOrder.LITTLE_ENDIAN)
+                        .setLength(PAGE_COUNT * MMapBuffer.PAGE_SIZE)
+                        .setMapMode(FileChannel.MapMode.READ_WRITE)
+                        .setAdvice(MMapBuffer.Advice.HUGEPAGE)
+                        .build()
+                        .close();
+            } catch (UnsupportedOperationException | IOException e) {
+                // the loaded libindeedmmap predates madvise0, or the kernel doesn't support transparent huge pages
+            }
+            assertTrue(MMapBuffer.openBuffersTracker.mmapBufferSet.isEmpty());
+        } finally {
+            MMapBuffer.setTrackingEnabled(false);
+        }
+    }
+
+    @Test
+    public void testHugeTlbOnRegularFile() throws IOException {
+        File f = File.createTempFile("asdf", "");
+        try {
+            MMapBuffer.builder(f, ByteOrder.LITTLE_ENDIAN)
+                    .setLength(PAGE_COUNT * MMapBuffer.PAGE_SIZE)
+                    .setMapMode(FileChannel.MapMode.READ_WRITE)
+                    .setHugeTlb(true)
+                    .build()
+                    .close();
+            fail("MAP_HUGETLB should only work on hugetlbfs");
+        } catch (UnsupportedOperationException | IOException expected) {
+            // UnsupportedOperationException if the loaded libindeedmmap would silently drop MAP_HUGETLB
+        }
+    }
+
+    @Test
+    public void testAdvise() throws IOException {
+        File f = File.createTempFile("asdf", "");
+        MMapBuffer buffer = new MMapBuffer(f, 0, PAGE_COUNT * MMapBuffer.PAGE_SIZE, FileChannel.MapMode.READ_WRITE, ByteOrder.nativeOrder());
+        try {
+            for (MMapBuffer.Advice advice : new MMapBuffer.Advice[]{MMapBuffer.Advice.SEQUENTIAL, MMapBuffer.Advice.RANDOM, MMapBuffer.Advice.WILLNEED, MMapBuffer.Advice.NORMAL}) {
+                try {
+                    buffer.advise(0, buffer.memory().length(), advice);
+                } catch (UnsupportedOperationException e) {
+                    // native library has not been rebuilt with madvise0 for this platform
+                    return;
+                }
+            }
+        } finally {
+            buffer.close();
+        }
+    }
+
     @Test
     public void testTrackingDisabled() {
         MMapBuffer.setTrackingEnabled(false);
@@ -0,0 +1,185 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestMMapLog {
+    private static final int SEGMENT_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static byte[] record(int i) {
+        final StringBuilder ret = new StringBuilder();
+        for (int j = 0; j < i % 300; j++) {
+            ret.append((char)('a' + (i + j) % 26));
+        }
+        return ret.toString().getBytes(Charsets.UTF_8);
+    }
+
+    private static String toString(DirectMemory memory) {
+        final byte[] bytes = new byte[(int)memory.length()];
+        memory.getBytes(0, bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    @Test
+    public void testAppendAndRead() throws Exception {
+        final Path dir = tempDir.getRoot().toPath().resolve("log");
+        final List<Long> positions = new ArrayList<Long>();
+        try (MMapLog mmapLog = new MMapLog(dir, SEGMENT_SIZE)) {
+            final MMapLog.Reader tail = mmapLog.reader();
+            assertFalse(tail.next());
+            for (int i = 0; i < 1000; i++) {
+                positions.add(mmapLog.append(record(i)));
+            }
+            assertTrue(mmapLog.getSegmentCount() > 10);
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(tail.next());
+                assertEquals(positions.get(i).longValue(), tail.position());
+                assertEquals(new String(record(i), Charsets.UTF_8), toString(tail.record()));
+            }
+            assertFalse(tail.next());
+            mmapLog.append(record(5));
+            assertTrue(tail.next());
+            assertEquals(new String(record(5), Charsets.UTF_8), toString(tail.record()));
+
+            final MMapLog.Reader fromMiddle = mmapLog.reader(positions.get(500));
+            assertTrue(fromMiddle.next());
+            assertEquals(new String(record(500), Charsets.UTF_8), toString(fromMiddle.record()));
+            assertFalse(mmapLog.reader(mmapLog.getCommitPosition()).next());
+        }
+
+        // reopening keeps the records and appends after them
+        try (MMapLog mmapLog = new MMapLog(dir, SEGMENT_SIZE)) {
+            mmapLog.append(record(1001));
+            final MMapLog.Reader reader = mmapLog.reader();
+            int count = 0;
+            while (reader.next()) {
+                count++;
+            }
+            assertEquals(1002, count);
+            assertEquals(new String(record(1001), Charsets.UTF_8), toString(reader.record()));
+        }
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        final int records = 20000;
+        try (final MMapLog mmapLog = new MMapLog(tempDir.getRoot().toPath(), 64 * 1024)) {
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            final List<Thread> readers = new ArrayList<Thread>();
+            for (int t = 0; t < 3; t++) {
+                final Thread reader = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            final MMapLog.Reader reader = mmapLog.reader();
+                            int i = 0;
+                            while (i < records) {
+                                if (reader.next()) {
+                                    if (reader.record().length() != 4 || reader.record().getInt(0) != i) {
+                                        throw new AssertionError("record " + i + " was " + reader.record().getInt(0));
+                                    }
+                                    i++;
+                                }
+                            }
+                        } catch (Throwable e) {
+                            failure.set(e);
+                        }
+                    }
+                };
+                reader.start();
+                readers.add(reader);
+            }
+            final byte[] bytes = new byte[4];
+            for (int i = 0; i < records; i++) {
+                // little endian to match how the readers read it back
+                bytes[0] = (byte)i;
+                bytes[1] = (byte)(i >>> 8);
+                bytes[2] = (byte)(i >>> 16);
+                bytes[3] = (byte)(i >>> 24);
+                mmapLog.append(bytes);
+            }
+            for (final Thread reader : readers) {
+                reader.join(30000);
+                assertFalse(reader.isAlive());
+            }
+            assertNull(failure.get());
+        }
+    }
+
+    @Test
+    public void testLeftoverTmpSegmentIsDeleted() throws Exception {
+        final Path dir = tempDir.getRoot().toPath();
+        try (MMapLog mmapLog = new MMapLog(dir, SEGMENT_SIZE)) {
+            mmapLog.append(record(1));
+        }
+        final Path tmp = dir.resolve(String.format("%020d.log.tmp", 1));
+        Files.write(tmp, new byte[10]);
+        try (MMapLog mmapLog = new MMapLog(dir, SEGMENT_SIZE)) {
+            assertFalse(Files.exists(tmp));
+            assertEquals(1, mmapLog.getSegmentCount());
+        }
+    }
+
+    @Test
+    public void testReopenWithUnsealedSegment() throws Exception {
+        final Path dir = tempDir.getRoot().toPath();
+        try (MMapLog mmapLog = new MMapLog(dir, SEGMENT_SIZE)) {
+            for (int i = 0; i < 300; i++) {
+                mmapLog.append(record(i));
+            }
+            assertTrue(mmapLog.getSegmentCount() > 2);
+        }
+        // as if the writer crashed after creating segment 1 but before sealing segment 0
+        final Path first = dir.resolve(String.format("%020d.log", 0));
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8), 16);
+        }
+        try (MMapLog mmapLog = new MMapLog(dir, SEGMENT_SIZE)) {
+            final MMapLog.Reader reader = mmapLog.reader();
+            for (int i = 0; i < 300; i++) {
+                assertTrue(reader.next());
+                assertEquals(new String(record(i), Charsets.UTF_8), toString(reader.record()));
+            }
+            assertFalse(reader.next());
+        }
+        // the seal was written back to the file
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.READ)) {
+            final ByteBuffer sealed = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(sealed, 16);
+            assertEquals(1, sealed.getLong(0));
+        }
+    }
+
+    @Test
+    public void testRecordTooLarge() throws Exception {
+        try (MMapLog mmapLog = new MMapLog(tempDir.getRoot().toPath(), SEGMENT_SIZE)) {
+            mmapLog.append(new byte[SEGMENT_SIZE - MMapLog.HEADER_LENGTH - 2]);
+            try {
+                mmapLog.append(new byte[SEGMENT_SIZE]);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
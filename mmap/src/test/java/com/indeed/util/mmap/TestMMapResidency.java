@@ -0,0 +1,98 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.varexport.VarExporter;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestMMapResidency {
+    private static final int PAGES = 100;
+
+    @Test
+    public void testNativeBufferHeatmap() throws IOException {
+        try (NativeBuffer buffer = new NativeBuffer(PAGES * MMapBuffer.PAGE_SIZE, ByteOrder.nativeOrder())) {
+            // anonymous mappings are not resident until touched, touch the first half
+            for (int i = 0; i < PAGES / 2; i++) {
+                buffer.memory().putByte((long)i * MMapBuffer.PAGE_SIZE, (byte)1);
+            }
+            final MMapResidency residency = MMapResidency.of(buffer.memory(), 10);
+            assertEquals(PAGES, residency.getTotalPages());
+            assertEquals(PAGES / 2, residency.getResidentPages());
+            assertEquals(PAGES / 2 * MMapBuffer.PAGE_SIZE, residency.getResidentBytes());
+            assertEquals("9999900000", residency.getHeatmap());
+            assertEquals(1.0, residency.getRegionResidentFractions()[0], 0);
+            assertEquals(0.0, residency.getRegionResidentFractions()[9], 0);
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        try (NativeBuffer buffer = new NativeBuffer(0, ByteOrder.nativeOrder())) {
+            final MMapResidency residency = MMapResidency.of(buffer.memory(), 4);
+            assertEquals(0, residency.getTotalPages());
+            assertEquals(0, residency.getResidentBytes());
+            assertEquals("0000", residency.getHeatmap());
+        }
+    }
+
+    @Test
+    public void testTrackedBuffers() throws IOException {
+        try {
+            MMapBuffer.setTrackingEnabled(false);
+            assertTrue(MMapResidency.ofTrackedBuffers(10).isEmpty());
+
+            MMapBuffer.setTrackingEnabled(true);
+            final File file = File.createTempFile("TestMMapResidency", "");
+            file.deleteOnExit();
+            try (MMapBuffer buffer = new MMapBuffer(file, 0, PAGES * MMapBuffer.PAGE_SIZE, FileChannel.MapMode.READ_WRITE, ByteOrder.nativeOrder())) {
+                for (int i = 0; i < PAGES; i++) {
+                    buffer.memory().putByte((long)i * MMapBuffer.PAGE_SIZE, (byte)1);
+                }
+                final List<MMapResidency> residency = MMapResidency.ofTrackedBuffers(10);
+                assertEquals(1, residency.size());
+                assertEquals(file.toPath(), residency.get(0).getPath());
+                assertEquals(PAGES, residency.get(0).getResidentPages());
+
+                final MMapResidencyExporter exporter = new MMapResidencyExporter("TestMMapResidency", 10, 0);
+                assertEquals(1, exporter.getTrackedBuffers());
+                assertEquals(PAGES * MMapBuffer.PAGE_SIZE, exporter.getTrackedBytes());
+                assertEquals(PAGES * MMapBuffer.PAGE_SIZE, exporter.getResidentBytes());
+                final Map<String, String> heatmaps = exporter.getHeatmapByFile();
+                assertEquals("9999999999", heatmaps.get(file.toPath().toString()));
+                assertEquals(1, VarExporter.forNamespace("TestMMapResidency").<Integer>getValue("mmap-tracked-buffers").intValue());
+            }
+        } finally {
+            MMapBuffer.setTrackingEnabled(false);
+        }
+    }
+
+    @Test
+    public void testCloseWhilePinned() throws IOException {
+        try {
+            MMapBuffer.setTrackingEnabled(true);
+            final File file = File.createTempFile("TestMMapResidency", "");
+            file.deleteOnExit();
+            final MMapBuffer buffer = new MMapBuffer(file, 0, PAGES * MMapBuffer.PAGE_SIZE, FileChannel.MapMode.READ_WRITE, ByteOrder.nativeOrder());
+            final List<MMapBuffer> pinned = MMapBuffer.openBuffersTracker.pinOpenTrackedBuffers();
+            assertEquals(1, pinned.size());
+            // closing doesn't wait for the measurement, but the munmap does
+            buffer.close();
+            assertTrue(MMapResidency.ofTrackedBuffers(10).isEmpty());
+            buffer.memory().putByte(0, (byte)1);
+            assertEquals(PAGES, MMapResidency.of(buffer, 10).getTotalPages());
+            buffer.unpin();
+            assertFalse(buffer.pin());
+        } finally {
+            MMapBuffer.setTrackingEnabled(false);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.indeed.util.mmap;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestMMapWarmer {
+    private static final int PAGES = 1000;
+
+    @Test
+    public void testWarmMMapBuffer() throws Exception {
+        final File file = File.createTempFile("TestMMapWarmer", "");
+        file.deleteOnExit();
+        try (MMapWarmer warmer = new MMapWarmer(3, 0, 16);
+             MMapBuffer buffer = new MMapBuffer(file, 0, PAGES * MMapBuffer.PAGE_SIZE, FileChannel.MapMode.READ_WRITE, ByteOrder.nativeOrder())) {
+            final MMapWarmer.Progress progress = warmer.warm(buffer);
+            assertTrue(progress.awaitCompletion(30, TimeUnit.SECONDS));
+            assertTrue(progress.isDone());
+            assertEquals(PAGES, progress.getTotalPages());
+            assertEquals(PAGES, progress.getResidentPages());
+            assertEquals(1.0, progress.getResidentFraction(), 0);
+            assertEquals(PAGES, MMapWarmer.residentPages(buffer.memory()));
+        }
+    }
+
+    @Test
+    public void testWarmUnalignedSlice() throws Exception {
+        try (MMapWarmer warmer = new MMapWarmer(2, 0, 4);
+             NativeBuffer buffer = new NativeBuffer(64 * MMapBuffer.PAGE_SIZE, ByteOrder.nativeOrder())) {
+            final DirectMemory slice = buffer.memory().slice(MMapBuffer.PAGE_SIZE - 10, 20);
+            final MMapWarmer.Progress progress = warmer.warm(slice);
+            assertTrue(progress.awaitCompletion(30, TimeUnit.SECONDS));
+            assertEquals(2, progress.getTotalPages());
+            assertEquals(2, progress.getResidentPages());
+        }
+    }
+
+    @Test
+    public void testRateLimited() throws Exception {
+        try (MMapWarmer warmer = new MMapWarmer(1, 10L * 1024 * 1024, 8);
+             NativeBuffer buffer = new NativeBuffer(PAGES * MMapBuffer.PAGE_SIZE, ByteOrder.nativeOrder())) {
+            final MMapWarmer.Progress progress = warmer.warm(buffer.memory());
+            assertTrue(progress.awaitCompletion(30, TimeUnit.SECONDS));
+            assertEquals(PAGES, progress.getResidentPages());
+        }
+    }
+
+    @Test
+    public void testQueuedWarmingIsDoneWhenCancelledOrClosed() throws Exception {
+        // one thread, kept busy by a rate limit of one 8 page chunk every half second
+        final MMapWarmer warmer = new MMapWarmer(1, 16 * MMapBuffer.PAGE_SIZE, 8);
+        try (NativeBuffer busy = new NativeBuffer(PAGES * MMapBuffer.PAGE_SIZE, ByteOrder.nativeOrder());
+             NativeBuffer cancelled = new NativeBuffer(16 * MMapBuffer.PAGE_SIZE, ByteOrder.nativeOrder());
+             NativeBuffer closed = new NativeBuffer(16 * MMapBuffer.PAGE_SIZE, ByteOrder.nativeOrder())) {
+            final MMapWarmer.Progress busyProgress = warmer.warm(busy.memory());
+            final MMapWarmer.Progress cancelledProgress = warmer.warm(cancelled.memory());
+            final MMapWarmer.Progress closedProgress = warmer.warm(closed.memory());
+            assertFalse(cancelledProgress.isDone());
+            cancelledProgress.cancel();
+            assertTrue(cancelledProgress.isDone());
+            assertFalse(closedProgress.isDone());
+            warmer.close();
+            assertTrue(closedProgress.isDone());
+            assertTrue(busyProgress.awaitCompletion(30, TimeUnit.SECONDS));
+            assertTrue(busyProgress.getResidentPages() < PAGES);
+        } finally {
+            warmer.close();
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        try (MMapWarmer warmer = new MMapWarmer(1, 0);
+             NativeBuffer buffer = new NativeBuffer(0, ByteOrder.nativeOrder())) {
+            final MMapWarmer.Progress progress = warmer.warm(buffer.memory());
+            assertTrue(progress.isDone());
+            assertEquals(0, progress.getTotalPages());
+            assertEquals(1.0, progress.getResidentFraction(), 0);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class TestMemoryChannels {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testAsByteBuffer() throws Exception {
+        try (NativeBuffer buffer = new NativeBuffer(100, ByteOrder.BIG_ENDIAN)) {
+            buffer.memory().putInt(10, 12345);
+            final ByteBuffer view = buffer.memory().asByteBuffer(10, 20);
+            assertTrue(view.isDirect());
+            assertEquals(20, view.remaining());
+            assertEquals(ByteOrder.BIG_ENDIAN, view.order());
+            assertEquals(12345, view.getInt(0));
+            // writes through the view land in the memory
+            view.putInt(4, 678);
+            assertEquals(678, buffer.memory().getInt(14));
+        }
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        final byte[] bytes = randomBytes(200000);
+        try (NativeBuffer buffer = new NativeBuffer(bytes.length, ByteOrder.LITTLE_ENDIAN)) {
+            buffer.memory().putBytes(0, bytes);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(1000, MemoryChannels.write(buffer.memory(), 500, 1000, Channels.newChannel(out)));
+            MemoryChannels.write(new HeapMemory(bytes, ByteOrder.LITTLE_ENDIAN), Channels.newChannel(out));
+            final byte[] written = out.toByteArray();
+            assertArrayEquals(Arrays.copyOfRange(bytes, 500, 1500), Arrays.copyOfRange(written, 0, 1000));
+            assertArrayEquals(bytes, Arrays.copyOfRange(written, 1000, written.length));
+        }
+    }
+
+    @Test
+    public void testWriteUnchecked() throws Exception {
+        final byte[] bytes = randomBytes(1000);
+        final File file = tempDir.newFile("unchecked");
+        try (NativeBuffer buffer = new NativeBuffer(bytes.length, ByteOrder.LITTLE_ENDIAN);
+             FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            buffer.memory().putBytes(0, bytes);
+            final Memory unchecked = buffer.memory().unchecked();
+            assertEquals(100, MemoryChannels.write(unchecked.slice(0, 100), Channels.newChannel(new ByteArrayOutputStream())));
+            final Memory[] memories = {unchecked.slice(0, 100), unchecked.slice(100, bytes.length-100)};
+            assertEquals(bytes.length, MemoryChannels.write(memories, channel));
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testGatheringWrite() throws Exception {
+        final byte[] bytes = randomBytes(100000);
+        final File file = tempDir.newFile("out");
+        try (NativeBuffer buffer = new NativeBuffer(bytes.length, ByteOrder.LITTLE_ENDIAN);
+             FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            buffer.memory().putBytes(0, bytes);
+            final Memory[] memories = {
+                    buffer.memory().slice(0, 10),
+                    buffer.memory().slice(10, 50000),
+                    buffer.memory().slice(50010, bytes.length-50010)
+            };
+            assertEquals(bytes.length, MemoryChannels.write(memories, channel));
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testTransferTo() throws Exception {
+        final byte[] bytes = randomBytes(3*4096+100);
+        final File in = tempDir.newFile("in");
+        Files.write(in.toPath(), bytes);
+        final File out = tempDir.newFile("out");
+        try (MMapBuffer buffer = new MMapBuffer(in, 4096, bytes.length-4096, FileChannel.MapMode.READ_ONLY, ByteOrder.LITTLE_ENDIAN);
+             FileChannel channel = FileChannel.open(out.toPath(), StandardOpenOption.WRITE)) {
+            assertEquals(5000, MemoryChannels.transferTo(buffer, 100, 5000, channel));
+        }
+        assertArrayEquals(Arrays.copyOfRange(bytes, 4196, 9196), Files.readAllBytes(out.toPath()));
+    }
+
+    @Test
+    public void testZeroCopyOutputStream() throws Exception {
+        final byte[] bytes = randomBytes(10000);
+        final ZeroCopyOutputStream out = new ZeroCopyOutputStream();
+        out.write(bytes);
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        out.writeTo(Channels.newChannel(written));
+        out.close();
+        assertArrayEquals(bytes, written.toByteArray());
+    }
+
+    /**
+     * Run by {@link #testWithoutJavaNioOpened()} in a jvm where java.nio.DirectByteBuffer is not accessible. java.io
+     * still has to be opened for NativeBuffer.
+     */
+    public static final class WithoutJavaNioOpened {
+        public static void main(String[] args) throws Exception {
+            final byte[] bytes = randomBytes(10000);
+            final ByteArrayOutputStream written = new ByteArrayOutputStream();
+            try (NativeBuffer buffer = new NativeBuffer(bytes.length, ByteOrder.LITTLE_ENDIAN)) {
+                buffer.memory().putBytes(0, bytes);
+                MemoryChannels.write(buffer.memory(), Channels.newChannel(written));
+            }
+            final ZeroCopyOutputStream out = new ZeroCopyOutputStream();
+            out.write(bytes);
+            out.writeTo(Channels.newChannel(written));
+            out.close();
+            final byte[] expected = Arrays.copyOf(bytes, 2*bytes.length);
+            System.arraycopy(bytes, 0, expected, bytes.length, bytes.length);
+            System.exit(Arrays.equals(expected, written.toByteArray()) ? 0 : 1);
+        }
+    }
+
+    @Test
+    public void testWithoutJavaNioOpened() throws Exception {
+        // modules only exist from java 9
+        assumeTrue(!System.getProperty("java.specification.version").startsWith("1."));
+        // the native library doesn't have newDirectByteBuffer, so writes have to fall back to copying
+        final Process process = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "--add-opens", "java.base/java.io=ALL-UNNAMED",
+                "-cp", System.getProperty("java.class.path"),
+                WithoutJavaNioOpened.class.getName()
+        ).inheritIO().start();
+        assertEquals(0, process.waitFor());
+    }
+}
@@ -0,0 +1,94 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.core.reference.SharedReference;
+import org.junit.Test;
+
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestNativeBufferPool {
+
+    @Test
+    public void testCapacityFor() {
+        assertEquals(64, NativeBufferPool.capacityFor(0));
+        assertEquals(64, NativeBufferPool.capacityFor(64));
+        assertEquals(128, NativeBufferPool.capacityFor(65));
+        assertEquals(1024*1024, NativeBufferPool.capacityFor(1000000));
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        try (NativeBufferPool pool = new NativeBufferPool(ByteOrder.LITTLE_ENDIAN, 1024*1024, 1)) {
+            final SharedReference<NativeBuffer> ref = pool.borrow(1000);
+            final NativeBuffer buffer = ref.get();
+            assertEquals(1024, buffer.memory().length());
+            assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.memory().getOrder());
+            assertEquals(1, pool.getBorrowedCount());
+
+            // the buffer goes back to the pool only when every copy is closed
+            final SharedReference<NativeBuffer> copy = ref.copy();
+            ref.close();
+            assertEquals(0, pool.getPooledBytes());
+            copy.close();
+            assertEquals(1024, pool.getPooledBytes());
+            assertEquals(0, pool.getBorrowedCount());
+
+            try (SharedReference<NativeBuffer> again = pool.borrow(513)) {
+                assertSame(buffer, again.get());
+                assertEquals(0, pool.getPooledBytes());
+            }
+            try (SharedReference<NativeBuffer> other = pool.borrow(2000)) {
+                assertNotSame(buffer, other.get());
+            }
+            assertEquals(1024+2048, pool.getPooledBytes());
+        }
+    }
+
+    @Test
+    public void testMaxPooledBytes() throws Exception {
+        try (NativeBufferPool pool = new NativeBufferPool(ByteOrder.LITTLE_ENDIAN, 4096, 1)) {
+            final SharedReference<NativeBuffer> a = pool.borrow(4096);
+            final SharedReference<NativeBuffer> b = pool.borrow(4096);
+            a.close();
+            b.close();
+            assertEquals(4096, pool.getPooledBytes());
+            pool.borrow(8192).close();
+            assertEquals(4096, pool.getPooledBytes());
+        }
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        try (NativeBufferPool pool = new NativeBufferPool(ByteOrder.LITTLE_ENDIAN, 4096, 1, true)) {
+            pool.borrow(100).close();
+            pool.simulateLeak(pool.borrow(100));
+            assertEquals(1, pool.getLeakCount());
+            assertEquals(0, pool.getBorrowedCount());
+        }
+    }
+
+    @Test
+    public void testZeroCopyOutputStream() throws Exception {
+        try (NativeBufferPool pool = new NativeBufferPool(ByteOrder.BIG_ENDIAN, 1024*1024, 1)) {
+            for (int i = 0; i < 10; i++) {
+                final ZeroCopyOutputStream out = new ZeroCopyOutputStream(pool, 16);
+                for (int j = 0; j < 1000; j++) {
+                    out.writeInt(j);
+                }
+                final DirectMemory memory = out.memory();
+                assertEquals(4000, memory.length());
+                for (int j = 0; j < 1000; j++) {
+                    assertEquals(j, memory.getInt(j*4));
+                }
+                out.close();
+                assertEquals(0, pool.getBorrowedCount());
+            }
+            // every size the stream grew through is pooled once
+            assertTrue(pool.getPooledBytes() < 2*4096);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.indeed.util.mmap;
+
+import org.junit.Test;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestOffHeapArena {
+
+    @Test
+    public void testAllocateAndFree() throws Exception {
+        try (OffHeapArena arena = new OffHeapArena(64*1024, 4096, ByteOrder.LITTLE_ENDIAN)) {
+            final List<DirectMemory> allocations = new ArrayList<DirectMemory>();
+            for (int i = 0; i < 1000; i++) {
+                final DirectMemory memory = arena.allocate(1+i%100);
+                assertEquals(1+i%100, memory.length());
+                assertEquals(ByteOrder.LITTLE_ENDIAN, memory.getOrder());
+                memory.putByte(0, (byte)i);
+                memory.putByte(memory.length()-1, (byte)i);
+                allocations.add(memory);
+            }
+            // no allocation overlaps another
+            for (int i = 0; i < allocations.size(); i++) {
+                assertEquals((byte)i, allocations.get(i).getByte(0));
+                assertEquals((byte)i, allocations.get(i).getByte(allocations.get(i).length()-1));
+            }
+            assertEquals(1000, arena.getLiveAllocations());
+            final long reserved = arena.getReservedBytes();
+            assertTrue(arena.getUsedBytes() >= arena.getAllocatedBytes());
+            assertTrue(arena.getInternalFragmentation() > 0);
+
+            for (final DirectMemory memory : allocations) {
+                arena.free(memory);
+            }
+            assertEquals(0, arena.getLiveAllocations());
+            assertEquals(0, arena.getAllocatedBytes());
+            assertEquals(0, arena.getUsedBytes());
+            assertEquals(1.0, arena.getExternalFragmentation(), 0);
+
+            // freed slots are reused without growing the arena
+            for (int i = 0; i < 1000; i++) {
+                allocations.set(i, arena.allocate(1+i%100));
+            }
+            assertEquals(reserved, arena.getReservedBytes());
+        }
+    }
+
+    @Test
+    public void testSizeClassAlignment() throws Exception {
+        try (OffHeapArena arena = new OffHeapArena(ByteOrder.nativeOrder())) {
+            for (int size = 1; size <= 64*1024; size *= 2) {
+                final DirectMemory memory = arena.allocate(size);
+                assertEquals(0, memory.getAddress()%Math.max(size, OffHeapArena.MIN_SIZE_CLASS));
+                memory.putByte(size-1, (byte)1);
+            }
+            assertEquals(0, arena.allocate(100).getAddress()%128);
+        }
+    }
+
+    @Test
+    public void testLargeAllocations() throws Exception {
+        try (OffHeapArena arena = new OffHeapArena(64*1024, 4096, ByteOrder.BIG_ENDIAN)) {
+            final DirectMemory large = arena.allocate(100000);
+            large.putLong(99992, 5);
+            assertEquals(5, large.getLong(99992));
+            assertEquals(100000, arena.getReservedBytes());
+            assertEquals(100000, arena.getUsedBytes());
+            arena.free(large);
+            assertEquals(0, arena.getReservedBytes());
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        try (OffHeapArena arena = new OffHeapArena(64*1024, 4096, ByteOrder.LITTLE_ENDIAN)) {
+            for (int i = 0; i < 100; i++) {
+                arena.allocate(2000);
+            }
+            arena.allocate(10000);
+            final long chunks = arena.getReservedBytes()-10000;
+            assertEquals(4*64*1024, chunks);
+            assertTrue(arena.getOccupancy() > 0.5);
+
+            arena.reset();
+            assertEquals(chunks, arena.getReservedBytes());
+            assertEquals(0, arena.getLiveAllocations());
+            assertEquals(0, arena.getExternalFragmentation(), 0);
+            for (int i = 0; i < 100; i++) {
+                arena.allocate(2000);
+            }
+            assertEquals(chunks, arena.getReservedBytes());
+        }
+    }
+
+    @Test
+    public void testFreeForeignMemory() throws Exception {
+        try (OffHeapArena arena = new OffHeapArena(64*1024, 4096, ByteOrder.LITTLE_ENDIAN);
+             NativeBuffer buffer = new NativeBuffer(100, ByteOrder.LITTLE_ENDIAN)) {
+            arena.allocate(10);
+            try {
+                arena.free(buffer.memory());
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testFreeSlice() throws Exception {
+        try (OffHeapArena arena = new OffHeapArena(64*1024, 4096, ByteOrder.LITTLE_ENDIAN)) {
+            final DirectMemory slot = arena.allocate(64);
+            try {
+                arena.free(slot.slice(0, 16));
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+            assertEquals(1, arena.getLiveAllocations());
+            // nothing went on the 16 byte free list, so two 16 byte allocations don't share the slot
+            final DirectMemory first = arena.allocate(16);
+            final DirectMemory second = arena.allocate(16);
+            assertTrue(first.getAddress() != slot.getAddress() && second.getAddress() != slot.getAddress());
+            arena.free(slot);
+        }
+    }
+}
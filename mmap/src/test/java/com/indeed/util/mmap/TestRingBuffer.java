@@ -0,0 +1,182 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestRingBuffer {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void testSingleThreaded() throws Exception {
+        try (NativeBuffer buffer = new NativeBuffer(RingBuffer.bytesRequired(4, 10), ByteOrder.nativeOrder())) {
+            final RingBuffer ring = RingBuffer.create(buffer.memory(), 4, 10, new WaitStrategy.Spinning());
+            final RingBuffer.Consumer consumer = ring.consumer();
+            assertEquals(0, consumer.tryClaim(4));
+            for (int i = 0; i < 4; i++) {
+                assertTrue(ring.offer(new byte[]{(byte)i, 1, 2}));
+            }
+            assertFalse(ring.offer(new byte[1]));
+            assertEquals(-1, ring.tryClaim(1));
+            assertEquals(4, ring.size());
+
+            assertEquals(3, consumer.tryClaim(3));
+            assertEquals(0, consumer.first());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(3, ring.length(i));
+                assertEquals(i, ring.slot(i).getByte(0));
+            }
+            // slots aren't free until they are released
+            assertEquals(-1, ring.tryClaim(1));
+            consumer.release();
+
+            final long first = ring.claim(3);
+            assertEquals(4, first);
+            for (long sequence = first; sequence < first+3; sequence++) {
+                ring.slot(sequence).putLong(0, sequence*100);
+                ring.setLength(sequence, 8);
+            }
+            ring.publish(first, 3);
+
+            final byte[] bytes = new byte[10];
+            assertEquals(3, consumer.take(bytes));
+            assertEquals(3, bytes[0]);
+            assertEquals(3, consumer.claim(10));
+            for (long sequence = first; sequence < first+3; sequence++) {
+                assertEquals(8, ring.length(sequence));
+                assertEquals(sequence*100, ring.slot(sequence).getLong(0));
+            }
+            consumer.release();
+            assertEquals(0, ring.size());
+            assertEquals(0, consumer.tryClaim(1));
+
+            try {
+                ring.put(new byte[11]);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    private static void runConcurrent(final RingBuffer producerRing, final List<RingBuffer> consumerRings, final int messages) throws Exception {
+        final AtomicIntegerArray seen = new AtomicIntegerArray(messages);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final List<Thread> consumers = new ArrayList<Thread>();
+        for (final RingBuffer ring : consumerRings) {
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        final RingBuffer.Consumer consumer = ring.consumer();
+                        boolean done = false;
+                        while (!done) {
+                            final int count = consumer.claim(16);
+                            for (long sequence = consumer.first(); sequence < consumer.first()+count; sequence++) {
+                                final int value = ring.slot(sequence).getInt(0);
+                                if (value < 0) {
+                                    done = true;
+                                } else {
+                                    seen.incrementAndGet(value);
+                                }
+                            }
+                            consumer.release();
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            thread.start();
+            consumers.add(thread);
+        }
+        int i = 0;
+        while (i < messages) {
+            final int batch = Math.min(1+i%7, messages-i);
+            final long first = producerRing.claim(batch);
+            for (int j = 0; j < batch; j++) {
+                producerRing.slot(first+j).putInt(0, i+j);
+                producerRing.setLength(first+j, 4);
+            }
+            producerRing.publish(first, batch);
+            i += batch;
+        }
+        // one batch can hold several end markers, so keep sending them until every consumer has stopped
+        final byte[] endMarker = {-1, -1, -1, -1};
+        for (final Thread consumer : consumers) {
+            while (consumer.isAlive()) {
+                producerRing.offer(endMarker);
+                consumer.join(10);
+            }
+        }
+        assertNull(failure.get());
+        for (int j = 0; j < messages; j++) {
+            assertEquals(1, seen.get(j));
+        }
+    }
+
+    @Test
+    public void testConcurrentConsumers() throws Exception {
+        final WaitStrategy[] strategies = {new WaitStrategy.Spinning(), new WaitStrategy.Yielding(), new WaitStrategy.Blocking()};
+        for (final WaitStrategy waitStrategy : strategies) {
+            try (NativeBuffer buffer = new NativeBuffer(RingBuffer.bytesRequired(64, 8), ByteOrder.nativeOrder())) {
+                final RingBuffer ring = RingBuffer.create(buffer.memory(), 64, 8, waitStrategy);
+                final List<RingBuffer> consumerRings = new ArrayList<RingBuffer>();
+                for (int i = 0; i < 3; i++) {
+                    consumerRings.add(ring);
+                }
+                runConcurrent(ring, consumerRings, 20000);
+            }
+        }
+    }
+
+    @Test
+    public void testCapacity() {
+        for (final int capacity : new int[] {-2, 0, 1, 3, 12}) {
+            try {
+                RingBuffer.bytesRequired(capacity, 8);
+                fail("capacity " + capacity);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        assertTrue(RingBuffer.bytesRequired(2, 8) > RingBuffer.HEADER_LENGTH);
+    }
+
+    @Test
+    public void testSharedMapping() throws Exception {
+        // separate mappings of the same file, as two processes sharing a file in /dev/shm would have
+        final File file = tempDir.newFile("ring");
+        final long length = RingBuffer.bytesRequired(16, 4);
+        try (MMapBuffer producerBuffer = new MMapBuffer(file, 0, length, FileChannel.MapMode.READ_WRITE, ByteOrder.LITTLE_ENDIAN);
+             MMapBuffer consumerBuffer = new MMapBuffer(file, 0, length, FileChannel.MapMode.READ_WRITE, ByteOrder.LITTLE_ENDIAN)) {
+            try {
+                RingBuffer.open(consumerBuffer.memory(), new WaitStrategy.Yielding());
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+            final RingBuffer producer = RingBuffer.create(producerBuffer.memory(), 16, 4, new WaitStrategy.Yielding());
+            final RingBuffer consumer = RingBuffer.open(consumerBuffer.memory(), new WaitStrategy.Yielding());
+            assertEquals(16, consumer.capacity());
+            assertEquals(4, consumer.slotSize());
+            final List<RingBuffer> consumerRings = new ArrayList<RingBuffer>();
+            consumerRings.add(consumer);
+            consumerRings.add(RingBuffer.open(consumerBuffer.memory(), new WaitStrategy.Yielding()));
+            runConcurrent(producer, consumerRings, 10000);
+        }
+    }
+}
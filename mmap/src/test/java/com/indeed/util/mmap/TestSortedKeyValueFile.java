@@ -0,0 +1,130 @@
+package com.indeed.util.mmap;
+
+import com.google.common.collect.Ordering;
+import com.indeed.util.serialization.LongSerializer;
+import com.indeed.util.serialization.StringSerializer;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestSortedKeyValueFile {
+    private static final int COUNT = 10000;
+
+    private static String key(long i) {
+        return String.format("key%08d", i);
+    }
+
+    private static File write(int count) throws IOException {
+        final File file = File.createTempFile("TestSortedKeyValueFile", "");
+        file.deleteOnExit();
+        try (SortedKeyValueFileWriter<String, Long> writer = new SortedKeyValueFileWriter<String, Long>(file, new StringSerializer(), new LongSerializer(), Ordering.natural())) {
+            for (long i = 0; i < count; i++) {
+                // only even keys so that lookups of odd keys fall between entries
+                writer.put(key(i * 2), i);
+            }
+            assertEquals(count, writer.size());
+        }
+        return file;
+    }
+
+    private static SortedKeyValueFileReader<String, Long> open(File file, int indexInterval) throws IOException {
+        return new SortedKeyValueFileReader<String, Long>(file, new StringSerializer(), new LongSerializer(), Ordering.natural(), indexInterval);
+    }
+
+    @Test
+    public void testLookups() throws Exception {
+        final File file = write(COUNT);
+        for (final int indexInterval : new int[]{1, 7, 64, COUNT * 2}) {
+            try (SortedKeyValueFileReader<String, Long> reader = open(file, indexInterval)) {
+                assertEquals(COUNT, reader.size());
+                for (long i = 0; i < COUNT; i++) {
+                    assertEquals(Long.valueOf(i), reader.get(key(i * 2)));
+                    assertNull(reader.get(key(i * 2 + 1)));
+                    assertTrue(reader.containsKey(key(i * 2)));
+                }
+                assertNull(reader.get(""));
+                assertNull(reader.get("zzz"));
+                assertFalse(reader.containsKey("zzz"));
+            }
+        }
+    }
+
+    @Test
+    public void testIteration() throws Exception {
+        final File file = write(COUNT);
+        try (SortedKeyValueFileReader<String, Long> reader = open(file, 16)) {
+            long expected = 0;
+            for (final Map.Entry<String, Long> entry : reader) {
+                assertEquals(key(expected * 2), entry.getKey());
+                assertEquals(Long.valueOf(expected), entry.getValue());
+                expected++;
+            }
+            assertEquals(COUNT, expected);
+
+            assertEquals(range(100, 200), toList(reader.iterator(key(200), key(400))));
+            assertEquals(range(101, 200), toList(reader.iterator(key(201), key(399))));
+            assertEquals(range(0, 5), toList(reader.iterator(null, key(10))));
+            assertEquals(range(COUNT - 5, COUNT), toList(reader.iterator(key((COUNT - 5) * 2), null)));
+            assertEquals(range(0, 0), toList(reader.iterator(key(400), key(200))));
+            assertEquals(range(0, 0), toList(reader.iterator("zzz", null)));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        final File file = write(0);
+        try (SortedKeyValueFileReader<String, Long> reader = open(file, 64)) {
+            assertEquals(0, reader.size());
+            assertNull(reader.get(key(0)));
+            assertFalse(reader.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void testUnsortedKeys() throws Exception {
+        final File file = File.createTempFile("TestSortedKeyValueFile", "");
+        file.deleteOnExit();
+        try (SortedKeyValueFileWriter<String, Long> writer = new SortedKeyValueFileWriter<String, Long>(file, new StringSerializer(), new LongSerializer(), Ordering.natural())) {
+            writer.put("b", 1L);
+            try {
+                writer.put("b", 2L);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            try {
+                writer.put("a", 2L);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    private static List<Long> range(long from, long to) {
+        final List<Long> ret = new ArrayList<Long>();
+        for (long i = from; i < to; i++) {
+            ret.add(i);
+        }
+        return ret;
+    }
+
+    private static List<Long> toList(Iterator<Map.Entry<String, Long>> iterator) {
+        final List<Long> ret = new ArrayList<Long>();
+        while (iterator.hasNext()) {
+            ret.add(iterator.next().getValue());
+        }
+        return ret;
+    }
+}
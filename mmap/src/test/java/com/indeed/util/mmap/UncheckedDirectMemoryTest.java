@@ -0,0 +1,102 @@
+package com.indeed.util.mmap;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+public class UncheckedDirectMemoryTest extends TestCase {
+
+    NativeBuffer[] buffers;
+
+    public void setUp() throws Exception {
+        buffers = new NativeBuffer[] {
+                new NativeBuffer(8192, ByteOrder.LITTLE_ENDIAN),
+                new NativeBuffer(8192, ByteOrder.BIG_ENDIAN)
+        };
+    }
+
+    public void tearDown() throws IOException {
+        for (NativeBuffer buffer : buffers) {
+            buffer.close();
+        }
+    }
+
+    public void testSameContentsAsChecked() {
+        for (NativeBuffer buffer : buffers) {
+            final DirectMemory checked = buffer.memory();
+            final UncheckedDirectMemory unchecked = checked.unchecked();
+            assertEquals(checked.length(), unchecked.length());
+            assertEquals(checked.getOrder(), unchecked.getOrder());
+            assertTrue(unchecked.isDirect());
+            assertSame(checked, unchecked.checked());
+
+            unchecked.putLong(0, 0x0102030405060708L);
+            assertEquals(0x0102030405060708L, checked.getLong(0));
+            checked.putInt(8, 12345678);
+            assertEquals(12345678, unchecked.getInt(8));
+            unchecked.putShort(12, (short)-2);
+            assertEquals((short)-2, checked.getShort(12));
+            unchecked.putChar(14, 'x');
+            assertEquals('x', checked.getChar(14));
+            unchecked.putDouble(16, 1.5);
+            assertEquals(1.5, checked.getDouble(16));
+            unchecked.putFloat(24, 2.5f);
+            assertEquals(2.5f, checked.getFloat(24));
+            unchecked.putByte(28, (byte)7);
+            assertEquals(7, checked.getByte(28));
+        }
+    }
+
+    public void testTypedArrays() {
+        for (NativeBuffer buffer : buffers) {
+            final UncheckedDirectMemory unchecked = buffer.memory().unchecked();
+            final IntArray ints = unchecked.intArray(0, 1024);
+            for (int i = 0; i < ints.length(); i++) {
+                ints.set(i, i*3);
+            }
+            final IntArray checkedInts = buffer.memory().intArray(0, 1024);
+            for (int i = 0; i < checkedInts.length(); i++) {
+                assertEquals(i*3, checkedInts.get(i));
+            }
+            final LongArray longs = unchecked.longArray(4096, 512);
+            longs.set(511, Long.MIN_VALUE);
+            assertEquals(Long.MIN_VALUE, buffer.memory().getLong(8184));
+        }
+    }
+
+    public void testSliceIsValidated() {
+        final UncheckedDirectMemory unchecked = buffers[0].memory().unchecked();
+        final UncheckedDirectMemory slice = unchecked.slice(16, 16);
+        slice.putLong(8, 5);
+        assertEquals(5, unchecked.getLong(24));
+        try {
+            unchecked.slice(8000, 256);
+            fail();
+        } catch (IllegalArgumentException success) {}
+        try {
+            unchecked.intArray(0, 2049);
+            fail();
+        } catch (IndexOutOfBoundsException success) {}
+        try {
+            unchecked.getBytes(8190, new byte[4]);
+            fail();
+        } catch (IndexOutOfBoundsException success) {}
+    }
+
+    public void testBulkCopies() {
+        final DirectMemory checked = buffers[0].memory();
+        final UncheckedDirectMemory unchecked = checked.unchecked();
+        final byte[] bytes = new byte[] {1, 2, 3, 4, 5, 6, 7, 8};
+        unchecked.putBytes(0, bytes);
+        checked.putBytes(100, unchecked, 0, 8);
+        unchecked.putBytes(200, checked.slice(100, 8));
+        final HeapMemory heap = new HeapMemory(8, ByteOrder.LITTLE_ENDIAN);
+        unchecked.getBytes(200, heap);
+        final byte[] out = new byte[8];
+        heap.getBytes(0, out);
+        for (int i = 0; i < bytes.length; i++) {
+            assertEquals(bytes[i], out[i]);
+        }
+    }
+}